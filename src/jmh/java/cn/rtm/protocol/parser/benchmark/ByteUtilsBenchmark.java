@@ -0,0 +1,112 @@
+package cn.rtm.protocol.parser.benchmark;
+
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  {@link ByteUtils} varint 编解码基准测试，每次操作处理 {@value #VALUE_COUNT} 个数值，数值长度覆盖 1-5（varlong 1-10）字节
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ByteUtilsBenchmark {
+
+    private static final int VALUE_COUNT = 1024;
+
+    private final int[] intValues = new int[VALUE_COUNT];
+
+    private final long[] longValues = new long[VALUE_COUNT];
+
+    private ByteBuffer varintBuffer;
+
+    private ByteBuffer unsignedVarintBuffer;
+
+    private ByteBuffer varlongBuffer;
+
+    private ByteBuffer writeBuffer;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            intValues[i] = random.nextInt() >> random.nextInt(32);
+            longValues[i] = random.nextLong() >> random.nextInt(64);
+        }
+        varintBuffer = ByteBuffer.allocate(VALUE_COUNT * 5);
+        unsignedVarintBuffer = ByteBuffer.allocate(VALUE_COUNT * 5);
+        varlongBuffer = ByteBuffer.allocate(VALUE_COUNT * 10);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            ByteUtils.writeVarint(intValues[i], varintBuffer);
+            ByteUtils.writeUnsignedVarint(intValues[i], unsignedVarintBuffer);
+            ByteUtils.writeVarlong(longValues[i], varlongBuffer);
+        }
+        varintBuffer.flip();
+        unsignedVarintBuffer.flip();
+        varlongBuffer.flip();
+        writeBuffer = ByteBuffer.allocate(VALUE_COUNT * 10);
+    }
+
+
+    @Benchmark
+    public void readVarint(Blackhole blackhole) {
+        ByteBuffer buffer = varintBuffer.duplicate();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            blackhole.consume(ByteUtils.readVarint(buffer));
+        }
+    }
+
+
+    @Benchmark
+    public void readUnsignedVarint(Blackhole blackhole) {
+        ByteBuffer buffer = unsignedVarintBuffer.duplicate();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            blackhole.consume(ByteUtils.readUnsignedVarInt(buffer));
+        }
+    }
+
+
+    @Benchmark
+    public void readVarlong(Blackhole blackhole) {
+        ByteBuffer buffer = varlongBuffer.duplicate();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            blackhole.consume(ByteUtils.readVarlong(buffer));
+        }
+    }
+
+
+    @Benchmark
+    public ByteBuffer writeVarint() {
+        writeBuffer.clear();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            ByteUtils.writeVarint(intValues[i], writeBuffer);
+        }
+        return writeBuffer;
+    }
+
+
+    @Benchmark
+    public ByteBuffer writeUnsignedVarint() {
+        writeBuffer.clear();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            ByteUtils.writeUnsignedVarint(intValues[i], writeBuffer);
+        }
+        return writeBuffer;
+    }
+
+
+    @Benchmark
+    public ByteBuffer writeVarlong() {
+        writeBuffer.clear();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            ByteUtils.writeVarlong(longValues[i], writeBuffer);
+        }
+        return writeBuffer;
+    }
+}
@@ -0,0 +1,47 @@
+package cn.rtm.protocol.parser.benchmark;
+
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import cn.rtm.protocol.parser.protocols.kafka.AbstractDataParseExtractor;
+import cn.rtm.protocol.parser.protocols.kafka.extractor.FetchDataParseExtractor;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.openjdk.jmh.annotations.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  record 内容提取基准测试，覆盖不同压缩方式与提取数量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractRecordBenchmark {
+
+    @Param({"NONE", "GZIP", "SNAPPY", "LZ4", "ZSTD"})
+    private CompressionType compression;
+
+    @Param({"500"})
+    private int recordCount;
+
+    @Param({"10", "500"})
+    private int maxPollSize;
+
+    private AbstractDataParseExtractor<?, ?, ?, ?> extractor;
+
+    private MemoryRecords records;
+
+    @Setup
+    public void setup() {
+        extractor = new FetchDataParseExtractor();
+        records = KafkaFrames.records(compression, recordCount, 256);
+    }
+
+
+    @Benchmark
+    public List<String> extractRecord() {
+        return extractor.extractRecord("benchmark-topic", records, maxPollSize);
+    }
+}
@@ -0,0 +1,119 @@
+package cn.rtm.protocol.parser.benchmark;
+
+import cn.rtm.protocol.parser.ProtocolContext;
+import cn.rtm.protocol.parser.ProtocolMessage;
+import cn.rtm.protocol.parser.core.context.ProtocolParseContext;
+import cn.rtm.protocol.parser.core.util.PortSet;
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
+import cn.rtm.protocol.parser.protocols.kafka.parser.request.KafkaRequestParser;
+import cn.rtm.protocol.parser.protocols.kafka.parser.response.KafkaResponseBodyParser;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  请求、响应数据包解析基准测试，覆盖 Produce、Fetch、Metadata 的新旧版本，数据包由 kafka-clients 序列化生成
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaParserBenchmark {
+
+    private static final String TOPIC = "benchmark-topic";
+
+    private static final long REQUEST_SEQUENCE = 1000L;
+
+    private static final long RESPONSE_SEQUENCE = 5000L;
+
+    /**
+     *  api 与版本，格式为 api:version
+     */
+    @Param({"PRODUCE:3", "PRODUCE:9", "FETCH:4", "FETCH:12", "FETCH:13", "METADATA:4", "METADATA:12"})
+    private String api;
+
+    @Param({"100"})
+    private int recordCount;
+
+    private ProtocolContext context;
+
+    private KafkaRequestParser requestParser;
+
+    private KafkaResponseBodyParser responseParser;
+
+    private ProtocolMessage requestMessage;
+
+    private ProtocolMessage responseMessage;
+
+    private KafkaProtocolParsedMessage parsedRequest;
+
+    @Setup
+    public void setup() {
+        String[] apiVersion = api.split(":");
+        ApiKeys apiKey = ApiKeys.valueOf(apiVersion[0]);
+        short version = Short.parseShort(apiVersion[1]);
+        MemoryRecords records = KafkaFrames.records(CompressionType.NONE, recordCount, 256);
+        ApiMessage request;
+        ApiMessage response;
+        switch (apiKey) {
+            case PRODUCE:
+                request = KafkaFrames.produceRequest(TOPIC, records);
+                response = KafkaFrames.produceResponse(TOPIC, 0L);
+                break;
+            case FETCH:
+                request = KafkaFrames.fetchRequest(TOPIC, version, 0L);
+                response = KafkaFrames.fetchResponse(TOPIC, version, records);
+                break;
+            case METADATA:
+                request = KafkaFrames.metadataRequest(TOPIC);
+                response = KafkaFrames.metadataResponse(TOPIC, 12);
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的 api：" + api);
+        }
+        byte[] requestFrame = KafkaFrames.requestFrame(request, version, 1, "benchmark-client");
+        byte[] responseFrame = KafkaFrames.responseFrame(apiKey, response, version, 1);
+        requestMessage = message("10.0.0.1", 50000, "10.0.0.2", 9094, REQUEST_SEQUENCE, RESPONSE_SEQUENCE, requestFrame);
+        responseMessage = message("10.0.0.2", 9094, "10.0.0.1", 50000, RESPONSE_SEQUENCE,
+                REQUEST_SEQUENCE + requestFrame.length, responseFrame);
+
+        context = new ProtocolParseContext();
+        requestParser = new KafkaRequestParser(context);
+        responseParser = new KafkaResponseBodyParser(context);
+        parsedRequest = requestParser.parse(requestMessage);
+        if (parsedRequest == null || parsedRequest.getRequestMessage() == null) {
+            throw new IllegalStateException("请求数据包解析失败：" + api);
+        }
+        if (parseResponse().getResponseMessage() == null) {
+            throw new IllegalStateException("响应数据包解析失败：" + api);
+        }
+    }
+
+
+    private static ProtocolMessage message(String srcIp, int srcPort, String destIp, int destPort,
+                                           long sequenceNumber, long acknowledgmentNumber, byte[] frame) {
+        ProtocolMessage message = new ProtocolMessage(srcIp, srcPort, destIp, destPort, sequenceNumber, acknowledgmentNumber, frame);
+        message.resolveDirection(PortSet.of(9094));
+        return message;
+    }
+
+
+    @Benchmark
+    public KafkaProtocolParsedMessage parseRequest() {
+        return requestParser.parse(requestMessage);
+    }
+
+
+    @Benchmark
+    public KafkaProtocolParsedMessage parseResponse() {
+        // 响应匹配后会移除上下文中的请求，每次解析前重新放入
+        context.addParam(requestMessage.getResponseAckId(), parsedRequest);
+        return responseParser.parse(responseMessage);
+    }
+}
@@ -0,0 +1,56 @@
+package cn.rtm.protocol.parser.benchmark;
+
+import cn.rtm.protocol.parser.ProtocolMessage;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpPacketReassemble;
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import org.openjdk.jmh.annotations.*;
+import org.pcap4j.packet.Packet;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  tcp 分片重组基准测试，每次操作将一个数据包的全部分片依次交给 {@link TcpPacketReassemble#reassemble(Packet, Instant)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TcpPacketReassembleBenchmark {
+
+    @Param({"1", "10", "1000"})
+    private int segments;
+
+    @Param({"65536"})
+    private int frameSize;
+
+    private TcpPacketReassemble reassemble;
+
+    private List<Packet> packets;
+
+    private final Instant captureTime = Instant.now();
+
+    @Setup
+    public void setup() {
+        reassemble = new TcpPacketReassemble();
+        ByteBuffer frame = ByteBuffer.allocate(frameSize);
+        frame.putInt(frameSize - 4);
+        packets = KafkaFrames.tcpSegments("10.0.0.1", 50000, "10.0.0.2", 9094, 1000L, 2000L, frame.array(), segments);
+    }
+
+
+    @Benchmark
+    public ProtocolMessage reassemble() {
+        ProtocolMessage message = null;
+        for (Packet packet : packets) {
+            message = reassemble.reassemble(packet, captureTime);
+        }
+        if (message == null) {
+            throw new IllegalStateException("数据包未重组完成");
+        }
+        return message;
+    }
+}
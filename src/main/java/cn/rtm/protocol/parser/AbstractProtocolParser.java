@@ -40,9 +40,20 @@ public abstract class AbstractProtocolParser<H,B,R> implements ProtocolParser<Pr
     protected final ProtocolContext protocolContext;
 
     /**
-     *  请求数据包解析包开始时间
+     *  请求数据包解析包开始时间，解析器被多个线程共享，按线程保存
      */
-    protected LocalDateTime startParseTime;
+    protected ThreadLocal<LocalDateTime> startParseTime = new ThreadLocal<>();
+
+    /**
+     *  数据包抓包时间，取自 pcap 头时间戳，通过 {@link #captureTimeOf(ProtocolMessage)} 获取，
+     *  未携带抓包时间时等同于 {@link #startParseTime}，按线程保存
+     */
+    protected ThreadLocal<LocalDateTime> captureTime = new ThreadLocal<>();
+
+    /**
+     *  {@link #captureTime} 对应的时间戳，用于计算耗时，不受时区与夏令时切换影响，按线程保存
+     */
+    protected ThreadLocal<Instant> captureInstant = new ThreadLocal<>();
 
     public AbstractProtocolParser(ProtocolContext protocolContext) {
         this.protocolContext = protocolContext;
@@ -63,11 +74,25 @@ public abstract class AbstractProtocolParser<H,B,R> implements ProtocolParser<Pr
      */
     private void init(ProtocolMessage packet) {
         this.data.set(packet);
-        this.startParseTime = LocalDateTime.ofInstant(Instant.now(), ZoneId.systemDefault());
+        this.startParseTime.set(LocalDateTime.ofInstant(Instant.now(), ZoneId.systemDefault()));
+        Instant packetCaptureTime = this.captureTimeOf(packet);
+        Instant instant = packetCaptureTime == null ? Instant.now() : packetCaptureTime;
+        this.captureInstant.set(instant);
+        this.captureTime.set(LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
         this.beforeParse();
     }
 
 
+    /**
+     *  获取数据包用于计算请求耗时的抓包时间，默认为数据包完整时的抓包时间，子类可根据协议语义调整
+     * @param packet 待解析的数据包
+     * @return 返回抓包时间，未携带则返回 null
+     */
+    protected Instant captureTimeOf(ProtocolMessage packet) {
+        return packet.getCaptureTime();
+    }
+
+
     /**
      *  获取 tcp 传输的消息体，不包含消息体长度本身（kafka 前 4个字节），其他协议可自定义实现
      * @return 返回需要解析的协议内容
@@ -1,6 +1,7 @@
 package cn.rtm.protocol.parser;
 
 import org.pcap4j.packet.Packet;
+import java.time.Instant;
 
 /**
  *  数据包组合器，若存在分片传输返回合并后完整的数据包
@@ -17,4 +18,24 @@ public interface PacketReassemble<P> {
      */
    P reassemble(Packet packet);
 
+
+    /**
+     *  合并数据包，并记录数据包的抓包时间，默认忽略抓包时间，实现类可重写以携带抓包时间
+     * @param packet 网卡捕获的数据包
+     * @param captureTime 数据包抓包时间，取自 pcap 头时间戳
+     * @return 返回完整的数据包内容, 若数据包未合并完成或者未携带有效数据则返回 null
+     */
+    default P reassemble(Packet packet, Instant captureTime) {
+        return reassemble(packet);
+    }
+
+
+    /**
+     *  上报重组后数据包的解析结果，实现类可据此隔离持续解析失败的连接，默认忽略
+     * @param message {@link #reassemble(Packet)} 返回的完整数据包
+     * @param parsed 是否解析成功
+     */
+    default void reportParseResult(P message, boolean parsed) {
+    }
+
 }
@@ -30,4 +30,12 @@ public interface ProtocolContext {
      */
     <T> T getParamAs(Object key, Class<T> type);
 
+
+    /**
+     *  移除指定 key 的参数
+     * @param key 参数标识
+     * @return 返回被移除的参数值，不存在则返回 null
+     */
+    Object removeParam(Object key);
+
 }
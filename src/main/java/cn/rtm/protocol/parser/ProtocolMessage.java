@@ -1,168 +1,333 @@
 package cn.rtm.protocol.parser;
 
-import cn.rtm.protocol.parser.core.util.ByteUtils;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
+import cn.rtm.protocol.parser.core.util.IpAddresses;
+import cn.rtm.protocol.parser.core.util.PortSet;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.util.List;
+import java.time.Instant;
 
 
 /**
  *  提供请求和响应数据包公共内容包装类，{@link #rawData} 为需要解析的协议数据包内容，
  *  该协议数据包不包含公共通信协议数据包内容，如：物理链路层、网络协议层 、传输层等，仅包含待解析
  *  协议的数据包内容
+ *
+ * <ul>
+ * <li> ip 地址以两个 long 存储 128 位地址，见 {@link IpAddresses}，字符串形式在首次读取时生成并缓存
+ * <li> 数据包内容在创建时包装一次，{@link #payloadView()} 返回共享的只读视图，按绝对位置读取或 duplicate 后读取，不产生额外对象
+ * <li> 数据包头部为 {@link #headerLength} 字节的长度前缀，默认为 kafka 的 4 字节，无长度前缀的协议（如 redis）为 0，
+ * 此时数据包长度即为内容长度
+ * <li> 地址、端口、序列号、数据包内容创建后不可修改，{@link #requestDesc()}、{@link #getRequestUrl()} 在首次调用时生成并缓存
+ * </ul>
  */
 public class ProtocolMessage {
 
     /**
-     *  请求源 ip 地址
+     *  默认长度前缀字节数，即 kafka 数据包前 4 个字节
      */
-    private String srcIp;
+    public static final int DEFAULT_HEADER_LENGTH = 4;
+
+    /**
+     *  请求源 ip 地址高 64 位
+     */
+    private final long srcAddrHigh;
+
+    /**
+     *  请求源 ip 地址低 64 位
+     */
+    private final long srcAddrLow;
 
     /**
      *  请求源端口
      */
-    private int srcPort;
+    private final int srcPort;
 
     /**
-     *  数据包请求目标 ip 地址
+     *  数据包请求目标 ip 地址高 64 位
      */
-    private String destIp;
+    private final long destAddrHigh;
+
+    /**
+     *  数据包请求目标 ip 地址低 64 位
+     */
+    private final long destAddrLow;
 
     /**
      *  数据包请求目标端口
      */
-    private int destPort;
+    private final int destPort;
 
     /**
      *  数据包请求序列号
      */
-    private long sequenceNumber;
+    private final long sequenceNumber;
 
     /**
      *  对应数据包响应包-请求序列号
      */
-    private long acknowledgementNumber;
+    private final long acknowledgementNumber;
 
     /**
      *  数据包的实际长度，未包含长度字节本身
      */
-    private int length;
+    private final int length;
+
+    /**
+     *  数据包头部长度前缀的字节数
+     */
+    private final int headerLength;
 
     /**
      *  kafka 协议原始数据
      */
-    private byte[] rawData;
+    private final byte[] rawData;
+
+    /**
+     *  不包含长度字段的数据包内容视图，创建时生成，各解析阶段共享
+     */
+    private final ByteBuffer payload;
+
+    /**
+     *  服务端端口，由 {@link #resolveDirection(PortSet)} 确定，为 {@link TcpFlow#NO_SERVER_PORT} 则不是需要解析的数据包
+     */
+    private int serverPort = TcpFlow.NO_SERVER_PORT;
+
+    /**
+     *  数据包所属的 tcp 连接，用于存储连接级别的解析状态
+     */
+    private TcpFlow flow;
+
+    /**
+     *  数据包首个分片的抓包时间，取自 pcap 头时间戳
+     */
+    private Instant firstCaptureTime;
+
+    /**
+     *  数据包最后一个分片（即数据包完整时）的抓包时间，取自 pcap 头时间戳
+     */
+    private Instant captureTime;
 
     /**
-     *  默认协议监听端口，指定需要解析监听的协议端口
+     *  源 ip、目标 ip、地址描述的字符串形式，首次读取时生成
      */
-    private List<Integer> listenPorts;
+    private String srcIp;
+
+    private String destIp;
 
+    private String destEndpoint;
+
+    private String requestUrl;
+
+    private String requestDesc;
+
+    /**
+     * @param srcIp 源 ip 字面量
+     * @param destIp 目标 ip 字面量
+     * @throws IllegalArgumentException ip 不是合法的 ipv4 或 ipv6 字面量
+     */
     public ProtocolMessage(String srcIp, int srcPort, String destIp, int destPort,
               long sequenceNumber, long acknowledgementNumber, byte[] rawData) {
+        this(addressOf(srcIp), srcPort, addressOf(destIp), destPort, sequenceNumber, acknowledgementNumber, rawData);
         this.srcIp = srcIp;
-        this.srcPort = srcPort;
         this.destIp = destIp;
+    }
+
+    /**
+     * @param srcAddress 源 ip，网络字节序的 4 字节 ipv4 或 16 字节 ipv6 地址
+     * @param destAddress 目标 ip，格式同 srcAddress
+     */
+    public ProtocolMessage(byte[] srcAddress, int srcPort, byte[] destAddress, int destPort,
+              long sequenceNumber, long acknowledgementNumber, byte[] rawData) {
+        this(srcAddress, srcPort, destAddress, destPort, sequenceNumber, acknowledgementNumber, rawData, DEFAULT_HEADER_LENGTH);
+    }
+
+    /**
+     * @param headerLength 长度前缀字节数，为 4 或 0，见 {@link cn.rtm.protocol.parser.core.reassemble.tcp.FrameDecoder#headerLength()}
+     */
+    public ProtocolMessage(byte[] srcAddress, int srcPort, byte[] destAddress, int destPort,
+              long sequenceNumber, long acknowledgementNumber, byte[] rawData, int headerLength) {
+        if (headerLength != 0 && headerLength != DEFAULT_HEADER_LENGTH) {
+            throw new IllegalArgumentException("长度前缀应为 0 或 4 字节：" + headerLength);
+        }
+        this.headerLength = headerLength;
+        this.srcAddrHigh = IpAddresses.high(srcAddress);
+        this.srcAddrLow = IpAddresses.low(srcAddress);
+        this.srcPort = srcPort;
+        this.destAddrHigh = IpAddresses.high(destAddress);
+        this.destAddrLow = IpAddresses.low(destAddress);
         this.destPort = destPort;
         this.sequenceNumber = sequenceNumber;
         this.acknowledgementNumber = acknowledgementNumber;
         this.rawData = rawData;
         this.length = realPacketLength();
+        this.payload = rawData.length < headerLength ? ByteBuffer.wrap(rawData, 0, 0).slice()
+                : ByteBuffer.wrap(rawData, headerLength, rawData.length - headerLength).slice();
     }
 
     public String getSrcIp() {
-        return srcIp;
-    }
-
-    public void setSrcIp(String srcIp) {
-        this.srcIp = srcIp;
+        String ip = srcIp;
+        if (ip == null) {
+            ip = IpAddresses.format(srcAddrHigh, srcAddrLow);
+            srcIp = ip;
+        }
+        return ip;
     }
 
     public int getSrcPort() {
         return srcPort;
     }
 
-    public void setSrcPort(int srcPort) {
-        this.srcPort = srcPort;
+    public String getDestIp() {
+        String ip = destIp;
+        if (ip == null) {
+            ip = IpAddresses.format(destAddrHigh, destAddrLow);
+            destIp = ip;
+        }
+        return ip;
     }
 
-    public String getDestIp() {
-        return destIp;
+    public int getDestPort() {
+        return destPort;
     }
 
-    public void setDestIp(String destIp) {
-        this.destIp = destIp;
+
+    /**
+     *  获取目标地址，首次调用时生成
+     * @return 返回格式为 destIp:destPort 的地址
+     */
+    public String getDestEndpoint() {
+        String endpoint = destEndpoint;
+        if (endpoint == null) {
+            endpoint = getDestIp() + ":" + destPort;
+            destEndpoint = endpoint;
+        }
+        return endpoint;
     }
 
-    public int getDestPort() {
-        return destPort;
+    public long getSrcAddrHigh() {
+        return srcAddrHigh;
     }
 
-    public void setDestPort(int destPort) {
-        this.destPort = destPort;
+    public long getSrcAddrLow() {
+        return srcAddrLow;
     }
 
-    public long getSequenceNumber() {
-        return sequenceNumber;
+    public long getDestAddrHigh() {
+        return destAddrHigh;
     }
 
-    public void setSequenceNumber(long sequenceNumber) {
-        this.sequenceNumber = sequenceNumber;
+    public long getDestAddrLow() {
+        return destAddrLow;
     }
 
-    public long getAcknowledgementNumber() {
-        return acknowledgementNumber;
+
+    /**
+     *  是否为 ipv4 数据包
+     * @return 返回 true 则源地址与目标地址均为 ipv4 地址
+     */
+    public boolean isIpv4() {
+        return IpAddresses.isIpv4(srcAddrHigh, srcAddrLow) && IpAddresses.isIpv4(destAddrHigh, destAddrLow);
     }
 
-    public void setAcknowledgementNumber(long acknowledgementNumber) {
-        this.acknowledgementNumber = acknowledgementNumber;
+    public long getSequenceNumber() {
+        return sequenceNumber;
     }
 
-    public byte[] getRawData() {
-        return rawData;
+    public long getAcknowledgementNumber() {
+        return acknowledgementNumber;
     }
 
-    public void setRawData(byte[] rawData) {
-        this.rawData = rawData;
+    public byte[] getRawData() {
+        return rawData;
     }
 
     public int getLength() {
         return this.length;
     }
 
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
 
+    /**
+     *  获取包含长度字段的数据包内容，返回的缓冲区独立维护读取位置
+     * @return 返回数据包内容
+     */
     public ByteBuffer duplicateRawData() {
-        return wrappedRawData().duplicate();
+        return ByteBuffer.wrap(rawData);
+    }
+
+
+    /**
+     *  获取不包含长度字段的数据包内容共享视图，调用方不得修改其位置与内容，需要顺序读取时先 duplicate
+     * @return 返回数据包内容视图
+     */
+    public ByteBuffer payloadView() {
+        return payload;
     }
 
 
-    public ByteBuffer wrappedRawData() {
-        return ByteUtils.wrap(this.rawData);
+    public int getServerPort() {
+        return serverPort;
     }
 
+    /**
+     *  确定数据包方向，所属连接已确定方向时直接使用连接的结果，无所属连接时按监听端口判断
+     * @param listenPorts 协议监听端口
+     */
+    public void resolveDirection(PortSet listenPorts) {
+        this.serverPort = flow != null ? flow.resolveServerPort(srcPort, destPort, listenPorts)
+                : TcpFlow.serverPortOf(srcPort, destPort, listenPorts);
+    }
+
+    public TcpFlow getFlow() {
+        return flow;
+    }
+
+    public void setFlow(TcpFlow flow) {
+        this.flow = flow;
+    }
+
+    public Instant getFirstCaptureTime() {
+        return firstCaptureTime;
+    }
+
+    public void setFirstCaptureTime(Instant firstCaptureTime) {
+        this.firstCaptureTime = firstCaptureTime;
+    }
 
-    public List<Integer> getListenPorts() {
-        return listenPorts;
+    public Instant getCaptureTime() {
+        return captureTime;
     }
 
-    public void setListenPorts(List<Integer> listenPorts) {
-        this.listenPorts = listenPorts;
+    public void setCaptureTime(Instant captureTime) {
+        this.captureTime = captureTime;
     }
 
     /**
-     *  不包含数据包长度内容的数据包信息
-     * @return
+     *  不包含数据包长度内容的数据包信息，返回的缓冲区独立维护读取位置，与 {@link #payloadView()} 共享内容
+     * @return 返回数据包内容
      */
     public ByteBuffer rawDataWithNoLength() {
-        return ByteUtils.wrapWithNoLength(this.rawData);
+        return payload.duplicate();
     }
 
 
     /**
      *  获取传输包总大小, 前四个字节代表实际传输包的大小，由于网卡传输限制，超过则会进行 tcp 分片传输，该字段标识完整数据包大小
-     * @return 返回请求或响应数据包真实的大小
+     * @return 返回请求或响应数据包真实的大小，无长度前缀时为当前数据包大小
      */
     public int realPacketLength(){
-        return duplicateRawData().getInt();
+        if (headerLength == 0) {
+            return rawData.length;
+        }
+        if (rawData.length < 4) {
+            return 0;
+        }
+        return (rawData[0] & 0xff) << 24 | (rawData[1] & 0xff) << 16 | (rawData[2] & 0xff) << 8 | (rawData[3] & 0xff);
     }
 
 
@@ -171,35 +336,36 @@ public class ProtocolMessage {
      * @return 返回当前请求携带的数据包的大小
      */
     public int currentPacketLength() {
-        return wrappedRawData().remaining();
+        return rawData.length;
     }
 
 
     /**
      *  判断数据包是否为完整的数据包，读取数据包前4个字节获取总数据包长度，并与当前数据包的长度进行比较，
-     *  若相等则返回 true，反之则返回 false；若为分片数据包，则总长度为 0，则返回 false，反之则返回 true
+     *  若相等则返回 true，反之则返回 false；若为分片数据包，则总长度为 0，则返回 false，反之则返回 true；无长度前缀时始终返回 true，
+     *  帧边界由重组时的 {@link cn.rtm.protocol.parser.core.reassemble.tcp.FrameDecoder} 保证
      * @return 返回 true 则是，反之 false
      */
     public boolean isCompletePacket() {
-        return this.length  == (currentPacketLength() - 4) ;
+        return this.length  == (currentPacketLength() - headerLength) ;
     }
 
 
     /**
-     *  判断请求的目标端口是否为 kafka 协议配置的端口
+     *  判断是否为请求数据包，即目标端口为服务端端口
      * @return 返回 true 则是，反之 false
      */
     public boolean isRequestPacket() {
-        return this.listenPorts.contains(this.destPort);
+        return this.serverPort != TcpFlow.NO_SERVER_PORT && this.serverPort == this.destPort;
     }
 
 
     /**
-     *  判断请求的请求来源端口是否为 kafka 协议配置的端口
+     *  判断是否为响应数据包，即来源端口为服务端端口
      * @return 返回 true 则是，反之 false
      */
     public boolean isResponsePacket() {
-        return this.listenPorts.contains(this.srcPort);
+        return this.serverPort != TcpFlow.NO_SERVER_PORT && this.serverPort == this.srcPort;
     }
 
 
@@ -226,19 +392,22 @@ public class ProtocolMessage {
 
     /**
      *  请求标识，获取当前请求对应的响应数据包 ack-id ,用于关联一组请求和响应数据包
-     * @return 返回该请求对应的响应数据包 ack-id
+     * @return 返回该请求对应的响应数据包 ack-id，超过 32 位时回绕
      */
     public long getResponseAckId() {
-        return getSequenceNumber() + this.length + 4;
+        return (getSequenceNumber() + this.length + headerLength) & 0xffffffffL;
     }
 
 
     /**
-     *  当前数据包请求地址描述信息
+     *  当前数据包请求地址描述信息，首次调用时生成
      * @return 返回数据包请求概览信息
      */
     public String requestDesc() {
-        StringBuilder frame = new StringBuilder(32);
+        if (requestDesc != null) {
+            return requestDesc;
+        }
+        StringBuilder frame = new StringBuilder(128);
         frame.append("--------- req -> res ---------\n");
         frame.append("sequenceNumber: ");
         frame.append(this.sequenceNumber);
@@ -246,33 +415,76 @@ public class ProtocolMessage {
         frame.append("acknowledgementNumber: ");
         frame.append(this.acknowledgementNumber);
         frame.append("\n");
-        frame.append(this.srcIp);
+        frame.append(getSrcIp());
         frame.append(":");
         frame.append(this.srcPort);
         frame.append("=>");
-        frame.append(this.destIp);
+        frame.append(getDestIp());
         frame.append(":");
         frame.append(this.destPort);
         frame.append("\n");
         frame.append("--------- req -> res ---------\n");
-        return frame.toString();
+        requestDesc = frame.toString();
+        return requestDesc;
     }
 
+
+    /**
+     *  当前数据包地址，首次调用时生成
+     * @return 返回格式为 srcIp:srcPort <-> destIp:destPort 的地址
+     */
     public String getRequestUrl() {
-        return this.srcIp + ":" +this.srcPort + " <-> " + this.destIp + ":" + this.destPort;
+        String url = requestUrl;
+        if (url == null) {
+            url = getSrcIp() + ":" + this.srcPort + " <-> " + getDestIp() + ":" + this.destPort;
+            requestUrl = url;
+        }
+        return url;
     }
 
+
+    /**
+     *  解析 ip 字面量，不进行域名解析
+     * @param ip ipv4 或 ipv6 字面量
+     * @return 返回网络字节序的地址
+     */
+    private static byte[] addressOf(String ip) {
+        if (ip == null || ip.isEmpty() || !isIpLiteral(ip)) {
+            throw new IllegalArgumentException("不是合法的 ip 地址：" + ip);
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("不是合法的 ip 地址：" + ip, e);
+        }
+    }
+
+
+    private static boolean isIpLiteral(String ip) {
+        if (ip.indexOf(':') >= 0) {
+            return true;
+        }
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     @Override
     public String toString() {
         return "ProtocolMessage{" +
-                "srcIp='" + srcIp + '\'' +
+                "srcIp='" + getSrcIp() + '\'' +
                 ", srcPort=" + srcPort +
-                ", destIp='" + destIp + '\'' +
+                ", destIp='" + getDestIp() + '\'' +
                 ", destPort=" + destPort +
                 ", sequenceNumber=" + sequenceNumber +
                 ", acknowledgementNumber=" + acknowledgementNumber +
                 ", length=" + length +
-                ", listenPorts=" + listenPorts +
+                ", serverPort=" + serverPort +
                 '}';
     }
 }
@@ -2,6 +2,8 @@ package cn.rtm.protocol.parser;
 
 import cn.rtm.protocol.parser.core.enums.ProtocolType;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -281,6 +283,45 @@ public class ProtocolParseData {
         return extraValues;
     }
 
+
+    /**
+     *  复制当前数据并添加扩展字段，原数据不变
+     * @param key 扩展字段名称
+     * @param value 扩展字段值
+     * @return 返回包含该扩展字段的新数据
+     */
+    public ProtocolParseData withExtraValue(String key, Object value) {
+        return withExtraValues(Collections.singletonMap(key, value));
+    }
+
+
+    /**
+     *  复制当前数据并一次添加多个扩展字段，原数据不变
+     * @param additionalValues 扩展字段，同名字段覆盖原值
+     * @return 返回包含这些扩展字段的新数据
+     */
+    public ProtocolParseData withExtraValues(Map<String, Object> additionalValues) {
+        Map<String, Object> values = extraValues == null ? new LinkedHashMap<>(additionalValues.size() + 4) : new LinkedHashMap<>(extraValues);
+        values.putAll(additionalValues);
+        return new Builder()
+                .id(id)
+                .srcIp(srcIp)
+                .srcPort(srcPort)
+                .destIp(destIp)
+                .destPort(destPort)
+                .clientId(clientId)
+                .requestApi(requestApi)
+                .protocolType(protocolType)
+                .requestData(requestData)
+                .responseData(responseData)
+                .responseDataLength(responseDataLength)
+                .startTime(startTime)
+                .endTime(endTime)
+                .executeTime(executeTime)
+                .extraValues(values)
+                .build();
+    }
+
     @Override
     public String toString() {
         return "ProtocolParseData{" +
@@ -1,5 +1,7 @@
 package cn.rtm.protocol.parser;
 
+import java.time.Instant;
+
 /**
  *  协议解析协调器，负责协调各解析组件解析协议内容
  *
@@ -16,4 +18,35 @@ public interface ProtocolParseHandler<P,M> {
      */
     M handle(P packet);
 
+
+    /**
+     *  对外提供解析协议入口，并携带数据包抓包时间，默认忽略抓包时间
+     * @param packet 捕获的数据协议包内容
+     * @param captureTime 数据包抓包时间，取自 pcap 头时间戳
+     * @return 返回解析后的内容
+     */
+    default M handle(P packet, Instant captureTime) {
+        return handle(packet);
+    }
+
+
+    /**
+     *  对外提供解析协议入口，并标记数据包是否延迟处理，默认忽略延迟标记
+     * @param packet 捕获的数据协议包内容
+     * @param captureTime 数据包抓包时间，取自 pcap 头时间戳
+     * @param delayed 是否为溢出落盘后回放的数据包
+     * @return 返回解析后的内容
+     */
+    default M handle(P packet, Instant captureTime, boolean delayed) {
+        return handle(packet, captureTime);
+    }
+
+
+    /**
+     *  添加需要解析的协议端口，用于自动识别出协议的未配置端口的连接，默认忽略
+     * @param port 识别出的服务端端口
+     */
+    default void addListenPort(int port) {
+    }
+
 }
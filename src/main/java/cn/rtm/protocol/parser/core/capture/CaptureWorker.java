@@ -0,0 +1,326 @@
+package cn.rtm.protocol.parser.core.capture;
+
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.pcap.CaptureSourceProperties;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSampler;
+import io.micrometer.core.instrument.Counter;
+import org.pcap4j.core.*;
+import org.pcap4j.packet.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  单个抓包源的抓包任务，在独立线程中从网卡读取数据包并交给 {@link PacketDispatcher}
+ *
+ * <ul>
+ * <li> 网卡按名称或网卡上的 ip 地址查找，抓包句柄按配置设置 snaplen、内核缓冲区大小与立即模式
+ * <li> 通过 {@link PcapHandle#dispatch(int, PacketListener)} 批量读取，每次调用最多回调 {@link CaptureSourceProperties#getDispatchBatchSize()}
+ * 个数据包，无数据包时在读取超时后返回，用于检查停止标识与刷新统计信息，超时不再作为异常处理
+ * <li> 读取持续失败时按 {@link #MIN_ERROR_BACKOFF_MILLIS} 起倍增等待，最长 {@link #MAX_ERROR_BACKOFF_MILLIS}，读取成功后恢复，
+ * 失败日志每 {@link #ERROR_LOG_INTERVAL_MILLIS} 最多输出一次并记录期间的失败次数
+ * <li> 定期读取 {@link PcapHandle#getStats()} 的接收、内核丢包、网卡丢包数并发布为指标
+ * <li> 抓包过滤表达式由 {@link CaptureSourceProperties#bpfFilter(boolean)} 生成，启用协议自动识别时不限制端口，启用连接采样下推时追加采样条件
+ * <li> 抓包指标按抓包源名称区分
+ * </ul>
+ */
+public class CaptureWorker implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptureWorker.class);
+
+    /**
+     *  抓包统计信息刷新间隔
+     */
+    private static final long STATS_REFRESH_INTERVAL_MILLIS = 1000L;
+
+    /**
+     *  读取失败后的初始等待时长
+     */
+    static final long MIN_ERROR_BACKOFF_MILLIS = 10L;
+
+    /**
+     *  读取持续失败时的最长等待时长
+     */
+    static final long MAX_ERROR_BACKOFF_MILLIS = 1000L;
+
+    /**
+     *  读取失败日志的最小输出间隔
+     */
+    private static final long ERROR_LOG_INTERVAL_MILLIS = 60 * 1000L;
+
+    private final CaptureSourceProperties source;
+
+    private final PacketDispatcher dispatcher;
+
+    /**
+     *  连接采样器，为 null 则不追加采样过滤条件
+     */
+    private final FlowSampler flowSampler;
+
+    private final Counter capturedPackets;
+
+    private final Counter capturedBytes;
+
+    private final Counter captureErrors;
+
+    private final Counter queueDrops;
+
+    /**
+     *  内核接收的数据包数，由抓包线程定期从 {@link PcapHandle#getStats()} 刷新
+     */
+    private final AtomicLong receivedPackets = new AtomicLong();
+
+    /**
+     *  内核缓冲区不足导致的丢包数，由抓包线程定期从 {@link PcapHandle#getStats()} 刷新
+     */
+    private final AtomicLong droppedPackets = new AtomicLong();
+
+    /**
+     *  网卡或驱动导致的丢包数
+     */
+    private final AtomicLong droppedPacketsByIf = new AtomicLong();
+
+    /**
+     *  抓包过滤表达式，不含采样条件
+     */
+    private final String filter;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param source 抓包源配置
+     * @param dispatcher 数据包分发器
+     * @param flowSampler 连接采样器，为 null 则不追加采样过滤条件
+     */
+    public CaptureWorker(CaptureSourceProperties source, PacketDispatcher dispatcher, FlowSampler flowSampler) {
+        this(source, dispatcher, flowSampler, false);
+    }
+
+    /**
+     * @param source 抓包源配置
+     * @param dispatcher 数据包分发器
+     * @param flowSampler 连接采样器，为 null 则不追加采样过滤条件
+     * @param allPorts 是否抓取全部端口，启用协议自动识别时为 true
+     */
+    public CaptureWorker(CaptureSourceProperties source, PacketDispatcher dispatcher, FlowSampler flowSampler, boolean allPorts) {
+        this.source = source;
+        this.dispatcher = dispatcher;
+        this.flowSampler = flowSampler;
+        this.filter = source.bpfFilter(allPorts);
+        String name = source.sourceName();
+        this.capturedPackets = ProtocolMetrics.counter(ProtocolMetrics.CAPTURE_PACKETS, "capture", name);
+        this.capturedBytes = ProtocolMetrics.counter(ProtocolMetrics.CAPTURE_BYTES, "capture", name);
+        this.captureErrors = ProtocolMetrics.counter(ProtocolMetrics.CAPTURE_ERRORS, "capture", name);
+        this.queueDrops = ProtocolMetrics.counter(ProtocolMetrics.CAPTURE_DROPS, "capture", name, "source", "queue");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.CAPTURE_KERNEL_RECEIVED, receivedPackets, AtomicLong::get, "capture", name);
+        ProtocolMetrics.functionCounter(ProtocolMetrics.CAPTURE_DROPS, droppedPackets, AtomicLong::get, "capture", name, "source", "kernel");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.CAPTURE_DROPS, droppedPacketsByIf, AtomicLong::get, "capture", name, "source", "interface");
+    }
+
+
+    @Override
+    public void run() {
+        PcapHandle handle;
+        try {
+            handle = openHandle();
+            setCaptureFilter(handle, filter);
+        } catch (Exception | LinkageError e) {
+            // 未安装 libpcap 时抛出 UnsatisfiedLinkError
+            captureErrors.increment();
+            log.error("抓包源：{} 打开网卡失败！", source.sourceName(), e);
+            return;
+        }
+        log.info("抓包源：{} 开始抓包，过滤表达式：{}", source.sourceName(), filter);
+        PacketListener listener = packet -> this.onPacket(handle, packet);
+        int batchSize = Math.max(1, source.getDispatchBatchSize());
+        long lastStatsTime = System.currentTimeMillis();
+        long lastErrorLogTime = 0;
+        int consecutiveErrors = 0;
+        int unloggedErrors = 0;
+        try {
+            while (running) {
+                try {
+                    handle.dispatch(batchSize, listener);
+                    consecutiveErrors = 0;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (NotOpenException e) {
+                    break;
+                } catch (Exception e) {
+                    captureErrors.increment();
+                    consecutiveErrors++;
+                    unloggedErrors++;
+                    long now = System.currentTimeMillis();
+                    if (now - lastErrorLogTime >= ERROR_LOG_INTERVAL_MILLIS) {
+                        lastErrorLogTime = now;
+                        log.warn("抓包源：{} 读取数据包失败，连续失败 {} 次，距上次日志失败 {} 次", source.sourceName(),
+                                consecutiveErrors, unloggedErrors, e);
+                        unloggedErrors = 0;
+                    }
+                    if (!backoff(consecutiveErrors)) {
+                        break;
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastStatsTime >= STATS_REFRESH_INTERVAL_MILLIS) {
+                    lastStatsTime = now;
+                    refreshStats(handle);
+                }
+            }
+        } finally {
+            handle.close();
+            log.info("抓包源：{} 抓包结束", source.sourceName());
+        }
+    }
+
+
+    /**
+     *  读取失败后等待，等待时长按连续失败次数倍增
+     * @param consecutiveErrors 连续失败次数
+     * @return 返回 false 则等待期间线程被中断
+     */
+    private boolean backoff(int consecutiveErrors) {
+        try {
+            Thread.sleep(errorBackoffMillis(consecutiveErrors));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    /**
+     *  计算读取失败后的等待时长
+     * @param consecutiveErrors 连续失败次数，至少为 1
+     * @return 返回毫秒数
+     */
+    static long errorBackoffMillis(int consecutiveErrors) {
+        int shift = Math.min(Math.max(0, consecutiveErrors - 1), 16);
+        return Math.min(MAX_ERROR_BACKOFF_MILLIS, MIN_ERROR_BACKOFF_MILLIS << shift);
+    }
+
+
+    /**
+     *  批量读取的数据包回调，在抓包线程中执行，抓包时间仅在回调期间有效
+     * @param handle 抓包句柄
+     * @param packet 数据包
+     */
+    private void onPacket(PcapHandle handle, Packet packet) {
+        capturedPackets.increment();
+        capturedBytes.increment(packet.length());
+        if (!dispatcher.dispatch(packet, handle.getTimestamp().toInstant())) {
+            queueDrops.increment();
+        }
+    }
+
+
+    /**
+     *  按配置打开网卡
+     * @return 返回抓包句柄
+     */
+    private PcapHandle openHandle() throws Exception {
+        PcapNetworkInterface nif = findInterface();
+        return new PcapHandle.Builder(nif.getName())
+                .snaplen(source.getSnaplen())
+                .promiscuousMode(source.isPromiscuous() ? PcapNetworkInterface.PromiscuousMode.PROMISCUOUS
+                        : PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS)
+                .timeoutMillis(source.getTimeoutMillis())
+                .bufferSize(source.getBufferSize())
+                .immediateMode(source.isImmediateMode())
+                .build();
+    }
+
+
+    /**
+     *  查找抓包源对应的网卡，未配置网卡名称与地址时使用默认网卡
+     * @return 返回网卡
+     * @throws IllegalStateException 网卡不存在
+     */
+    private PcapNetworkInterface findInterface() throws Exception {
+        PcapNetworkInterface nif;
+        if (source.getInterfaceName() != null && !source.getInterfaceName().isEmpty()) {
+            nif = Pcaps.getDevByName(source.getInterfaceName());
+        } else if (source.getAddress() != null && !source.getAddress().isEmpty()) {
+            nif = Pcaps.getDevByAddress(InetAddress.getByName(source.getAddress()));
+        } else {
+            nif = findDefaultInterface();
+            if (nif != null) {
+                log.info("抓包源：{} 未配置网卡名称与地址，使用默认网卡：{}", source.sourceName(), nif.getName());
+            }
+        }
+        if (nif == null) {
+            throw new IllegalStateException("未找到抓包源：" + source.sourceName() + " 对应的网卡");
+        }
+        return nif;
+    }
+
+
+    /**
+     *  查找默认网卡，优先使用 libpcap 的默认设备，不可用时取第一个已启用且配置了地址的非回环网卡
+     * @return 返回网卡，不存在则返回 null
+     */
+    private PcapNetworkInterface findDefaultInterface() throws PcapNativeException {
+        try {
+            String name = Pcaps.lookupDev();
+            if (name != null) {
+                return Pcaps.getDevByName(name);
+            }
+        } catch (PcapNativeException e) {
+            log.debug("未获取到 libpcap 默认网卡：{}", e.getMessage());
+        }
+        for (PcapNetworkInterface nif : Pcaps.findAllDevs()) {
+            if (nif.isUp() && !nif.isLoopBack() && !nif.getAddresses().isEmpty()) {
+                return nif;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     *  设置抓包过滤表达式，启用连接采样且允许下推时追加采样条件，在内核中丢弃未采样连接的数据包，
+     *  抓包端不支持采样表达式时仅使用端口过滤，由 tcp 重组组件完成采样
+     * @param handle 抓包句柄
+     * @param portFilter 端口过滤表达式
+     */
+    private void setCaptureFilter(PcapHandle handle, String portFilter) throws PcapNativeException, NotOpenException {
+        String samplingFilter = flowSampler == null ? null : flowSampler.bpfFilter();
+        if (samplingFilter != null) {
+            try {
+                handle.setFilter("(" + portFilter + ") and " + samplingFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
+                log.info("抓包源：{} 过滤表达式已包含连接采样条件，采样率：{}", source.sourceName(), flowSampler.getRate());
+                return;
+            } catch (PcapNativeException e) {
+                log.warn("抓包端不支持连接采样过滤表达式，采样由 tcp 重组组件完成：{}", samplingFilter, e);
+            }
+        }
+        handle.setFilter(portFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
+    }
+
+
+    /**
+     *  刷新抓包丢包统计，pcap 统计信息只在抓包线程读取，避免与抓包并发访问句柄
+     * @param handle 抓包句柄
+     */
+    private void refreshStats(PcapHandle handle) {
+        try {
+            PcapStat stat = handle.getStats();
+            receivedPackets.set(stat.getNumPacketsReceived());
+            droppedPackets.set(stat.getNumPacketsDropped());
+            droppedPacketsByIf.set(stat.getNumPacketsDroppedByIf());
+        } catch (Exception e) {
+            // 部分平台不支持统计信息
+        }
+    }
+
+
+    /**
+     *  停止抓包，当前读取超时后退出
+     */
+    public void stop() {
+        running = false;
+    }
+}
@@ -0,0 +1,231 @@
+package cn.rtm.protocol.parser.core.capture;
+
+import cn.rtm.protocol.parser.ProtocolParseHandler;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.pcap.PcapRecord;
+import cn.rtm.protocol.parser.core.pcap.PcapSpillRing;
+import org.pcap4j.packet.EthernetPacket;
+import org.pcap4j.packet.IllegalRawDataException;
+import org.pcap4j.packet.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  数据包分发器，多个抓包线程将数据包放入同一队列，由单个解析线程依次交给解析流水线处理
+ *
+ * <ul>
+ * <li> 解析流水线（重组、请求-响应匹配、数据提取）非线程安全，单个解析线程保证同一连接的数据包按抓包顺序处理
+ * <li> 放入队列不阻塞抓包线程，队列已满时返回 false，由抓包线程记录丢包
+ * <li> 配置 {@link #spillRing} 时，队列使用率达到高水位后数据包写入落盘环，落盘环中仍有数据包时后续数据包继续落盘，保持抓包顺序；
+ * 回放线程在队列使用率低于低水位时将落盘的数据包按顺序放回队列，以延迟标记交给解析流水线；
+ * 落盘文件回放完成后落盘环切换为内存直读，排空后恢复直接入队，持续抓包时也能回到实时处理
+ * <li> 落盘环仅支持以太网数据包，其他链路类型的数据包在队列已满时直接丢弃
+ * </ul>
+ */
+public class PacketDispatcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PacketDispatcher.class);
+
+    private final ProtocolParseHandler<Packet, ?> handler;
+
+    private final BlockingQueue<CapturedPacket> queue;
+
+    private final int capacity;
+
+    /**
+     *  溢出落盘环，为 null 则队列已满时直接丢弃
+     */
+    private final PcapSpillRing spillRing;
+
+    /**
+     *  开始落盘的队列深度
+     */
+    private final int highWatermark;
+
+    /**
+     *  开始回放的队列深度
+     */
+    private final int lowWatermark;
+
+    private volatile boolean running;
+
+    private Thread parser;
+
+    private Thread replayer;
+
+    public PacketDispatcher(ProtocolParseHandler<Packet, ?> handler, int capacity) {
+        this(handler, capacity, null, 1.0, 1.0);
+    }
+
+    /**
+     * @param handler 解析流水线
+     * @param capacity 队列容量
+     * @param spillRing 溢出落盘环，为 null 则队列已满时直接丢弃
+     * @param highWatermark 开始落盘的队列使用率
+     * @param lowWatermark 开始回放的队列使用率
+     */
+    public PacketDispatcher(ProtocolParseHandler<Packet, ?> handler, int capacity, PcapSpillRing spillRing,
+                            double highWatermark, double lowWatermark) {
+        this.handler = handler;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.spillRing = spillRing;
+        this.highWatermark = Math.max(1, Math.min(this.capacity, (int) (this.capacity * highWatermark)));
+        this.lowWatermark = Math.min(this.highWatermark, (int) (this.capacity * lowWatermark));
+        ProtocolMetrics.gauge(ProtocolMetrics.CAPTURE_QUEUE_DEPTH, queue, BlockingQueue::size);
+    }
+
+
+    /**
+     *  启动解析线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        parser = new Thread(this::runParser, "packet-parser");
+        parser.setDaemon(true);
+        parser.start();
+        if (spillRing != null) {
+            spillRing.start();
+            replayer = new Thread(this::runReplayer, "spill-replayer");
+            replayer.setDaemon(true);
+            replayer.start();
+        }
+    }
+
+
+    /**
+     *  放入待解析的数据包
+     * @param packet 数据包
+     * @param captureTime 抓包时间
+     * @return 返回 false 则队列已满，数据包被丢弃
+     */
+    public boolean dispatch(Packet packet, Instant captureTime) {
+        if (spillRing != null && (spillRing.pendingPackets() > 0 || queue.size() >= highWatermark)) {
+            return packet instanceof EthernetPacket && spillRing.offer(captureTime, packet.getRawData());
+        }
+        return queue.offer(new CapturedPacket(packet, captureTime, false));
+    }
+
+
+    private void runParser() {
+        while (running || !queue.isEmpty()) {
+            CapturedPacket captured;
+            try {
+                captured = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (captured == null) {
+                continue;
+            }
+            try {
+                handler.handle(captured.packet, captured.captureTime, captured.delayed);
+            } catch (Exception e) {
+                log.error("解析数据包出错！", e);
+            }
+        }
+    }
+
+
+    /**
+     *  队列使用率低于低水位时将落盘的数据包放回队列，数据包放入队列后才标记为已回放，
+     *  落盘环清空前抓包线程持续落盘，保证回放的数据包先于新捕获的数据包处理；
+     *  落盘环排空期间缩短等待时间，避免内存队列堆积
+     */
+    private void runReplayer() {
+        while (running) {
+            try {
+                if (queue.size() > lowWatermark) {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                    continue;
+                }
+                PcapRecord record = spillRing.poll();
+                if (record == null) {
+                    TimeUnit.MILLISECONDS.sleep(spillRing.pendingPackets() > 0 ? 1 : 50);
+                    continue;
+                }
+                byte[] data = record.getData();
+                try {
+                    queue.put(new CapturedPacket(EthernetPacket.newPacket(data, 0, data.length), record.getTimestamp(), true));
+                } catch (IllegalRawDataException e) {
+                    log.warn("落盘数据包格式错误，跳过回放");
+                }
+                spillRing.markReplayed();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                log.error("读取落盘文件出错！", e);
+            }
+        }
+    }
+
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     *  停止解析线程，已放入队列的数据包处理完成后退出
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (replayer != null) {
+            replayer.interrupt();
+            replayer = null;
+        }
+        if (spillRing != null) {
+            try {
+                spillRing.close();
+            } catch (IOException e) {
+                log.error("关闭落盘环出错！", e);
+            }
+        }
+        if (parser != null) {
+            try {
+                parser.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            parser = null;
+        }
+    }
+
+
+    /**
+     *  待解析的数据包及其抓包时间、延迟标记
+     */
+    private static final class CapturedPacket {
+
+        private final Packet packet;
+
+        private final Instant captureTime;
+
+        /**
+         *  是否为落盘后回放的数据包
+         */
+        private final boolean delayed;
+
+        private CapturedPacket(Packet packet, Instant captureTime, boolean delayed) {
+            this.packet = packet;
+            this.captureTime = captureTime;
+            this.delayed = delayed;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cn.rtm.protocol.parser.core.capture;
+
+import cn.rtm.protocol.parser.ProtocolParseHandler;
+import cn.rtm.protocol.parser.core.detect.ProtocolDetectionProperties;
+import cn.rtm.protocol.parser.core.detect.ProtocolDetector;
+import cn.rtm.protocol.parser.core.enums.ProtocolType;
+import cn.rtm.protocol.parser.core.pcap.CaptureProperties;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlowTable;
+import cn.rtm.protocol.parser.protocols.redis.RedisProtocolParseHandler;
+import org.pcap4j.packet.Packet;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.util.List;
+
+/**
+ *  多协议抓包配置，将各协议的解析协调器按 {@link CaptureProperties} 中的端口注册到 {@link ProtocolDemultiplexer}，
+ *  启用协议自动识别时为已注册的协议创建 {@link ProtocolDetector}，识别结果保存在与 tcp 重组共享的 {@link TcpFlowTable} 中；配置了 redis 端口但未声明 {@link RedisProtocolParseHandler} 时启动失败，
+ *  redis 解析协调器需使用 {@link cn.rtm.protocol.parser.protocols.redis.RespFrameDecoder} 切分协议帧，并使用共享的 {@link TcpFlowTable}
+ */
+@Configuration
+@EnableConfigurationProperties(ProtocolDetectionProperties.class)
+public class ProtocolCaptureConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ProtocolDemultiplexer protocolDemultiplexer(@Qualifier("kafkaProtocolHandler") ProtocolParseHandler<Packet, ?> kafkaProtocolHandler,
+                                                       ObjectProvider<RedisProtocolParseHandler> redisProtocolHandler,
+                                                       CaptureProperties captureProperties,
+                                                       ProtocolDetectionProperties detectionProperties,
+                                                       TcpFlowTable tcpFlowTable) {
+        ProtocolDemultiplexer demultiplexer = new ProtocolDemultiplexer();
+        demultiplexer.register(ProtocolType.KAFKA, kafkaProtocolHandler, captureProperties.listenPorts());
+        RedisProtocolParseHandler redisHandler = redisProtocolHandler.getIfAvailable();
+        List<Integer> redisPorts = captureProperties.portsOf(ProtocolType.REDIS);
+        if (!redisPorts.isEmpty()) {
+            if (redisHandler == null) {
+                throw new IllegalStateException("已配置 redis 端口：" + redisPorts + "，但未声明 RedisProtocolParseHandler");
+            }
+            demultiplexer.register(ProtocolType.REDIS, redisHandler, redisPorts);
+        }
+        if (detectionProperties.isEnabled()) {
+            demultiplexer.setDetector(new ProtocolDetector(detectionProperties, demultiplexer.protocolTypes(), tcpFlowTable));
+        }
+        return demultiplexer;
+    }
+}
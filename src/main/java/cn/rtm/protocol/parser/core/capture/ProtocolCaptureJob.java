@@ -0,0 +1,95 @@
+package cn.rtm.protocol.parser.core.capture;
+
+
+import cn.rtm.protocol.parser.core.detect.ProtocolDetectionProperties;
+import cn.rtm.protocol.parser.core.pcap.CaptureProperties;
+import cn.rtm.protocol.parser.core.pcap.CaptureSourceProperties;
+import cn.rtm.protocol.parser.core.pcap.CaptureSpillProperties;
+import cn.rtm.protocol.parser.core.pcap.PcapSpillRing;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSampler;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSamplingProperties;
+import cn.rtm.protocol.parser.core.shedding.LoadSheddingController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  捕获协议数据包，按 {@link CaptureProperties} 为每个抓包源启动独立的抓包线程，
+ *  全部抓包源的数据包经 {@link PacketDispatcher} 交给 {@link ProtocolDemultiplexer}，按端口分发给各协议的解析协调器
+ */
+@Component
+public class ProtocolCaptureJob implements ApplicationRunner {
+
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    @Resource
+    private ProtocolDemultiplexer protocolDemultiplexer;
+
+    @Resource
+    private FlowSampler flowSampler;
+
+    @Resource
+    private FlowSamplingProperties flowSamplingProperties;
+
+    @Resource
+    private CaptureProperties captureProperties;
+
+    @Resource
+    private ProtocolDetectionProperties protocolDetectionProperties;
+
+    @Resource
+    private ObjectProvider<LoadSheddingController> loadSheddingControllerProvider;
+
+    private PacketDispatcher dispatcher;
+
+    private final List<CaptureWorker> workers = new ArrayList<>();
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<CaptureSourceProperties> sources = captureProperties.getSources();
+        if (sources.isEmpty()) {
+            log.warn("未配置抓包源 protocol.capture.sources，不进行抓包");
+            return;
+        }
+        CaptureSpillProperties spill = captureProperties.getSpill();
+        dispatcher = spill.isEnabled()
+                ? new PacketDispatcher(protocolDemultiplexer, captureProperties.getQueueCapacity(), new PcapSpillRing(spill),
+                        spill.getHighWatermark(), spill.getLowWatermark())
+                : new PacketDispatcher(protocolDemultiplexer, captureProperties.getQueueCapacity());
+        LoadSheddingController loadSheddingController = loadSheddingControllerProvider.getIfAvailable();
+        if (loadSheddingController != null) {
+            loadSheddingController.registerQueue("capture", dispatcher::getQueueDepth, dispatcher.getQueueCapacity());
+        }
+        dispatcher.start();
+        boolean detectionEnabled = protocolDetectionProperties.isEnabled();
+        for (CaptureSourceProperties source : sources) {
+            if (source.getPorts().isEmpty() && !detectionEnabled) {
+                throw new IllegalStateException("抓包源：" + source.sourceName() + " 未配置端口");
+            }
+            CaptureWorker worker = new CaptureWorker(source, dispatcher, flowSamplingProperties.isBpfPushdown() ? flowSampler : null,
+                    detectionEnabled);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "capture-" + source.sourceName());
+            thread.start();
+        }
+    }
+
+
+    /**
+     *  停止全部抓包线程与解析线程
+     */
+    @PreDestroy
+    public void stop() {
+        workers.forEach(CaptureWorker::stop);
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+}
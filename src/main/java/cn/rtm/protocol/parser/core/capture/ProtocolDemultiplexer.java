@@ -0,0 +1,159 @@
+package cn.rtm.protocol.parser.core.capture;
+
+import cn.rtm.protocol.parser.ProtocolParseHandler;
+import cn.rtm.protocol.parser.core.detect.FlowVerdict;
+import cn.rtm.protocol.parser.core.detect.ProtocolDetector;
+import cn.rtm.protocol.parser.core.enums.ProtocolType;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import io.micrometer.core.instrument.Counter;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.TcpPacket;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ *  多协议分发器，全部协议共用同一抓包与解码流程，按端口将数据包分发给对应协议的解析协调器
+ *
+ * <ul>
+ * <li> 数据包在抓包线程中仅解码一次，分发时只读取 tcp 头端口，不重复解码
+ * <li> 端口与协议的对应关系保存在以端口为下标的数组中，查找为常数时间，先按目标端口查找，未命中再按源端口查找，
+ * 同时覆盖请求与响应方向
+ * <li> 各协议的解析协调器分别维护 tcp 重组状态，分帧规则由协议决定
+ * <li> 配置 {@link #detector} 时，未注册端口的数据包交由协议识别，仅已识别连接的数据包分发给对应协议，
+ * 识别出的服务端端口通过 {@link ProtocolParseHandler#addListenPort(int)} 通知解析协调器，用于区分请求与响应
+ * <li> 未注册端口且未识别的数据包不做处理，记录在 {@link ProtocolMetrics#DEMUX_PACKETS} 的 protocol=unrouted 中
+ * </ul>
+ */
+public class ProtocolDemultiplexer implements ProtocolParseHandler<Packet, Object> {
+
+    private static final int PORT_COUNT = 1 << 16;
+
+    /**
+     *  端口对应的解析协调器，下标为端口
+     */
+    private final ProtocolParseHandler<Packet, ?>[] handlers;
+
+    /**
+     *  端口对应的协议分发计数器，下标为端口
+     */
+    private final Counter[] counters;
+
+    private final Map<ProtocolType, Counter> protocolCounters = new EnumMap<>(ProtocolType.class);
+
+    private final Map<ProtocolType, ProtocolParseHandler<Packet, ?>> protocolHandlers = new EnumMap<>(ProtocolType.class);
+
+    /**
+     *  已通知解析协调器的识别端口，key: 协议类型
+     */
+    private final Map<ProtocolType, BitSet> detectedPorts = new EnumMap<>(ProtocolType.class);
+
+    /**
+     *  协议识别，为 null 则不识别未注册端口的连接
+     */
+    private volatile ProtocolDetector detector;
+
+    private final Counter unroutedPackets = ProtocolMetrics.counter(ProtocolMetrics.DEMUX_PACKETS, "protocol", "unrouted");
+
+    @SuppressWarnings("unchecked")
+    public ProtocolDemultiplexer() {
+        this.handlers = new ProtocolParseHandler[PORT_COUNT];
+        this.counters = new Counter[PORT_COUNT];
+    }
+
+
+    /**
+     *  注册协议解析协调器，须在开始抓包前完成注册
+     * @param protocolType 协议类型
+     * @param handler 协议解析协调器
+     * @param ports 协议端口
+     * @throws IllegalArgumentException 端口已注册为其他协议
+     */
+    public synchronized void register(ProtocolType protocolType, ProtocolParseHandler<Packet, ?> handler, Collection<Integer> ports) {
+        Counter counter = protocolCounters.computeIfAbsent(protocolType,
+                type -> ProtocolMetrics.counter(ProtocolMetrics.DEMUX_PACKETS, "protocol", type.name().toLowerCase(Locale.ROOT)));
+        protocolHandlers.put(protocolType, handler);
+        detectedPorts.put(protocolType, new BitSet(PORT_COUNT));
+        for (Integer port : ports) {
+            if (handlers[port] != null && handlers[port] != handler) {
+                throw new IllegalArgumentException("端口：" + port + " 已注册为其他协议");
+            }
+            handlers[port] = handler;
+            counters[port] = counter;
+        }
+    }
+
+
+    /**
+     *  启用未注册端口的协议识别
+     * @param detector 协议识别
+     */
+    public void setDetector(ProtocolDetector detector) {
+        this.detector = detector;
+    }
+
+
+    /**
+     *  获取已注册的协议
+     * @return 返回已注册解析协调器的协议
+     */
+    public synchronized Set<ProtocolType> protocolTypes() {
+        return protocolHandlers.isEmpty() ? EnumSet.noneOf(ProtocolType.class) : EnumSet.copyOf(protocolHandlers.keySet());
+    }
+
+
+    @Override
+    public Object handle(Packet packet) {
+        return handle(packet, Instant.now(), false);
+    }
+
+
+    @Override
+    public Object handle(Packet packet, Instant captureTime) {
+        return handle(packet, captureTime, false);
+    }
+
+
+    @Override
+    public Object handle(Packet packet, Instant captureTime, boolean delayed) {
+        TcpPacket tcpPacket = packet.get(TcpPacket.class);
+        if (tcpPacket == null) {
+            return this.unrouted();
+        }
+        TcpPacket.TcpHeader header = tcpPacket.getHeader();
+        int port = header.getDstPort().valueAsInt();
+        if (handlers[port] == null) {
+            port = header.getSrcPort().valueAsInt();
+        }
+        ProtocolParseHandler<Packet, ?> handler = handlers[port];
+        if (handler == null) {
+            return detector == null ? this.unrouted() : this.handleDetected(packet, captureTime, delayed);
+        }
+        counters[port].increment();
+        return handler.handle(packet, captureTime, delayed);
+    }
+
+
+    /**
+     *  识别未注册端口的连接，已识别连接的数据包分发给对应协议
+     */
+    private Object handleDetected(Packet packet, Instant captureTime, boolean delayed) {
+        FlowVerdict verdict = detector.detect(packet);
+        ProtocolParseHandler<Packet, ?> handler = verdict == null ? null : protocolHandlers.get(verdict.getProtocolType());
+        if (handler == null) {
+            return this.unrouted();
+        }
+        BitSet ports = detectedPorts.get(verdict.getProtocolType());
+        if (!ports.get(verdict.getServerPort())) {
+            ports.set(verdict.getServerPort());
+            handler.addListenPort(verdict.getServerPort());
+        }
+        protocolCounters.get(verdict.getProtocolType()).increment();
+        return handler.handle(packet, captureTime, delayed);
+    }
+
+
+    private Object unrouted() {
+        unroutedPackets.increment();
+        return null;
+    }
+}
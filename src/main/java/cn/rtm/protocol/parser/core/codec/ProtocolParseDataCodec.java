@@ -0,0 +1,118 @@
+package cn.rtm.protocol.parser.core.codec;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  {@link ProtocolParseData} 紧凑二进制编码格式定义，编码由 {@link ProtocolParseDataEncoder} 实现，解码由 {@link ProtocolParseDataDecoder} 实现
+ *
+ * <ul>
+ * <li> 数据流以 magic(2 字节) + version(1 字节) 开头，随后为连续的记录，字典作用域为整个数据流（一个批次或一个分段）
+ * <li> 记录格式：flags(int8) id(varlong) srcIp(str) srcPort(varint) destIp(str) destPort(varint) clientId(str)
+ * requestApi(str) protocolType(str) requestData(str) responseData(str) responseDataLength(varint)
+ * [startTime] [endTime] executeTime(varlong) [extraValues]，方括号内字段由 flags 标识是否存在
+ * <li> 时间采用纳秒时间戳：startTime 为与上一条记录 startTime 的差值，endTime 为与本条记录 startTime 的差值，
+ * executeTime 为与上一条记录 executeTime 的差值
+ * <li> 字符串 str 以 tag(unsigned varint) 开头：{@link #STRING_NULL} 为 null；{@link #STRING_DEFINE} 为新字符串，
+ * 随后为 长度 + UTF-8 内容，并加入字典；{@link #STRING_LITERAL} 为不加入字典的字符串；
+ * 大于等于 {@link #STRING_REFERENCE_BASE} 为字典引用，字典下标为 tag - {@link #STRING_REFERENCE_BASE}
+ * <li> 重复度高的字段（ip、clientId、requestApi、topic 等）使用字典编码，responseData 等取值唯一的字段直接编码
+ * <li> 扩展字段 value 以 type(int8) 开头，Long、Integer、Short、Byte、Double、Float、Boolean 分别使用独立的类型编码，
+ * 解码后类型不变；其他类型按 toString() 编码为字符串，解码后为 String
+ * <li> 版本 2 新增 Integer、Short、Byte、Float 类型编码，解码器兼容版本 1 的数据流
+ * </ul>
+ */
+public final class ProtocolParseDataCodec {
+
+    static final byte MAGIC_0 = 'P';
+
+    static final byte MAGIC_1 = 'D';
+
+    static final byte VERSION = 2;
+
+    /**
+     *  可解码的最低版本
+     */
+    static final byte MIN_VERSION = 1;
+
+    static final int STRING_NULL = 0;
+
+    static final int STRING_DEFINE = 1;
+
+    static final int STRING_LITERAL = 2;
+
+    static final int STRING_REFERENCE_BASE = 3;
+
+    static final int FLAG_START_TIME = 1;
+
+    static final int FLAG_END_TIME = 1 << 1;
+
+    static final int FLAG_EXTRA_VALUES = 1 << 2;
+
+    static final byte VALUE_NULL = 0;
+
+    static final byte VALUE_STRING = 1;
+
+    static final byte VALUE_LONG = 2;
+
+    static final byte VALUE_DOUBLE = 3;
+
+    static final byte VALUE_TRUE = 4;
+
+    static final byte VALUE_FALSE = 5;
+
+    static final byte VALUE_INT = 6;
+
+    static final byte VALUE_SHORT = 7;
+
+    static final byte VALUE_BYTE = 8;
+
+    static final byte VALUE_FLOAT = 9;
+
+    /**
+     *  单个数据流字典默认最大条目数，超过后新字符串不再加入字典
+     */
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 4096;
+
+    private ProtocolParseDataCodec() {
+    }
+
+
+    /**
+     *  编码一批记录，该批次使用独立的字典
+     * @param records 待编码的记录
+     * @return 返回编码后的内容
+     */
+    public static byte[] encodeBatch(List<ProtocolParseData> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() * 64 + 16);
+        try (ProtocolParseDataEncoder encoder = new ProtocolParseDataEncoder(bytes)) {
+            for (ProtocolParseData record : records) {
+                encoder.write(record);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     *  解码由 {@link #encodeBatch(List)} 编码的一批记录
+     * @param data 编码后的内容
+     * @param offset 起始位置
+     * @param length 内容长度
+     * @return 返回解码后的记录
+     */
+    public static List<ProtocolParseData> decodeBatch(byte[] data, int offset, int length) throws IOException {
+        List<ProtocolParseData> records = new ArrayList<>();
+        try (ProtocolParseDataDecoder decoder = new ProtocolParseDataDecoder(new ByteArrayInputStream(data, offset, length))) {
+            ProtocolParseData record;
+            while ((record = decoder.read()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,172 @@
+package cn.rtm.protocol.parser.core.codec;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static cn.rtm.protocol.parser.core.codec.ProtocolParseDataCodec.*;
+
+/**
+ *  {@link ProtocolParseData} 流式解码器，解码 {@link ProtocolParseDataEncoder} 编码的数据流，非线程安全
+ */
+public class ProtocolParseDataDecoder implements Closeable {
+
+    private final DataInputStream in;
+
+    /**
+     *  字符串字典，下标与编码时加入字典的顺序一致
+     */
+    private final List<String> dictionary = new ArrayList<>(256);
+
+    private long previousStartNanos;
+
+    private long previousExecuteTime;
+
+    public ProtocolParseDataDecoder(InputStream in) throws IOException {
+        this.in = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+        byte magic0 = this.in.readByte();
+        byte magic1 = this.in.readByte();
+        byte version = this.in.readByte();
+        if (magic0 != MAGIC_0 || magic1 != MAGIC_1) {
+            throw new IOException("无法识别的数据格式");
+        }
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("不支持的数据格式版本：" + version);
+        }
+    }
+
+
+    /**
+     *  解码下一条记录
+     * @return 返回解码后的记录，数据流结束返回 null
+     */
+    public ProtocolParseData read() throws IOException {
+        int flags = in.read();
+        if (flags < 0) {
+            return null;
+        }
+        ProtocolParseData.Builder builder = new ProtocolParseData.Builder()
+                .id(ByteUtils.readVarlong(in))
+                .srcIp(readString())
+                .srcPort(ByteUtils.readVarint(in))
+                .destIp(readString())
+                .destPort(ByteUtils.readVarint(in))
+                .clientId(readString())
+                .requestApi(readString())
+                .protocolType(readString())
+                .requestData(readString())
+                .responseData(readString())
+                .responseDataLength(ByteUtils.readVarint(in));
+
+        long startNanos = previousStartNanos;
+        if ((flags & FLAG_START_TIME) != 0) {
+            startNanos = previousStartNanos + ByteUtils.readVarlong(in);
+            previousStartNanos = startNanos;
+            builder.startTime(toLocalDateTime(startNanos));
+        }
+        if ((flags & FLAG_END_TIME) != 0) {
+            builder.endTime(toLocalDateTime(startNanos + ByteUtils.readVarlong(in)));
+        }
+        long executeTime = previousExecuteTime + ByteUtils.readVarlong(in);
+        previousExecuteTime = executeTime;
+        builder.executeTime(executeTime);
+
+        if ((flags & FLAG_EXTRA_VALUES) != 0) {
+            builder.extraValues(readExtraValues());
+        }
+        return builder.build();
+    }
+
+
+    private Map<String, Object> readExtraValues() throws IOException {
+        int size = ByteUtils.readUnsignedVarInt(in);
+        Map<String, Object> extraValues = new LinkedHashMap<>(Math.max(4, size * 2));
+        for (int i = 0; i < size; i++) {
+            String key = readString();
+            byte type = in.readByte();
+            switch (type) {
+                case VALUE_NULL:
+                    extraValues.put(key, null);
+                    break;
+                case VALUE_TRUE:
+                    extraValues.put(key, Boolean.TRUE);
+                    break;
+                case VALUE_FALSE:
+                    extraValues.put(key, Boolean.FALSE);
+                    break;
+                case VALUE_LONG:
+                    extraValues.put(key, ByteUtils.readVarlong(in));
+                    break;
+                case VALUE_DOUBLE:
+                    extraValues.put(key, in.readDouble());
+                    break;
+                case VALUE_INT:
+                    extraValues.put(key, ByteUtils.readVarint(in));
+                    break;
+                case VALUE_SHORT:
+                    extraValues.put(key, (short) ByteUtils.readVarint(in));
+                    break;
+                case VALUE_BYTE:
+                    extraValues.put(key, in.readByte());
+                    break;
+                case VALUE_FLOAT:
+                    extraValues.put(key, in.readFloat());
+                    break;
+                case VALUE_STRING:
+                    extraValues.put(key, readString());
+                    break;
+                default:
+                    throw new IOException("无法识别的扩展字段类型：" + type);
+            }
+        }
+        return extraValues;
+    }
+
+
+    private String readString() throws IOException {
+        int tag = ByteUtils.readUnsignedVarInt(in);
+        switch (tag) {
+            case STRING_NULL:
+                return null;
+            case STRING_DEFINE:
+                String value = readBytes();
+                dictionary.add(value);
+                return value;
+            case STRING_LITERAL:
+                return readBytes();
+            default:
+                int index = tag - STRING_REFERENCE_BASE;
+                if (index >= dictionary.size()) {
+                    throw new IOException("字典下标越界：" + index);
+                }
+                return dictionary.get(index);
+        }
+    }
+
+
+    private String readBytes() throws IOException {
+        int length = ByteUtils.readUnsignedVarInt(in);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    private static LocalDateTime toLocalDateTime(long epochNanos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                Math.floorMod(epochNanos, 1_000_000_000L)), ZoneId.systemDefault());
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,209 @@
+package cn.rtm.protocol.parser.core.codec;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import org.apache.commons.collections4.MapUtils;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static cn.rtm.protocol.parser.core.codec.ProtocolParseDataCodec.*;
+
+/**
+ *  {@link ProtocolParseData} 流式编码器，格式定义见 {@link ProtocolParseDataCodec}，每个编码器实例对应一个数据流和一个字典，
+ *  非线程安全
+ */
+public class ProtocolParseDataEncoder implements Closeable, Flushable {
+
+    private final DataOutputStream out;
+
+    /**
+     *  字符串字典，key: 字符串 value: 字典下标
+     */
+    private final Map<String, Integer> dictionary = new HashMap<>(256);
+
+    private final int maxDictionarySize;
+
+    /**
+     *  上一条记录的 startTime 纳秒时间戳
+     */
+    private long previousStartNanos;
+
+    /**
+     *  上一条记录的 executeTime
+     */
+    private long previousExecuteTime;
+
+    private long writtenRecords;
+
+    public ProtocolParseDataEncoder(OutputStream out) throws IOException {
+        this(out, DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    public ProtocolParseDataEncoder(OutputStream out, int maxDictionarySize) throws IOException {
+        this.out = out instanceof DataOutputStream ? (DataOutputStream) out : new DataOutputStream(out);
+        this.maxDictionarySize = maxDictionarySize;
+        this.out.writeByte(MAGIC_0);
+        this.out.writeByte(MAGIC_1);
+        this.out.writeByte(VERSION);
+    }
+
+
+    /**
+     *  编码一条记录
+     * @param record 待编码的记录
+     */
+    public void write(ProtocolParseData record) throws IOException {
+        int flags = 0;
+        if (record.getStartTime() != null) {
+            flags |= FLAG_START_TIME;
+        }
+        if (record.getEndTime() != null) {
+            flags |= FLAG_END_TIME;
+        }
+        if (MapUtils.isNotEmpty(record.getExtraValues())) {
+            flags |= FLAG_EXTRA_VALUES;
+        }
+        out.writeByte(flags);
+        ByteUtils.writeVarlong(record.getId(), out);
+        writeDictionaryString(record.getSrcIp());
+        ByteUtils.writeVarint(record.getSrcPort(), out);
+        writeDictionaryString(record.getDestIp());
+        ByteUtils.writeVarint(record.getDestPort(), out);
+        writeDictionaryString(record.getClientId());
+        writeDictionaryString(record.getRequestApi());
+        writeDictionaryString(record.getProtocolType());
+        writeDictionaryString(record.getRequestData());
+        writeLiteralString(record.getResponseData());
+        ByteUtils.writeVarint(record.getResponseDataLength(), out);
+
+        long startNanos = previousStartNanos;
+        if (record.getStartTime() != null) {
+            startNanos = toEpochNanos(record.getStartTime());
+            ByteUtils.writeVarlong(startNanos - previousStartNanos, out);
+            previousStartNanos = startNanos;
+        }
+        if (record.getEndTime() != null) {
+            ByteUtils.writeVarlong(toEpochNanos(record.getEndTime()) - startNanos, out);
+        }
+        ByteUtils.writeVarlong(record.getExecuteTime() - previousExecuteTime, out);
+        previousExecuteTime = record.getExecuteTime();
+
+        if ((flags & FLAG_EXTRA_VALUES) != 0) {
+            writeExtraValues(record.getExtraValues());
+        }
+        writtenRecords++;
+    }
+
+
+    /**
+     *  编码扩展字段，key 使用字典编码，value 按类型编码，解码后类型不变，其他类型按字符串编码
+     * @param extraValues 扩展字段
+     */
+    private void writeExtraValues(Map<String, Object> extraValues) throws IOException {
+        ByteUtils.writeUnsignedVarint(extraValues.size(), out);
+        for (Map.Entry<String, Object> entry : extraValues.entrySet()) {
+            writeDictionaryString(entry.getKey());
+            Object value = entry.getValue();
+            if (value == null) {
+                out.writeByte(VALUE_NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+            } else if (value instanceof Long) {
+                out.writeByte(VALUE_LONG);
+                ByteUtils.writeVarlong((Long) value, out);
+            } else if (value instanceof Integer) {
+                out.writeByte(VALUE_INT);
+                ByteUtils.writeVarint((Integer) value, out);
+            } else if (value instanceof Short) {
+                out.writeByte(VALUE_SHORT);
+                ByteUtils.writeVarint((Short) value, out);
+            } else if (value instanceof Byte) {
+                out.writeByte(VALUE_BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Double) {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeByte(VALUE_FLOAT);
+                out.writeFloat((Float) value);
+            } else {
+                out.writeByte(VALUE_STRING);
+                writeDictionaryString(value.toString());
+            }
+        }
+    }
+
+
+    /**
+     *  编码重复度高的字符串，首次出现时加入字典，再次出现时仅编码字典下标
+     * @param value 字符串内容
+     */
+    private void writeDictionaryString(String value) throws IOException {
+        if (value == null) {
+            ByteUtils.writeUnsignedVarint(STRING_NULL, out);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            ByteUtils.writeUnsignedVarint(STRING_REFERENCE_BASE + index, out);
+            return;
+        }
+        if (dictionary.size() >= maxDictionarySize) {
+            writeLiteralString(value);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        ByteUtils.writeUnsignedVarint(STRING_DEFINE, out);
+        writeBytes(value);
+    }
+
+
+    /**
+     *  编码取值唯一的字符串，不加入字典
+     * @param value 字符串内容
+     */
+    private void writeLiteralString(String value) throws IOException {
+        if (value == null) {
+            ByteUtils.writeUnsignedVarint(STRING_NULL, out);
+            return;
+        }
+        ByteUtils.writeUnsignedVarint(STRING_LITERAL, out);
+        writeBytes(value);
+    }
+
+
+    private void writeBytes(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteUtils.writeUnsignedVarint(bytes.length, out);
+        out.write(bytes);
+    }
+
+
+    static long toEpochNanos(LocalDateTime time) {
+        ZonedDateTime zoned = time.atZone(ZoneId.systemDefault());
+        return zoned.toEpochSecond() * 1_000_000_000L + zoned.getNano();
+    }
+
+    public long getWrittenRecords() {
+        return writtenRecords;
+    }
+
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -1,31 +1,74 @@
 package cn.rtm.protocol.parser.core.context;
 
 import cn.rtm.protocol.parser.ProtocolContext;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import io.micrometer.core.instrument.Counter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *  kafka 协议解析默认实现，提供基础的参数传递
+ *
+ * <ul>
+ * <li> 请求解析结果在收到响应后移除，响应未被抓到的请求在添加超过 {@link #entryTimeoutMillis} 后由 {@linkplain #evictExpired(long)} 定期清理，
+ * 避免上下文无限增长
+ * </ul>
  */
-public class ProtocolParseContext implements ProtocolContext {
+public class ProtocolParseContext implements ProtocolContext, StateSizeProvider {
+
+    /**
+     *  默认参数超时时间，需大于 broker 处理请求的最长耗时，如消费组 rebalance 时 JoinGroup 请求可能等待 max.poll.interval.ms
+     */
+    public static final long DEFAULT_ENTRY_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     *  每添加指定数量的参数执行一次超时清理
+     */
+    private static final int EVICT_INTERVAL_ADDITIONS = 4096;
 
     private Logger log = LoggerFactory.getLogger(getClass());
 
     /**
      *  存储上下文传递的参数信息
      */
-    private final Map<Object, Object> container = new ConcurrentHashMap<>();
+    private final Map<Object, Entry> container = new ConcurrentHashMap<>();
+
+    /**
+     *  参数超时时间
+     */
+    private final long entryTimeoutMillis;
+
+    private final AtomicLong additions = new AtomicLong();
+
+    private final Counter expiredEntries = ProtocolMetrics.counter(ProtocolMetrics.CORRELATION_EXPIRED);
+
+    public ProtocolParseContext() {
+        this(DEFAULT_ENTRY_TIMEOUT_MILLIS);
+    }
+
+    public ProtocolParseContext(long entryTimeoutMillis) {
+        this.entryTimeoutMillis = entryTimeoutMillis;
+        ProtocolMetrics.gauge(ProtocolMetrics.CORRELATION_INFLIGHT, container, Map::size);
+    }
 
     @Override
     public void addParam(Object key, Object value) {
-        container.put(key,value);
+        long now = System.currentTimeMillis();
+        container.put(key, new Entry(value, now));
+        if (additions.incrementAndGet() % EVICT_INTERVAL_ADDITIONS == 0) {
+            this.evictExpired(now);
+        }
     }
 
     @Override
     public Object getParam(Object key) {
-        return container.get(key);
+        Entry entry = container.get(key);
+        return entry == null ? null : entry.value;
     }
 
     @Override
@@ -39,4 +82,53 @@ public class ProtocolParseContext implements ProtocolContext {
         }
         return null;
     }
+
+    @Override
+    public Object removeParam(Object key) {
+        Entry entry = container.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+
+    /**
+     *  清理超时的参数
+     * @param now 当前时间
+     */
+    private void evictExpired(long now) {
+        int before = container.size();
+        container.values().removeIf(entry -> now - entry.addedTime > entryTimeoutMillis);
+        int expired = Math.max(0, before - container.size());
+        if (expired > 0) {
+            expiredEntries.increment(expired);
+            log.debug("清理超时未收到响应的请求：{}", expired);
+        }
+    }
+
+
+    /**
+     *  获取上下文中的参数数量
+     * @return 返回参数数量
+     */
+    public int size() {
+        return container.size();
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        return Collections.singletonMap("context.entries", (long) container.size());
+    }
+
+
+    private static final class Entry {
+
+        private final Object value;
+
+        private final long addedTime;
+
+        private Entry(Object value, long addedTime) {
+            this.value = value;
+            this.addedTime = addedTime;
+        }
+    }
 }
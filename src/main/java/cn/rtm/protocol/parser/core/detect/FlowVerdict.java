@@ -0,0 +1,102 @@
+package cn.rtm.protocol.parser.core.detect;
+
+import cn.rtm.protocol.parser.core.enums.ProtocolType;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
+
+/**
+ *  连接的协议识别结果，由 {@link ProtocolDetector} 以属性 {@link #FLOW_ATTRIBUTE_KEY} 保存在 {@link TcpFlow} 中，随连接移除而释放
+ *
+ * <ul>
+ * <li> {@link #protocolType} 为 null 且未放弃时表示连接仍在识别中，已检查的数据包数量记录在 {@link #attempts}
+ * <li> 识别完成后结果不再变化，{@link #serverPort} 为识别出的请求目标端口
+ * </ul>
+ */
+public class FlowVerdict {
+
+    /**
+     *  识别结果在 {@link TcpFlow} 中的属性 key
+     */
+    public static final String FLOW_ATTRIBUTE_KEY = FlowVerdict.class.getName();
+
+    /**
+     *  识别出的协议，未识别或已放弃时为 null
+     */
+    private volatile ProtocolType protocolType;
+
+    /**
+     *  服务端端口，即识别出的请求的目标端口
+     */
+    private volatile int serverPort;
+
+    /**
+     *  已检查但无法识别的数据包数量
+     */
+    private int attempts;
+
+    /**
+     *  是否已放弃识别
+     */
+    private volatile boolean abandoned;
+
+    public ProtocolType getProtocolType() {
+        return protocolType;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     *  是否已识别出协议
+     * @return 返回 true 则已识别
+     */
+    public boolean isClassified() {
+        return protocolType != null;
+    }
+
+
+    /**
+     *  是否已得出最终结果，即已识别或已放弃
+     * @return 返回 true 则不再检查数据包
+     */
+    public boolean isDecided() {
+        return protocolType != null || abandoned;
+    }
+
+
+    void classify(ProtocolType protocolType, int serverPort) {
+        this.serverPort = serverPort;
+        this.protocolType = protocolType;
+    }
+
+
+    /**
+     *  记录一次识别失败
+     * @param maxAttempts 最多检查的数据包数量
+     * @return 返回 true 则达到上限并放弃识别
+     */
+    boolean fail(int maxAttempts) {
+        if (++attempts >= maxAttempts) {
+            this.abandoned = true;
+        }
+        return abandoned;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowVerdict{" +
+                "protocolType=" + protocolType +
+                ", serverPort=" + serverPort +
+                ", attempts=" + attempts +
+                ", abandoned=" + abandoned +
+                '}';
+    }
+}
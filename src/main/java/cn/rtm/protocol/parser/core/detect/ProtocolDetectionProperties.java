@@ -0,0 +1,62 @@
+package cn.rtm.protocol.parser.core.detect;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  协议自动识别配置，前缀为 protocol.detection
+ */
+@ConfigurationProperties(prefix = "protocol.detection")
+public class ProtocolDetectionProperties {
+
+    /**
+     *  是否识别未配置端口的连接，启用后抓包过滤表达式不再限制端口
+     */
+    private boolean enabled = false;
+
+    /**
+     *  单个连接最多检查的携带数据的数据包数量，均无法识别则放弃该连接
+     */
+    private int maxAttempts = 4;
+
+    /**
+     *  最多跟踪的待识别与已识别连接数量，超过后新连接不做识别
+     */
+    private int maxFlows = 65536;
+
+    /**
+     *  kafka 请求长度上限（字节），与 broker socket.request.max.bytes 默认值一致
+     */
+    private int maxFrameBytes = 100 * 1024 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getMaxFlows() {
+        return maxFlows;
+    }
+
+    public void setMaxFlows(int maxFlows) {
+        this.maxFlows = maxFlows;
+    }
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    public void setMaxFrameBytes(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+    }
+}
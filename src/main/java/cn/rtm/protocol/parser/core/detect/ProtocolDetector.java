@@ -0,0 +1,250 @@
+package cn.rtm.protocol.parser.core.detect;
+
+import cn.rtm.protocol.parser.core.enums.ProtocolType;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowKey;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlowTable;
+import cn.rtm.protocol.parser.core.util.IpAddresses;
+import io.micrometer.core.instrument.Counter;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.TcpPacket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  协议自动识别，检查未配置端口的连接中携带数据的数据包首部字节，识别连接使用的协议
+ *
+ * <ul>
+ * <li> kafka：4 字节长度在 (0, maxFrameBytes] 内，其后的 api key 存在、版本在该 api 支持的范围内、correlation id 非负、
+ * clientId 长度不超出请求长度
+ * <li> redis：RESP 数组类型字节 '*' 后为元素个数与 CRLF，其后为批量字符串类型字节 '$'，客户端命令均以数组发送
+ * <li> 仅按请求格式识别，识别出的请求目标端口即服务端端口；抓包开始前已建立的连接首个数据包可能为响应或分片，计为一次失败
+ * <li> 识别结果以 {@link FlowVerdict} 属性保存在共享连接表 {@link TcpFlowTable} 的 {@link TcpFlow} 中，与 tcp 重组使用同一连接记录，
+ * 每个连接仅识别一次；连续 maxAttempts 个数据包无法识别则放弃，后续数据包只需一次查表即返回
+ * <li> 已识别连接的关闭由解析协调器的 tcp 重组处理，未识别连接由识别组件按 FIN、RST 移除，长时间无数据包的连接定期清理，
+ * 连接表中的连接数超过 maxFlows 后新连接不做识别
+ * </ul>
+ */
+public class ProtocolDetector implements StateSizeProvider {
+
+    /**
+     *  每识别指定数量的数据包执行一次空闲连接清理
+     */
+    private static final int FLOW_EVICT_INTERVAL_PACKETS = 4096;
+
+    /**
+     *  kafka 请求头最小长度：api key、版本、correlation id、clientId 长度
+     */
+    private static final int KAFKA_MIN_HEADER_BYTES = 2 + 2 + 4 + 2;
+
+    /**
+     *  RESP 数组元素个数最多的位数
+     */
+    private static final int RESP_MAX_COUNT_DIGITS = 7;
+
+    private final int maxAttempts;
+
+    private final int maxFlows;
+
+    private final int maxFrameBytes;
+
+    /**
+     *  参与识别的协议
+     */
+    private final Set<ProtocolType> protocolTypes;
+
+    /**
+     *  连接表，与 tcp 重组共享
+     */
+    private final TcpFlowTable flowTable;
+
+    private final AtomicLong processedPackets = new AtomicLong();
+
+    private final Map<ProtocolType, Counter> classifiedFlows = new EnumMap<>(ProtocolType.class);
+
+    private final Counter abandonedFlows = ProtocolMetrics.counter(ProtocolMetrics.DETECT_FLOWS, "result", "unknown");
+
+    private final Counter overflowFlows = ProtocolMetrics.counter(ProtocolMetrics.DETECT_FLOWS, "result", "overflow");
+
+    /**
+     * @param properties 识别配置
+     * @param protocolTypes 参与识别的协议
+     * @param flowTable 连接表，与解析协调器的 tcp 重组共享
+     */
+    public ProtocolDetector(ProtocolDetectionProperties properties, Collection<ProtocolType> protocolTypes, TcpFlowTable flowTable) {
+        this.flowTable = flowTable;
+        this.maxAttempts = Math.max(1, properties.getMaxAttempts());
+        this.maxFlows = properties.getMaxFlows();
+        this.maxFrameBytes = properties.getMaxFrameBytes();
+        this.protocolTypes = protocolTypes.isEmpty() ? EnumSet.noneOf(ProtocolType.class) : EnumSet.copyOf(protocolTypes);
+        for (ProtocolType protocolType : this.protocolTypes) {
+            classifiedFlows.put(protocolType, ProtocolMetrics.counter(ProtocolMetrics.DETECT_FLOWS,
+                    "result", protocolType.name().toLowerCase(Locale.ROOT)));
+        }
+        ProtocolMetrics.gauge(ProtocolMetrics.DETECT_TRACKED_FLOWS, flowTable, ProtocolDetector::trackedFlowCount);
+    }
+
+
+    /**
+     *  识别数据包所属连接的协议
+     * @param packet 数据包
+     * @return 返回已识别连接的识别结果，连接未识别、已放弃或无法跟踪时返回 null
+     */
+    public FlowVerdict detect(Packet packet) {
+        if (processedPackets.incrementAndGet() % FLOW_EVICT_INTERVAL_PACKETS == 0) {
+            flowTable.evictIdleFlows(System.currentTimeMillis());
+        }
+        TcpPacket tcpPacket = packet.get(TcpPacket.class);
+        IpPacket ipPacket = packet.get(IpPacket.class);
+        if (tcpPacket == null || ipPacket == null) {
+            return null;
+        }
+        TcpPacket.TcpHeader header = tcpPacket.getHeader();
+        int srcPort = header.getSrcPort().valueAsInt();
+        int destPort = header.getDstPort().valueAsInt();
+        byte[] srcAddress = ipPacket.getHeader().getSrcAddr().getAddress();
+        byte[] destAddress = ipPacket.getHeader().getDstAddr().getAddress();
+        long srcHigh = IpAddresses.high(srcAddress);
+        long srcLow = IpAddresses.low(srcAddress);
+        FlowKey flowKey = FlowKey.of(srcHigh, srcLow, srcPort, IpAddresses.high(destAddress), IpAddresses.low(destAddress), destPort);
+
+        Packet payload = tcpPacket.getPayload();
+        TcpFlow flow = flowTable.get(flowKey);
+        if (flow == null) {
+            // 不携带数据的通信包不创建连接
+            if (payload == null) {
+                return null;
+            }
+            if (flowTable.size() >= maxFlows) {
+                overflowFlows.increment();
+                return null;
+            }
+            flow = flowTable.getOrCreate(flowKey);
+        }
+        FlowVerdict verdict = flow.getAttributeAs(FlowVerdict.FLOW_ATTRIBUTE_KEY, FlowVerdict.class);
+        if (verdict == null) {
+            verdict = new FlowVerdict();
+            flow.setAttribute(FlowVerdict.FLOW_ATTRIBUTE_KEY, verdict);
+        }
+        if (!verdict.isDecided() && payload != null) {
+            this.inspect(verdict, ByteBuffer.wrap(payload.getRawData()), destPort);
+        }
+        if (verdict.isClassified()) {
+            return verdict;
+        }
+        // 已识别连接的数据包交由解析协调器的 tcp 重组处理连接关闭
+        flowTable.closeIfFinished(flow, header, flowKey.isEndpointA(srcHigh, srcLow, srcPort));
+        return null;
+    }
+
+
+    /**
+     *  检查数据包首部字节，识别成功则记录协议与服务端端口，反之记录一次失败
+     * @param verdict 连接识别结果
+     * @param payload tcp 载荷
+     * @param destPort 数据包目标端口
+     */
+    private void inspect(FlowVerdict verdict, ByteBuffer payload, int destPort) {
+        ProtocolType protocolType = null;
+        if (protocolTypes.contains(ProtocolType.KAFKA) && isKafkaRequest(payload)) {
+            protocolType = ProtocolType.KAFKA;
+        } else if (protocolTypes.contains(ProtocolType.REDIS) && isRespRequest(payload)) {
+            protocolType = ProtocolType.REDIS;
+        }
+        if (protocolType != null) {
+            verdict.classify(protocolType, destPort);
+            classifiedFlows.get(protocolType).increment();
+        } else if (verdict.fail(maxAttempts)) {
+            abandonedFlows.increment();
+        }
+    }
+
+
+    /**
+     *  判断载荷是否以 kafka 请求开头
+     * @param payload tcp 载荷，读取不改变其位置
+     * @return 返回 true 则是
+     */
+    boolean isKafkaRequest(ByteBuffer payload) {
+        int offset = payload.position();
+        if (payload.remaining() < 4 + KAFKA_MIN_HEADER_BYTES) {
+            return false;
+        }
+        int size = payload.getInt(offset);
+        if (size < KAFKA_MIN_HEADER_BYTES || size > maxFrameBytes) {
+            return false;
+        }
+        short apiKey = payload.getShort(offset + 4);
+        if (!ApiKeys.hasId(apiKey)) {
+            return false;
+        }
+        ApiKeys api = ApiKeys.forId(apiKey);
+        short apiVersion = payload.getShort(offset + 6);
+        if (apiVersion < api.oldestVersion() || apiVersion > api.latestVersion()) {
+            return false;
+        }
+        int correlationId = payload.getInt(offset + 8);
+        short clientIdLength = payload.getShort(offset + 12);
+        return correlationId >= 0 && clientIdLength >= -1 && KAFKA_MIN_HEADER_BYTES + clientIdLength <= size;
+    }
+
+
+    /**
+     *  判断载荷是否以 RESP 命令开头，即 *元素个数\r\n$
+     * @param payload tcp 载荷，读取不改变其位置
+     * @return 返回 true 则是
+     */
+    static boolean isRespRequest(ByteBuffer payload) {
+        int offset = payload.position();
+        int limit = payload.limit();
+        if (limit - offset < 4 || payload.get(offset) != '*') {
+            return false;
+        }
+        int index = offset + 1;
+        while (index < limit && index - offset - 1 <= RESP_MAX_COUNT_DIGITS && Character.isDigit(payload.get(index))) {
+            index++;
+        }
+        int digits = index - offset - 1;
+        return digits > 0 && digits <= RESP_MAX_COUNT_DIGITS && index + 2 < limit
+                && payload.get(index) == '\r' && payload.get(index + 1) == '\n' && payload.get(index + 2) == '$';
+    }
+
+
+    /**
+     *  统计参与识别的连接数量，仅在指标采集时调用
+     */
+    private static double trackedFlowCount(TcpFlowTable flowTable) {
+        long count = 0;
+        for (TcpFlow flow : flowTable.flows()) {
+            if (flow.getAttribute(FlowVerdict.FLOW_ATTRIBUTE_KEY) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     *  获取当前参与识别的连接数量
+     * @return 返回连接数量
+     */
+    public int getFlowCount() {
+        return (int) trackedFlowCount(flowTable);
+    }
+
+
+    public Set<ProtocolType> getProtocolTypes() {
+        return Collections.unmodifiableSet(protocolTypes);
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        return Collections.singletonMap("detection.flows", (long) trackedFlowCount(flowTable));
+    }
+}
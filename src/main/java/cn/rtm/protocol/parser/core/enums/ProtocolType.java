@@ -5,7 +5,9 @@ package cn.rtm.protocol.parser.core.enums;
  */
 public enum ProtocolType {
 
-    KAFKA("Kafka" , " Kafka 协议类型");
+    KAFKA("Kafka" , " Kafka 协议类型"),
+
+    REDIS("Redis", " Redis 协议类型");
 
     private String name;
 
@@ -0,0 +1,166 @@
+package cn.rtm.protocol.parser.core.error;
+
+import io.micrometer.core.instrument.Counter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  一类解析错误的统计，按解析阶段、错误类型、api、版本区分，由 {@link ParseErrorTracker} 创建
+ */
+public class ParseErrorClass {
+
+    private final String stage;
+
+    private final String error;
+
+    private final String api;
+
+    private final short version;
+
+    private final Counter counter;
+
+    /**
+     *  失败数量，不依赖指标注册表是否生效
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     *  当前日志周期开始时间
+     */
+    private long windowStart;
+
+    /**
+     *  当前周期已输出的日志数量
+     */
+    private int loggedInWindow;
+
+    /**
+     *  被抑制、尚未报告的日志数量
+     */
+    private long suppressed;
+
+    private final List<QuarantinedFrame> samples = new ArrayList<>(4);
+
+    ParseErrorClass(String stage, String error, String api, short version, Counter counter) {
+        this.stage = stage;
+        this.error = error;
+        this.api = api;
+        this.version = version;
+        this.counter = counter;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getApi() {
+        return api;
+    }
+
+    public short getVersion() {
+        return version;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public List<QuarantinedFrame> getSamples() {
+        synchronized (samples) {
+            return Collections.unmodifiableList(new ArrayList<>(samples));
+        }
+    }
+
+    void increment() {
+        count.increment();
+        counter.increment();
+    }
+
+
+    /**
+     *  判断当前错误是否输出日志
+     * @param now 当前时间
+     * @param windowMillis 日志周期
+     * @param limit 每周期最多输出的日志数量
+     * @return 返回被抑制的日志数量，不输出日志返回 -1
+     */
+    synchronized long acquireLog(long now, long windowMillis, int limit) {
+        if (now - windowStart >= windowMillis) {
+            windowStart = now;
+            loggedInWindow = 0;
+        }
+        if (loggedInWindow >= limit) {
+            suppressed++;
+            return -1;
+        }
+        loggedInWindow++;
+        long reported = suppressed;
+        suppressed = 0;
+        return reported;
+    }
+
+
+    /**
+     *  是否还需要保留数据包，无需保留时可避免复制数据包内容
+     */
+    boolean needsSample(int limit) {
+        synchronized (samples) {
+            return samples.size() < limit;
+        }
+    }
+
+
+    void addSample(QuarantinedFrame frame, int limit) {
+        synchronized (samples) {
+            if (samples.size() < limit) {
+                samples.add(frame);
+            }
+        }
+    }
+
+
+    /**
+     *  分类标识
+     */
+    static final class Key {
+
+        private final String stage;
+
+        private final String error;
+
+        private final short apiKey;
+
+        private final short version;
+
+        Key(String stage, String error, short apiKey, short version) {
+            this.stage = stage;
+            this.error = error;
+            this.apiKey = apiKey;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return apiKey == key.apiKey && version == key.version && stage.equals(key.stage) && error.equals(key.error);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stage, error, apiKey, version);
+        }
+    }
+}
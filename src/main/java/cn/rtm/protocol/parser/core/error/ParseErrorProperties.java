@@ -0,0 +1,62 @@
+package cn.rtm.protocol.parser.core.error;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  解析错误统计配置，前缀为 protocol.parse-error
+ */
+@ConfigurationProperties(prefix = "protocol.parse-error")
+public class ParseErrorProperties {
+
+    /**
+     *  每类错误每分钟最多输出的日志数量，超过后仅计数，下一周期首条日志中输出被抑制的数量
+     */
+    private int logSamplesPerMinute = 3;
+
+    /**
+     *  每类错误最多保留的原始数据包数量，仅保留最早发生的数据包
+     */
+    private int quarantineSamplesPerClass = 5;
+
+    /**
+     *  单个保留数据包最多保存的字节数，超过则截断
+     */
+    private int maxSampleBytes = 64 * 1024;
+
+    /**
+     *  最多区分的错误分类数量，超过后新的分类合并为 error=other
+     */
+    private int maxClasses = 512;
+
+    public int getLogSamplesPerMinute() {
+        return logSamplesPerMinute;
+    }
+
+    public void setLogSamplesPerMinute(int logSamplesPerMinute) {
+        this.logSamplesPerMinute = logSamplesPerMinute;
+    }
+
+    public int getQuarantineSamplesPerClass() {
+        return quarantineSamplesPerClass;
+    }
+
+    public void setQuarantineSamplesPerClass(int quarantineSamplesPerClass) {
+        this.quarantineSamplesPerClass = quarantineSamplesPerClass;
+    }
+
+    public int getMaxSampleBytes() {
+        return maxSampleBytes;
+    }
+
+    public void setMaxSampleBytes(int maxSampleBytes) {
+        this.maxSampleBytes = maxSampleBytes;
+    }
+
+    public int getMaxClasses() {
+        return maxClasses;
+    }
+
+    public void setMaxClasses(int maxClasses) {
+        this.maxClasses = maxClasses;
+    }
+}
@@ -0,0 +1,199 @@
+package cn.rtm.protocol.parser.core.error;
+
+import cn.rtm.protocol.parser.ProtocolMessage;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  解析错误统计，解析失败按解析阶段、错误类型、api、版本分类计数，代价与错误数量无关地受限
+ *
+ * <ul>
+ * <li> 每类错误计入 {@link ProtocolMetrics#PARSE_FAILURES}，分类数量超过 maxClasses 后新的分类合并为 error=other
+ * <li> 日志按分类限流，每分钟最多输出 logSamplesPerMinute 条带堆栈的日志，被抑制的日志不生成数据包描述，
+ * 仅计数并在下一条日志中报告
+ * <li> 每类错误保留最早 quarantineSamplesPerClass 个原始数据包用于离线分析，保留后不再复制数据包内容
+ * <li> 解析组件（含通过静态注册创建的数据提取器）通过 {@link #global()} 共享同一实例，配置由 spring 容器启动时通过
+ * {@link #configure(ParseErrorProperties)} 设置
+ * </ul>
+ */
+public class ParseErrorTracker {
+
+    public static final String STAGE_REQUEST_HEADER = "request_header";
+
+    public static final String STAGE_REQUEST_BODY = "request_body";
+
+    public static final String STAGE_RESPONSE_HEADER = "response_header";
+
+    public static final String STAGE_RESPONSE_BODY = "response_body";
+
+    public static final String STAGE_RECORD = "record";
+
+    /**
+     *  api 或版本未知
+     */
+    public static final short UNKNOWN = -1;
+
+    private static final long LOG_WINDOW_MILLIS = 60 * 1000L;
+
+    private static final String OTHER_ERROR = "other";
+
+    private static final ParseErrorTracker GLOBAL = new ParseErrorTracker(new ParseErrorProperties());
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Map<ParseErrorClass.Key, ParseErrorClass> classes = new ConcurrentHashMap<>(64);
+
+    private volatile int logSamplesPerMinute;
+
+    private volatile int quarantineSamplesPerClass;
+
+    private volatile int maxSampleBytes;
+
+    private volatile int maxClasses;
+
+    public ParseErrorTracker(ParseErrorProperties properties) {
+        configure(properties);
+    }
+
+
+    /**
+     *  获取解析组件共享的实例
+     * @return 返回共享实例
+     */
+    public static ParseErrorTracker global() {
+        return GLOBAL;
+    }
+
+
+    /**
+     *  更新配置，已保留的数据包不受影响
+     * @param properties 解析错误统计配置
+     * @return 返回当前实例
+     */
+    public ParseErrorTracker configure(ParseErrorProperties properties) {
+        this.logSamplesPerMinute = Math.max(0, properties.getLogSamplesPerMinute());
+        this.quarantineSamplesPerClass = Math.max(0, properties.getQuarantineSamplesPerClass());
+        this.maxSampleBytes = Math.max(0, properties.getMaxSampleBytes());
+        this.maxClasses = Math.max(1, properties.getMaxClasses());
+        return this;
+    }
+
+
+    /**
+     *  记录解析异常
+     * @param stage 解析阶段
+     * @param cause 解析异常，错误类型为异常类名
+     * @param apiKey api key，未知为 {@link #UNKNOWN}
+     * @param apiVersion api 版本，未知为 {@link #UNKNOWN}
+     * @param frame 解析失败的数据包，可为 null
+     */
+    public void record(String stage, Throwable cause, short apiKey, short apiVersion, ProtocolMessage frame) {
+        record(stage, cause.getClass().getSimpleName(), String.valueOf(cause.getMessage()), cause, apiKey, apiVersion, frame);
+    }
+
+
+    /**
+     *  记录非异常的解析错误，如请求与响应 correlation id 不匹配
+     * @param stage 解析阶段
+     * @param error 错误类型
+     * @param message 错误信息
+     * @param apiKey api key，未知为 {@link #UNKNOWN}
+     * @param apiVersion api 版本，未知为 {@link #UNKNOWN}
+     * @param frame 解析失败的数据包，可为 null
+     */
+    public void record(String stage, String error, String message, short apiKey, short apiVersion, ProtocolMessage frame) {
+        record(stage, error, message, null, apiKey, apiVersion, frame);
+    }
+
+
+    private void record(String stage, String error, String message, Throwable cause, short apiKey, short apiVersion, ProtocolMessage frame) {
+        ParseErrorClass errorClass = this.classOf(stage, error, apiKey, apiVersion);
+        errorClass.increment();
+        if (frame != null && errorClass.needsSample(quarantineSamplesPerClass)) {
+            errorClass.addSample(this.quarantine(frame, message), quarantineSamplesPerClass);
+        }
+        long suppressed = errorClass.acquireLog(System.currentTimeMillis(), LOG_WINDOW_MILLIS, logSamplesPerMinute);
+        if (suppressed < 0) {
+            return;
+        }
+        log.warn("解析失败，阶段：{}，api：{} v{}，错误：{}：{}，此前已抑制 {} 条，数据包：{}", stage, errorClass.getApi(), apiVersion,
+                error, message, suppressed, frame == null ? null : frame.requestDesc(), cause);
+    }
+
+
+    /**
+     *  查找错误分类，不存在则创建，分类数量达到上限后合并到同一阶段的 other 分类
+     */
+    private ParseErrorClass classOf(String stage, String error, short apiKey, short apiVersion) {
+        ParseErrorClass.Key key = new ParseErrorClass.Key(stage, error, apiKey, apiVersion);
+        ParseErrorClass errorClass = classes.get(key);
+        if (errorClass != null) {
+            return errorClass;
+        }
+        if (classes.size() >= maxClasses) {
+            key = new ParseErrorClass.Key(stage, OTHER_ERROR, UNKNOWN, UNKNOWN);
+            error = OTHER_ERROR;
+            apiKey = UNKNOWN;
+            apiVersion = UNKNOWN;
+        }
+        String finalError = error;
+        String api = apiName(apiKey);
+        short version = apiVersion;
+        return classes.computeIfAbsent(key, k -> new ParseErrorClass(stage, finalError, api, version,
+                ProtocolMetrics.counter(ProtocolMetrics.PARSE_FAILURES, "stage", stage, "error", finalError,
+                        "api", api, "version", version == UNKNOWN ? "unknown" : String.valueOf(version))));
+    }
+
+
+    private QuarantinedFrame quarantine(ProtocolMessage frame, String message) {
+        byte[] rawData = frame.getRawData();
+        boolean truncated = rawData.length > maxSampleBytes;
+        return new QuarantinedFrame(System.currentTimeMillis(), frame.getRequestUrl(), frame.getSequenceNumber(),
+                frame.getAcknowledgementNumber(), rawData.length, truncated, message,
+                truncated ? Arrays.copyOf(rawData, maxSampleBytes) : rawData.clone());
+    }
+
+
+    /**
+     *  读取请求数据包中的 api key，用于请求头解析失败时分类
+     * @param frame 请求数据包
+     * @return 返回 api key，无法读取返回 {@link #UNKNOWN}
+     */
+    public static short peekApiKey(ProtocolMessage frame) {
+        ByteBuffer payload = frame.payloadView();
+        return payload.remaining() >= 2 ? payload.getShort(payload.position()) : UNKNOWN;
+    }
+
+
+    /**
+     *  读取请求数据包中的 api 版本，用于请求头解析失败时分类
+     * @param frame 请求数据包
+     * @return 返回 api 版本，无法读取返回 {@link #UNKNOWN}
+     */
+    public static short peekApiVersion(ProtocolMessage frame) {
+        ByteBuffer payload = frame.payloadView();
+        return payload.remaining() >= 4 ? payload.getShort(payload.position() + 2) : UNKNOWN;
+    }
+
+
+    private static String apiName(short apiKey) {
+        return ApiKeys.hasId(apiKey) ? ApiKeys.forId(apiKey).name : "unknown";
+    }
+
+
+    /**
+     *  获取全部错误分类
+     * @return 返回错误分类，包含保留的数据包
+     */
+    public List<ParseErrorClass> classes() {
+        return new ArrayList<>(classes.values());
+    }
+}
@@ -0,0 +1,85 @@
+package cn.rtm.protocol.parser.core.error;
+
+/**
+ *  解析失败的原始数据包，包含长度字段，用于离线分析
+ */
+public class QuarantinedFrame {
+
+    /**
+     *  失败时间，毫秒时间戳
+     */
+    private final long time;
+
+    /**
+     *  数据包地址，格式为 srcIp:srcPort <-> destIp:destPort
+     */
+    private final String address;
+
+    private final long sequenceNumber;
+
+    private final long acknowledgementNumber;
+
+    /**
+     *  数据包原始长度
+     */
+    private final int length;
+
+    /**
+     *  是否因超过 maxSampleBytes 被截断
+     */
+    private final boolean truncated;
+
+    /**
+     *  错误信息
+     */
+    private final String message;
+
+    /**
+     *  原始数据包内容，接口返回时为 base64 编码
+     */
+    private final byte[] rawData;
+
+    QuarantinedFrame(long time, String address, long sequenceNumber, long acknowledgementNumber, int length,
+                     boolean truncated, String message, byte[] rawData) {
+        this.time = time;
+        this.address = address;
+        this.sequenceNumber = sequenceNumber;
+        this.acknowledgementNumber = acknowledgementNumber;
+        this.length = length;
+        this.truncated = truncated;
+        this.message = message;
+        this.rawData = rawData;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public long getAcknowledgementNumber() {
+        return acknowledgementNumber;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public byte[] getRawData() {
+        return rawData;
+    }
+}
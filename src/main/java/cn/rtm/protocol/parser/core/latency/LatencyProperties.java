@@ -0,0 +1,62 @@
+package cn.rtm.protocol.parser.core.latency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  请求耗时统计配置，前缀为 protocol.latency
+ */
+@ConfigurationProperties(prefix = "protocol.latency")
+public class LatencyProperties {
+
+    /**
+     *  是否启用请求耗时统计
+     */
+    private boolean enabled = true;
+
+    /**
+     *  最大统计维度组合数量，超过后新的 clientId、topic 归入 {@link RequestLatencyKey#OTHER}
+     */
+    private int maxSeries = 2000;
+
+    /**
+     *  直方图有效位数，取值 1-5，决定统计值的相对误差，如 2 位对应相对误差不超过 1%
+     */
+    private int significantDigits = 2;
+
+    /**
+     *  可统计的最大耗时（毫秒），超过则按该值记录
+     */
+    private long highestTrackableMillis = 60 * 1000L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    public void setSignificantDigits(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+
+    public long getHighestTrackableMillis() {
+        return highestTrackableMillis;
+    }
+
+    public void setHighestTrackableMillis(long highestTrackableMillis) {
+        this.highestTrackableMillis = highestTrackableMillis;
+    }
+}
@@ -0,0 +1,100 @@
+package cn.rtm.protocol.parser.core.latency;
+
+import org.HdrHistogram.AbstractHistogram;
+
+/**
+ *  请求耗时统计结果，耗时单位为毫秒，未参与分组的维度为 null
+ */
+public class LatencySummary {
+
+    private final String api;
+
+    private final String broker;
+
+    private final String clientId;
+
+    private final String topic;
+
+    private final long count;
+
+    private final double min;
+
+    private final double mean;
+
+    private final double p50;
+
+    private final double p90;
+
+    private final double p99;
+
+    private final double p999;
+
+    private final double max;
+
+    LatencySummary(String api, String broker, String clientId, String topic, AbstractHistogram histogram) {
+        this.api = api;
+        this.broker = broker;
+        this.clientId = clientId;
+        this.topic = topic;
+        this.count = histogram.getTotalCount();
+        this.min = toMillis(histogram.getMinValue());
+        this.mean = histogram.getMean() / 1000.0;
+        this.p50 = toMillis(histogram.getValueAtPercentile(50));
+        this.p90 = toMillis(histogram.getValueAtPercentile(90));
+        this.p99 = toMillis(histogram.getValueAtPercentile(99));
+        this.p999 = toMillis(histogram.getValueAtPercentile(99.9));
+        this.max = toMillis(histogram.getMaxValue());
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    public String getApi() {
+        return api;
+    }
+
+    public String getBroker() {
+        return broker;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getP999() {
+        return p999;
+    }
+
+    public double getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,183 @@
+package cn.rtm.protocol.parser.core.latency;
+
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SynchronizedHistogram;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  基于抓包时间的请求耗时统计，耗时为请求数据包完整到达与响应首个分片到达之间的时间差，即 broker 处理耗时，
+ *  不包含解析程序自身的排队与解析耗时
+ *
+ * <ul>
+ * <li> 每个请求按 api、broker、clientId 维度记录一次 HdrHistogram 直方图，分位数相对误差由
+ * {@link LatencyProperties#getSignificantDigits()} 决定
+ * <li> 请求涉及的每个 topic 另外记录到 topic 维度直方图，仅在按 topic 过滤或分组时查询，避免多 topic 请求在 api、broker、clientId
+ * 统计中被重复计数
+ * <li> 维度组合数量超过上限后 clientId、topic 折叠为 {@link RequestLatencyKey#OTHER}
+ * <li> 按 api、broker 维度同时记录 {@value ProtocolMetrics#REQUEST_LATENCY} 指标，clientId、topic 维度基数不可控，仅通过
+ * {@link #query(String, String, String, String, Set)} 查询
+ * <li> 方法 {@link #query(String, String, String, String, Set)} 按过滤条件合并直方图，并按指定维度分组返回统计结果
+ * </ul>
+ */
+public class RequestLatencyAnalyzer implements StateSizeProvider {
+
+    public static final String GROUP_API = "api";
+
+    public static final String GROUP_BROKER = "broker";
+
+    public static final String GROUP_CLIENT_ID = "clientId";
+
+    public static final String GROUP_TOPIC = "topic";
+
+    private final LatencyProperties properties;
+
+    /**
+     *  可统计的最大耗时（微秒）
+     */
+    private final long highestTrackableMicros;
+
+    /**
+     *  api、broker、clientId 维度组合的耗时直方图，每个请求记录一次，topic 固定为 {@link RequestLatencyKey#NONE}，单位为微秒
+     */
+    private final Map<RequestLatencyKey, SynchronizedHistogram> series = new ConcurrentHashMap<>(256);
+
+    /**
+     *  包含 topic 维度组合的耗时直方图，请求涉及的每个 topic 各记录一次，单位为微秒
+     */
+    private final Map<RequestLatencyKey, SynchronizedHistogram> topicSeries = new ConcurrentHashMap<>(256);
+
+    /**
+     *  按 api、broker 缓存的耗时指标，key: api + broker
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private volatile Instant since = Instant.now();
+
+    public RequestLatencyAnalyzer(LatencyProperties properties) {
+        this.properties = properties;
+        this.highestTrackableMicros = Math.max(2, properties.getHighestTrackableMillis() * 1000L);
+    }
+
+
+    /**
+     *  记录一次请求耗时，请求涉及多个 topic 时 topic 维度直方图中每个 topic 各记录一次
+     * @param api 请求 api
+     * @param broker broker 地址，格式为 ip:port
+     * @param clientId 客户端标识
+     * @param topics 请求涉及的 topic，为空则记录到 {@link RequestLatencyKey#NONE}
+     * @param latencyNanos 请求耗时（纳秒）
+     */
+    public void record(String api, String broker, String clientId, Collection<String> topics, long latencyNanos) {
+        if (latencyNanos < 0) {
+            // 抓包时间乱序，无法计算耗时
+            return;
+        }
+        timers.computeIfAbsent(api + "|" + broker, key -> ProtocolMetrics.timer(ProtocolMetrics.REQUEST_LATENCY,
+                "api", api, "broker", broker)).record(latencyNanos, TimeUnit.NANOSECONDS);
+        long micros = Math.min(Math.max(1, latencyNanos / 1000), highestTrackableMicros);
+        RequestLatencyKey requestKey = new RequestLatencyKey(api, broker, clientId, RequestLatencyKey.NONE);
+        histogramOf(series, requestKey).recordValue(micros);
+        if (topics == null || topics.isEmpty()) {
+            histogramOf(topicSeries, requestKey).recordValue(micros);
+            return;
+        }
+        for (String topic : topics) {
+            histogramOf(topicSeries, new RequestLatencyKey(api, broker, clientId, topic)).recordValue(micros);
+        }
+    }
+
+
+    /**
+     *  获取维度对应的直方图，维度组合数量超过上限则使用折叠后的维度
+     * @param target 直方图所在的集合
+     * @param key 统计维度
+     * @return 返回直方图
+     */
+    private SynchronizedHistogram histogramOf(Map<RequestLatencyKey, SynchronizedHistogram> target, RequestLatencyKey key) {
+        SynchronizedHistogram histogram = target.get(key);
+        if (histogram != null) {
+            return histogram;
+        }
+        RequestLatencyKey targetKey = target.size() < properties.getMaxSeries() ? key : key.overflow();
+        return target.computeIfAbsent(targetKey, k -> new SynchronizedHistogram(highestTrackableMicros, properties.getSignificantDigits()));
+    }
+
+
+    /**
+     *  查询请求耗时统计
+     * @param api 请求 api，为 null 则不限制
+     * @param broker broker 地址，为 null 则不限制
+     * @param clientId 客户端标识，为 null 则不限制
+     * @param topic topic 名称，为 null 则不限制
+     * @param groupBy 分组维度，取值为 {@link #GROUP_API}、{@link #GROUP_BROKER}、{@link #GROUP_CLIENT_ID}、{@link #GROUP_TOPIC}，
+     *                为空则合并为一条统计结果
+     * @return 返回统计结果，按请求数量降序排列；按 topic 过滤或分组时，多 topic 请求在每个 topic 中各计数一次
+     */
+    public List<LatencySummary> query(String api, String broker, String clientId, String topic, Set<String> groupBy) {
+        Set<String> groups = groupBy == null ? Collections.emptySet() : groupBy;
+        Map<RequestLatencyKey, SynchronizedHistogram> source = topic != null || groups.contains(GROUP_TOPIC) ? topicSeries : series;
+        Map<List<String>, Histogram> merged = new HashMap<>();
+        for (Map.Entry<RequestLatencyKey, SynchronizedHistogram> entry : source.entrySet()) {
+            RequestLatencyKey key = entry.getKey();
+            if (!key.matches(api, broker, clientId, topic)) {
+                continue;
+            }
+            List<String> groupKey = Arrays.asList(
+                    groups.contains(GROUP_API) ? key.getApi() : null,
+                    groups.contains(GROUP_BROKER) ? key.getBroker() : null,
+                    groups.contains(GROUP_CLIENT_ID) ? key.getClientId() : null,
+                    groups.contains(GROUP_TOPIC) ? key.getTopic() : null);
+            Histogram target = merged.computeIfAbsent(groupKey, k -> new Histogram(highestTrackableMicros, properties.getSignificantDigits()));
+            SynchronizedHistogram histogram = entry.getValue();
+            synchronized (histogram) {
+                target.add(histogram);
+            }
+        }
+        List<LatencySummary> result = new ArrayList<>(merged.size());
+        for (Map.Entry<List<String>, Histogram> entry : merged.entrySet()) {
+            List<String> groupKey = entry.getKey();
+            result.add(new LatencySummary(groupKey.get(0), groupKey.get(1), groupKey.get(2), groupKey.get(3), entry.getValue()));
+        }
+        result.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return result;
+    }
+
+
+    /**
+     *  清空统计数据，重新开始统计
+     */
+    public void reset() {
+        series.clear();
+        topicSeries.clear();
+        since = Instant.now();
+    }
+
+
+    /**
+     *  获取当前统计数据的开始时间
+     * @return 返回启动或最近一次清空的时间
+     */
+    public Instant getSince() {
+        return since;
+    }
+
+    public int seriesCount() {
+        return series.size() + topicSeries.size();
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>(4);
+        sizes.put("latency.series", (long) series.size());
+        sizes.put("latency.topicSeries", (long) topicSeries.size());
+        sizes.put("latency.timers", (long) timers.size());
+        return sizes;
+    }
+}
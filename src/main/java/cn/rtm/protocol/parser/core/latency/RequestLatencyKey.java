@@ -0,0 +1,101 @@
+package cn.rtm.protocol.parser.core.latency;
+
+import java.util.Objects;
+
+/**
+ *  请求耗时统计维度，由 api、broker 地址、clientId、topic 组成
+ */
+public final class RequestLatencyKey {
+
+    /**
+     *  维度组合数量超过上限后，新的 clientId、topic 归入该值
+     */
+    public static final String OTHER = "_other";
+
+    /**
+     *  请求不涉及 topic 时的 topic 维度值
+     */
+    public static final String NONE = "-";
+
+    private final String api;
+
+    private final String broker;
+
+    private final String clientId;
+
+    private final String topic;
+
+    private final int hash;
+
+    public RequestLatencyKey(String api, String broker, String clientId, String topic) {
+        this.api = api;
+        this.broker = broker;
+        this.clientId = clientId == null ? NONE : clientId;
+        this.topic = topic == null ? NONE : topic;
+        this.hash = Objects.hash(this.api, this.broker, this.clientId, this.topic);
+    }
+
+    public String getApi() {
+        return api;
+    }
+
+    public String getBroker() {
+        return broker;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+
+    /**
+     *  获取折叠 clientId、topic 后的维度，用于维度组合数量超过上限时
+     * @return 返回 clientId 为 {@link #OTHER} 的维度，topic 为 {@link #NONE} 时保持不变，否则为 {@link #OTHER}
+     */
+    RequestLatencyKey overflow() {
+        return new RequestLatencyKey(api, broker, OTHER, NONE.equals(topic) ? NONE : OTHER);
+    }
+
+
+    /**
+     *  判断当前维度是否匹配过滤条件，过滤条件为 null 则不限制
+     */
+    boolean matches(String api, String broker, String clientId, String topic) {
+        return (api == null || api.equals(this.api))
+                && (broker == null || broker.equals(this.broker))
+                && (clientId == null || clientId.equals(this.clientId))
+                && (topic == null || topic.equals(this.topic));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestLatencyKey)) {
+            return false;
+        }
+        RequestLatencyKey that = (RequestLatencyKey) o;
+        return hash == that.hash && Objects.equals(api, that.api) && Objects.equals(broker, that.broker)
+                && Objects.equals(clientId, that.clientId) && Objects.equals(topic, that.topic);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestLatencyKey{" +
+                "api='" + api + '\'' +
+                ", broker='" + broker + '\'' +
+                ", clientId='" + clientId + '\'' +
+                ", topic='" + topic + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,240 @@
+package cn.rtm.protocol.parser.core.metrics;
+
+import io.micrometer.core.instrument.*;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToDoubleFunction;
+
+/**
+ *  协议解析各阶段运行指标定义，指标注册到 {@link Metrics#globalRegistry}，由 actuator 通过 prometheus 端点暴露，
+ *  解析组件无需依赖 spring 容器即可记录指标
+ *
+ * <ul>
+ * <li> 抓包：按抓包源统计的 packets、bytes、errors、内核接收数以及网卡/内核/解析队列丢包数，抓包与解析线程之间的队列深度，
+ * 溢出落盘、回放、丢弃的数据包数与待回放数据包数
+ * <li> 重组：跟踪的连接数、缓存的分片字节数、连接移除次数、超时丢弃的分片缓存数、长度前缀不合法的数据包数
+ * <li> 隔离：连接被隔离次数、处于隔离期的连接数、隔离期间跳过的数据包数
+ * <li> 分发：按协议统计的分发数据包数，未注册端口的数据包数
+ * <li> 识别：按识别结果统计的连接数，跟踪的待识别与已识别连接数
+ * <li> 采样：连接采样率、按采样结果统计的连接数、未采样连接的数据包数
+ * <li> 过滤：解析前被过滤表达式丢弃的请求与响应数量
+ * <li> 解析：按 api、版本、方向统计的数据包数量、解析错误数、解析耗时，按阶段、错误类型、api、版本分类的解析失败数
+ * <li> 关联：等待响应的请求数、匹配成功与无法匹配的响应数、超时未收到响应的请求数，以及基于抓包时间的请求耗时
+ * <li> 提取与写入：提取记录数、写入队列深度、写入记录数、批次写入耗时
+ * <li> 降级：当前降级级别、负载压力、级别变更次数、按降级措施统计的跳过数量
+ * </ul>
+ *
+ *  micrometer 对同名同标签的指标只保留首次注册的实例，{@link #gauge}、{@link #functionCounter} 因此按名称与标签汇总
+ *  所有注册的数据来源，多个组件实例（如回放工具、测试中创建的流水线）各自注册时指标值为全部存活实例之和，
+ *  共享同一数据来源对象的实例（如静态的分片缓存）只计一次
+ */
+public final class ProtocolMetrics {
+
+    public static final String CAPTURE_PACKETS = "protocol.capture.packets";
+
+    public static final String CAPTURE_BYTES = "protocol.capture.bytes";
+
+    public static final String CAPTURE_ERRORS = "protocol.capture.errors";
+
+    public static final String CAPTURE_DROPS = "protocol.capture.drops";
+
+    public static final String CAPTURE_KERNEL_RECEIVED = "protocol.capture.kernel.received";
+
+    public static final String CAPTURE_QUEUE_DEPTH = "protocol.capture.queue.depth";
+
+    public static final String CAPTURE_SPILL_PACKETS = "protocol.capture.spill.packets";
+
+    public static final String CAPTURE_SPILL_PENDING = "protocol.capture.spill.pending";
+
+    public static final String DEMUX_PACKETS = "protocol.demux.packets";
+
+    public static final String DETECT_FLOWS = "protocol.detect.flows";
+
+    public static final String DETECT_TRACKED_FLOWS = "protocol.detect.tracked";
+
+    public static final String REASSEMBLY_FLOWS = "protocol.reassembly.flows";
+
+    public static final String REASSEMBLY_BUFFERED_SEGMENTS = "protocol.reassembly.buffered.segments";
+
+    public static final String REASSEMBLY_BUFFERED_BYTES = "protocol.reassembly.buffered.bytes";
+
+    public static final String REASSEMBLY_FLOW_REMOVALS = "protocol.reassembly.flow.removals";
+
+    public static final String REASSEMBLY_EXPIRED_SEGMENTS = "protocol.reassembly.segments.expired";
+
+    public static final String REASSEMBLY_INVALID_FRAMES = "protocol.reassembly.frames.invalid";
+
+    public static final String QUARANTINE_FLOWS = "protocol.quarantine.flows";
+
+    public static final String QUARANTINE_ACTIVE = "protocol.quarantine.active";
+
+    public static final String QUARANTINE_SKIPPED_PACKETS = "protocol.quarantine.skipped.packets";
+
+    public static final String SAMPLING_RATE = "protocol.sampling.rate";
+
+    public static final String SAMPLING_FLOWS = "protocol.sampling.flows";
+
+    public static final String SAMPLING_SKIPPED_PACKETS = "protocol.sampling.skipped.packets";
+
+    public static final String FILTER_DROPPED = "protocol.filter.dropped";
+
+    public static final String PARSE_FRAMES = "protocol.parse.frames";
+
+    public static final String PARSE_ERRORS = "protocol.parse.errors";
+
+    public static final String PARSE_FAILURES = "protocol.parse.failures";
+
+    public static final String PARSE_DURATION = "protocol.parse.duration";
+
+    public static final String CORRELATION_INFLIGHT = "protocol.correlation.inflight";
+
+    public static final String CORRELATION_MATCHED = "protocol.correlation.matched";
+
+    public static final String CORRELATION_ORPHANED = "protocol.correlation.orphaned";
+
+    public static final String CORRELATION_EXPIRED = "protocol.correlation.expired";
+
+    public static final String REQUEST_LATENCY = "protocol.request.latency";
+
+    public static final String EXTRACT_RECORDS = "protocol.extract.records";
+
+    public static final String SINK_QUEUE_DEPTH = "protocol.sink.queue.depth";
+
+    public static final String SINK_RECORDS = "protocol.sink.records";
+
+    public static final String SINK_FAILED_BATCHES = "protocol.sink.failed.batches";
+
+    public static final String SINK_FLUSH = "protocol.sink.flush";
+
+    public static final String SHEDDING_LEVEL = "protocol.shedding.level";
+
+    public static final String SHEDDING_PRESSURE = "protocol.shedding.pressure";
+
+    public static final String SHEDDING_TRANSITIONS = "protocol.shedding.transitions";
+
+    public static final String SHEDDING_SKIPPED = "protocol.shedding.skipped";
+
+    /**
+     *  同名同标签指标的数据来源，key: 指标标识
+     */
+    private static final ConcurrentMap<Meter.Id, MeterSources> SOURCES = new ConcurrentHashMap<>();
+
+    private ProtocolMetrics() {
+    }
+
+
+    /**
+     *  获取指标注册中心
+     * @return 返回全局指标注册中心
+     */
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+
+    /**
+     *  获取或注册计数器，热点路径应缓存返回的计数器，避免重复查找
+     * @param name 指标名称
+     * @param tags 指标标签，按 key、value 依次排列
+     * @return 返回计数器
+     */
+    public static Counter counter(String name, String... tags) {
+        return Counter.builder(name).tags(tags).register(registry());
+    }
+
+
+    /**
+     *  获取或注册计时器，发布直方图用于计算分位数
+     * @param name 指标名称
+     * @param tags 指标标签，按 key、value 依次排列
+     * @return 返回计时器
+     */
+    public static Timer timer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).publishPercentileHistogram().register(registry());
+    }
+
+
+    /**
+     *  注册瞬时值指标，指标值在采集时通过 valueFunction 计算，同名同标签的多个来源取其和
+     * @param name 指标名称
+     * @param target 指标数据来源对象，仅持有其弱引用
+     * @param valueFunction 指标值计算方法
+     * @param tags 指标标签，按 key、value 依次排列
+     */
+    public static <T> void gauge(String name, T target, ToDoubleFunction<T> valueFunction, String... tags) {
+        Meter.Id id = new Meter.Id(name, Tags.of(tags), null, null, Meter.Type.GAUGE);
+        SOURCES.computeIfAbsent(id, key -> {
+            MeterSources sources = new MeterSources();
+            Gauge.builder(name, sources, MeterSources::sum).tags(tags).register(registry());
+            return sources;
+        }).add(target, valueFunction);
+    }
+
+
+    /**
+     *  注册单调递增的计数指标，指标值在采集时通过 countFunction 读取，适用于组件内部已维护计数的场景，同名同标签的多个来源取其和
+     * @param name 指标名称
+     * @param target 指标数据来源对象，仅持有其弱引用
+     * @param countFunction 计数读取方法
+     * @param tags 指标标签，按 key、value 依次排列
+     */
+    public static <T> void functionCounter(String name, T target, ToDoubleFunction<T> countFunction, String... tags) {
+        Meter.Id id = new Meter.Id(name, Tags.of(tags), null, null, Meter.Type.COUNTER);
+        SOURCES.computeIfAbsent(id, key -> {
+            MeterSources sources = new MeterSources();
+            FunctionCounter.builder(name, sources, MeterSources::sum).tags(tags).register(registry());
+            return sources;
+        }).add(target, countFunction);
+    }
+
+
+    /**
+     *  同名同标签指标的全部数据来源，同一来源对象只计一次，来源对象被回收后移除
+     */
+    private static final class MeterSources {
+
+        private final List<Source<?>> sources = new CopyOnWriteArrayList<>();
+
+        synchronized <T> void add(T target, ToDoubleFunction<T> valueFunction) {
+            for (Source<?> source : sources) {
+                if (source.target.get() == target) {
+                    return;
+                }
+            }
+            sources.add(new Source<>(target, valueFunction));
+        }
+
+        double sum() {
+            double sum = 0;
+            for (Source<?> source : sources) {
+                if (source.target.get() == null) {
+                    sources.remove(source);
+                } else {
+                    sum += source.value();
+                }
+            }
+            return sum;
+        }
+    }
+
+
+    private static final class Source<T> {
+
+        private final WeakReference<T> target;
+
+        private final ToDoubleFunction<T> valueFunction;
+
+        private Source(T target, ToDoubleFunction<T> valueFunction) {
+            this.target = new WeakReference<>(target);
+            this.valueFunction = valueFunction;
+        }
+
+        double value() {
+            T value = target.get();
+            return value == null ? 0 : valueFunction.applyAsDouble(value);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package cn.rtm.protocol.parser.core.metrics;
+
+import java.util.Map;
+
+/**
+ *  组件内部状态规模，用于长时间运行测试检测内存泄漏以及排查内存占用问题，实现类应保证方法可在其它线程并发调用
+ */
+public interface StateSizeProvider {
+
+    /**
+     *  获取内部各缓存、队列的当前规模
+     * @return 返回各结构的规模，key: 结构名称，格式为 组件.结构，如 reassembly.segments；value: 条目数或字节数
+     */
+    Map<String, Long> stateSizes();
+}
@@ -0,0 +1,109 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import cn.rtm.protocol.parser.core.enums.ProtocolType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.*;
+
+/**
+ *  抓包配置，前缀为 protocol.capture，可同时配置多个抓包源，各抓包源使用独立的抓包线程，共享同一解析流水线，
+ *  抓包源端口默认为 kafka 端口，其他协议的端口通过 {@link #protocolPorts} 指定
+ */
+@ConfigurationProperties(prefix = "protocol.capture")
+public class CaptureProperties {
+
+    /**
+     *  抓包源
+     */
+    private List<CaptureSourceProperties> sources = new ArrayList<>();
+
+    /**
+     *  抓包线程与解析线程之间的数据包队列容量，队列已满且未启用溢出落盘时丢弃新捕获的数据包
+     */
+    private int queueCapacity = 65536;
+
+    /**
+     *  解析队列溢出落盘配置
+     */
+    private CaptureSpillProperties spill = new CaptureSpillProperties();
+
+    /**
+     *  非 kafka 协议的端口，key: 协议类型，value: 端口，端口须同时配置在抓包源中
+     */
+    private Map<ProtocolType, List<Integer>> protocolPorts = new EnumMap<>(ProtocolType.class);
+
+    public List<CaptureSourceProperties> getSources() {
+        return sources;
+    }
+
+    /**
+     *  设置抓包源，抓包源名称用于区分抓包线程与指标，不能重复
+     * @param sources 抓包源
+     * @throws IllegalArgumentException 抓包源名称重复
+     */
+    public void setSources(List<CaptureSourceProperties> sources) {
+        Set<String> names = new HashSet<>();
+        for (CaptureSourceProperties source : sources) {
+            if (!names.add(source.sourceName())) {
+                throw new IllegalArgumentException("抓包源名称重复：" + source.sourceName() + "，多个抓包源使用同一网卡时须配置不同的 name");
+            }
+        }
+        this.sources = sources;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+
+    public CaptureSpillProperties getSpill() {
+        return spill;
+    }
+
+    public void setSpill(CaptureSpillProperties spill) {
+        this.spill = spill;
+    }
+
+
+    public Map<ProtocolType, List<Integer>> getProtocolPorts() {
+        return protocolPorts;
+    }
+
+    public void setProtocolPorts(Map<ProtocolType, List<Integer>> protocolPorts) {
+        this.protocolPorts = protocolPorts;
+    }
+
+
+    /**
+     *  获取全部抓包源的 kafka broker 端口，即抓包源端口中未指定为其他协议的端口
+     * @return 返回去重后的端口，未配置抓包源时返回空集合
+     */
+    public List<Integer> listenPorts() {
+        Set<Integer> ports = new LinkedHashSet<>();
+        for (CaptureSourceProperties source : sources) {
+            ports.addAll(source.getPorts());
+        }
+        for (Map.Entry<ProtocolType, List<Integer>> entry : protocolPorts.entrySet()) {
+            if (entry.getKey() != ProtocolType.KAFKA) {
+                ports.removeAll(entry.getValue());
+            }
+        }
+        return new ArrayList<>(ports);
+    }
+
+
+    /**
+     *  获取指定协议的端口
+     * @param protocolType 协议类型
+     * @return 返回协议端口，kafka 端口见 {@link #listenPorts()}
+     */
+    public List<Integer> portsOf(ProtocolType protocolType) {
+        if (protocolType == ProtocolType.KAFKA) {
+            return listenPorts();
+        }
+        return protocolPorts.getOrDefault(protocolType, Collections.emptyList());
+    }
+}
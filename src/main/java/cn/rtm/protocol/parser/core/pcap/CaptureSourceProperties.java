@@ -0,0 +1,206 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  单个抓包源配置，网卡通过名称或网卡上的 ip 地址指定，同时配置时以名称为准，均未配置则使用默认网卡
+ */
+public class CaptureSourceProperties {
+
+    /**
+     *  未配置名称、网卡名称与地址时的抓包源名称
+     */
+    public static final String DEFAULT_SOURCE_NAME = "default";
+
+    /**
+     *  抓包源名称，用于线程名称与指标标签，为空则使用网卡名称或地址
+     */
+    private String name;
+
+    /**
+     *  网卡名称，如 bond0、eth1
+     */
+    private String interfaceName;
+
+    /**
+     *  网卡上的 ip 地址
+     */
+    private String address;
+
+    /**
+     *  broker 监听端口，如内部、外部、副本同步 listener 的端口，启用协议自动识别时可为空
+     */
+    private List<Integer> ports = new ArrayList<>();
+
+    /**
+     *  broker ip 地址，为空则抓取网卡上全部主机的指定端口流量
+     */
+    private List<String> brokerIps = new ArrayList<>();
+
+    /**
+     *  单个数据包最大捕获字节数
+     */
+    private int snaplen = 65536;
+
+    /**
+     *  内核抓包缓冲区大小（字节），突发流量下缓冲区不足是内核丢包的主要原因
+     */
+    private int bufferSize = 256 * 1024 * 1024;
+
+    /**
+     *  单次批量读取最多回调的数据包数量
+     */
+    private int dispatchBatchSize = 512;
+
+    /**
+     *  是否启用立即模式，数据包到达后立即交付，不等待缓冲区填满或超时
+     */
+    private boolean immediateMode = true;
+
+    /**
+     *  读取数据包的超时时间（毫秒），非立即模式下为内核缓冲数据包的最长时间，无数据包时批量读取在超时后返回
+     */
+    private int timeoutMillis = 100;
+
+    /**
+     *  是否启用混杂模式
+     */
+    private boolean promiscuous = true;
+
+    /**
+     *  获取抓包源名称
+     * @return 返回配置的名称，未配置则返回网卡名称或地址，均未配置则返回 {@link #DEFAULT_SOURCE_NAME}
+     */
+    public String sourceName() {
+        if (name != null && !name.isEmpty()) {
+            return name;
+        }
+        if (interfaceName != null && !interfaceName.isEmpty()) {
+            return interfaceName;
+        }
+        return address != null && !address.isEmpty() ? address : DEFAULT_SOURCE_NAME;
+    }
+
+
+    /**
+     *  生成抓包源的 BPF 过滤表达式，仅抓取 broker 端口与 broker ip 的 tcp 流量
+     * @return 返回过滤表达式
+     */
+    public String bpfFilter() {
+        return bpfFilter(false);
+    }
+
+
+    /**
+     *  生成抓包源的 BPF 过滤表达式
+     * @param allPorts 是否抓取全部端口，启用协议自动识别时为 true，仅按 broker ip 过滤
+     * @return 返回过滤表达式
+     */
+    public String bpfFilter(boolean allPorts) {
+        StringBuilder filter = new StringBuilder("tcp");
+        if (!allPorts && !ports.isEmpty()) {
+            filter.append(" and (");
+            for (int i = 0; i < ports.size(); i++) {
+                filter.append(i == 0 ? "" : " or ").append("port ").append(ports.get(i));
+            }
+            filter.append(')');
+        }
+        if (!brokerIps.isEmpty()) {
+            filter.append(" and (");
+            for (int i = 0; i < brokerIps.size(); i++) {
+                filter.append(i == 0 ? "" : " or ").append("host ").append(brokerIps.get(i));
+            }
+            filter.append(')');
+        }
+        return filter.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    public void setInterfaceName(String interfaceName) {
+        this.interfaceName = interfaceName;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public List<Integer> getPorts() {
+        return ports;
+    }
+
+    public void setPorts(List<Integer> ports) {
+        this.ports = ports;
+    }
+
+    public List<String> getBrokerIps() {
+        return brokerIps;
+    }
+
+    public void setBrokerIps(List<String> brokerIps) {
+        this.brokerIps = brokerIps;
+    }
+
+    public int getSnaplen() {
+        return snaplen;
+    }
+
+    public void setSnaplen(int snaplen) {
+        this.snaplen = snaplen;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getDispatchBatchSize() {
+        return dispatchBatchSize;
+    }
+
+    public void setDispatchBatchSize(int dispatchBatchSize) {
+        this.dispatchBatchSize = dispatchBatchSize;
+    }
+
+    public boolean isImmediateMode() {
+        return immediateMode;
+    }
+
+    public void setImmediateMode(boolean immediateMode) {
+        this.immediateMode = immediateMode;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isPromiscuous() {
+        return promiscuous;
+    }
+
+    public void setPromiscuous(boolean promiscuous) {
+        this.promiscuous = promiscuous;
+    }
+}
@@ -0,0 +1,98 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+/**
+ *  抓包溢出落盘配置，前缀为 protocol.capture.spill
+ */
+public class CaptureSpillProperties {
+
+    /**
+     *  是否启用溢出落盘，未启用时解析队列已满直接丢弃数据包
+     */
+    private boolean enabled = false;
+
+    /**
+     *  落盘文件目录，启动时清理目录中上次运行遗留的落盘文件
+     */
+    private String directory = "data/spill";
+
+    /**
+     *  单个落盘文件大小上限（字节）
+     */
+    private long segmentBytes = 64 * 1024 * 1024L;
+
+    /**
+     *  最多保留的落盘文件数量，超过后删除最早的文件，其中的数据包记为丢弃
+     */
+    private int maxSegments = 16;
+
+    /**
+     *  解析队列使用率达到该比例时开始落盘
+     */
+    private double highWatermark = 0.8;
+
+    /**
+     *  解析队列使用率低于该比例时回放落盘的数据包
+     */
+    private double lowWatermark = 0.5;
+
+    /**
+     *  抓包线程与落盘线程之间的队列容量，已满时丢弃数据包
+     */
+    private int handoffCapacity = 65536;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    public double getHighWatermark() {
+        return highWatermark;
+    }
+
+    public void setHighWatermark(double highWatermark) {
+        this.highWatermark = highWatermark;
+    }
+
+    public double getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public void setLowWatermark(double lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+
+    public int getHandoffCapacity() {
+        return handoffCapacity;
+    }
+
+    public void setHandoffCapacity(int handoffCapacity) {
+        this.handoffCapacity = handoffCapacity;
+    }
+}
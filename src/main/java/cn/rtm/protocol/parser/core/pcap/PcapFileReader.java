@@ -0,0 +1,127 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import java.io.*;
+import java.time.Instant;
+
+/**
+ *  pcap 文件读取，纯 java 实现，不依赖 libpcap，用于离线回放抓包文件
+ *
+ * <ul>
+ * <li> 支持微秒精度（magic 0xa1b2c3d4）与纳秒精度（magic 0xa1b23c4d）文件，字节序根据 magic 自动识别
+ * <li> 方法 {@link #read()} 依次读取数据包，读取到文件末尾返回 null，末尾不完整的数据包视为文件结束
+ * <li> 不支持 pcapng 格式
+ * </ul>
+ */
+public class PcapFileReader implements Closeable {
+
+    /**
+     *  单个数据包长度上限，超过则认为文件已损坏
+     */
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private final DataInputStream in;
+
+    private final boolean littleEndian;
+
+    private final boolean nanosecond;
+
+    private final int snapLen;
+
+    private final int linkType;
+
+    private final byte[] recordHeader = new byte[PcapFileWriter.RECORD_HEADER_SIZE];
+
+    private long readPackets;
+
+    public PcapFileReader(File file) throws IOException {
+        this(new BufferedInputStream(new FileInputStream(file), 1 << 20));
+    }
+
+    public PcapFileReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        byte[] header = new byte[PcapFileWriter.GLOBAL_HEADER_SIZE];
+        this.in.readFully(header);
+        int magicLE = ByteUtils.readUnsignedIntLE(header, 0);
+        int magicBE = ByteUtils.readIntBE(header, 0);
+        if (magicLE == PcapFileWriter.MAGIC_MICROS || magicLE == PcapFileWriter.MAGIC_NANOS) {
+            this.littleEndian = true;
+            this.nanosecond = magicLE == PcapFileWriter.MAGIC_NANOS;
+        } else if (magicBE == PcapFileWriter.MAGIC_MICROS || magicBE == PcapFileWriter.MAGIC_NANOS) {
+            this.littleEndian = false;
+            this.nanosecond = magicBE == PcapFileWriter.MAGIC_NANOS;
+        } else {
+            in.close();
+            throw new IOException("不支持的 pcap 文件格式，magic：0x" + Integer.toHexString(magicBE));
+        }
+        this.snapLen = readInt(header, 16);
+        this.linkType = readInt(header, 20);
+    }
+
+
+    /**
+     *  读取下一个数据包
+     * @return 返回数据包，读取到文件末尾返回 null
+     */
+    public PcapRecord read() throws IOException {
+        if (!readFully(recordHeader)) {
+            return null;
+        }
+        long seconds = readInt(recordHeader, 0) & 0xffffffffL;
+        int fraction = readInt(recordHeader, 4);
+        int capturedLength = readInt(recordHeader, 8);
+        int originalLength = readInt(recordHeader, 12);
+        if (capturedLength < 0 || capturedLength > MAX_RECORD_LENGTH) {
+            throw new IOException("数据包长度无效：" + capturedLength + "，第 " + (readPackets + 1) + " 个数据包");
+        }
+        byte[] data = new byte[capturedLength];
+        if (!readFully(data)) {
+            return null;
+        }
+        readPackets++;
+        Instant timestamp = Instant.ofEpochSecond(seconds, nanosecond ? fraction : fraction * 1000L);
+        return new PcapRecord(timestamp, data, originalLength);
+    }
+
+
+    /**
+     *  读取指定长度的数据，读取到文件末尾返回 false
+     */
+    private boolean readFully(byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+
+    private int readInt(byte[] buffer, int offset) {
+        return littleEndian ? ByteUtils.readUnsignedIntLE(buffer, offset) : ByteUtils.readIntBE(buffer, offset);
+    }
+
+    public boolean isNanosecond() {
+        return nanosecond;
+    }
+
+    public int getSnapLen() {
+        return snapLen;
+    }
+
+    public int getLinkType() {
+        return linkType;
+    }
+
+    public long getReadPackets() {
+        return readPackets;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,115 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import java.io.*;
+import java.time.Instant;
+
+/**
+ *  pcap 文件写入，纯 java 实现，不依赖 libpcap，文件格式为纳秒精度的 pcap（magic 0xa1b23c4d），链路类型为以太网，
+ *  可直接使用 wireshark、tcpdump 打开
+ *
+ * <ul>
+ * <li> 文件头：magic(int32) versionMajor(int16) versionMinor(int16) thisZone(int32) sigFigs(int32) snapLen(int32) linkType(int32)
+ * <li> 数据包头：tsSec(int32) tsNanos(int32) capturedLength(int32) originalLength(int32)，随后为数据包内容
+ * <li> 采用小端字节序写入
+ * </ul>
+ */
+public class PcapFileWriter implements Closeable, Flushable {
+
+    /**
+     *  纳秒精度 pcap 文件 magic
+     */
+    public static final int MAGIC_NANOS = 0xa1b23c4d;
+
+    /**
+     *  微秒精度 pcap 文件 magic
+     */
+    public static final int MAGIC_MICROS = 0xa1b2c3d4;
+
+    public static final int LINK_TYPE_ETHERNET = 1;
+
+    public static final int GLOBAL_HEADER_SIZE = 24;
+
+    public static final int RECORD_HEADER_SIZE = 16;
+
+    public static final int DEFAULT_SNAP_LEN = 262144;
+
+    private final OutputStream out;
+
+    private final int snapLen;
+
+    private final byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+
+    private long writtenPackets;
+
+    private long writtenBytes;
+
+    public PcapFileWriter(File file) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(file), 1 << 20), DEFAULT_SNAP_LEN);
+    }
+
+    public PcapFileWriter(OutputStream out, int snapLen) throws IOException {
+        this.out = out;
+        this.snapLen = snapLen;
+        byte[] header = new byte[GLOBAL_HEADER_SIZE];
+        ByteUtils.writeUnsignedIntLE(header, 0, MAGIC_NANOS);
+        // version 2.4
+        ByteUtils.writeUnsignedIntLE(header, 4, 2 | (4 << 16));
+        ByteUtils.writeUnsignedIntLE(header, 8, 0);
+        ByteUtils.writeUnsignedIntLE(header, 12, 0);
+        ByteUtils.writeUnsignedIntLE(header, 16, snapLen);
+        ByteUtils.writeUnsignedIntLE(header, 20, LINK_TYPE_ETHERNET);
+        out.write(header);
+        writtenBytes = GLOBAL_HEADER_SIZE;
+    }
+
+
+    /**
+     *  写入一个数据包
+     * @param timestamp 抓包时间
+     * @param data 数据包内容，从链路层开始
+     */
+    public void write(Instant timestamp, byte[] data) throws IOException {
+        write(timestamp.getEpochSecond(), timestamp.getNano(), data, 0, data.length);
+    }
+
+
+    /**
+     *  写入一个数据包，超过 snapLen 的部分被截断
+     * @param epochSecond 抓包时间秒数
+     * @param nanos 抓包时间纳秒部分
+     * @param data 数据包内容，从链路层开始
+     * @param offset 数据包起始位置
+     * @param length 数据包长度
+     */
+    public void write(long epochSecond, int nanos, byte[] data, int offset, int length) throws IOException {
+        int capturedLength = Math.min(length, snapLen);
+        ByteUtils.writeUnsignedIntLE(recordHeader, 0, (int) epochSecond);
+        ByteUtils.writeUnsignedIntLE(recordHeader, 4, nanos);
+        ByteUtils.writeUnsignedIntLE(recordHeader, 8, capturedLength);
+        ByteUtils.writeUnsignedIntLE(recordHeader, 12, length);
+        out.write(recordHeader);
+        out.write(data, offset, capturedLength);
+        writtenPackets++;
+        writtenBytes += RECORD_HEADER_SIZE + capturedLength;
+    }
+
+    public long getWrittenPackets() {
+        return writtenPackets;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,50 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import java.time.Instant;
+
+/**
+ *  pcap 文件中的单个数据包
+ */
+public class PcapRecord {
+
+    /**
+     *  抓包时间
+     */
+    private final Instant timestamp;
+
+    /**
+     *  抓取的数据包内容，从链路层开始，超过 snapLen 的部分已被截断
+     */
+    private final byte[] data;
+
+    /**
+     *  数据包在网络上的原始长度
+     */
+    private final int originalLength;
+
+    public PcapRecord(Instant timestamp, byte[] data, int originalLength) {
+        this.timestamp = timestamp;
+        this.data = data;
+        this.originalLength = originalLength;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOriginalLength() {
+        return originalLength;
+    }
+
+    /**
+     *  判断数据包是否因 snapLen 限制被截断
+     * @return 返回 true 则被截断，反之 false
+     */
+    public boolean isTruncated() {
+        return data.length < originalLength;
+    }
+}
@@ -0,0 +1,395 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  数据包溢出落盘环，解析能力不足时暂存数据包，负载下降后按写入顺序读出，以延迟代替丢包
+ *
+ * <ul>
+ * <li> {@link #offer(Instant, byte[])} 仅放入内存队列，不阻塞抓包线程，由后台落盘线程顺序写入 pcap 文件
+ * <li> 落盘文件达到 {@link CaptureSpillProperties#getSegmentBytes()}、写入空闲或打开超过 {@link #SEAL_INTERVAL_MILLIS} 后关闭，
+ * 关闭后的文件才可被 {@link #poll()} 读取，读取完成后删除
+ * <li> 关闭的文件超过 {@link CaptureSpillProperties#getMaxSegments()} 时删除最早的文件，磁盘占用有上限
+ * <li> {@link #pendingPackets()} 为已放入但尚未回放完成的数据包数，大于 0 时调用方应继续落盘，保证数据包顺序
+ * <li> 关闭的文件全部回放后，{@link #poll()} 通知落盘线程立即关闭正在写入的文件并暂停落盘，之后直接从内存队列读取，
+ * 内存队列读空时恢复落盘，持续抓包时 {@link #pendingPackets()} 也能回到 0，调用方随之恢复直接入队
+ * <li> 仅支持以太网链路类型
+ * </ul>
+ */
+public class PcapSpillRing implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PcapSpillRing.class);
+
+    private static final String SEGMENT_PREFIX = "spill-";
+
+    private static final String SEGMENT_SUFFIX = ".pcap";
+
+    /**
+     *  落盘文件最长打开时间，持续少量落盘时保证数据包可被及时回放
+     */
+    static final long SEAL_INTERVAL_MILLIS = 1000L;
+
+    /**
+     *  落盘线程写入落盘文件
+     */
+    private static final int SPILLING = 0;
+
+    /**
+     *  回放线程请求排空，等待落盘线程关闭正在写入的文件
+     */
+    private static final int DRAINING = 1;
+
+    /**
+     *  落盘线程已暂停，内存队列由回放线程直接读取
+     */
+    private static final int DRAINED = 2;
+
+    private final CaptureSpillProperties properties;
+
+    private final File directory;
+
+    private final BlockingQueue<PcapRecord> handoff;
+
+    /**
+     *  已关闭、等待回放的落盘文件，按写入顺序排列
+     */
+    private final Deque<Segment> sealed = new ArrayDeque<>();
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     *  正在写入的落盘文件，仅由落盘线程访问
+     */
+    private Segment writing;
+
+    private PcapFileWriter writer;
+
+    /**
+     *  正在回放的落盘文件，仅由回放线程访问
+     */
+    private Segment reading;
+
+    private PcapFileReader reader;
+
+    private long nextSegmentId;
+
+    /**
+     *  落盘状态，回放线程负责 {@link #SPILLING} 到 {@link #DRAINING}、{@link #DRAINED} 到 {@link #SPILLING} 的切换，
+     *  落盘线程负责 {@link #DRAINING} 到 {@link #DRAINED} 的切换，同一时刻内存队列只有一个读取线程
+     */
+    private volatile int state = SPILLING;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    public PcapSpillRing(CaptureSpillProperties properties) throws IOException {
+        this.properties = properties;
+        this.directory = new File(properties.getDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建落盘目录：" + directory.getAbsolutePath());
+        }
+        File[] leftovers = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                deleteQuietly(leftover);
+            }
+        }
+        this.handoff = new ArrayBlockingQueue<>(Math.max(1, properties.getHandoffCapacity()));
+        ProtocolMetrics.gauge(ProtocolMetrics.CAPTURE_SPILL_PENDING, pending, AtomicLong::get);
+        ProtocolMetrics.functionCounter(ProtocolMetrics.CAPTURE_SPILL_PACKETS, spilled, AtomicLong::get, "action", "spilled");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.CAPTURE_SPILL_PACKETS, replayed, AtomicLong::get, "action", "replayed");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.CAPTURE_SPILL_PACKETS, dropped, AtomicLong::get, "action", "dropped");
+    }
+
+
+    /**
+     *  启动落盘线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "spill-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+
+    /**
+     *  放入待落盘的数据包，不阻塞
+     * @param timestamp 抓包时间
+     * @param data 数据包内容，从链路层开始
+     * @return 返回 false 则落盘队列已满，数据包未被接收
+     */
+    public boolean offer(Instant timestamp, byte[] data) {
+        pending.incrementAndGet();
+        if (!handoff.offer(new PcapRecord(timestamp, data, data.length))) {
+            pending.decrementAndGet();
+            return false;
+        }
+        spilled.incrementAndGet();
+        return true;
+    }
+
+
+    /**
+     *  读取下一个落盘的数据包，仅允许单个线程调用，处理完成后须调用 {@link #markReplayed()}
+     *
+     * <p> 关闭的文件全部读取后，若仍有未回放的数据包则请求落盘线程关闭正在写入的文件，落盘线程暂停后直接读取内存队列
+     * @return 返回数据包，暂无可读取的数据包时返回 null
+     */
+    public PcapRecord poll() throws IOException {
+        while (true) {
+            if (reader == null) {
+                synchronized (sealed) {
+                    reading = sealed.pollFirst();
+                }
+                if (reading == null) {
+                    return pollHandoff();
+                }
+                reader = new PcapFileReader(reading.file);
+            }
+            PcapRecord record = reader.read();
+            if (record != null) {
+                return record;
+            }
+            reader.close();
+            reader = null;
+            deleteQuietly(reading.file);
+            reading = null;
+        }
+    }
+
+
+    /**
+     *  关闭的文件读取完成后推进排空状态，落盘线程暂停时直接读取内存队列，读空后恢复落盘
+     */
+    private PcapRecord pollHandoff() {
+        int current = state;
+        if (current == SPILLING) {
+            if (pending.get() > 0) {
+                state = DRAINING;
+            }
+            return null;
+        }
+        if (current == DRAINING) {
+            return null;
+        }
+        PcapRecord record = handoff.poll();
+        if (record == null) {
+            state = SPILLING;
+        }
+        return record;
+    }
+
+
+    /**
+     *  标记 {@link #poll()} 读取的数据包已交给解析流水线
+     */
+    public void markReplayed() {
+        pending.decrementAndGet();
+        replayed.incrementAndGet();
+    }
+
+
+    /**
+     *  获取已放入但尚未回放完成的数据包数
+     * @return 返回数据包数
+     */
+    public long pendingPackets() {
+        return pending.get();
+    }
+
+
+    private void runWriter() {
+        while (running || !handoff.isEmpty()) {
+            if (state != SPILLING) {
+                // 排空期间内存队列由回放线程读取，关闭正在写入的文件后暂停落盘
+                if (state == DRAINING) {
+                    sealQuietly();
+                    state = DRAINED;
+                }
+                if (!running) {
+                    break;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            PcapRecord record;
+            try {
+                record = handoff.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (record != null) {
+                try {
+                    write(record);
+                } catch (IOException e) {
+                    log.error("写入落盘文件出错！", e);
+                    pending.decrementAndGet();
+                    dropped.incrementAndGet();
+                    discardWriting();
+                    continue;
+                }
+            }
+            // 写入空闲、文件已满或打开时间过长时关闭文件，使其可被回放
+            if (writing != null && (record == null || writer.getWrittenBytes() >= properties.getSegmentBytes()
+                    || System.currentTimeMillis() - writing.openedAt >= SEAL_INTERVAL_MILLIS)) {
+                sealQuietly();
+            }
+        }
+        sealQuietly();
+    }
+
+
+    private void write(PcapRecord record) throws IOException {
+        if (writer == null) {
+            writing = new Segment(new File(directory, SEGMENT_PREFIX + (nextSegmentId++) + SEGMENT_SUFFIX));
+            writer = new PcapFileWriter(writing.file);
+        }
+        writer.write(record.getTimestamp(), record.getData());
+        writing.packets++;
+    }
+
+
+    private void sealQuietly() {
+        try {
+            seal();
+        } catch (IOException e) {
+            log.error("关闭落盘文件出错！", e);
+            discardWriting();
+        }
+    }
+
+
+    /**
+     *  关闭正在写入的文件使其可被回放，超过文件数量上限时删除最早的文件
+     */
+    private void seal() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.close();
+        writer = null;
+        Segment evicted = null;
+        synchronized (sealed) {
+            sealed.addLast(writing);
+            if (sealed.size() > Math.max(1, properties.getMaxSegments())) {
+                evicted = sealed.pollFirst();
+            }
+        }
+        writing = null;
+        if (evicted != null) {
+            pending.addAndGet(-evicted.packets);
+            dropped.addAndGet(evicted.packets);
+            deleteQuietly(evicted.file);
+            log.warn("落盘文件数量超过上限，丢弃最早的落盘文件：{}，数据包数：{}", evicted.file.getName(), evicted.packets);
+        }
+    }
+
+
+    /**
+     *  写入出错时丢弃正在写入的文件
+     */
+    private void discardWriting() {
+        if (writing == null) {
+            return;
+        }
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            // 文件随后删除
+        }
+        pending.addAndGet(-writing.packets);
+        dropped.addAndGet(writing.packets);
+        deleteQuietly(writing.file);
+        writer = null;
+        writing = null;
+    }
+
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("删除落盘文件失败：{}", file.getAbsolutePath());
+        }
+    }
+
+
+    public long getSpilledPackets() {
+        return spilled.get();
+    }
+
+    public long getReplayedPackets() {
+        return replayed.get();
+    }
+
+    public long getDroppedPackets() {
+        return dropped.get();
+    }
+
+
+    /**
+     *  停止落盘线程，已放入的数据包写入文件后退出
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+
+    /**
+     *  落盘文件
+     */
+    private static final class Segment {
+
+        private final File file;
+
+        private final long openedAt = System.currentTimeMillis();
+
+        private long packets;
+
+        private Segment(File file) {
+            this.file = file;
+        }
+    }
+}
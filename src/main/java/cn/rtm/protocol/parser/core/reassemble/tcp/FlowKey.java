@@ -0,0 +1,121 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.core.util.IpAddresses;
+
+/**
+ *  与方向无关的 tcp 连接标识，按 {@link IpAddresses} 的 128 位地址与端口比较，每个数据包仅创建一个对象，不生成字符串
+ *
+ * <ul>
+ * <li> 端点 A 为地址与端口按无符号数比较较小的一端，同一连接的双向数据包生成相等的标识
+ * <li> 哈希值在创建时计算，字符串形式 ip:port-ip:port 仅在首次调用 {@link #toString()} 时生成
+ * </ul>
+ */
+public final class FlowKey {
+
+    private final long highA;
+
+    private final long lowA;
+
+    private final int portA;
+
+    private final long highB;
+
+    private final long lowB;
+
+    private final int portB;
+
+    private final int hash;
+
+    private String text;
+
+    private FlowKey(long highA, long lowA, int portA, long highB, long lowB, int portB) {
+        this.highA = highA;
+        this.lowA = lowA;
+        this.portA = portA;
+        this.highB = highB;
+        this.lowB = lowB;
+        this.portB = portB;
+        int h = Long.hashCode(highA);
+        h = 31 * h + Long.hashCode(lowA);
+        h = 31 * h + portA;
+        h = 31 * h + Long.hashCode(highB);
+        h = 31 * h + Long.hashCode(lowB);
+        this.hash = 31 * h + portB;
+    }
+
+
+    /**
+     *  生成数据包所属连接的标识
+     * @param srcHigh 源地址高 64 位
+     * @param srcLow 源地址低 64 位
+     * @param srcPort 源端口
+     * @param destHigh 目标地址高 64 位
+     * @param destLow 目标地址低 64 位
+     * @param destPort 目标端口
+     * @return 返回连接标识
+     */
+    public static FlowKey of(long srcHigh, long srcLow, int srcPort, long destHigh, long destLow, int destPort) {
+        if (compare(srcHigh, srcLow, srcPort, destHigh, destLow, destPort) <= 0) {
+            return new FlowKey(srcHigh, srcLow, srcPort, destHigh, destLow, destPort);
+        }
+        return new FlowKey(destHigh, destLow, destPort, srcHigh, srcLow, srcPort);
+    }
+
+
+    /**
+     *  判断指定端点是否为端点 A
+     * @return 返回 true 则是
+     */
+    public boolean isEndpointA(long high, long low, int port) {
+        return high == highA && low == lowA && port == portA;
+    }
+
+
+    /**
+     *  计算连接所属的采样哈希桶，与方向无关
+     * @return 返回哈希桶，见 {@link FlowSampler#bucketOf(int, int, int, int)}
+     */
+    public int samplingBucket() {
+        return FlowSampler.bucketOf(IpAddresses.toInt(highA, lowA), portA, IpAddresses.toInt(highB, lowB), portB);
+    }
+
+
+    private static int compare(long highA, long lowA, int portA, long highB, long lowB, int portB) {
+        int result = Long.compareUnsigned(highA, highB);
+        if (result == 0) {
+            result = Long.compareUnsigned(lowA, lowB);
+        }
+        return result != 0 ? result : Integer.compare(portA, portB);
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FlowKey)) {
+            return false;
+        }
+        FlowKey other = (FlowKey) o;
+        return hash == other.hash && highA == other.highA && lowA == other.lowA && portA == other.portA
+                && highB == other.highB && lowB == other.lowB && portB == other.portB;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+
+    @Override
+    public String toString() {
+        String value = text;
+        if (value == null) {
+            value = IpAddresses.format(highA, lowA) + ":" + portA + "-" + IpAddresses.format(highB, lowB) + ":" + portB;
+            text = value;
+        }
+        return value;
+    }
+}
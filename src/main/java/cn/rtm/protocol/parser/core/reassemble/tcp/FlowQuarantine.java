@@ -0,0 +1,75 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.Instant;
+
+/**
+ *  解析持续失败连接的隔离策略，失败计分保存在 {@link TcpFlow} 中，由 {@link TcpPacketReassemble} 在查找连接表后判断是否跳过
+ *
+ * <ul>
+ * <li> 连续解析失败达到 {@link FlowQuarantineProperties#getFailureThreshold()} 次后隔离连接，隔离期间数据包仅查找连接表后即返回，
+ * 不做重组与解析，适用于 TLS、SASL 认证数据、非标准客户端等每个数据包都会解析失败的连接
+ * <li> 隔离到期后恢复解析，此时一次失败即重新隔离，隔离时长按 {@link FlowQuarantineProperties#getBackoffMillis()} 翻倍，
+ * 最长为 {@link FlowQuarantineProperties#getMaxBackoffMillis()}，任意一次解析成功后清空失败计分
+ * <li> 隔离状态随连接移除而释放
+ * </ul>
+ */
+public class FlowQuarantine {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final int failureThreshold;
+
+    private final long backoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final Counter quarantinedFlows = ProtocolMetrics.counter(ProtocolMetrics.QUARANTINE_FLOWS);
+
+    private final Counter skippedPackets = ProtocolMetrics.counter(ProtocolMetrics.QUARANTINE_SKIPPED_PACKETS);
+
+    public FlowQuarantine(FlowQuarantineProperties properties) {
+        this.failureThreshold = Math.max(1, properties.getFailureThreshold());
+        this.backoffMillis = Math.max(1, properties.getBackoffMillis());
+        this.maxBackoffMillis = Math.max(this.backoffMillis, properties.getMaxBackoffMillis());
+    }
+
+
+    /**
+     *  判断连接是否处于隔离期，是则记为跳过的数据包
+     * @param flow 数据包所属连接
+     * @return 返回 true 则跳过该数据包
+     */
+    boolean isBypassed(TcpFlow flow) {
+        if (!flow.isQuarantined()) {
+            return false;
+        }
+        skippedPackets.increment();
+        return true;
+    }
+
+
+    /**
+     *  记录连接的一次解析失败，达到阈值后隔离连接
+     * @param flow 数据包所属连接
+     */
+    void recordFailure(TcpFlow flow) {
+        long until = flow.recordParseFailure(System.currentTimeMillis(), failureThreshold, backoffMillis, maxBackoffMillis);
+        if (until > 0) {
+            quarantinedFlows.increment();
+            log.warn("连接 {} 连续解析失败，第 {} 次隔离至 {}", flow.getFlowKey(), flow.getQuarantineCount(), Instant.ofEpochMilli(until));
+        }
+    }
+
+
+    /**
+     *  记录连接的一次解析成功，清空失败计分
+     * @param flow 数据包所属连接
+     */
+    void recordSuccess(TcpFlow flow) {
+        flow.recordParseSuccess();
+    }
+}
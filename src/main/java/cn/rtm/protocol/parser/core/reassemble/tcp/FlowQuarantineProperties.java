@@ -0,0 +1,62 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  解析持续失败连接的隔离配置，前缀为 protocol.quarantine
+ */
+@ConfigurationProperties(prefix = "protocol.quarantine")
+public class FlowQuarantineProperties {
+
+    /**
+     *  是否隔离持续解析失败的连接
+     */
+    private boolean enabled = true;
+
+    /**
+     *  连续解析失败达到该数量后隔离连接
+     */
+    private int failureThreshold = 8;
+
+    /**
+     *  首次隔离时长，单位毫秒，之后每次重新隔离时长翻倍
+     */
+    private long backoffMillis = 60 * 1000L;
+
+    /**
+     *  最大隔离时长，单位毫秒
+     */
+    private long maxBackoffMillis = 30 * 60 * 1000L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    public void setBackoffMillis(long backoffMillis) {
+        this.backoffMillis = backoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+}
@@ -0,0 +1,119 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+/**
+ *  tcp 连接级别一致性采样，解析能力不足以处理全部流量时按连接整体采样，保证同一连接的请求-响应、fetch session 完整
+ *
+ * <ul>
+ * <li> 连接四元组哈希为 (srcIp + dstIp + srcPort + dstPort) * {@link #HASH_MULTIPLIER} 的高 16 位（32 位无符号运算），
+ * 与方向无关，哈希值小于采样阈值的连接被采样
+ * <li> 哈希仅使用 BPF 支持的加法、乘法、移位运算，{@link #bpfFilter()} 生成等价的 BPF 过滤表达式，抓包端支持时可在内核中丢弃未采样的连接，
+ * 与 {@link TcpPacketReassemble} 的采样结果一致
+ * <li> 是否采样在连接创建时按当前采样阈值确定并记录在 {@link TcpFlow} 中，运行期间调整采样率仅作用于新建连接，
+ * 已有连接不会在中途停止或开始解析
+ * <li> 采样连接提取的数据在扩展字段 {@link #SAMPLING_RATE_KEY} 中记录连接创建时的采样率，下游按 1 / samplingRate 还原总量
+ * </ul>
+ */
+public class FlowSampler {
+
+    /**
+     *  哈希桶数量，即采样率精度为 1/65536
+     */
+    public static final int BUCKETS = 1 << 16;
+
+    /**
+     *  乘法哈希系数（黄金分割数），使低位变化较小的四元组均匀分布
+     */
+    static final int HASH_MULTIPLIER = 0x9e3779b1;
+
+    /**
+     *  采样连接提取的数据在扩展字段中记录采样率的 key
+     */
+    public static final String SAMPLING_RATE_KEY = "samplingRate";
+
+    /**
+     *  采样阈值，哈希值小于该值的连接被采样
+     */
+    private volatile int threshold;
+
+    /**
+     * @param rate 采样率，取值 (0, 1]
+     */
+    public FlowSampler(double rate) {
+        setRate(rate);
+    }
+
+
+    /**
+     *  调整采样率，仅作用于之后新建的连接
+     * @param rate 采样率，取值 (0, 1]
+     */
+    public void setRate(double rate) {
+        if (!(rate > 0 && rate <= 1)) {
+            throw new IllegalArgumentException("采样率取值范围为 (0, 1]：" + rate);
+        }
+        this.threshold = Math.max(1, (int) Math.round(rate * BUCKETS));
+    }
+
+
+    /**
+     *  获取实际生效的采样率，即采样阈值 / 哈希桶数量
+     * @return 返回采样率
+     */
+    public double getRate() {
+        return (double) threshold / BUCKETS;
+    }
+
+
+    /**
+     *  是否采样全部连接
+     * @return 返回 true 则采样全部连接
+     */
+    public boolean isSamplingAll() {
+        return threshold >= BUCKETS;
+    }
+
+
+    /**
+     *  判断连接是否被采样
+     * @param srcIp 源 ip，由 {@link cn.rtm.protocol.parser.core.util.IpAddresses#toInt(long, long)} 转换的整数，ipv4 地址即网络字节序转换的整数
+     * @param srcPort 源端口
+     * @param destIp 目标 ip
+     * @param destPort 目标端口
+     * @return 返回 true 则被采样
+     */
+    public boolean isSampled(int srcIp, int srcPort, int destIp, int destPort) {
+        return isSampled(bucketOf(srcIp, srcPort, destIp, destPort));
+    }
+
+
+    /**
+     *  判断哈希桶对应的连接是否被采样
+     * @param bucket 连接所属的哈希桶，由 {@link #bucketOf(int, int, int, int)} 计算
+     * @return 返回 true 则被采样
+     */
+    public boolean isSampled(int bucket) {
+        return bucket < threshold;
+    }
+
+
+    /**
+     *  计算连接所属的哈希桶，与方向无关
+     * @return 返回哈希桶，取值 [0, {@link #BUCKETS})
+     */
+    public static int bucketOf(int srcIp, int srcPort, int destIp, int destPort) {
+        return ((srcIp + destIp + srcPort + destPort) * HASH_MULTIPLIER) >>> 16;
+    }
+
+
+    /**
+     *  生成与当前采样率等价的 BPF 过滤表达式，仅对 ipv4 数据包生效，ipv6 数据包全部放行，由 tcp 重组组件完成采样
+     * @return 返回过滤表达式，采样全部连接时返回 null
+     */
+    public String bpfFilter() {
+        if (isSamplingAll()) {
+            return null;
+        }
+        return "(ip6 or (((ip[12:4] + ip[16:4] + tcp[0:2] + tcp[2:2]) * 0x" + Integer.toHexString(HASH_MULTIPLIER)
+                + ") >> 16) < " + threshold + ")";
+    }
+}
@@ -0,0 +1,36 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  tcp 连接采样配置，前缀为 protocol.sampling
+ */
+@ConfigurationProperties(prefix = "protocol.sampling")
+public class FlowSamplingProperties {
+
+    /**
+     *  连接采样率，取值 (0, 1]，为 1 则解析全部连接，负载降级期间新建连接可能临时按更低的采样率采样
+     */
+    private double rate = 1.0;
+
+    /**
+     *  是否将采样条件追加到抓包 BPF 过滤表达式，在内核中丢弃未采样连接的数据包
+     */
+    private boolean bpfPushdown = true;
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public boolean isBpfPushdown() {
+        return bpfPushdown;
+    }
+
+    public void setBpfPushdown(boolean bpfPushdown) {
+        this.bpfPushdown = bpfPushdown;
+    }
+}
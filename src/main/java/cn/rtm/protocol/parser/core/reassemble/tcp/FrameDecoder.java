@@ -0,0 +1,25 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  协议帧切分策略，由 {@link TcpPacketReassemble} 在合并分片后调用，判断缓存数据是否构成完整的协议帧，
+ *  重组组件仅维护连接与分片缓存，帧长度的解析与校验由各协议实现
+ */
+public interface FrameDecoder {
+
+
+    /**
+     *  判断合并后的分片数据是否构成完整的协议帧，实现类不得修改缓冲区的位置与内容
+     * @param buffer 同一数据包已接收的全部分片内容
+     * @return 返回判断结果
+     */
+    FrameState decode(ByteBuffer buffer);
+
+
+    /**
+     *  协议帧头部长度，即 {@link cn.rtm.protocol.parser.ProtocolMessage} 解析时跳过的长度前缀字节数，无长度前缀的协议为 0
+     * @return 返回帧头部字节数
+     */
+    int headerLength();
+}
@@ -0,0 +1,22 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+/**
+ *  {@link FrameDecoder} 对已缓存数据的判断结果
+ */
+public enum FrameState {
+
+    /**
+     *  缓存数据恰好为完整的协议帧，可交给协议解析
+     */
+    COMPLETE,
+
+    /**
+     *  缓存数据尚不完整，继续等待后续分片
+     */
+    INCOMPLETE,
+
+    /**
+     *  缓存数据不符合协议帧格式，丢弃缓存并记为所属连接的一次解析失败
+     */
+    INVALID
+}
@@ -0,0 +1,56 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  4 字节大端长度前缀的协议帧切分策略，如 kafka，长度前缀为不包含前缀本身的帧长度
+ *
+ * <ul>
+ * <li> 已接收字节数减去 4 等于长度前缀时为完整帧，不足时继续等待后续分片
+ * <li> 长度前缀小于 0 或超过 {@link #maxFrameBytes} 时视为非本协议数据
+ * </ul>
+ */
+public class LengthPrefixedFrameDecoder implements FrameDecoder {
+
+    /**
+     *  长度前缀字节数
+     */
+    public static final int LENGTH_PREFIX_BYTES = 4;
+
+    /**
+     *  默认帧长度上限，与 kafka socket.request.max.bytes 默认值一致
+     */
+    public static final int DEFAULT_MAX_FRAME_BYTES = 100 * 1024 * 1024;
+
+    /**
+     *  帧长度上限，超过则视为非本协议数据
+     */
+    private final int maxFrameBytes;
+
+    public LengthPrefixedFrameDecoder() {
+        this(DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    public LengthPrefixedFrameDecoder(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+
+    @Override
+    public FrameState decode(ByteBuffer buffer) {
+        if (buffer.remaining() < LENGTH_PREFIX_BYTES) {
+            return FrameState.INCOMPLETE;
+        }
+        int frameLength = buffer.getInt(buffer.position());
+        if (frameLength < 0 || frameLength > maxFrameBytes) {
+            return FrameState.INVALID;
+        }
+        return buffer.remaining() - LENGTH_PREFIX_BYTES == frameLength ? FrameState.COMPLETE : FrameState.INCOMPLETE;
+    }
+
+
+    @Override
+    public int headerLength() {
+        return LENGTH_PREFIX_BYTES;
+    }
+}
@@ -0,0 +1,64 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+/**
+ *  被隔离连接的快照，用于查询接口展示
+ */
+public class QuarantinedFlow {
+
+    private final String flowKey;
+
+    private final int serverPort;
+
+    /**
+     *  连续解析失败次数
+     */
+    private final int consecutiveFailures;
+
+    /**
+     *  连续被隔离次数，解析成功后清零
+     */
+    private final int quarantineCount;
+
+    /**
+     *  最近一次解析失败时间
+     */
+    private final long lastFailureTime;
+
+    /**
+     *  隔离结束时间，到期后恢复解析
+     */
+    private final long quarantinedUntil;
+
+    QuarantinedFlow(TcpFlow flow) {
+        this.flowKey = flow.getFlowKey().toString();
+        this.serverPort = flow.getServerPort();
+        this.consecutiveFailures = flow.getConsecutiveFailures();
+        this.quarantineCount = flow.getQuarantineCount();
+        this.lastFailureTime = flow.getLastFailureTime();
+        this.quarantinedUntil = flow.getQuarantinedUntil();
+    }
+
+    public String getFlowKey() {
+        return flowKey;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public int getQuarantineCount() {
+        return quarantineCount;
+    }
+
+    public long getLastFailureTime() {
+        return lastFailureTime;
+    }
+
+    public long getQuarantinedUntil() {
+        return quarantinedUntil;
+    }
+}
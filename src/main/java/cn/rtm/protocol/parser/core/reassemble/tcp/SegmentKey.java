@@ -0,0 +1,49 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+/**
+ *  分片缓存标识，同一连接、同一方向、同一确认序号的分片属于同一数据包
+ */
+final class SegmentKey {
+
+    private final FlowKey flowKey;
+
+    /**
+     *  分片是否由端点 A 发送
+     */
+    private final boolean fromEndpointA;
+
+    private final long acknowledgmentNumber;
+
+    SegmentKey(FlowKey flowKey, boolean fromEndpointA, long acknowledgmentNumber) {
+        this.flowKey = flowKey;
+        this.fromEndpointA = fromEndpointA;
+        this.acknowledgmentNumber = acknowledgmentNumber;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SegmentKey)) {
+            return false;
+        }
+        SegmentKey other = (SegmentKey) o;
+        return fromEndpointA == other.fromEndpointA && acknowledgmentNumber == other.acknowledgmentNumber && flowKey.equals(other.flowKey);
+    }
+
+
+    @Override
+    public int hashCode() {
+        int h = flowKey.hashCode();
+        h = 31 * h + (fromEndpointA ? 1 : 0);
+        return 31 * h + Long.hashCode(acknowledgmentNumber);
+    }
+
+
+    @Override
+    public String toString() {
+        return flowKey + (fromEndpointA ? " A->B " : " B->A ") + acknowledgmentNumber;
+    }
+}
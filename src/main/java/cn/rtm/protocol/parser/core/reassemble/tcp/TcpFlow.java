@@ -0,0 +1,319 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.core.util.PortSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  tcp 连接（流）状态，同一连接的双向数据包共享同一个 {@link TcpFlow} 实例，由 {@link TcpFlowTable} 负责创建和回收
+ *
+ * <ul>
+ * <li> 连接标识 {@link FlowKey} 与方向无关，端点 A 为地址与端口较小的一端，端点 B 为另一端
+ * <li> 通过 {@link #setAttribute(Object, Object)} 存储连接级别的解析状态，如 kafka fetch session、协议识别结果，连接关闭后随之释放
+ * <li> 双方均发送 FIN 或任意一方发送 RST 后，连接视为关闭
+ * <li> 是否采样及采样率在连接创建时确定，之后不再变化，避免连接中途开始解析时从 kafka 帧中间开始重组；
+ * 未采样的连接仅保留连接记录，数据包不做重组与解析
+ * <li> 连接方向（服务端端口）由 {@link #resolveServerPort(int, int, PortSet)} 在连接的首个完整数据包时确定，之后不再变化
+ * <li> 记录连续解析失败次数与隔离状态，由 {@link FlowQuarantine} 判断是否隔离连接
+ * </ul>
+ */
+public class TcpFlow {
+
+    /**
+     *  连接方向尚未确定
+     */
+    static final int SERVER_PORT_UNRESOLVED = -1;
+
+    /**
+     *  连接两端均不是监听端口
+     */
+    public static final int NO_SERVER_PORT = 0;
+
+    /**
+     *  连接唯一标识
+     */
+    private final FlowKey flowKey;
+
+    /**
+     *  连接创建时间
+     */
+    private final long createTime;
+
+    /**
+     *  连接最近一次收到数据包的时间
+     */
+    private volatile long lastActiveTime;
+
+    /**
+     *  端点 A 是否已发送 FIN
+     */
+    private volatile boolean endpointAFinished;
+
+    /**
+     *  端点 B 是否已发送 FIN
+     */
+    private volatile boolean endpointBFinished;
+
+    /**
+     *  连接创建时的采样结果，为 false 则不解析该连接的数据包
+     */
+    private final boolean sampled;
+
+    /**
+     *  连接创建时的采样率，提取的数据按 1 / samplingRate 还原总量
+     */
+    private final double samplingRate;
+
+    /**
+     *  服务端端口，即连接中监听端口一端的端口，请求发往该端口，响应来自该端口
+     */
+    private volatile int serverPort = SERVER_PORT_UNRESOLVED;
+
+    /**
+     *  连续解析失败次数
+     */
+    private int consecutiveFailures;
+
+    /**
+     *  连续被隔离次数，用于计算隔离时长，解析成功后清零
+     */
+    private int quarantineCount;
+
+    /**
+     *  最近一次解析失败时间
+     */
+    private long lastFailureTime;
+
+    /**
+     *  隔离结束时间，为 0 则未隔离
+     */
+    private volatile long quarantinedUntil;
+
+    /**
+     *  存储连接级别的解析状态
+     */
+    private final Map<Object, Object> attributes = new ConcurrentHashMap<>(4);
+
+    public TcpFlow(FlowKey flowKey) {
+        this(flowKey, true, 1.0);
+    }
+
+    /**
+     * @param flowKey 连接标识
+     * @param sampled 连接是否被采样
+     * @param samplingRate 连接创建时的采样率
+     */
+    public TcpFlow(FlowKey flowKey, boolean sampled, double samplingRate) {
+        this.flowKey = flowKey;
+        this.sampled = sampled;
+        this.samplingRate = samplingRate;
+        this.createTime = System.currentTimeMillis();
+        this.lastActiveTime = this.createTime;
+    }
+
+    public FlowKey getFlowKey() {
+        return flowKey;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized int getQuarantineCount() {
+        return quarantineCount;
+    }
+
+    public synchronized long getLastFailureTime() {
+        return lastFailureTime;
+    }
+
+    public long getQuarantinedUntil() {
+        return quarantinedUntil;
+    }
+
+    /**
+     *  确定连接方向，仅在首次调用时按监听端口判断并记录，之后直接返回记录的结果
+     * @param srcPort 数据包源端口
+     * @param destPort 数据包目标端口
+     * @param listenPorts 协议监听端口
+     * @return 返回服务端端口，两端均不是监听端口返回 {@link #NO_SERVER_PORT}
+     */
+    public int resolveServerPort(int srcPort, int destPort, PortSet listenPorts) {
+        int port = serverPort;
+        if (port == SERVER_PORT_UNRESOLVED) {
+            port = serverPortOf(srcPort, destPort, listenPorts);
+            serverPort = port;
+        }
+        return port;
+    }
+
+
+    /**
+     *  按监听端口判断服务端端口，目标端口优先
+     * @return 返回服务端端口，两端均不是监听端口返回 {@link #NO_SERVER_PORT}
+     */
+    public static int serverPortOf(int srcPort, int destPort, PortSet listenPorts) {
+        if (listenPorts.contains(destPort)) {
+            return destPort;
+        }
+        return listenPorts.contains(srcPort) ? srcPort : NO_SERVER_PORT;
+    }
+
+
+    /**
+     *  判断连接是否处于隔离期，未隔离时不读取系统时间，隔离到期后清除隔离结束时间
+     * @return 返回 true 则处于隔离期
+     */
+    public boolean isQuarantined() {
+        long until = quarantinedUntil;
+        if (until == 0) {
+            return false;
+        }
+        if (System.currentTimeMillis() < until) {
+            return true;
+        }
+        quarantinedUntil = 0;
+        return false;
+    }
+
+
+    /**
+     *  记录一次解析失败，连续失败达到阈值时隔离连接，隔离期间保持失败计分，到期后一次失败即重新隔离
+     * @param now 当前时间
+     * @param threshold 连续失败阈值
+     * @param backoffMillis 首次隔离时长
+     * @param maxBackoffMillis 最大隔离时长
+     * @return 返回本次开始隔离的结束时间，未隔离返回 0
+     */
+    synchronized long recordParseFailure(long now, int threshold, long backoffMillis, long maxBackoffMillis) {
+        lastFailureTime = now;
+        if (++consecutiveFailures < threshold || quarantinedUntil > now) {
+            return 0;
+        }
+        long backoff = Math.min(maxBackoffMillis, backoffMillis << Math.min(quarantineCount, 20));
+        quarantineCount++;
+        consecutiveFailures = threshold - 1;
+        quarantinedUntil = now + backoff;
+        return quarantinedUntil;
+    }
+
+
+    /**
+     *  记录一次解析成功，清空失败计分
+     */
+    synchronized void recordParseSuccess() {
+        consecutiveFailures = 0;
+        quarantineCount = 0;
+    }
+
+
+    /**
+     *  刷新连接活跃时间
+     */
+    public void touch() {
+        this.lastActiveTime = System.currentTimeMillis();
+    }
+
+
+    /**
+     *  标记指定端点已发送 FIN
+     * @param fromEndpointA 是否由端点 A 发送 FIN
+     */
+    public void markFinished(boolean fromEndpointA) {
+        if (fromEndpointA) {
+            this.endpointAFinished = true;
+        } else {
+            this.endpointBFinished = true;
+        }
+    }
+
+
+    /**
+     *  判断连接是否已正常关闭，即双方均已发送 FIN
+     * @return 返回 true 则已关闭，反之 false
+     */
+    public boolean isFinished() {
+        return endpointAFinished && endpointBFinished;
+    }
+
+
+    /**
+     *  添加连接级别的属性
+     * @param key 属性标识
+     * @param value 属性值
+     */
+    public void setAttribute(Object key, Object value) {
+        attributes.put(key, value);
+    }
+
+
+    /**
+     *  查找指定 key 的属性值
+     * @param key 属性标识
+     * @return 返回属性值，不存在则返回 null
+     */
+    public Object getAttribute(Object key) {
+        return attributes.get(key);
+    }
+
+
+    /**
+     *  查找指定类型和指定 key 的属性值
+     * @param key 属性标识
+     * @param type 属性值类型
+     * @return 返回属性值，不存在或类型不匹配则返回 null
+     * @param <T> 属性值类型
+     */
+    public <T> T getAttributeAs(Object key, Class<T> type) {
+        Object value = attributes.get(key);
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        }
+        return null;
+    }
+
+
+    /**
+     *  移除指定 key 的属性
+     * @param key 属性标识
+     */
+    public void removeAttribute(Object key) {
+        attributes.remove(key);
+    }
+
+    @Override
+    public String toString() {
+        return "TcpFlow{" +
+                "flowKey='" + flowKey + '\'' +
+                ", createTime=" + createTime +
+                ", lastActiveTime=" + lastActiveTime +
+                ", sampled=" + sampled +
+                ", samplingRate=" + samplingRate +
+                ", serverPort=" + serverPort +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", quarantinedUntil=" + quarantinedUntil +
+                ", endpointAFinished=" + endpointAFinished +
+                ", endpointBFinished=" + endpointBFinished +
+                '}';
+    }
+}
@@ -0,0 +1,161 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import io.micrometer.core.instrument.Counter;
+import org.pcap4j.packet.TcpPacket;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  tcp 连接表，同一连接的双向数据包关联同一个 {@link TcpFlow}，由 {@link TcpPacketReassemble} 与协议识别等组件共享，
+ *  各组件的连接级别状态以属性的形式保存在 {@link TcpFlow} 中，不再各自维护连接表
+ *
+ * <ul>
+ * <li> 以 {@link FlowKey} 为 key，查找时不生成字符串
+ * <li> 配置 {@link #flowSampler} 时，连接创建时按四元组所属的采样哈希桶与当前采样率确定是否采样，之后不再变化，采样结果计入指标
+ * <li> 双方发送 FIN 或任意一方发送 RST 后移除连接，长时间无数据包的连接由 {@link #evictIdleFlows(long)} 清理，
+ * 同一数据包重复判断关闭时结果不变
+ * </ul>
+ */
+public class TcpFlowTable {
+
+    /**
+     *  连接空闲超时时间，超过该时间未收到数据包的连接将被清理
+     */
+    private static final long FLOW_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     *  存储 tcp 连接状态，key: 与方向无关的连接标识 value: 连接状态
+     */
+    private final Map<FlowKey, TcpFlow> flows = new ConcurrentHashMap<>(256);
+
+    /**
+     *  连接采样器，为 null 则连接不参与采样
+     */
+    private final FlowSampler flowSampler;
+
+    private final Counter finishedFlows = ProtocolMetrics.counter(ProtocolMetrics.REASSEMBLY_FLOW_REMOVALS, "reason", "fin");
+
+    private final Counter resetFlows = ProtocolMetrics.counter(ProtocolMetrics.REASSEMBLY_FLOW_REMOVALS, "reason", "rst");
+
+    private final Counter idleFlows = ProtocolMetrics.counter(ProtocolMetrics.REASSEMBLY_FLOW_REMOVALS, "reason", "idle");
+
+    private final Counter sampledFlows = ProtocolMetrics.counter(ProtocolMetrics.SAMPLING_FLOWS, "decision", "sampled");
+
+    private final Counter skippedFlows = ProtocolMetrics.counter(ProtocolMetrics.SAMPLING_FLOWS, "decision", "skipped");
+
+    public TcpFlowTable() {
+        this(null);
+    }
+
+    public TcpFlowTable(FlowSampler flowSampler) {
+        this.flowSampler = flowSampler;
+        if (flowSampler != null) {
+            ProtocolMetrics.gauge(ProtocolMetrics.SAMPLING_RATE, flowSampler, FlowSampler::getRate);
+        }
+        ProtocolMetrics.gauge(ProtocolMetrics.REASSEMBLY_FLOWS, flows, Map::size);
+    }
+
+
+    /**
+     *  获取已存在的连接并刷新活跃时间
+     * @param flowKey 连接标识
+     * @return 返回连接，不存在返回 null
+     */
+    public TcpFlow get(FlowKey flowKey) {
+        TcpFlow flow = flows.get(flowKey);
+        if (flow != null) {
+            flow.touch();
+        }
+        return flow;
+    }
+
+
+    /**
+     *  获取连接，不存在则创建，并刷新活跃时间
+     * @param flowKey 连接标识
+     * @return 返回连接
+     */
+    public TcpFlow getOrCreate(FlowKey flowKey) {
+        TcpFlow flow = flows.get(flowKey);
+        if (flow == null) {
+            flow = flows.computeIfAbsent(flowKey, this::createFlow);
+        }
+        flow.touch();
+        return flow;
+    }
+
+
+    /**
+     *  新建连接并按当前采样率确定是否采样
+     */
+    private TcpFlow createFlow(FlowKey flowKey) {
+        if (flowSampler == null) {
+            return new TcpFlow(flowKey);
+        }
+        double rate = flowSampler.getRate();
+        boolean sampled = flowSampler.isSampled(flowKey.samplingBucket());
+        (sampled ? sampledFlows : skippedFlows).increment();
+        return new TcpFlow(flowKey, sampled, rate);
+    }
+
+
+    /**
+     *  根据 tcp 标志位判断连接是否关闭，若双方均已发送 FIN 或收到 RST 则移除连接
+     * @param flow 数据包所属连接，为 null 则忽略
+     * @param header tcp 头信息
+     * @param fromEndpointA 数据包是否由连接端点 A 发送
+     */
+    public void closeIfFinished(TcpFlow flow, TcpPacket.TcpHeader header, boolean fromEndpointA) {
+        if (flow == null) {
+            return;
+        }
+        if (header.getRst()) {
+            if (flows.remove(flow.getFlowKey(), flow)) {
+                resetFlows.increment();
+            }
+            return;
+        }
+        if (header.getFin()) {
+            flow.markFinished(fromEndpointA);
+            if (flow.isFinished() && flows.remove(flow.getFlowKey(), flow)) {
+                finishedFlows.increment();
+            }
+        }
+    }
+
+
+    /**
+     *  清理超过空闲时间未收到数据包的连接，如抓包开始前已建立、或 FIN/RST 数据包丢失的连接
+     * @param now 当前时间
+     */
+    public void evictIdleFlows(long now) {
+        int before = flows.size();
+        flows.values().removeIf(flow -> now - flow.getLastActiveTime() > FLOW_IDLE_TIMEOUT_MILLIS);
+        idleFlows.increment(Math.max(0, before - flows.size()));
+    }
+
+
+    /**
+     *  获取全部连接的只读视图，仅用于查询与统计
+     * @return 返回连接集合
+     */
+    public Collection<TcpFlow> flows() {
+        return Collections.unmodifiableCollection(flows.values());
+    }
+
+
+    /**
+     *  获取当前跟踪的连接数量
+     * @return 返回连接数量
+     */
+    public int size() {
+        return flows.size();
+    }
+
+    public FlowSampler getFlowSampler() {
+        return flowSampler;
+    }
+}
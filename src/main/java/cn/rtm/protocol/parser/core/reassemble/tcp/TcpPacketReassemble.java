@@ -2,29 +2,49 @@ package cn.rtm.protocol.parser.core.reassemble.tcp;
 
 import cn.rtm.protocol.parser.PacketReassemble;
 import cn.rtm.protocol.parser.ProtocolMessage;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
 import cn.rtm.protocol.parser.core.util.ByteUtils;
-import org.pcap4j.packet.IpV4Packet;
+import cn.rtm.protocol.parser.core.util.IpAddresses;
+import io.micrometer.core.instrument.Counter;
+import org.pcap4j.packet.IpPacket;
 import org.pcap4j.packet.Packet;
 import org.pcap4j.packet.TcpPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *  tcp 层 数据包分片重组实现，实现原理主要为：tcp 数据包传输，每个包都存在 sequenceNumber 和 acknowledgmentNumber ，用于确保
  *  数据包的顺序和标识分片和查找对应的请求-响应数据包；分片重组实现主要为
  *
  * <ul>
- * <li> 根据 {@linkplain #generatePacketKey(String, int, String, int, long)} 读取 {@linkplain #segmentBuffer} ，合并数据包
- * <li> 读取数据包真实大小，Kafka 数据包前四个字节为数据包真实大小 M
- * <li> 判断当前包的长度 - 4字节 是否等于数据包真实大小M,其中4个字节为数据包真实长度，若等于则时完整数据包直接处理
- * <li> 若不是完整数据包，则读取当前数据包的 acknowledgmentNumber,并通过 {@linkplain #generatePacketKey(String, int, String, int, long)} 作为 key，标识唯一数据包
+ * <li> 根据连接标识、发送方向与 acknowledgmentNumber 生成的 {@link SegmentKey} 读取 {@linkplain #segmentBuffer} ，合并数据包
+ * <li> 合并后的数据交给协议帧切分策略 {@link #frameDecoder} 判断是否为完整的协议帧，如 kafka 按 4 字节长度前缀判断，
+ * redis 按 RESP 值的边界判断，重组组件不解析帧长度，若为完整协议帧则直接处理
+ * <li> 若不是完整数据包，则读取当前数据包的 acknowledgmentNumber,并通过 {@link SegmentKey} 作为 key，标识唯一数据包
  * value：为当前数据包，因为同一个请求分片包的 acknowledgmentNumber 始终一致，继续进行等待下个分片包
+ * <li> 支持 ipv4 与 ipv6 数据包，连接表与分片缓存以 {@link FlowKey} 的 128 位地址与端口为 key，查找时不生成字符串
+ * <li> 连接记录在 {@link TcpFlowTable} 中，可与协议识别共享，同一连接的双向数据包关联同一个 {@link TcpFlow}，双方发送 FIN 或任意一方发送 RST
+ * 后移除连接，长时间无数据包的连接定期清理，连接移除后收到的不携带数据的通信包不再重新创建连接
+ * <li> 分片丢失的数据包无法重组完成，首个分片的抓包时间早于最新抓包时间 {@linkplain #SEGMENT_TIMEOUT_MILLIS} 以上的分片缓存由
+ * {@linkplain #evictStaleSegments(Instant)} 定期丢弃
+ * <li> 连接表配置 {@link FlowSampler} 时，是否采样在连接创建时确定，未采样连接的数据包仅查找连接表后即返回，不做重组；
+ * 负载降级调整采样率仅作用于新建连接，已有连接不会从数据包中间开始解析
+ * <li> 配置 {@link #flowQuarantine} 时，按 {@link #reportParseResult(ProtocolMessage, boolean)} 上报的结果对连接计分，
+ * 被隔离连接的数据包仅查找连接表后即返回，帧切分策略判断为 {@link FrameState#INVALID} 时丢弃缓存并记为解析失败
  * </ul>
  */
-public class TcpPacketReassemble implements PacketReassemble<ProtocolMessage> {
+public class TcpPacketReassemble implements PacketReassemble<ProtocolMessage>, StateSizeProvider {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -32,11 +52,94 @@ public class TcpPacketReassemble implements PacketReassemble<ProtocolMessage> {
     /**
      *  存储分片数据包内容，key: ack-id 标识 value: 对应的数据包
      */
-    private final static Map<String, ByteBuffer> segmentBuffer = new ConcurrentHashMap<>(256);
+    private final static Map<SegmentKey, ByteBuffer> segmentBuffer = new ConcurrentHashMap<>(256);
+
+    /**
+     *  存储分片数据包首个分片的抓包时间，key 与 {@linkplain #segmentBuffer} 一致
+     */
+    private final static Map<SegmentKey, Instant> segmentCaptureTimes = new ConcurrentHashMap<>(256);
+
+    /**
+     *  分片缓存超时时间，按抓包时间计算，超过该时间仍未重组完成的数据包视为分片丢失
+     */
+    private static final long SEGMENT_TIMEOUT_MILLIS = 60 * 1000L;
+
+    /**
+     *  每处理指定数量的数据包执行一次空闲连接与超时分片清理
+     */
+    private static final int FLOW_EVICT_INTERVAL_PACKETS = 4096;
+
+    /**
+     *  tcp 连接表
+     */
+    private final TcpFlowTable flowTable;
+
+    /**
+     *  已处理的数据包数量，用于触发空闲连接清理
+     */
+    private final AtomicLong processedPackets = new AtomicLong();
+
+    private final Counter expiredSegments = ProtocolMetrics.counter(ProtocolMetrics.REASSEMBLY_EXPIRED_SEGMENTS);
+
+    private final Counter skippedPackets = ProtocolMetrics.counter(ProtocolMetrics.SAMPLING_SKIPPED_PACKETS);
+
+    private final Counter invalidFrames = ProtocolMetrics.counter(ProtocolMetrics.REASSEMBLY_INVALID_FRAMES);
+
+    /**
+     *  协议帧切分策略
+     */
+    private final FrameDecoder frameDecoder;
+
+    /**
+     *  连接隔离策略，为 null 则不隔离
+     */
+    private final FlowQuarantine flowQuarantine;
+
+    public TcpPacketReassemble() {
+        this((FlowSampler) null);
+    }
+
+    public TcpPacketReassemble(FlowSampler flowSampler) {
+        this(flowSampler, null);
+    }
+
+    public TcpPacketReassemble(FlowSampler flowSampler, FlowQuarantine flowQuarantine) {
+        this(new LengthPrefixedFrameDecoder(), new TcpFlowTable(flowSampler), flowQuarantine);
+    }
+
+    public TcpPacketReassemble(FrameDecoder frameDecoder) {
+        this(frameDecoder, new TcpFlowTable(), null);
+    }
+
+    /**
+     * @param frameDecoder 协议帧切分策略
+     * @param flowTable 连接表，与协议识别共享时传入同一实例
+     * @param flowQuarantine 连接隔离策略，可为 null
+     */
+    public TcpPacketReassemble(FrameDecoder frameDecoder, TcpFlowTable flowTable, FlowQuarantine flowQuarantine) {
+        this.frameDecoder = frameDecoder;
+        this.flowTable = flowTable;
+        this.flowQuarantine = flowQuarantine;
+        if (flowQuarantine != null) {
+            ProtocolMetrics.gauge(ProtocolMetrics.QUARANTINE_ACTIVE, flowTable, TcpPacketReassemble::quarantinedFlowCount);
+        }
+        ProtocolMetrics.gauge(ProtocolMetrics.REASSEMBLY_BUFFERED_SEGMENTS, segmentBuffer, Map::size);
+        ProtocolMetrics.gauge(ProtocolMetrics.REASSEMBLY_BUFFERED_BYTES, segmentBuffer, TcpPacketReassemble::bufferedBytes);
+    }
 
 
     @Override
     public ProtocolMessage reassemble(Packet packet) {
+        return reassemble(packet, Instant.now());
+    }
+
+
+    @Override
+    public ProtocolMessage reassemble(Packet packet, Instant captureTime) {
+        if (processedPackets.incrementAndGet() % FLOW_EVICT_INTERVAL_PACKETS == 0) {
+            flowTable.evictIdleFlows(System.currentTimeMillis());
+            this.evictStaleSegments(captureTime);
+        }
         if (!packet.contains(TcpPacket.class)) {
             return null;
         }
@@ -46,12 +149,6 @@ public class TcpPacketReassemble implements PacketReassemble<ProtocolMessage> {
             return null;
         }
 
-        Packet payloadPacket = tcpPacket.getPayload();
-        // 跳过通信包
-        if (payloadPacket == null) {
-            return null;
-        }
-
         TcpPacket.TcpHeader header = tcpPacket.getHeader();
         if (header == null) {
             return null;
@@ -60,65 +157,189 @@ public class TcpPacketReassemble implements PacketReassemble<ProtocolMessage> {
         int srcPort = header.getSrcPort().valueAsInt();
         int destPort = header.getDstPort().valueAsInt();
 
-        IpV4Packet ipV4Packet = (IpV4Packet)packet.getPayload();
-        String srcIp = ipV4Packet.getHeader().getSrcAddr().getHostAddress();
-        String destIp = ipV4Packet.getHeader().getDstAddr().getHostAddress();
+        IpPacket ipPacket = packet.get(IpPacket.class);
+        if (ipPacket == null) {
+            return null;
+        }
+        byte[] srcAddress = ipPacket.getHeader().getSrcAddr().getAddress();
+        byte[] destAddress = ipPacket.getHeader().getDstAddr().getAddress();
+        long srcHigh = IpAddresses.high(srcAddress);
+        long srcLow = IpAddresses.low(srcAddress);
+        long destHigh = IpAddresses.high(destAddress);
+        long destLow = IpAddresses.low(destAddress);
+        FlowKey flowKey = FlowKey.of(srcHigh, srcLow, srcPort, destHigh, destLow, destPort);
+        boolean fromEndpointA = flowKey.isEndpointA(srcHigh, srcLow, srcPort);
         long sequenceNumber = header.getSequenceNumberAsLong();
         long acknowledgmentNumber = header.getAcknowledgmentNumberAsLong();
 
-        // 获取TCP载荷（即 Kafka 协议数据）
-        byte[] payload = payloadPacket.getRawData();
-        String packetKey = this.generatePacketKey(srcIp, srcPort, destIp, destPort, acknowledgmentNumber);
+        Packet payloadPacket = tcpPacket.getPayload();
+        // 不携带数据的通信包不创建连接，避免连接关闭后的最后一个 ACK 重新创建连接
+        TcpFlow flow = payloadPacket == null && !header.getSyn() ? flowTable.get(flowKey) : flowTable.getOrCreate(flowKey);
+        try {
+            // 跳过通信包
+            if (payloadPacket == null) {
+                return null;
+            }
 
-        ByteBuffer previousPacket = segmentBuffer.get(packetKey);
+            if (flow != null && !flow.isSampled()) {
+                skippedPackets.increment();
+                return null;
+            }
 
-        ByteBuffer combinedPacket = ByteUtils.combineBuffers(previousPacket, ByteBuffer.wrap(payload));
+            if (flow != null && flowQuarantine != null && flowQuarantine.isBypassed(flow)) {
+                return null;
+            }
 
-        if (isCompletePacket(combinedPacket)) {
-            segmentBuffer.remove(packetKey);
-            return new ProtocolMessage(srcIp,srcPort,
-                    destIp,destPort,sequenceNumber,acknowledgmentNumber,combinedPacket.array());
+            // 获取TCP载荷（即待解析的协议数据）
+            byte[] payload = payloadPacket.getRawData();
+            SegmentKey packetKey = new SegmentKey(flowKey, fromEndpointA, acknowledgmentNumber);
+
+            ByteBuffer previousPacket = segmentBuffer.get(packetKey);
+
+            ByteBuffer combinedPacket = ByteUtils.combineBuffers(previousPacket, ByteBuffer.wrap(payload));
+
+            FrameState frameState = frameDecoder.decode(combinedPacket);
+            if (frameState == FrameState.INVALID) {
+                this.discardInvalidFrame(packetKey, flow);
+                return null;
+            }
+
+            if (frameState == FrameState.COMPLETE) {
+                segmentBuffer.remove(packetKey);
+                Instant firstCaptureTime = previousPacket == null ? null : segmentCaptureTimes.remove(packetKey);
+                // 多个分片合并时 seq 取首个分片的 seq，保证根据 seq 与数据包长度计算的响应 ack 正确
+                long firstSequenceNumber = (sequenceNumber + payload.length - combinedPacket.remaining()) & 0xffffffffL;
+                ProtocolMessage message = new ProtocolMessage(srcAddress, srcPort, destAddress, destPort, firstSequenceNumber, acknowledgmentNumber, combinedPacket.array(),
+                        frameDecoder.headerLength());
+                message.setFlow(flow);
+                message.setFirstCaptureTime(firstCaptureTime == null ? captureTime : firstCaptureTime);
+                message.setCaptureTime(captureTime);
+                return message;
+            } else {
+                // 如果尚未接收完整，则缓存数据
+                segmentBuffer.put(packetKey, combinedPacket);
+                segmentCaptureTimes.putIfAbsent(packetKey, captureTime);
+            }
+            return null;
+        } finally {
+            flowTable.closeIfFinished(flow, header, fromEndpointA);
+        }
+    }
+
+
+    @Override
+    public void reportParseResult(ProtocolMessage message, boolean parsed) {
+        TcpFlow flow = message == null ? null : message.getFlow();
+        if (flowQuarantine == null || flow == null) {
+            return;
+        }
+        if (parsed) {
+            flowQuarantine.recordSuccess(flow);
         } else {
-            // 如果尚未接收完整，则缓存数据
-            segmentBuffer.put(packetKey, combinedPacket);
+            flowQuarantine.recordFailure(flow);
+        }
+    }
+
+
+    /**
+     *  查询处于隔离期的连接
+     * @return 返回被隔离连接的快照，未配置隔离策略返回空集合
+     */
+    public List<QuarantinedFlow> quarantinedFlows() {
+        if (flowQuarantine == null) {
+            return Collections.emptyList();
+        }
+        List<QuarantinedFlow> flows = new ArrayList<>();
+        for (TcpFlow flow : flowTable.flows()) {
+            if (flow.isQuarantined()) {
+                flows.add(new QuarantinedFlow(flow));
+            }
         }
-        return null;
+        return flows;
     }
 
 
     /**
-     *  生成数据包唯一标识
-     * @param srcIp 请求 ip
-     * @param srcPort 请求地址端口
-     * @param destIp 目标地址 ip
-     * @param destPort 目标地址端口
-     * @param acknowledgmentNumber 数据包确认序号
-     * @return 返回请求唯一标识
+     *  统计处于隔离期的连接数量，仅在指标采集时调用
      */
-    private String generatePacketKey(String srcIp, int srcPort, String destIp, int destPort, long acknowledgmentNumber) {
-        return srcIp + ":" + srcPort + "-" + destIp + ":" + destPort + "-" + acknowledgmentNumber;
+    private static double quarantinedFlowCount(TcpFlowTable flowTable) {
+        long count = 0;
+        for (TcpFlow flow : flowTable.flows()) {
+            if (flow.isQuarantined()) {
+                count++;
+            }
+        }
+        return count;
     }
 
 
     /**
-     *  判断数据包是否为完整的数据包
-     * @param buffer 数据包内容
-     * @return 返回 true 则时完整数据包，反之 false
+     *  丢弃不符合协议帧格式的数据包缓存，并记为所属连接的一次解析失败
+     * @param packetKey 数据包唯一标识
+     * @param flow 数据包所属连接，可为 null
      */
-    private boolean isCompletePacket(ByteBuffer buffer) {
-        int totalPacketLength = getTotalPacketLength(buffer);
-        int currentPacketLength = buffer.remaining();
-        return (currentPacketLength - 4) == totalPacketLength;
+    private void discardInvalidFrame(SegmentKey packetKey, TcpFlow flow) {
+        segmentBuffer.remove(packetKey);
+        segmentCaptureTimes.remove(packetKey);
+        invalidFrames.increment();
+        if (flowQuarantine != null && flow != null) {
+            flowQuarantine.recordFailure(flow);
+        }
     }
 
 
     /**
-     *  获取包的总长度
-     * @param buffer 数据包内容
-     * @return 返回数据包真实长度
+     *  丢弃超时未重组完成的分片缓存，抓包时间回退（如重复回放同一文件）时不做处理
+     * @param latestCaptureTime 最新的抓包时间
      */
-    private int getTotalPacketLength(ByteBuffer buffer) {
-        return buffer.slice().getInt(0);
+    private void evictStaleSegments(Instant latestCaptureTime) {
+        Instant deadline = latestCaptureTime.minusMillis(SEGMENT_TIMEOUT_MILLIS);
+        Iterator<Map.Entry<SegmentKey, Instant>> iterator = segmentCaptureTimes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SegmentKey, Instant> entry = iterator.next();
+            if (entry.getValue().isBefore(deadline)) {
+                iterator.remove();
+                if (segmentBuffer.remove(entry.getKey()) != null) {
+                    expiredSegments.increment();
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>(8);
+        sizes.put("reassembly.flows", (long) flowTable.size());
+        sizes.put("reassembly.segments", (long) segmentBuffer.size());
+        sizes.put("reassembly.segmentCaptureTimes", (long) segmentCaptureTimes.size());
+        sizes.put("reassembly.segmentBytes", (long) bufferedBytes(segmentBuffer));
+        if (flowQuarantine != null) {
+            sizes.put("reassembly.quarantinedFlows", (long) quarantinedFlowCount(flowTable));
+        }
+        return sizes;
     }
 
+
+    /**
+     *  统计缓存中等待重组的分片字节数，仅在指标采集时调用
+     * @param buffer 分片缓存
+     * @return 返回缓存的字节数
+     */
+    private static double bufferedBytes(Map<SegmentKey, ByteBuffer> buffer) {
+        long bytes = 0;
+        for (ByteBuffer segment : buffer.values()) {
+            bytes += segment.remaining();
+        }
+        return bytes;
+    }
+
+
+    /**
+     *  获取当前跟踪的连接数量
+     * @return 返回连接数量
+     */
+    public int getFlowCount() {
+        return flowTable.size();
+    }
 }
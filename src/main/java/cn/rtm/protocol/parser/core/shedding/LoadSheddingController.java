@@ -0,0 +1,353 @@
+package cn.rtm.protocol.parser.core.shedding;
+
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSampler;
+import io.micrometer.core.instrument.Counter;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ *  负载降级控制器，根据解析流水线负载逐级丢弃解析内容，以可控的精度损失代替网卡、内核的随机丢包
+ *
+ * <ul>
+ * <li> 负载信号：抓包延迟、解析线程繁忙比例、写入队列使用率、进程 cpu 使用率，各信号除以对应阈值后取最大值作为负载压力，
+ * 压力不低于 1 视为过载
+ * <li> 抓包延迟为数据包处理时间与抓包时间之差，以运行期间观察到的最小差值为基准，消除时钟偏差与离线回放的影响
+ * <li> 解析线程繁忙比例为评估间隔内各解析线程处理数据包的累计耗时除以间隔时长与期间处理过数据包的解析线程数，即解析线程的平均繁忙比例
+ * <li> 连续 {@link LoadSheddingProperties#getEscalateAfter()} 次评估过载后提升一级，连续
+ * {@link LoadSheddingProperties#getRestoreAfter()} 次评估压力低于 {@link LoadSheddingProperties#getLowWatermark()} 后降低一级，
+ * 逐级调整避免级别来回抖动
+ * <li> 降级措施见 {@link SheddingLevel}，{@link SheddingLevel#SAMPLE_FLOWS} 调整 {@link FlowSampler} 采样率，恢复后还原原有采样率，
+ * 仅新建连接按调整后的采样率采样，已有连接保持创建时的采样结果，抓包 BPF 过滤表达式不随之更新
+ * <li> 当前级别通过指标 {@link ProtocolMetrics#SHEDDING_LEVEL} 发布，级别变更记录日志与 {@link ProtocolMetrics#SHEDDING_TRANSITIONS}
+ * </ul>
+ */
+public class LoadSheddingController implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadSheddingController.class);
+
+    /**
+     *  降级期间提取的数据在扩展字段中记录降级级别的 key
+     */
+    public static final String SHEDDING_LEVEL_KEY = "sheddingLevel";
+
+    private final LoadSheddingProperties properties;
+
+    /**
+     *  连接采样器，为 null 则不支持 {@link SheddingLevel#SAMPLE_FLOWS}
+     */
+    private final FlowSampler flowSampler;
+
+    /**
+     *  降级前的连接采样率
+     */
+    private final double baseSamplingRate;
+
+    private final Set<ApiKeys> lowPriorityApis;
+
+    /**
+     *  写入队列，key: 队列名称，value: 队列深度与容量
+     */
+    private final Map<String, QueueProbe> queues = new ConcurrentHashMap<>();
+
+    /**
+     *  数据包处理时间与抓包时间之差的最小值（毫秒），作为抓包延迟基准
+     */
+    private final AtomicLong baselineOffsetMillis = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     *  评估间隔内的最大抓包延迟（毫秒）
+     */
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0L);
+
+    /**
+     *  评估间隔内处理数据包的累计耗时（纳秒）
+     */
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     *  评估间隔内处理过数据包的解析线程数
+     */
+    private final LongAdder activeThreads = new LongAdder();
+
+    /**
+     *  评估间隔序号，解析线程据此判断是否为本间隔内首次记录数据包
+     */
+    private volatile long evaluation;
+
+    /**
+     *  解析线程最近一次记录数据包的评估间隔序号
+     */
+    private final ThreadLocal<long[]> threadEvaluation = ThreadLocal.withInitial(() -> new long[]{-1L});
+
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+
+    private volatile SheddingLevel level = SheddingLevel.NONE;
+
+    private volatile double pressure;
+
+    private long lastEvaluateNanos = System.nanoTime();
+
+    private int overloadedEvaluations;
+
+    private int idleEvaluations;
+
+    private ScheduledExecutorService scheduler;
+
+    private final Map<SheddingLevel, Counter> transitions = new EnumMap<>(SheddingLevel.class);
+
+    public LoadSheddingController(LoadSheddingProperties properties) {
+        this(properties, null);
+    }
+
+    public LoadSheddingController(LoadSheddingProperties properties, FlowSampler flowSampler) {
+        this.properties = properties;
+        this.flowSampler = flowSampler;
+        this.baseSamplingRate = flowSampler == null ? 1.0 : flowSampler.getRate();
+        this.lowPriorityApis = parseApis(properties.getLowPriorityApis());
+        for (SheddingLevel sheddingLevel : SheddingLevel.values()) {
+            transitions.put(sheddingLevel, ProtocolMetrics.counter(ProtocolMetrics.SHEDDING_TRANSITIONS, "level", sheddingLevel.name()));
+        }
+        ProtocolMetrics.gauge(ProtocolMetrics.SHEDDING_LEVEL, this, controller -> controller.getLevel().ordinal());
+        ProtocolMetrics.gauge(ProtocolMetrics.SHEDDING_PRESSURE, this, LoadSheddingController::getPressure);
+    }
+
+
+    /**
+     *  解析低优先级 api 名称
+     * @param names api 名称
+     * @return 返回低优先级 api
+     * @throws IllegalArgumentException api 名称不存在
+     */
+    private static Set<ApiKeys> parseApis(List<String> names) {
+        Set<ApiKeys> apis = EnumSet.noneOf(ApiKeys.class);
+        if (names == null) {
+            return apis;
+        }
+        for (String name : names) {
+            try {
+                apis.add(ApiKeys.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("未知的低优先级 api：" + name, e);
+            }
+        }
+        return apis;
+    }
+
+
+    /**
+     *  注册写入队列，队列使用率参与负载评估
+     * @param name 队列名称
+     * @param depth 队列当前深度
+     * @param capacity 队列容量
+     */
+    public void registerQueue(String name, IntSupplier depth, int capacity) {
+        if (capacity > 0) {
+            queues.put(name, new QueueProbe(depth, capacity));
+        }
+    }
+
+
+    /**
+     *  启动定时负载评估
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-shedding");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10L, properties.getIntervalMillis());
+        scheduler.scheduleWithFixedDelay(this::evaluateQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("负载降级已启用，评估间隔：{} ms，最高级别：{}", interval, properties.getMaxLevel());
+    }
+
+
+    /**
+     *  记录一个数据包的处理情况，由解析线程调用
+     * @param captureTime 数据包抓包时间，为 null 则不统计抓包延迟，如回放的溢出数据包
+     * @param elapsedNanos 数据包处理耗时（纳秒）
+     */
+    public void recordPacket(Instant captureTime, long elapsedNanos) {
+        busyNanos.add(elapsedNanos);
+        long[] recorded = threadEvaluation.get();
+        long current = evaluation;
+        if (recorded[0] != current) {
+            recorded[0] = current;
+            activeThreads.increment();
+        }
+        if (captureTime == null) {
+            return;
+        }
+        long offset = System.currentTimeMillis() - captureTime.toEpochMilli();
+        long baseline = baselineOffsetMillis.get();
+        while (offset < baseline && !baselineOffsetMillis.compareAndSet(baseline, offset)) {
+            baseline = baselineOffsetMillis.get();
+        }
+        maxLagMillis.accumulate(offset - Math.min(offset, baseline));
+    }
+
+
+    private void evaluateQuietly() {
+        try {
+            evaluate();
+        } catch (Exception e) {
+            log.error("负载评估出错！", e);
+        }
+    }
+
+
+    /**
+     *  评估当前负载并按需调整降级级别，默认由定时任务调用
+     * @return 返回调整后的降级级别
+     */
+    public synchronized SheddingLevel evaluate() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1L, now - lastEvaluateNanos);
+        lastEvaluateNanos = now;
+
+        double lagPressure = (double) maxLagMillis.getThenReset() / Math.max(1L, properties.getLagHighMillis());
+        evaluation++;
+        long threads = Math.max(1L, activeThreads.sumThenReset());
+        double utilizationPressure = (double) busyNanos.sumThenReset() / elapsed / threads / properties.getUtilizationHigh();
+        double queuePressure = 0;
+        for (QueueProbe queue : queues.values()) {
+            queuePressure = Math.max(queuePressure, queue.utilization() / properties.getQueueHigh());
+        }
+        double cpuPressure = 0;
+        double cpu = processCpuLoad();
+        if (cpu >= 0 && properties.getCpuHigh() > 0) {
+            cpuPressure = cpu / properties.getCpuHigh();
+        }
+        this.pressure = Math.max(Math.max(lagPressure, utilizationPressure), Math.max(queuePressure, cpuPressure));
+
+        if (pressure >= 1) {
+            idleEvaluations = 0;
+            if (++overloadedEvaluations >= Math.max(1, properties.getEscalateAfter()) && level.compareTo(properties.getMaxLevel()) < 0) {
+                overloadedEvaluations = 0;
+                log.warn("解析负载过高，lag={} utilization={} queue={} cpu={}", lagPressure, utilizationPressure, queuePressure, cpuPressure);
+                setLevel(SheddingLevel.values()[level.ordinal() + 1]);
+            }
+        } else if (pressure < properties.getLowWatermark()) {
+            overloadedEvaluations = 0;
+            if (++idleEvaluations >= Math.max(1, properties.getRestoreAfter()) && level != SheddingLevel.NONE) {
+                idleEvaluations = 0;
+                setLevel(SheddingLevel.values()[level.ordinal() - 1]);
+            }
+        } else {
+            overloadedEvaluations = 0;
+            idleEvaluations = 0;
+        }
+        return level;
+    }
+
+
+    /**
+     *  获取进程 cpu 使用率
+     * @return 返回 [0, 1] 的使用率，无法获取则返回负数
+     */
+    private double processCpuLoad() {
+        if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuLoad();
+        }
+        return -1;
+    }
+
+
+    /**
+     *  切换降级级别并执行对应的降级措施
+     * @param newLevel 新的降级级别
+     */
+    public synchronized void setLevel(SheddingLevel newLevel) {
+        SheddingLevel oldLevel = this.level;
+        if (oldLevel == newLevel) {
+            return;
+        }
+        if (flowSampler != null) {
+            flowSampler.setRate(newLevel.atLeast(SheddingLevel.SAMPLE_FLOWS)
+                    ? Math.min(baseSamplingRate, properties.getSamplingRate()) : baseSamplingRate);
+        }
+        this.level = newLevel;
+        transitions.get(newLevel).increment();
+        log.warn("负载降级级别变更：{} -> {}，当前负载压力：{}", oldLevel, newLevel, pressure);
+    }
+
+
+    /**
+     *  是否跳过 record key 与 value 反序列化
+     * @return 返回 true 则跳过
+     */
+    public boolean isRecordValueSkipped() {
+        return level.atLeast(SheddingLevel.SKIP_RECORD_VALUES);
+    }
+
+
+    /**
+     *  是否跳过指定 api 的请求体与响应体解析
+     * @param apiKey 请求 api
+     * @return 返回 true 则跳过
+     */
+    public boolean isBodySkipped(ApiKeys apiKey) {
+        return level.atLeast(SheddingLevel.SKIP_LOW_PRIORITY_BODIES) && lowPriorityApis.contains(apiKey);
+    }
+
+
+    public SheddingLevel getLevel() {
+        return level;
+    }
+
+
+    /**
+     *  获取最近一次评估的负载压力，不低于 1 为过载
+     * @return 返回负载压力
+     */
+    public double getPressure() {
+        return pressure;
+    }
+
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+
+    /**
+     *  写入队列使用率探针
+     */
+    private static final class QueueProbe {
+
+        private final IntSupplier depth;
+
+        private final int capacity;
+
+        private QueueProbe(IntSupplier depth, int capacity) {
+            this.depth = depth;
+            this.capacity = capacity;
+        }
+
+        private double utilization() {
+            return (double) depth.getAsInt() / capacity;
+        }
+    }
+}
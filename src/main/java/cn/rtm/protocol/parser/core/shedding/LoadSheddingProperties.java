@@ -0,0 +1,169 @@
+package cn.rtm.protocol.parser.core.shedding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  负载降级配置，前缀为 protocol.shedding
+ */
+@ConfigurationProperties(prefix = "protocol.shedding")
+public class LoadSheddingProperties {
+
+    /**
+     *  是否启用负载降级
+     */
+    private boolean enabled = false;
+
+    /**
+     *  负载评估间隔（毫秒）
+     */
+    private long intervalMillis = 1000L;
+
+    /**
+     *  抓包延迟阈值（毫秒），数据包处理时间与抓包时间之差超过该值视为过载
+     */
+    private long lagHighMillis = 2000L;
+
+    /**
+     *  解析线程繁忙比例阈值，即评估间隔内解析线程处理数据包的平均耗时占比
+     */
+    private double utilizationHigh = 0.9;
+
+    /**
+     *  写入队列使用率阈值
+     */
+    private double queueHigh = 0.8;
+
+    /**
+     *  进程 cpu 使用率阈值，取值 (0, 1]，为 0 则不参与评估
+     */
+    private double cpuHigh = 0.9;
+
+    /**
+     *  负载低于阈值的该比例时视为负载已下降
+     */
+    private double lowWatermark = 0.5;
+
+    /**
+     *  连续过载的评估次数达到该值后提升一级降级级别
+     */
+    private int escalateAfter = 3;
+
+    /**
+     *  连续低负载的评估次数达到该值后降低一级降级级别
+     */
+    private int restoreAfter = 10;
+
+    /**
+     *  允许的最高降级级别
+     */
+    private SheddingLevel maxLevel = SheddingLevel.SAMPLE_FLOWS;
+
+    /**
+     *  低优先级 api 名称，取值为 {@link org.apache.kafka.common.protocol.ApiKeys} 枚举名称
+     */
+    private List<String> lowPriorityApis = Arrays.asList("METADATA", "API_VERSIONS", "HEARTBEAT", "FIND_COORDINATOR",
+            "LIST_OFFSETS", "OFFSET_FETCH", "DESCRIBE_GROUPS", "LIST_GROUPS", "DESCRIBE_CONFIGS", "DESCRIBE_CLUSTER");
+
+    /**
+     *  {@link SheddingLevel#SAMPLE_FLOWS} 级别的连接采样率，取值 (0, 1]，配置的采样率更低时保持配置的采样率
+     */
+    private double samplingRate = 0.25;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getLagHighMillis() {
+        return lagHighMillis;
+    }
+
+    public void setLagHighMillis(long lagHighMillis) {
+        this.lagHighMillis = lagHighMillis;
+    }
+
+    public double getUtilizationHigh() {
+        return utilizationHigh;
+    }
+
+    public void setUtilizationHigh(double utilizationHigh) {
+        this.utilizationHigh = utilizationHigh;
+    }
+
+    public double getQueueHigh() {
+        return queueHigh;
+    }
+
+    public void setQueueHigh(double queueHigh) {
+        this.queueHigh = queueHigh;
+    }
+
+    public double getCpuHigh() {
+        return cpuHigh;
+    }
+
+    public void setCpuHigh(double cpuHigh) {
+        this.cpuHigh = cpuHigh;
+    }
+
+    public double getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public void setLowWatermark(double lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+
+    public int getEscalateAfter() {
+        return escalateAfter;
+    }
+
+    public void setEscalateAfter(int escalateAfter) {
+        this.escalateAfter = escalateAfter;
+    }
+
+    public int getRestoreAfter() {
+        return restoreAfter;
+    }
+
+    public void setRestoreAfter(int restoreAfter) {
+        this.restoreAfter = restoreAfter;
+    }
+
+    public SheddingLevel getMaxLevel() {
+        return maxLevel;
+    }
+
+    public void setMaxLevel(SheddingLevel maxLevel) {
+        this.maxLevel = maxLevel;
+    }
+
+    public List<String> getLowPriorityApis() {
+        return lowPriorityApis;
+    }
+
+    public void setLowPriorityApis(List<String> lowPriorityApis) {
+        this.lowPriorityApis = lowPriorityApis;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+}
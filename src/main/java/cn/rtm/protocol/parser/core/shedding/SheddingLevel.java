@@ -0,0 +1,36 @@
+package cn.rtm.protocol.parser.core.shedding;
+
+/**
+ *  降级级别，级别越高丢弃的解析内容越多，每个级别包含低级别的全部降级措施
+ */
+public enum SheddingLevel {
+
+    /**
+     *  全量解析
+     */
+    NONE,
+
+    /**
+     *  不再反序列化 record key 与 value，提取的数据仅保留 topic、耗时等元信息
+     */
+    SKIP_RECORD_VALUES,
+
+    /**
+     *  低优先级 api 仅解析请求头，不解析请求体与响应体
+     */
+    SKIP_LOW_PRIORITY_BODIES,
+
+    /**
+     *  降低连接采样率，新建连接按降级采样率采样
+     */
+    SAMPLE_FLOWS;
+
+    /**
+     *  是否包含指定级别的降级措施
+     * @param level 降级级别
+     * @return 返回 true 则当前级别不低于指定级别
+     */
+    public boolean atLeast(SheddingLevel level) {
+        return compareTo(level) >= 0;
+    }
+}
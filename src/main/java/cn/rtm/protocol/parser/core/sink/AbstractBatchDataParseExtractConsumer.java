@@ -0,0 +1,298 @@
+package cn.rtm.protocol.parser.core.sink;
+
+import cn.rtm.protocol.parser.DataParseExtractConsumer;
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  异步批量写入模板类，解析线程只负责将提取的数据放入有界队列，由后台写入线程按批次写入，避免写入缓慢阻塞数据包解析
+ *
+ * <ul>
+ * <li> 方法 {@link #accept(List)} 将数据放入队列，队列已满时按 {@link OverflowPolicy} 阻塞或丢弃，
+ * 阻塞策略下单次调用累计等待不超过 {@link BatchSinkProperties#getOfferTimeoutMillis()}，写入缓慢时不会长时间占用解析线程
+ * <li> 后台写入线程按 {@link BatchSinkProperties#getBatchSize()} 或 {@link BatchSinkProperties#getLingerMillis()} 组装批次，
+ * 任一条件满足即写入
+ * <li> 子类实现 {@link #writeBatch(List)} 执行真正的写入，写入失败按配置重试，重试耗尽后丢弃该批次
+ * <li> 方法 {@link #close()} 停止写入线程，并写入队列中剩余的数据
+ * </ul>
+ */
+public abstract class AbstractBatchDataParseExtractConsumer implements DataParseExtractConsumer<List<ProtocolParseData>>, Closeable, StateSizeProvider {
+
+    protected Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     *  写入线程停止最长等待时间
+     */
+    private static final long WRITER_STOP_TIMEOUT_MILLIS = 30 * 1000L;
+
+    /**
+     *  批量写入配置
+     */
+    private final BatchSinkProperties properties;
+
+    /**
+     *  待写入数据队列
+     */
+    private final BlockingQueue<ProtocolParseData> queue;
+
+    /**
+     *  后台写入线程
+     */
+    private final List<Thread> writers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    private final AtomicLong acceptedRecords = new AtomicLong();
+
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    private final AtomicLong writtenRecords = new AtomicLong();
+
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    /**
+     *  批次写入耗时，包含重试
+     */
+    private final Timer flushTimer;
+
+    public AbstractBatchDataParseExtractConsumer(BatchSinkProperties properties) {
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        String sink = getClass().getSimpleName();
+        this.flushTimer = ProtocolMetrics.timer(ProtocolMetrics.SINK_FLUSH, "sink", sink);
+        ProtocolMetrics.gauge(ProtocolMetrics.SINK_QUEUE_DEPTH, queue, BlockingQueue::size, "sink", sink);
+        ProtocolMetrics.functionCounter(ProtocolMetrics.SINK_RECORDS, acceptedRecords, AtomicLong::get, "sink", sink, "result", "accepted");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.SINK_RECORDS, droppedRecords, AtomicLong::get, "sink", sink, "result", "dropped");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.SINK_RECORDS, writtenRecords, AtomicLong::get, "sink", sink, "result", "written");
+        ProtocolMetrics.functionCounter(ProtocolMetrics.SINK_FAILED_BATCHES, failedBatches, AtomicLong::get, "sink", sink);
+    }
+
+
+    /**
+     *  启动后台写入线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < Math.max(1, properties.getWriterThreads()); i++) {
+            Thread writer = new Thread(this::runWriter, getClass().getSimpleName() + "-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+
+    @Override
+    public void accept(List<ProtocolParseData> extractData) {
+        if (CollectionUtils.isEmpty(extractData)) {
+            return;
+        }
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getOfferTimeoutMillis());
+        for (ProtocolParseData data : extractData) {
+            acceptedRecords.incrementAndGet();
+            if (!offer(data, deadlineNanos)) {
+                droppedRecords.incrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     *  按队列溢出策略将数据放入队列
+     * @param data 待写入数据
+     * @param deadlineNanos {@link OverflowPolicy#BLOCK} 策略下本次 {@link #accept(List)} 调用的等待截止时间，超过后不再等待
+     * @return 返回 true 则放入成功，反之数据被丢弃
+     */
+    private boolean offer(ProtocolParseData data, long deadlineNanos) {
+        switch (properties.getOverflowPolicy()) {
+            case BLOCK:
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return queue.offer(data);
+                }
+                try {
+                    return queue.offer(data, remainingNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DROP_OLDEST:
+                while (!queue.offer(data)) {
+                    if (queue.poll() != null) {
+                        droppedRecords.incrementAndGet();
+                    }
+                }
+                return true;
+            case DROP_NEWEST:
+            default:
+                return queue.offer(data);
+        }
+    }
+
+
+    /**
+     *  写入线程主循环，停止后写入队列剩余数据再退出
+     */
+    private void runWriter() {
+        List<ProtocolParseData> batch = new ArrayList<>(properties.getBatchSize());
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    collectBatch(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (!batch.isEmpty()) {
+                    long flushStartNanos = System.nanoTime();
+                    flush(batch);
+                    flushTimer.record(System.nanoTime() - flushStartNanos, TimeUnit.NANOSECONDS);
+                    batch.clear();
+                }
+            }
+        } finally {
+            writerStopped();
+        }
+    }
+
+
+    /**
+     *  组装写入批次，达到批次大小或等待超过 linger 时间即返回
+     * @param batch 存储批次数据
+     * @throws InterruptedException 等待数据时线程中断
+     */
+    private void collectBatch(List<ProtocolParseData> batch) throws InterruptedException {
+        long lingerMillis = properties.getLingerMillis();
+        ProtocolParseData first = queue.poll(lingerMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        int batchSize = properties.getBatchSize();
+        long deadline = System.currentTimeMillis() + lingerMillis;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.currentTimeMillis();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            ProtocolParseData next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+
+    /**
+     *  写入批次数据，失败后按配置重试，重试耗尽则丢弃该批次
+     * @param batch 待写入批次
+     */
+    private void flush(List<ProtocolParseData> batch) {
+        int maxRetries = Math.max(0, properties.getMaxRetries());
+        for (int attempt = 0; ; attempt++) {
+            try {
+                writeBatch(batch);
+                writtenRecords.addAndGet(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    failedBatches.incrementAndGet();
+                    droppedRecords.addAndGet(batch.size());
+                    log.error("批量写入 {} 条数据失败，已重试 {} 次，丢弃该批次！", batch.size(), attempt, e);
+                    return;
+                }
+                log.warn("批量写入 {} 条数据失败，第 {} 次重试：{}", batch.size(), attempt + 1, e.getMessage());
+                try {
+                    Thread.sleep(properties.getRetryBackoffMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    droppedRecords.addAndGet(batch.size());
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     *  执行批次写入，由后台写入线程调用，同一线程内的调用串行执行
+     * @param batch 待写入批次
+     * @throws Exception 写入失败抛出异常，将按配置重试
+     */
+    protected abstract void writeBatch(List<ProtocolParseData> batch) throws Exception;
+
+
+    /**
+     *  写入线程退出前调用，子类可释放线程持有的资源
+     */
+    protected void writerStopped() {
+    }
+
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(WRITER_STOP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writers.clear();
+    }
+
+
+    /**
+     *  获取当前队列中待写入的数据量
+     * @return 返回队列深度
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        return Collections.singletonMap("sink." + getClass().getSimpleName() + ".queue", (long) queue.size());
+    }
+
+    public int getQueueCapacity() {
+        return properties.getQueueCapacity();
+    }
+
+    public long getAcceptedRecords() {
+        return acceptedRecords.get();
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    public long getWrittenRecords() {
+        return writtenRecords.get();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+}
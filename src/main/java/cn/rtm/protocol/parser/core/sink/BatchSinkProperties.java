@@ -0,0 +1,111 @@
+package cn.rtm.protocol.parser.core.sink;
+
+/**
+ *  异步批量写入公共配置，各写入实现通过继承扩展自身配置
+ */
+public class BatchSinkProperties {
+
+    /**
+     *  待写入数据队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     *  单批次最大写入数量
+     */
+    private int batchSize = 500;
+
+    /**
+     *  批次未满时最长等待时间，超过后立即写入
+     */
+    private long lingerMillis = 200;
+
+    /**
+     *  后台写入线程数量
+     */
+    private int writerThreads = 2;
+
+    /**
+     *  单批次写入失败后最大重试次数
+     */
+    private int maxRetries = 3;
+
+    /**
+     *  重试间隔时间
+     */
+    private long retryBackoffMillis = 500;
+
+    /**
+     *  队列已满时的处理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+    /**
+     *  {@link OverflowPolicy#BLOCK} 策略下单次写入调用的最长累计等待时间
+     */
+    private long offerTimeoutMillis = 10;
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public void setLingerMillis(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getOfferTimeoutMillis() {
+        return offerTimeoutMillis;
+    }
+
+    public void setOfferTimeoutMillis(long offerTimeoutMillis) {
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+}
@@ -0,0 +1,39 @@
+package cn.rtm.protocol.parser.core.sink;
+
+import cn.rtm.protocol.parser.DataParseExtractConsumer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  组合多个数据消费者，依次将解析提取的数据交给每个消费者处理
+ * @param <D> 提取的解析数据内容
+ */
+public class CompositeDataParseExtractConsumer<D> implements DataParseExtractConsumer<D> {
+
+    private final List<DataParseExtractConsumer<D>> consumers;
+
+    public CompositeDataParseExtractConsumer(List<DataParseExtractConsumer<D>> consumers) {
+        this.consumers = new ArrayList<>(consumers);
+    }
+
+    @Override
+    public void accept(D extractData) {
+        for (DataParseExtractConsumer<D> consumer : consumers) {
+            consumer.accept(extractData);
+        }
+    }
+
+
+    /**
+     *  组合指定的数据消费者，仅有一个时直接返回该消费者
+     * @param consumers 数据消费者
+     * @return 返回组合后的数据消费者
+     * @param <D> 提取的解析数据内容
+     */
+    public static <D> DataParseExtractConsumer<D> of(List<DataParseExtractConsumer<D>> consumers) {
+        if (consumers.size() == 1) {
+            return consumers.get(0);
+        }
+        return new CompositeDataParseExtractConsumer<>(consumers);
+    }
+}
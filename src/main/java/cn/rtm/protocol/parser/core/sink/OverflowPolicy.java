@@ -0,0 +1,22 @@
+package cn.rtm.protocol.parser.core.sink;
+
+/**
+ *  数据写入队列已满时的处理策略
+ */
+public enum OverflowPolicy {
+
+    /**
+     *  阻塞等待队列空闲，单次写入调用内累计等待超过等待时间后，剩余数据在队列已满时直接丢弃
+     */
+    BLOCK,
+
+    /**
+     *  丢弃当前待写入的数据
+     */
+    DROP_NEWEST,
+
+    /**
+     *  丢弃队列中最早的数据，为当前数据腾出空间
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,144 @@
+package cn.rtm.protocol.parser.core.sink.jdbc;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.sink.AbstractBatchDataParseExtractConsumer;
+import com.alibaba.fastjson.JSON;
+import org.apache.commons.collections4.MapUtils;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *  通过 jdbc 批量写入解析提取的数据，每个写入线程持有独立的数据库连接，写入失败后下次写入前校验连接，失效则重建，
+ *  数据表结构参考 classpath:sql/protocol_parse_data.sql
+ */
+public class JdbcDataParseExtractConsumer extends AbstractBatchDataParseExtractConsumer {
+
+    /**
+     *  连接有效性校验超时时间（秒）
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final JdbcSinkProperties properties;
+
+    /**
+     *  批量写入 sql
+     */
+    private final String insertSql;
+
+    /**
+     *  写入线程持有的数据库连接
+     */
+    private final ThreadLocal<Connection> connection = new ThreadLocal<>();
+
+    /**
+     *  写入线程上次写入是否失败，失败后下次写入前需校验连接有效性
+     */
+    private final ThreadLocal<Boolean> validationRequired = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public JdbcDataParseExtractConsumer(JdbcSinkProperties properties) {
+        super(properties);
+        this.properties = properties;
+        this.insertSql = "INSERT INTO " + properties.getTable() +
+                " (src_ip, src_port, dest_ip, dest_port, client_id, request_api, protocol_type, request_data," +
+                " response_data, response_data_length, start_time, end_time, execute_time, extra_values)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+
+    @Override
+    protected void writeBatch(List<ProtocolParseData> batch) throws SQLException {
+        Connection conn = getConnection();
+        try (PreparedStatement statement = conn.prepareStatement(insertSql)) {
+            for (ProtocolParseData data : batch) {
+                statement.setString(1, data.getSrcIp());
+                statement.setInt(2, data.getSrcPort());
+                statement.setString(3, data.getDestIp());
+                statement.setInt(4, data.getDestPort());
+                statement.setString(5, data.getClientId());
+                statement.setString(6, data.getRequestApi());
+                statement.setString(7, data.getProtocolType());
+                statement.setString(8, data.getRequestData());
+                statement.setString(9, data.getResponseData());
+                statement.setInt(10, data.getResponseDataLength());
+                statement.setTimestamp(11, toTimestamp(data.getStartTime()));
+                statement.setTimestamp(12, toTimestamp(data.getEndTime()));
+                statement.setLong(13, data.getExecuteTime());
+                statement.setString(14, MapUtils.isEmpty(data.getExtraValues()) ? null : JSON.toJSONString(data.getExtraValues()));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            validationRequired.set(Boolean.TRUE);
+            throw e;
+        }
+    }
+
+
+    /**
+     *  获取当前写入线程的数据库连接，不存在则创建，上次写入失败时先校验连接，已失效则重新创建
+     * @return 返回数据库连接
+     * @throws SQLException 创建连接失败
+     */
+    private Connection getConnection() throws SQLException {
+        Connection conn = connection.get();
+        if (conn != null && !validationRequired.get()) {
+            return conn;
+        }
+        validationRequired.set(Boolean.FALSE);
+        if (conn != null && isValid(conn)) {
+            return conn;
+        }
+        closeConnection();
+        conn = DriverManager.getConnection(properties.getUrl(), properties.getUsername(), properties.getPassword());
+        conn.setAutoCommit(false);
+        connection.set(conn);
+        return conn;
+    }
+
+
+    private boolean isValid(Connection conn) {
+        try {
+            return conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+
+    private void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            log.debug("回滚批量写入失败：{}", e.getMessage());
+        }
+    }
+
+
+    private void closeConnection() {
+        Connection conn = connection.get();
+        connection.remove();
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.debug("关闭数据库连接失败：{}", e.getMessage());
+        }
+    }
+
+
+    @Override
+    protected void writerStopped() {
+        closeConnection();
+        validationRequired.remove();
+    }
+
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+}
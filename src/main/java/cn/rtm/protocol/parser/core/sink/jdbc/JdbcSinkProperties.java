@@ -0,0 +1,70 @@
+package cn.rtm.protocol.parser.core.sink.jdbc;
+
+import cn.rtm.protocol.parser.core.sink.BatchSinkProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  jdbc 批量写入配置，前缀为 protocol.sink.jdbc
+ */
+@ConfigurationProperties(prefix = "protocol.sink.jdbc")
+public class JdbcSinkProperties extends BatchSinkProperties {
+
+    /**
+     *  是否启用 jdbc 写入，未启用时使用默认的数据消费者
+     */
+    private boolean enabled = false;
+
+    /**
+     *  数据库连接地址
+     */
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    /**
+     *  写入的数据表名称
+     */
+    private String table = "protocol_parse_data";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+}
@@ -0,0 +1,472 @@
+package cn.rtm.protocol.parser.core.sink.store;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.codec.ProtocolParseDataCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ *  存储分段，由数据文件（.log）、稀疏时间索引（.timeindex）和 topic/clientId 索引（.keyindex）组成
+ *
+ * <ul>
+ * <li> 数据文件按固定大小预分配并通过内存映射顺序追加，每次追加一个数据块，数据块格式为：
+ * blockLength(int32) crc32(int32) recordCount(int32) minTimestamp(int64) maxTimestamp(int64) records，
+ * records 由 {@link ProtocolParseDataCodec} 编码，每个数据块使用独立的字符串字典，
+ * blockLength 为 0 表示数据结束
+ * <li> 时间索引每个数据块一条：minTimestamp(int64) maxTimestamp(int64) position(int64)
+ * <li> key 索引为数据块中每个不同的 topic 和 clientId 各一条：type(int8) hash(int64) position(int64)，
+ * 查询时按 hash 定位数据块后再精确过滤
+ * <li> 索引在数据块写入完成后追加，查询只可见已建立索引的数据块
+ * </ul>
+ */
+public class RecordSegment implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordSegment.class);
+
+    /**
+     *  数据块头长度：blockLength + crc32 + recordCount + minTimestamp + maxTimestamp
+     */
+    static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+
+    private static final int TIME_INDEX_ENTRY_SIZE = 8 + 8 + 8;
+
+    private static final int KEY_INDEX_ENTRY_SIZE = 1 + 8 + 8;
+
+    static final byte KEY_TYPE_TOPIC = 0;
+
+    static final byte KEY_TYPE_CLIENT_ID = 1;
+
+    private final long segmentId;
+
+    private final File dataFile;
+
+    private final File timeIndexFile;
+
+    private final File keyIndexFile;
+
+    /**
+     *  数据文件读取通道
+     */
+    private final FileChannel dataChannel;
+
+    /**
+     *  活跃分段的数据文件映射，已封存的分段为 null
+     */
+    private MappedByteBuffer mappedData;
+
+    private FileChannel timeIndexChannel;
+
+    private FileChannel keyIndexChannel;
+
+    /**
+     *  数据写入位置
+     */
+    private int writePosition;
+
+    /**
+     *  数据文件容量
+     */
+    private final long capacity;
+
+    private volatile long minTimestamp = Long.MAX_VALUE;
+
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+
+    /**
+     *  时间索引，每 3 个元素为一条：minTimestamp maxTimestamp position
+     */
+    private long[] timeIndex = new long[3 * 64];
+
+    private volatile int timeIndexSize;
+
+    /**
+     *  key 索引，key: type 与 hash 组合，value: 数据块位置
+     */
+    private final Map<Long, List<Long>> keyIndex = new HashMap<>();
+
+    private RecordSegment(long segmentId, File directory, long capacity) throws IOException {
+        this.segmentId = segmentId;
+        String baseName = String.format("%020d", segmentId);
+        this.dataFile = new File(directory, baseName + ".log");
+        this.timeIndexFile = new File(directory, baseName + ".timeindex");
+        this.keyIndexFile = new File(directory, baseName + ".keyindex");
+        this.capacity = capacity;
+        this.dataChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+    }
+
+
+    /**
+     *  创建新的活跃分段
+     * @param segmentId 分段标识，单调递增
+     * @param directory 存储目录
+     * @param capacity 数据文件容量
+     * @return 返回可写入的分段
+     */
+    static RecordSegment create(long segmentId, File directory, long capacity) throws IOException {
+        String baseName = String.format("%020d", segmentId);
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, baseName + ".log"), "rw")) {
+            file.setLength(capacity);
+            RecordSegment segment = new RecordSegment(segmentId, directory, capacity);
+            segment.mappedData = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            segment.timeIndexChannel = FileChannel.open(segment.timeIndexFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            segment.keyIndexChannel = FileChannel.open(segment.keyIndexFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return segment;
+        }
+    }
+
+
+    /**
+     *  打开已存在的分段，以只读方式加载，索引文件缺失时扫描数据文件重建
+     * @param segmentId 分段标识
+     * @param directory 存储目录
+     * @return 返回只读分段
+     */
+    static RecordSegment open(long segmentId, File directory) throws IOException {
+        String baseName = String.format("%020d", segmentId);
+        File dataFile = new File(directory, baseName + ".log");
+        RecordSegment segment = new RecordSegment(segmentId, directory, dataFile.length());
+        if (segment.timeIndexFile.exists() && segment.keyIndexFile.exists()) {
+            segment.loadIndexes();
+        } else {
+            segment.rebuildIndexes();
+        }
+        return segment;
+    }
+
+
+    /**
+     *  判断剩余空间是否可写入指定大小的数据块
+     * @param payloadSize 数据块记录内容大小
+     * @return 返回 true 则可写入，反之 false
+     */
+    boolean hasRoomFor(int payloadSize) {
+        return mappedData != null && writePosition + BLOCK_HEADER_SIZE + payloadSize + 4 <= capacity;
+    }
+
+
+    /**
+     *  追加一个数据块并建立索引
+     * @param records 数据块包含的记录
+     * @param payload 编码后的记录内容
+     */
+    void append(List<ProtocolParseData> records, byte[] payload) throws IOException {
+        long blockMin = Long.MAX_VALUE;
+        long blockMax = Long.MIN_VALUE;
+        Set<String> topics = new HashSet<>();
+        Set<String> clientIds = new HashSet<>();
+        for (ProtocolParseData record : records) {
+            long timestamp = timestampOf(record);
+            blockMin = Math.min(blockMin, timestamp);
+            blockMax = Math.max(blockMax, timestamp);
+            if (record.getRequestData() != null) {
+                topics.add(record.getRequestData());
+            }
+            if (record.getClientId() != null) {
+                clientIds.add(record.getClientId());
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(4 + 8 + 8);
+        header.putInt(records.size()).putLong(blockMin).putLong(blockMax).flip();
+        crc.update(header.array(), 0, header.limit());
+        crc.update(payload, 0, payload.length);
+
+        long position = writePosition;
+        ByteBuffer block = mappedData.duplicate();
+        block.position(writePosition);
+        block.putInt(BLOCK_HEADER_SIZE - 4 + payload.length);
+        block.putInt((int) crc.getValue());
+        block.put(header);
+        block.put(payload);
+        writePosition = block.position();
+
+        ByteBuffer timeEntry = ByteBuffer.allocate(TIME_INDEX_ENTRY_SIZE);
+        timeEntry.putLong(blockMin).putLong(blockMax).putLong(position).flip();
+        writeFully(timeIndexChannel, timeEntry);
+
+        ByteBuffer keyEntries = ByteBuffer.allocate(KEY_INDEX_ENTRY_SIZE * (topics.size() + clientIds.size()));
+        for (String topic : topics) {
+            keyEntries.put(KEY_TYPE_TOPIC).putLong(hash(topic)).putLong(position);
+        }
+        for (String clientId : clientIds) {
+            keyEntries.put(KEY_TYPE_CLIENT_ID).putLong(hash(clientId)).putLong(position);
+        }
+        keyEntries.flip();
+        writeFully(keyIndexChannel, keyEntries);
+
+        synchronized (this) {
+            for (String topic : topics) {
+                addKeyIndex(KEY_TYPE_TOPIC, hash(topic), position);
+            }
+            for (String clientId : clientIds) {
+                addKeyIndex(KEY_TYPE_CLIENT_ID, hash(clientId), position);
+            }
+            addTimeIndex(blockMin, blockMax, position);
+        }
+    }
+
+
+    /**
+     *  查找与时间范围及 key 条件匹配的数据块位置
+     * @param from 开始时间（包含）
+     * @param to 结束时间（包含）
+     * @param topic topic 名称，为 null 则不限制
+     * @param clientId 客户端标识，为 null 则不限制
+     * @return 返回候选数据块位置，按写入顺序排列
+     */
+    synchronized List<Long> findBlocks(long from, long to, String topic, String clientId) {
+        if (timeIndexSize == 0 || maxTimestamp < from || minTimestamp > to) {
+            return Collections.emptyList();
+        }
+        Set<Long> keyCandidates = null;
+        if (topic != null) {
+            keyCandidates = new HashSet<>(keyIndex.getOrDefault(keyIndexId(KEY_TYPE_TOPIC, hash(topic)), Collections.emptyList()));
+        }
+        if (clientId != null) {
+            Set<Long> clientBlocks = new HashSet<>(keyIndex.getOrDefault(keyIndexId(KEY_TYPE_CLIENT_ID, hash(clientId)), Collections.emptyList()));
+            if (keyCandidates == null) {
+                keyCandidates = clientBlocks;
+            } else {
+                keyCandidates.retainAll(clientBlocks);
+            }
+        }
+        List<Long> blocks = new ArrayList<>();
+        for (int i = 0; i < timeIndexSize; i++) {
+            long blockMin = timeIndex[i * 3];
+            long blockMax = timeIndex[i * 3 + 1];
+            long position = timeIndex[i * 3 + 2];
+            if (blockMax < from || blockMin > to) {
+                continue;
+            }
+            if (keyCandidates == null || keyCandidates.contains(position)) {
+                blocks.add(position);
+            }
+        }
+        return blocks;
+    }
+
+
+    /**
+     *  读取指定位置的数据块
+     * @param position 数据块位置
+     * @return 返回数据块包含的记录，数据块损坏则返回空集合
+     */
+    List<ProtocolParseData> readBlock(long position) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(position, lengthBuffer);
+        int blockLength = lengthBuffer.getInt(0);
+        if (blockLength <= 0 || position + 4 + blockLength > capacity) {
+            return Collections.emptyList();
+        }
+        ByteBuffer block = ByteBuffer.allocate(blockLength);
+        readFully(position + 4, block);
+        block.flip();
+        int expectedCrc = block.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(block.array(), 4, blockLength - 4);
+        if ((int) crc.getValue() != expectedCrc) {
+            log.warn("存储分段 {} 位置 {} 数据块校验失败，跳过该数据块", dataFile.getName(), position);
+            return Collections.emptyList();
+        }
+        try {
+            return ProtocolParseDataCodec.decodeBatch(block.array(), BLOCK_HEADER_SIZE - 4, blockLength - (BLOCK_HEADER_SIZE - 4));
+        } catch (IOException e) {
+            log.warn("存储分段 {} 位置 {} 数据块解码失败，跳过该数据块：{}", dataFile.getName(), position, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+
+    /**
+     *  获取记录时间，优先使用请求时间
+     * @param record 解析提取的数据
+     * @return 返回毫秒时间戳
+     */
+    static long timestampOf(ProtocolParseData record) {
+        if (record.getStartTime() != null) {
+            return record.getStartTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        if (record.getEndTime() != null) {
+            return record.getEndTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        return record.getExecuteTime();
+    }
+
+
+    /**
+     *  封存分段，刷新数据到磁盘并释放写入资源，封存后分段只读
+     */
+    void seal() throws IOException {
+        if (mappedData == null) {
+            return;
+        }
+        mappedData.force();
+        mappedData = null;
+        timeIndexChannel.force(true);
+        keyIndexChannel.force(true);
+        timeIndexChannel.close();
+        keyIndexChannel.close();
+    }
+
+
+    /**
+     *  删除分段文件
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(dataFile.toPath());
+        Files.deleteIfExists(timeIndexFile.toPath());
+        Files.deleteIfExists(keyIndexFile.toPath());
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        seal();
+        dataChannel.close();
+    }
+
+
+    private void loadIndexes() throws IOException {
+        byte[] timeBytes = Files.readAllBytes(timeIndexFile.toPath());
+        ByteBuffer timeEntries = ByteBuffer.wrap(timeBytes, 0, timeBytes.length - timeBytes.length % TIME_INDEX_ENTRY_SIZE);
+        while (timeEntries.hasRemaining()) {
+            addTimeIndex(timeEntries.getLong(), timeEntries.getLong(), timeEntries.getLong());
+        }
+        byte[] keyBytes = Files.readAllBytes(keyIndexFile.toPath());
+        ByteBuffer keyEntries = ByteBuffer.wrap(keyBytes, 0, keyBytes.length - keyBytes.length % KEY_INDEX_ENTRY_SIZE);
+        while (keyEntries.hasRemaining()) {
+            addKeyIndex(keyEntries.get(), keyEntries.getLong(), keyEntries.getLong());
+        }
+    }
+
+
+    private void rebuildIndexes() throws IOException {
+        long position = 0;
+        while (position + 4 <= capacity) {
+            List<ProtocolParseData> records = readBlock(position);
+            if (records.isEmpty()) {
+                break;
+            }
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+            readFully(position, lengthBuffer);
+            long blockMin = Long.MAX_VALUE;
+            long blockMax = Long.MIN_VALUE;
+            for (ProtocolParseData record : records) {
+                long timestamp = timestampOf(record);
+                blockMin = Math.min(blockMin, timestamp);
+                blockMax = Math.max(blockMax, timestamp);
+                if (record.getRequestData() != null) {
+                    addKeyIndex(KEY_TYPE_TOPIC, hash(record.getRequestData()), position);
+                }
+                if (record.getClientId() != null) {
+                    addKeyIndex(KEY_TYPE_CLIENT_ID, hash(record.getClientId()), position);
+                }
+            }
+            addTimeIndex(blockMin, blockMax, position);
+            position += 4 + lengthBuffer.getInt(0);
+        }
+        log.info("存储分段 {} 索引缺失，已扫描数据文件重建 {} 个数据块索引", dataFile.getName(), timeIndexSize);
+    }
+
+
+    private void addTimeIndex(long blockMin, long blockMax, long position) {
+        if ((timeIndexSize + 1) * 3 > timeIndex.length) {
+            timeIndex = Arrays.copyOf(timeIndex, timeIndex.length * 2);
+        }
+        timeIndex[timeIndexSize * 3] = blockMin;
+        timeIndex[timeIndexSize * 3 + 1] = blockMax;
+        timeIndex[timeIndexSize * 3 + 2] = position;
+        timeIndexSize++;
+        minTimestamp = Math.min(minTimestamp, blockMin);
+        maxTimestamp = Math.max(maxTimestamp, blockMax);
+    }
+
+
+    private void addKeyIndex(byte type, long hash, long position) {
+        List<Long> positions = keyIndex.computeIfAbsent(keyIndexId(type, hash), key -> new ArrayList<>(4));
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+
+
+    private static long keyIndexId(byte type, long hash) {
+        return hash * 31 + type;
+    }
+
+
+    /**
+     *  64 位 FNV-1a 哈希
+     * @param key 索引 key
+     * @return 返回哈希值
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public long getSegmentId() {
+        return segmentId;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     *  获取分段占用的磁盘空间
+     * @return 返回数据文件与索引文件大小之和
+     */
+    public long sizeInBytes() {
+        return dataFile.length() + timeIndexFile.length() + keyIndexFile.length();
+    }
+
+    public int blockCount() {
+        return timeIndexSize;
+    }
+
+    boolean isActive() {
+        return mappedData != null;
+    }
+}
@@ -0,0 +1,28 @@
+package cn.rtm.protocol.parser.core.sink.store;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.sink.AbstractBatchDataParseExtractConsumer;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *  将解析提取的数据写入本地分段存储 {@link SegmentedRecordStore}，由单个后台线程顺序写入，不占用解析线程
+ */
+public class RecordStoreDataParseExtractConsumer extends AbstractBatchDataParseExtractConsumer {
+
+    private final SegmentedRecordStore recordStore;
+
+    public RecordStoreDataParseExtractConsumer(RecordStoreProperties properties, SegmentedRecordStore recordStore) {
+        super(properties);
+        this.recordStore = recordStore;
+    }
+
+    @Override
+    protected void writeBatch(List<ProtocolParseData> batch) throws IOException {
+        recordStore.append(batch);
+    }
+
+    public SegmentedRecordStore getRecordStore() {
+        return recordStore;
+    }
+}
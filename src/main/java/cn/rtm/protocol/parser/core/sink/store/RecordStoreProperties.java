@@ -0,0 +1,88 @@
+package cn.rtm.protocol.parser.core.sink.store;
+
+import cn.rtm.protocol.parser.core.sink.BatchSinkProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  本地分段存储配置，前缀为 protocol.sink.store
+ */
+@ConfigurationProperties(prefix = "protocol.sink.store")
+public class RecordStoreProperties extends BatchSinkProperties {
+
+    /**
+     *  是否启用本地分段存储
+     */
+    private boolean enabled = false;
+
+    /**
+     *  存储目录
+     */
+    private String directory = "data/records";
+
+    /**
+     *  单个分段数据文件大小，数据文件整体内存映射写入，不能超过 {@link Integer#MAX_VALUE}
+     */
+    private long segmentBytes = 128L * 1024 * 1024;
+
+    /**
+     *  所有分段最大占用空间，超过后删除最早的分段
+     */
+    private long retentionBytes = 10L * 1024 * 1024 * 1024;
+
+    /**
+     *  分段最长保留时间（小时）
+     */
+    private long retentionHours = 72;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(long segmentBytes) {
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("分段数据文件大小应在 1 到 " + Integer.MAX_VALUE + " 字节之间：" + segmentBytes);
+        }
+        this.segmentBytes = segmentBytes;
+    }
+
+    public long getRetentionBytes() {
+        return retentionBytes;
+    }
+
+    public void setRetentionBytes(long retentionBytes) {
+        this.retentionBytes = retentionBytes;
+    }
+
+    public long getRetentionHours() {
+        return retentionHours;
+    }
+
+    public void setRetentionHours(long retentionHours) {
+        this.retentionHours = retentionHours;
+    }
+
+    /**
+     *  分段存储为顺序写入，固定使用一个写入线程
+     * @return 返回写入线程数量
+     */
+    @Override
+    public int getWriterThreads() {
+        return 1;
+    }
+}
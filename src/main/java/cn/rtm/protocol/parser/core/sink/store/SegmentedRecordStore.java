@@ -0,0 +1,217 @@
+package cn.rtm.protocol.parser.core.sink.store;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.codec.ProtocolParseDataCodec;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ *  分段追加写入的本地记录存储，用于在抓包主机上保存数天的解析结果，并支持按时间范围、topic、clientId 查询
+ *
+ * <ul>
+ * <li> 方法 {@link #append(List)} 将一批记录编码为一个数据块，顺序追加到活跃分段，空间不足时封存当前分段并创建新分段
+ * <li> 分段按 {@link RecordStoreProperties#getRetentionBytes()} 和 {@link RecordStoreProperties#getRetentionHours()}
+ * 从最早的分段开始删除，活跃分段不会被删除
+ * <li> 方法 {@link #query(long, long, String, String, int)} 先通过分段的时间索引与 key 索引定位数据块，再精确过滤记录
+ * <li> 写入仅允许单线程调用，查询可与写入并发执行
+ * </ul>
+ */
+public class SegmentedRecordStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedRecordStore.class);
+
+    /**
+     *  未发生分段切换时，按该间隔执行数据保留清理
+     */
+    private static final long RETENTION_CHECK_INTERVAL_MILLIS = 60 * 1000L;
+
+    private final RecordStoreProperties properties;
+
+    private final File directory;
+
+    /**
+     *  存储分段，按创建顺序排列，最后一个为活跃分段
+     */
+    private final List<RecordSegment> segments = new CopyOnWriteArrayList<>();
+
+    private RecordSegment activeSegment;
+
+    private long nextSegmentId;
+
+    private long lastRetentionCheckTime = System.currentTimeMillis();
+
+    public SegmentedRecordStore(RecordStoreProperties properties) throws IOException {
+        this.properties = properties;
+        this.directory = new File(properties.getDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建存储目录：" + directory.getAbsolutePath());
+        }
+        this.loadSegments();
+    }
+
+
+    /**
+     *  加载存储目录中已存在的分段，已存在的分段均以只读方式打开，新数据写入新的分段
+     */
+    private void loadSegments() throws IOException {
+        File[] dataFiles = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        if (dataFiles == null) {
+            return;
+        }
+        List<Long> segmentIds = new ArrayList<>();
+        for (File dataFile : dataFiles) {
+            try {
+                segmentIds.add(Long.parseLong(dataFile.getName().substring(0, dataFile.getName().length() - 4)));
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法识别的存储文件：{}", dataFile.getName());
+            }
+        }
+        segmentIds.sort(Long::compare);
+        for (Long segmentId : segmentIds) {
+            segments.add(RecordSegment.open(segmentId, directory));
+            nextSegmentId = segmentId + 1;
+        }
+        log.info("加载本地存储分段 {} 个，存储目录：{}", segments.size(), directory.getAbsolutePath());
+    }
+
+
+    /**
+     *  追加一批记录
+     * @param records 待写入的记录
+     */
+    public void append(List<ProtocolParseData> records) throws IOException {
+        if (CollectionUtils.isEmpty(records)) {
+            return;
+        }
+        byte[] payload = ProtocolParseDataCodec.encodeBatch(records);
+        if (activeSegment == null || !activeSegment.hasRoomFor(payload.length)) {
+            this.roll(payload.length);
+        }
+        activeSegment.append(records, payload);
+        long now = System.currentTimeMillis();
+        if (now - lastRetentionCheckTime > RETENTION_CHECK_INTERVAL_MILLIS) {
+            this.enforceRetention(now);
+        }
+    }
+
+
+    /**
+     *  封存当前活跃分段并创建新分段，随后执行数据保留清理
+     * @param payloadSize 待写入数据块大小，超过分段大小时按数据块大小创建分段
+     */
+    private void roll(int payloadSize) throws IOException {
+        if (activeSegment != null) {
+            activeSegment.seal();
+        }
+        long capacity = Math.max(properties.getSegmentBytes(), RecordSegment.BLOCK_HEADER_SIZE + payloadSize + 4L);
+        activeSegment = RecordSegment.create(nextSegmentId++, directory, capacity);
+        segments.add(activeSegment);
+        this.enforceRetention(System.currentTimeMillis());
+    }
+
+
+    /**
+     *  按总大小和保留时间删除最早的已封存分段
+     * @param now 当前时间
+     */
+    void enforceRetention(long now) {
+        lastRetentionCheckTime = now;
+        long retentionMillis = properties.getRetentionHours() * 60 * 60 * 1000L;
+        long totalBytes = 0;
+        for (RecordSegment segment : segments) {
+            totalBytes += segment.sizeInBytes();
+        }
+        while (segments.size() > 1) {
+            RecordSegment oldest = segments.get(0);
+            boolean expired = oldest.blockCount() > 0 && now - oldest.getMaxTimestamp() > retentionMillis;
+            if (totalBytes <= properties.getRetentionBytes() && !expired) {
+                break;
+            }
+            long size = oldest.sizeInBytes();
+            segments.remove(0);
+            try {
+                oldest.delete();
+            } catch (IOException e) {
+                log.warn("删除过期存储分段 {} 失败：{}", oldest.getSegmentId(), e.getMessage());
+            }
+            totalBytes -= size;
+        }
+    }
+
+
+    /**
+     *  查询指定时间范围内的记录
+     * @param from 开始时间毫秒时间戳（包含）
+     * @param to 结束时间毫秒时间戳（包含）
+     * @param topic topic 名称，为 null 则不限制
+     * @param clientId 客户端标识，为 null 则不限制
+     * @param limit 最大返回数量
+     * @return 返回匹配的记录，按写入顺序排列
+     */
+    public List<ProtocolParseData> query(long from, long to, String topic, String clientId, int limit) {
+        List<ProtocolParseData> result = new ArrayList<>();
+        for (RecordSegment segment : segments) {
+            for (Long position : segment.findBlocks(from, to, topic, clientId)) {
+                List<ProtocolParseData> records;
+                try {
+                    records = segment.readBlock(position);
+                } catch (IOException e) {
+                    // 分段可能已被清理
+                    log.debug("读取存储分段 {} 失败：{}", segment.getSegmentId(), e.getMessage());
+                    break;
+                }
+                for (ProtocolParseData record : records) {
+                    long timestamp = RecordSegment.timestampOf(record);
+                    if (timestamp < from || timestamp > to) {
+                        continue;
+                    }
+                    if (topic != null && !Objects.equals(topic, record.getRequestData())) {
+                        continue;
+                    }
+                    if (clientId != null && !Objects.equals(clientId, record.getClientId())) {
+                        continue;
+                    }
+                    result.add(record);
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     *  获取存储占用的磁盘空间
+     * @return 返回所有分段大小之和
+     */
+    public long sizeInBytes() {
+        long totalBytes = 0;
+        for (RecordSegment segment : segments) {
+            totalBytes += segment.sizeInBytes();
+        }
+        return totalBytes;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        for (RecordSegment segment : segments) {
+            segment.close();
+        }
+        activeSegment = null;
+    }
+}
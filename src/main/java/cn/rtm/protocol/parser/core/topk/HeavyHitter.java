@@ -0,0 +1,35 @@
+package cn.rtm.protocol.parser.core.topk;
+
+/**
+ *  top-K 统计结果，真实值介于 count - error 与 count 之间
+ * @param <K> 统计的 key 类型
+ */
+public class HeavyHitter<K> {
+
+    private final K key;
+
+    private final long count;
+
+    /**
+     *  计数误差上限
+     */
+    private final long error;
+
+    public HeavyHitter(K key, long count, long error) {
+        this.key = key;
+        this.count = count;
+        this.error = error;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getError() {
+        return error;
+    }
+}
@@ -0,0 +1,157 @@
+package cn.rtm.protocol.parser.core.topk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  基于 Space-Saving 算法的 top-K 统计，固定最多跟踪 {@link #capacity} 个 key，内存占用与 key 基数无关
+ *
+ * <ul>
+ * <li> 已跟踪的 key 直接累加权重；未跟踪的 key 在未满时新增，已满时替换当前计数最小的 key，新 key 的计数为被替换 key 的计数加上权重，
+ * 被替换 key 的计数记为新 key 的误差上限
+ * <li> 任意 key 的真实值介于 count - error 与 count 之间，真实值超过 总权重 / capacity 的 key 一定被跟踪
+ * <li> 计数按索引最小堆维护，堆顶为计数最小的 key，更新与替换均为 O(log capacity)
+ * </ul>
+ * @param <K> 统计的 key 类型
+ */
+public class SpaceSavingSketch<K> {
+
+    private final int capacity;
+
+    private final Object[] keys;
+
+    private final long[] counts;
+
+    private final long[] errors;
+
+    /**
+     *  key 在堆中的位置
+     */
+    private final Map<K, Integer> positions;
+
+    private int size;
+
+    /**
+     *  累计权重
+     */
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.keys = new Object[this.capacity];
+        this.counts = new long[this.capacity];
+        this.errors = new long[this.capacity];
+        this.positions = new HashMap<>(this.capacity * 2);
+    }
+
+
+    /**
+     *  累加 key 的权重
+     * @param key 统计的 key
+     * @param weight 权重，小于等于 0 时忽略
+     */
+    public synchronized void add(K key, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+        positions.remove(keyAt(0));
+        keys[0] = key;
+        errors[0] = counts[0];
+        counts[0] += weight;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+
+    /**
+     *  获取计数最高的 key
+     * @param limit 返回数量
+     * @return 返回按计数降序排列的 key
+     */
+    public synchronized List<HeavyHitter<K>> top(int limit) {
+        List<HeavyHitter<K>> hitters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hitters.add(new HeavyHitter<>(keyAt(i), counts[i], errors[i]));
+        }
+        hitters.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return hitters.size() > limit ? new ArrayList<>(hitters.subList(0, Math.max(0, limit))) : hitters;
+    }
+
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int position) {
+        return (K) keys[position];
+    }
+
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+
+    private void siftDown(int position) {
+        while (true) {
+            int left = 2 * position + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && counts[left + 1] < counts[left] ? left + 1 : left;
+            if (counts[position] <= counts[smallest]) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+
+    private void swap(int i, int j) {
+        Object key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        long error = errors[i];
+        errors[i] = errors[j];
+        errors[j] = error;
+        positions.put(keyAt(i), i);
+        positions.put(keyAt(j), j);
+    }
+}
@@ -0,0 +1,165 @@
+package cn.rtm.protocol.parser.core.topk;
+
+import java.util.List;
+
+/**
+ *  按固定时长窗口滚动的 top-K 统计，保留当前窗口与上一个完整窗口
+ *
+ * <ul>
+ * <li> 窗口按调用方传入的时间切换，通常为抓包时间，不读取系统时间，离线回放与延迟处理的数据仍计入其发生时所在的窗口
+ * <li> 首次写入时按写入时间创建窗口，此前查询返回 null；时间到达当前窗口结束时切换，间隔超过一个窗口时上一个窗口为空
+ * <li> 早于当前窗口的迟到数据计入其所在的上一个窗口，早于上一个窗口的数据丢弃，不计入当前窗口
+ * </ul>
+ * @param <K> 统计的 key 类型
+ */
+public class WindowedTopK<K> {
+
+    private final int capacity;
+
+    private final long windowMillis;
+
+    private volatile Window<K> current;
+
+    private volatile Window<K> previous;
+
+    public WindowedTopK(int capacity, long windowMillis) {
+        this.capacity = capacity;
+        this.windowMillis = Math.max(1, windowMillis);
+    }
+
+
+    /**
+     *  累加 key 在时间所在窗口的权重
+     * @param key 统计的 key
+     * @param weight 权重
+     * @param time 数据发生的时间，单位毫秒
+     * @return 返回 false 则数据早于上一个窗口，已丢弃
+     */
+    public boolean add(K key, long weight, long time) {
+        Window<K> window = windowAt(time, true);
+        if (time < window.start) {
+            window = previous;
+            if (window == null || time < window.start) {
+                return false;
+            }
+        }
+        window.sketch.add(key, weight);
+        return true;
+    }
+
+
+    /**
+     *  查询当前窗口，统计时长为窗口开始至指定时间
+     * @param now 当前时间，单位毫秒，通常为最近一次写入的抓包时间
+     * @return 返回当前窗口，尚未写入数据时返回 null
+     */
+    public Window<K> current(long now) {
+        Window<K> window = windowAt(now, false);
+        return window == null ? null : new Window<>(window.sketch, window.start, now - window.start);
+    }
+
+
+    /**
+     *  查询上一个完整窗口
+     * @param now 当前时间，单位毫秒，通常为最近一次写入的抓包时间
+     * @return 返回上一个窗口，尚未完成首个窗口时返回 null
+     */
+    public Window<K> previous(long now) {
+        windowAt(now, false);
+        return previous;
+    }
+
+
+    /**
+     *  获取时间所在的窗口，当前窗口已到期则切换，间隔超过一个窗口时上一个窗口为空
+     * @param now 时间
+     * @param create 尚未创建窗口时是否按该时间创建
+     * @return 返回当前窗口，尚未创建且 create 为 false 时返回 null
+     */
+    private Window<K> windowAt(long now, boolean create) {
+        Window<K> window = current;
+        if (window != null ? now - window.start < windowMillis : !create) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (window == null) {
+                if (!create) {
+                    return null;
+                }
+                current = new Window<>(new SpaceSavingSketch<>(capacity), alignedStart(now));
+                return current;
+            }
+            if (now - window.start < windowMillis) {
+                return window;
+            }
+            long start = alignedStart(now);
+            Window<K> completed = start - window.start == windowMillis ? window
+                    : new Window<>(new SpaceSavingSketch<>(capacity), start - windowMillis);
+            previous = completed.complete(windowMillis);
+            current = new Window<>(new SpaceSavingSketch<>(capacity), start);
+            return current;
+        }
+    }
+
+
+    private long alignedStart(long now) {
+        return now - now % windowMillis;
+    }
+
+
+    /**
+     *  一个统计窗口
+     * @param <K> 统计的 key 类型
+     */
+    public static final class Window<K> {
+
+        private final SpaceSavingSketch<K> sketch;
+
+        private final long start;
+
+        /**
+         *  窗口时长，写入中的窗口为 0，查询当前窗口时为窗口开始至查询时间
+         */
+        private final long duration;
+
+        private Window(SpaceSavingSketch<K> sketch, long start) {
+            this(sketch, start, 0);
+        }
+
+        private Window(SpaceSavingSketch<K> sketch, long start, long duration) {
+            this.sketch = sketch;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        private Window<K> complete(long windowMillis) {
+            return new Window<>(sketch, start, windowMillis);
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+
+        /**
+         *  获取窗口统计时长
+         * @return 返回毫秒数，至少为 1
+         */
+        public long getDurationMillis() {
+            return Math.max(1, duration);
+        }
+
+        public long getTotal() {
+            return sketch.getTotal();
+        }
+
+        public int size() {
+            return sketch.size();
+        }
+
+        public List<HeavyHitter<K>> top(int limit) {
+            return sketch.top(limit);
+        }
+    }
+}
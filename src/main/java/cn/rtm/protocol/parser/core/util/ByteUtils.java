@@ -207,7 +207,7 @@ public final class ByteUtils {
      * @throws IOException              if {@link InputStream} throws {@link IOException}
      * @throws EOFException             if {@link InputStream} throws {@link EOFException}
      */
-    static int readUnsignedVarInt(InputStream in) throws IOException {
+    public static int readUnsignedVarInt(InputStream in) throws IOException {
         byte tmp = (byte) in.read();
         if (tmp >= 0) {
             return tmp;
@@ -0,0 +1,94 @@
+package cn.rtm.protocol.parser.core.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ *  ip 地址的 128 位整数表示，以高、低两个 long 存储，ipv4 地址按 ipv4 映射的 ipv6 地址（::ffff:a.b.c.d）存储，
+ *  用于连接标识、数据包地址等按值比较的场景，不创建 {@link InetAddress} 或字符串
+ */
+public final class IpAddresses {
+
+    /**
+     *  ipv4 映射的 ipv6 地址低 64 位的前缀，即 ::ffff:0:0
+     */
+    private static final long IPV4_MAPPED_PREFIX = 0x0000ffff00000000L;
+
+    private IpAddresses() {
+    }
+
+
+    /**
+     *  获取地址高 64 位
+     * @param address 网络字节序的 4 字节 ipv4 或 16 字节 ipv6 地址
+     * @return 返回高 64 位，ipv4 地址为 0
+     * @throws IllegalArgumentException 地址长度不是 4 或 16 字节
+     */
+    public static long high(byte[] address) {
+        if (address.length == 4) {
+            return 0L;
+        }
+        checkAddress(address);
+        return ByteBuffer.wrap(address).getLong(0);
+    }
+
+
+    /**
+     *  获取地址低 64 位
+     * @param address 网络字节序的 4 字节 ipv4 或 16 字节 ipv6 地址
+     * @return 返回低 64 位，ipv4 地址为 ::ffff:a.b.c.d 的低 64 位
+     * @throws IllegalArgumentException 地址长度不是 4 或 16 字节
+     */
+    public static long low(byte[] address) {
+        if (address.length == 4) {
+            return IPV4_MAPPED_PREFIX | ((address[0] & 0xffL) << 24 | (address[1] & 0xffL) << 16 | (address[2] & 0xffL) << 8 | (address[3] & 0xffL));
+        }
+        checkAddress(address);
+        return ByteBuffer.wrap(address).getLong(8);
+    }
+
+
+    /**
+     *  判断是否为 ipv4 地址
+     * @return 返回 true 则是 ipv4 映射的 ipv6 地址
+     */
+    public static boolean isIpv4(long high, long low) {
+        return high == 0L && (low & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX;
+    }
+
+
+    /**
+     *  将地址折叠为整数，ipv4 地址与网络字节序转换的整数一致，ipv6 地址按 32 位分段异或
+     * @return 返回地址对应的整数
+     */
+    public static int toInt(long high, long low) {
+        if (isIpv4(high, low)) {
+            return (int) low;
+        }
+        return (int) (high ^ (high >>> 32) ^ low ^ (low >>> 32));
+    }
+
+
+    /**
+     *  生成 ip 地址的字符串形式，ipv4 为点分十进制，ipv6 与 {@link InetAddress#getHostAddress()} 一致
+     */
+    public static String format(long high, long low) {
+        if (isIpv4(high, low)) {
+            return ((low >>> 24) & 0xff) + "." + ((low >>> 16) & 0xff) + "." + ((low >>> 8) & 0xff) + "." + (low & 0xff);
+        }
+        byte[] address = ByteBuffer.allocate(16).putLong(high).putLong(low).array();
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static void checkAddress(byte[] address) {
+        if (address.length != 16) {
+            throw new IllegalArgumentException("ip 地址长度应为 4 或 16 字节：" + address.length);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package cn.rtm.protocol.parser.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  tcp 端口集合，以 65536 位的位图存储，查找为常数时间且不装箱，用于判断数据包端口是否为协议监听端口
+ *
+ * <ul>
+ * <li> 查找无锁，运行期间追加端口（如协议自动识别出的端口）对其它线程立即可见
+ * <li> 端口 0 不是合法的 tcp 端口，不允许添加
+ * </ul>
+ */
+public final class PortSet {
+
+    private static final int PORT_COUNT = 1 << 16;
+
+    private final AtomicLongArray words = new AtomicLongArray(PORT_COUNT >>> 6);
+
+    public PortSet() {
+    }
+
+    public PortSet(Collection<Integer> ports) {
+        for (Integer port : ports) {
+            add(port);
+        }
+    }
+
+
+    public static PortSet of(int... ports) {
+        PortSet portSet = new PortSet();
+        for (int port : ports) {
+            portSet.add(port);
+        }
+        return portSet;
+    }
+
+
+    /**
+     *  添加端口
+     * @param port 端口，取值 (0, 65535]
+     * @return 返回 true 则为新添加的端口，已存在返回 false
+     */
+    public boolean add(int port) {
+        if (port <= 0 || port >= PORT_COUNT) {
+            throw new IllegalArgumentException("端口取值范围为 (0, 65535]：" + port);
+        }
+        int index = port >>> 6;
+        long mask = 1L << port;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word | mask)) {
+                return true;
+            }
+        }
+    }
+
+
+    /**
+     *  判断是否包含指定端口
+     * @param port 端口
+     * @return 返回 true 则包含
+     */
+    public boolean contains(int port) {
+        if (port <= 0 || port >= PORT_COUNT) {
+            return false;
+        }
+        return (words.get(port >>> 6) & (1L << port)) != 0;
+    }
+
+
+    public boolean isEmpty() {
+        for (int i = 0; i < words.length(); i++) {
+            if (words.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     *  获取全部端口，按端口升序排列，仅用于配置展示与日志
+     * @return 返回端口列表
+     */
+    public List<Integer> toList() {
+        List<Integer> ports = new ArrayList<>();
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            while (word != 0) {
+                ports.add((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return ports;
+    }
+
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
@@ -2,15 +2,18 @@ package cn.rtm.protocol.parser.protocols.kafka;
 
 import cn.rtm.protocol.parser.ProtocolMessage;
 import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.error.ParseErrorTracker;
 import cn.rtm.protocol.parser.protocols.kafka.factory.DataParseExtractSupplier;
 import cn.rtm.protocol.parser.DataParseExtractor;
 import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.apache.kafka.common.internals.Topic;
+import org.apache.kafka.common.protocol.ApiKeys;
 import org.apache.kafka.common.protocol.ApiMessage;
 import org.apache.kafka.common.record.MemoryRecords;
 import org.apache.kafka.common.record.MutableRecordBatch;
 import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.requests.RequestHeader;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.utils.AbstractIterator;
@@ -28,6 +31,9 @@ import java.util.function.Function;
  *  <li> 实现请求数据解析方法 {@link #extractRequest(ApiMessage)}
  *  <li> 实现响应数据解析方法 {@link #extractResponse(ApiMessage)}
  *  <li> 实现解析结果数据构建方法 {@link #composeData(KafkaProtocolParsedMessage, Object, Object)}
+ *  <li> 负载降级跳过 record 反序列化时，{@link #extractRecord(String, MemoryRecords, int)} 不读取 record，包含 record 的分区
+ *  仅提取一条值为 null 的数据，保留 topic、耗时等元信息
+ *  <li> record 反序列化失败交由 {@link ParseErrorTracker} 分类计数、限流输出日志
  *  </ul>
  * @param <ReqType> 请求数据解析结果类型
  * @param <ResType> 响应数据解析结果类型
@@ -130,6 +136,9 @@ public abstract class AbstractDataParseExtractor<ReqType extends ApiMessage, Res
      * @return 返回提取后的数据内容
      */
     public List<String> extractRecord(String topic, MemoryRecords memoryRecords, int maxPollSize) {
+        if (isRecordValueSkipped()) {
+            return memoryRecords.sizeInBytes() > 0 ? Collections.singletonList(null) : Collections.emptyList();
+        }
         List<String> recordValues = new ArrayList<>(maxPollSize);
         int readSize = 0;
         AbstractIterator<MutableRecordBatch> it = memoryRecords.batchIterator();
@@ -164,14 +173,40 @@ public abstract class AbstractDataParseExtractor<ReqType extends ApiMessage, Res
                     recordValues.add(recordValue);
                     readSize++;
                 } catch (Exception e) {
-                    log.error("解析 Kafka record key or value 出错！", e);
+                    this.recordError(e);
                 }
             }
         }
-        System.out.println("共计："+readSize);
+        log.debug("共计提取 record：{}", readSize);
         return recordValues;
     }
 
+
+    /**
+     *  记录 record 反序列化失败，api 取自当前解析结果的请求头，仅 record 位于请求中（如 produce）时保留原始数据包，
+     *  解析结果未保存响应数据包
+     * @param cause 反序列化异常
+     */
+    private void recordError(Exception cause) {
+        KafkaProtocolParsedMessage parsedMessage = this.kafkaProtocolParsedMessage;
+        RequestHeader header = parsedMessage == null ? null : parsedMessage.getRequestHeader();
+        if (header == null) {
+            ParseErrorTracker.global().record(ParseErrorTracker.STAGE_RECORD, cause, ParseErrorTracker.UNKNOWN, ParseErrorTracker.UNKNOWN, null);
+            return;
+        }
+        ParseErrorTracker.global().record(ParseErrorTracker.STAGE_RECORD, cause, header.apiKey().id, header.apiVersion(),
+                header.apiKey() == ApiKeys.PRODUCE ? parsedMessage.getOriginData() : null);
+    }
+
+    /**
+     *  是否因负载降级跳过 record key 与 value 反序列化
+     * @return 返回 true 则跳过
+     */
+    protected boolean isRecordValueSkipped() {
+        return kafkaProtocolParsedMessage != null && kafkaProtocolParsedMessage.isRecordValueSkipped();
+    }
+
+
     /**
      * 实现消息数量均匀抽数，获取每个 topic 提取的数据量
      * @param topics 需要获取内容的topic 信息
@@ -1,13 +1,34 @@
 package cn.rtm.protocol.parser.protocols.kafka;
 
 import cn.rtm.protocol.parser.*;
+import cn.rtm.protocol.parser.core.error.ParseErrorTracker;
+import cn.rtm.protocol.parser.core.latency.RequestLatencyAnalyzer;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSampler;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
+import cn.rtm.protocol.parser.core.shedding.LoadSheddingController;
+import cn.rtm.protocol.parser.core.util.PortSet;
+import cn.rtm.protocol.parser.protocols.kafka.filter.FlowFilterState;
+import cn.rtm.protocol.parser.protocols.kafka.filter.KafkaFrameFilter;
 import cn.rtm.protocol.parser.protocols.kafka.factory.DataParseExtractSupplier;
+import cn.rtm.protocol.parser.protocols.kafka.hotspot.HeavyHitterAnalyzer;
+import cn.rtm.protocol.parser.protocols.kafka.profile.ClientProfileAnalyzer;
+import cn.rtm.protocol.parser.protocols.kafka.session.ApiVersionsSession;
+import cn.rtm.protocol.parser.protocols.kafka.session.KafkaApiRoutine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.requests.RequestHeader;
 import org.pcap4j.packet.Packet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.Arrays;
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -17,11 +38,20 @@ import java.util.List;
  *  <li> 委托 {@link #requestParser} 实现请求数据包解析
  *  <li> 委托 {@link #responseParser} 实现响应数据包解析
  *  <li> 委托 {@link DataParseExtractor#extract(Object)} 实现完整数据包解析后数据内容提取
+ *  <li> 配置 {@link #frameFilter} 时，请求解析前先按过滤表达式检查原始字节，不满足条件的请求及其响应直接丢弃，不满足条件的连接整体丢弃
+ *  <li> 配置 {@link #loadSheddingController} 时，上报每个数据包的抓包延迟与处理耗时，降级期间跳过 record 反序列化，
+ *  提取的数据在扩展字段中记录降级级别
+ *  <li> 每个请求及已匹配请求的响应解析完成后，通过 {@link PacketReassemble#reportParseResult(Object, boolean)} 上报解析结果，
+ *  由重组组件隔离持续解析失败的连接
+ *  <li> 连接的 ApiVersions 请求携带客户端软件信息时，提取的数据在扩展字段中记录客户端软件名称与版本
+ *  <li> 配置 {@link #clientProfileAnalyzer} 时，按客户端软件、版本与 clientId 统计请求数、produce 批次与 fetch 字节数
+ *  <li> 配置 {@link #heavyHitterAnalyzer} 时，统计热点 topic 分区、clientId 与 record key，降级期间不读取 record key
+ *  <li> 溢出落盘后回放的数据包通过 {@link #handle(Packet, Instant, boolean)} 传入，提取的数据在扩展字段 {@link #DELAYED_KEY} 中标记
  *  <li> 请求和响应关系： a、请求的 seq + payLoadLength = 响应的 ack, 解析请求，存储key: seq+payLoadLength, value: 解析的请求内容，其中 payLoadLength=rawDataLength + 4;
  *  b、解析响应，先根据 ack 获取对应的请求内容，如果不存在，则跳过解析
  *  </ul>
  */
-public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, KafkaProtocolParsedMessage> {
+public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, KafkaProtocolParsedMessage>, StateSizeProvider {
 
     private Logger log = LoggerFactory.getLogger(getClass());
 
@@ -30,6 +60,11 @@ public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, K
      */
     private static final int DEFAULT_LISTEN_PORT = 9094;
 
+    /**
+     *  溢出落盘后回放的数据提取结果在扩展字段中记录延迟标记的 key
+     */
+    public static final String DELAYED_KEY = "delayed";
+
     /**
      *  请求数据包解析器
      */
@@ -51,9 +86,62 @@ public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, K
     private final DataParseExtractConsumer<List<ProtocolParseData>> dataParseExtractConsumer;
 
     /**
-     *  需要解析协议的监听端口
+     *  请求耗时统计，为 null 则不统计
+     */
+    private final RequestLatencyAnalyzer requestLatencyAnalyzer;
+
+    /**
+     *  解析前过滤器，为 null 则解析全部请求
+     */
+    private final KafkaFrameFilter frameFilter;
+
+    /**
+     *  负载降级控制器，为 null 则不降级
+     */
+    private final LoadSheddingController loadSheddingController;
+
+    /**
+     *  客户端流量画像，为 null 则不统计
+     */
+    private final ClientProfileAnalyzer clientProfileAnalyzer;
+
+    /**
+     *  热点统计，为 null 则不统计
+     */
+    private final HeavyHitterAnalyzer heavyHitterAnalyzer;
+
+    /**
+     *  需要解析协议的监听端口，自动识别出的端口在运行期间追加
+     */
+    private final PortSet listenPorts;
+
+    private final Timer requestParseTimer = ProtocolMetrics.timer(ProtocolMetrics.PARSE_DURATION, "direction", "request");
+
+    private final Timer responseParseTimer = ProtocolMetrics.timer(ProtocolMetrics.PARSE_DURATION, "direction", "response");
+
+    private final Counter reassembleErrors = ProtocolMetrics.counter(ProtocolMetrics.PARSE_ERRORS, "stage", "reassemble");
+
+    private final Counter requestErrors = ProtocolMetrics.counter(ProtocolMetrics.PARSE_ERRORS, "stage", "request");
+
+    private final Counter responseErrors = ProtocolMetrics.counter(ProtocolMetrics.PARSE_ERRORS, "stage", "response");
+
+    private final Counter extractErrors = ProtocolMetrics.counter(ProtocolMetrics.PARSE_ERRORS, "stage", "extract");
+
+    private final Counter filteredRequests = ProtocolMetrics.counter(ProtocolMetrics.FILTER_DROPPED, "direction", "request");
+
+    private final Counter filteredResponses = ProtocolMetrics.counter(ProtocolMetrics.FILTER_DROPPED, "direction", "response");
+
+    private final Counter skippedRecordValues = ProtocolMetrics.counter(ProtocolMetrics.SHEDDING_SKIPPED, "action", "record_value");
+
+    /**
+     *  按 api、版本、方向缓存的数据包计数器，key 由 {@link #frameCounterKey(RequestHeader, boolean)} 生成
      */
-    private List<Integer> listenPorts;
+    private final Map<Integer, Counter> frameCounters = new ConcurrentHashMap<>();
+
+    /**
+     *  按 api 缓存的提取记录计数器，key: api key
+     */
+    private final Map<Short, Counter> extractCounters = new ConcurrentHashMap<>();
 
     public KafkaProtocolParseHandler(
             PacketReassemble<ProtocolMessage> packetReassemble,
@@ -62,20 +150,124 @@ public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, K
             DataParseExtractConsumer<List<ProtocolParseData>> dataParseExtractConsumer,
             List<Integer> listenPorts
             ) {
-        this.packetReassemble = packetReassemble;
-        this.requestParser = requestParser;
-        this.responseParser = responseParser;
-        this.dataParseExtractConsumer = dataParseExtractConsumer;
-        this.listenPorts = listenPorts;
+        this(new Builder(packetReassemble, requestParser, responseParser, dataParseExtractConsumer, listenPorts));
+    }
+
+    private KafkaProtocolParseHandler(Builder builder) {
+        this.packetReassemble = builder.packetReassemble;
+        this.requestParser = builder.requestParser;
+        this.responseParser = builder.responseParser;
+        this.dataParseExtractConsumer = builder.dataParseExtractConsumer;
+        this.listenPorts = CollectionUtils.isEmpty(builder.listenPorts) ? PortSet.of(DEFAULT_LISTEN_PORT) : new PortSet(builder.listenPorts);
+        this.requestLatencyAnalyzer = builder.requestLatencyAnalyzer;
+        this.frameFilter = builder.frameFilter;
+        this.loadSheddingController = builder.loadSheddingController;
+        this.clientProfileAnalyzer = builder.clientProfileAnalyzer;
+        this.heavyHitterAnalyzer = builder.heavyHitterAnalyzer;
+    }
+
+
+    /**
+     *  构建解析处理器，重组组件、解析器、提取数据消费者与监听端口必须指定，其余组件为 null 则不启用对应功能
+     */
+    public static class Builder {
+
+        private final PacketReassemble<ProtocolMessage> packetReassemble;
+
+        private final ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> requestParser;
+
+        private final ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> responseParser;
+
+        private final DataParseExtractConsumer<List<ProtocolParseData>> dataParseExtractConsumer;
+
+        private final List<Integer> listenPorts;
+
+        private RequestLatencyAnalyzer requestLatencyAnalyzer;
+
+        private KafkaFrameFilter frameFilter;
+
+        private LoadSheddingController loadSheddingController;
+
+        private ClientProfileAnalyzer clientProfileAnalyzer;
+
+        private HeavyHitterAnalyzer heavyHitterAnalyzer;
+
+        public Builder(PacketReassemble<ProtocolMessage> packetReassemble,
+                       ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> requestParser,
+                       ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> responseParser,
+                       DataParseExtractConsumer<List<ProtocolParseData>> dataParseExtractConsumer,
+                       List<Integer> listenPorts) {
+            this.packetReassemble = packetReassemble;
+            this.requestParser = requestParser;
+            this.responseParser = responseParser;
+            this.dataParseExtractConsumer = dataParseExtractConsumer;
+            this.listenPorts = listenPorts;
+        }
+
+        public Builder requestLatencyAnalyzer(RequestLatencyAnalyzer requestLatencyAnalyzer) {
+            this.requestLatencyAnalyzer = requestLatencyAnalyzer;
+            return this;
+        }
+
+        public Builder frameFilter(KafkaFrameFilter frameFilter) {
+            this.frameFilter = frameFilter;
+            return this;
+        }
+
+        public Builder loadSheddingController(LoadSheddingController loadSheddingController) {
+            this.loadSheddingController = loadSheddingController;
+            return this;
+        }
+
+        public Builder clientProfileAnalyzer(ClientProfileAnalyzer clientProfileAnalyzer) {
+            this.clientProfileAnalyzer = clientProfileAnalyzer;
+            return this;
+        }
+
+        public Builder heavyHitterAnalyzer(HeavyHitterAnalyzer heavyHitterAnalyzer) {
+            this.heavyHitterAnalyzer = heavyHitterAnalyzer;
+            return this;
+        }
+
+        public KafkaProtocolParseHandler build() {
+            return new KafkaProtocolParseHandler(this);
+        }
     }
 
 
     @Override
     public KafkaProtocolParsedMessage handle(Packet packet) {
+        return handle(packet, Instant.now());
+    }
+
+
+    @Override
+    public KafkaProtocolParsedMessage handle(Packet packet, Instant captureTime) {
+        return handle(packet, captureTime, false);
+    }
+
+
+    @Override
+    public KafkaProtocolParsedMessage handle(Packet packet, Instant captureTime, boolean delayed) {
+        if (loadSheddingController == null) {
+            return doHandle(packet, captureTime, delayed);
+        }
+        long startNanos = System.nanoTime();
+        try {
+            return doHandle(packet, captureTime, delayed);
+        } finally {
+            // 回放的溢出数据包抓包时间较早，仅统计处理耗时，不计入抓包延迟
+            loadSheddingController.recordPacket(delayed ? null : captureTime, System.nanoTime() - startNanos);
+        }
+    }
+
+
+    private KafkaProtocolParsedMessage doHandle(Packet packet, Instant captureTime, boolean delayed) {
         ProtocolMessage combinePacket = null;
         try {
-            combinePacket = this.packetReassemble.reassemble(packet);
+            combinePacket = this.packetReassemble.reassemble(packet, captureTime);
         } catch (Exception e) {
+            reassembleErrors.increment();
             log.error("重组数据包出错！", e);
         }
 
@@ -83,25 +275,74 @@ public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, K
             return null;
         }
 
-        this.initializeListenPort(combinePacket);
+        combinePacket.resolveDirection(listenPorts);
 
         if (!combinePacket.isTargetPacket() || !combinePacket.isCompletePacket()) {
             return null;
         }
 
+        if (frameFilter != null && this.isFilteredOut(combinePacket)) {
+            return null;
+        }
+
         KafkaProtocolParsedMessage kafkaProtocolParsedMessage = null;
+        long parseStartNanos = System.nanoTime();
+        // 仅解析器抛出的异常计为连接解析失败，分析与数据提取出错不影响连接隔离
+        boolean parsing = true;
         try {
             if (combinePacket.isRequestPacket()) {
                 kafkaProtocolParsedMessage = this.requestParser.parse(combinePacket);
+                parsing = false;
+                requestParseTimer.record(System.nanoTime() - parseStartNanos, TimeUnit.NANOSECONDS);
+                this.recordParsedFrame(kafkaProtocolParsedMessage, true);
+                this.reportParseResult(combinePacket, kafkaProtocolParsedMessage, true);
+                if (clientProfileAnalyzer != null && kafkaProtocolParsedMessage != null) {
+                    clientProfileAnalyzer.recordRequest(combinePacket.getFlow(), kafkaProtocolParsedMessage.getRequestHeader(),
+                            kafkaProtocolParsedMessage.getRequestMessage(), kafkaProtocolParsedMessage.getRequestCaptureTime());
+                }
+                if (heavyHitterAnalyzer != null && kafkaProtocolParsedMessage != null) {
+                    heavyHitterAnalyzer.recordRequest(kafkaProtocolParsedMessage.getRequestHeader(), kafkaProtocolParsedMessage.getRequestMessage(),
+                            loadSheddingController != null && loadSheddingController.isRecordValueSkipped(), kafkaProtocolParsedMessage.getRequestCaptureTime());
+                }
+                if (delayed && kafkaProtocolParsedMessage != null) {
+                    kafkaProtocolParsedMessage.setDelayed(true);
+                }
             } else if (combinePacket.isResponsePacket()){
                 kafkaProtocolParsedMessage = responseParser.parse(combinePacket);
+                parsing = false;
+                responseParseTimer.record(System.nanoTime() - parseStartNanos, TimeUnit.NANOSECONDS);
+                this.recordParsedFrame(kafkaProtocolParsedMessage, false);
+                if (kafkaProtocolParsedMessage != null) {
+                    this.reportParseResult(combinePacket, kafkaProtocolParsedMessage, false);
+                }
+                if (clientProfileAnalyzer != null && kafkaProtocolParsedMessage != null) {
+                    clientProfileAnalyzer.recordResponse(combinePacket.getFlow(), kafkaProtocolParsedMessage.getRequestHeader(),
+                            kafkaProtocolParsedMessage.getResponseMessage(), kafkaProtocolParsedMessage.getResponseCaptureTime());
+                }
+                if (heavyHitterAnalyzer != null && kafkaProtocolParsedMessage != null) {
+                    heavyHitterAnalyzer.recordResponse(kafkaProtocolParsedMessage.getResponseMessage(), kafkaProtocolParsedMessage.getResponseCaptureTime());
+                }
+                if (delayed && kafkaProtocolParsedMessage != null) {
+                    kafkaProtocolParsedMessage.setDelayed(true);
+                }
                 DataParseExtractor<KafkaProtocolParsedMessage, List<ProtocolParseData>> dataParseExtractor = DataParseExtractSupplier.getDataParseExtractor(kafkaProtocolParsedMessage);
+                if (dataParseExtractor != null && loadSheddingController != null && loadSheddingController.isRecordValueSkipped()) {
+                    kafkaProtocolParsedMessage.setRecordValueSkipped(true);
+                    skippedRecordValues.increment();
+                }
+                List<ProtocolParseData> extractData = dataParseExtractor == null ? null : dataParseExtractor.extract(kafkaProtocolParsedMessage);
+                this.recordLatency(kafkaProtocolParsedMessage, extractData);
                 if (dataParseExtractor == null) {
                     return kafkaProtocolParsedMessage;
                 }
-                this.dataParseExtractConsumer.accept(dataParseExtractor.extract(kafkaProtocolParsedMessage));
+                this.recordExtractedData(kafkaProtocolParsedMessage, extractData);
+                this.dataParseExtractConsumer.accept(this.withExtraValues(kafkaProtocolParsedMessage, extractData));
             }
         } catch (Exception e) {
+            extractErrors.increment();
+            if (parsing) {
+                this.packetReassemble.reportParseResult(combinePacket, false);
+            }
             log.error("kafka 解析数据出错！", e);
         }
         return kafkaProtocolParsedMessage;
@@ -109,14 +350,232 @@ public class KafkaProtocolParseHandler implements ProtocolParseHandler<Packet, K
 
 
     /**
-     *   初始化需要解析的协议端口
-     * @param combinePacket 捕获的完整数据包内容
+     *  按过滤表达式判断是否丢弃数据包，请求根据原始字节判断，响应根据其请求或所属连接是否被丢弃判断
+     * @param packet 完整的请求或响应数据包
+     * @return 返回 true 则丢弃，反之 false
+     */
+    private boolean isFilteredOut(ProtocolMessage packet) {
+        TcpFlow flow = packet.getFlow();
+        FlowFilterState state = flow == null ? null : flow.getAttributeAs(FlowFilterState.FLOW_ATTRIBUTE_KEY, FlowFilterState.class);
+        if (packet.isRequestPacket()) {
+            KafkaFrameFilter.Decision decision = state != null && state.isFlowRejected()
+                    ? KafkaFrameFilter.Decision.REJECT_FLOW : frameFilter.test(packet.payloadView());
+            if (decision == KafkaFrameFilter.Decision.ACCEPT) {
+                return false;
+            }
+            filteredRequests.increment();
+            if (flow != null && state == null) {
+                state = new FlowFilterState();
+                flow.setAttribute(FlowFilterState.FLOW_ATTRIBUTE_KEY, state);
+            }
+            if (state != null && decision == KafkaFrameFilter.Decision.REJECT_FLOW) {
+                state.rejectFlow();
+            } else if (state != null) {
+                state.addFilteredRequest(packet.getResponseAckId());
+            }
+            return true;
+        }
+        if (state != null && (state.isFlowRejected() || state.removeFilteredRequest(packet.getAcknowledgementNumber()))) {
+            filteredResponses.increment();
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     *  记录数据包解析结果指标，请求头或消息体解析失败记为解析错误，负载降级跳过的消息体不记为错误，响应未匹配到请求由响应解析器记录
+     * @param parsedMessage 解析结果
+     * @param request 是否为请求数据包
+     */
+    private void recordParsedFrame(KafkaProtocolParsedMessage parsedMessage, boolean request) {
+        if (parsedMessage == null) {
+            if (request) {
+                requestErrors.increment();
+            }
+            return;
+        }
+        RequestHeader header = parsedMessage.getRequestHeader();
+        if (!isParsed(parsedMessage, request)) {
+            (request ? requestErrors : responseErrors).increment();
+        }
+        if (header == null) {
+            return;
+        }
+        frameCounters.computeIfAbsent(frameCounterKey(header, request), key -> ProtocolMetrics.counter(ProtocolMetrics.PARSE_FRAMES,
+                "api", header.apiKey().name,
+                "version", String.valueOf(header.apiVersion()),
+                "direction", request ? "request" : "response")).increment();
+    }
+
+
+    /**
+     *  判断数据包是否解析成功，即请求头、响应头及消息体均解析成功，负载降级跳过的消息体视为成功
+     * @param parsedMessage 解析结果，可为 null
+     * @param request 是否为请求数据包
+     * @return 返回 true 则解析成功
+     */
+    private static boolean isParsed(KafkaProtocolParsedMessage parsedMessage, boolean request) {
+        if (parsedMessage == null || parsedMessage.getRequestHeader() == null) {
+            return false;
+        }
+        boolean bodyParsed = request ? parsedMessage.getRequestMessage() != null : parsedMessage.getResponseMessage() != null;
+        return (bodyParsed || parsedMessage.isBodySkipped()) && (request || parsedMessage.getResponseHeader() != null);
+    }
+
+
+    /**
+     *  向重组器上报连接解析结果用于隔离计分，仅请求头、响应头或消息体解码失败记为失败，
+     *  本地 kafka-clients 不支持的 api 版本被主动丢弃时不计分
+     * @param frame 完整的请求或响应数据包
+     * @param parsedMessage 解析结果，可为 null
+     * @param request 是否为请求数据包
+     */
+    private void reportParseResult(ProtocolMessage frame, KafkaProtocolParsedMessage parsedMessage, boolean request) {
+        if (isParsed(parsedMessage, request)) {
+            this.packetReassemble.reportParseResult(frame, true);
+        } else if (!isUnsupportedRequest(frame, parsedMessage, request)) {
+            this.packetReassemble.reportParseResult(frame, false);
+        }
+    }
+
+
+    /**
+     *  判断请求是否因 api 版本不受支持被请求解析器主动丢弃，包括请求头解析前丢弃的请求与仅解析请求头的 ApiVersions 请求
+     * @param frame 请求数据包
+     * @param parsedMessage 解析结果，可为 null
+     * @param request 是否为请求数据包
+     * @return 返回 true 则为主动丢弃
+     */
+    private static boolean isUnsupportedRequest(ProtocolMessage frame, KafkaProtocolParsedMessage parsedMessage, boolean request) {
+        if (!request) {
+            return false;
+        }
+        if (parsedMessage == null || parsedMessage.getRequestHeader() == null) {
+            short apiKey = ParseErrorTracker.peekApiKey(frame);
+            short apiVersion = ParseErrorTracker.peekApiVersion(frame);
+            return apiVersion != ParseErrorTracker.UNKNOWN && apiKey != ApiKeys.API_VERSIONS.id
+                    && KafkaApiRoutine.of(apiKey, apiVersion) == null;
+        }
+        RequestHeader header = parsedMessage.getRequestHeader();
+        return header.apiKey() == ApiKeys.API_VERSIONS && !ApiKeys.API_VERSIONS.isVersionSupported(header.apiVersion());
+    }
+
+
+    private static int frameCounterKey(RequestHeader header, boolean request) {
+        return (header.apiKey().id << 16) | (header.apiVersion() << 1) | (request ? 1 : 0);
+    }
+
+
+    /**
+     *  记录请求耗时，耗时为请求与响应抓包时间之差，topic 取自提取的数据
+     * @param parsedMessage 已匹配请求的响应解析结果
+     * @param extractData 提取的数据，可为 null
      */
-    private void initializeListenPort(ProtocolMessage combinePacket) {
-        if (CollectionUtils.isEmpty(listenPorts)) {
-            listenPorts = Arrays.asList(DEFAULT_LISTEN_PORT);
+    private void recordLatency(KafkaProtocolParsedMessage parsedMessage, List<ProtocolParseData> extractData) {
+        if (requestLatencyAnalyzer == null || parsedMessage == null || !parsedMessage.isParseComplete()
+                || parsedMessage.getRequestHeader() == null || parsedMessage.getRequestCaptureTime() == null
+                || parsedMessage.getResponseCaptureTime() == null || parsedMessage.getOriginData() == null) {
+            return;
         }
-        combinePacket.setListenPorts(listenPorts);
+        Set<String> topics = new LinkedHashSet<>();
+        if (extractData != null) {
+            for (ProtocolParseData data : extractData) {
+                if (data.getRequestData() != null) {
+                    topics.add(data.getRequestData());
+                }
+            }
+        }
+        ProtocolMessage request = parsedMessage.getOriginData();
+        RequestHeader header = parsedMessage.getRequestHeader();
+        requestLatencyAnalyzer.record(header.apiKey().name, request.getDestEndpoint(),
+                header.clientId(), topics, Duration.between(parsedMessage.getRequestCaptureTime(), parsedMessage.getResponseCaptureTime()).toNanos());
     }
 
+
+    /**
+     *  记录提取的数据条数
+     * @param parsedMessage 解析结果
+     * @param extractData 提取的数据
+     */
+    private void recordExtractedData(KafkaProtocolParsedMessage parsedMessage, List<ProtocolParseData> extractData) {
+        if (CollectionUtils.isEmpty(extractData) || parsedMessage.getRequestHeader() == null) {
+            return;
+        }
+        RequestHeader header = parsedMessage.getRequestHeader();
+        extractCounters.computeIfAbsent(header.apiKey().id, key -> ProtocolMetrics.counter(ProtocolMetrics.EXTRACT_RECORDS,
+                "api", header.apiKey().name)).increment(extractData.size());
+    }
+
+
+    /**
+     *  提取的数据一次添加全部扩展字段，无扩展字段时不做修改
+     * @param parsedMessage 解析结果
+     * @param extractData 提取的数据
+     * @return 返回添加扩展字段后的数据
+     */
+    private List<ProtocolParseData> withExtraValues(KafkaProtocolParsedMessage parsedMessage, List<ProtocolParseData> extractData) {
+        if (CollectionUtils.isEmpty(extractData)) {
+            return extractData;
+        }
+        Map<String, Object> extraValues = this.extraValuesOf(parsedMessage);
+        if (extraValues.isEmpty()) {
+            return extractData;
+        }
+        List<ProtocolParseData> extendedData = new ArrayList<>(extractData.size());
+        for (ProtocolParseData data : extractData) {
+            extendedData.add(data.withExtraValues(extraValues));
+        }
+        return extendedData;
+    }
+
+
+    /**
+     *  获取解析结果对应的扩展字段
+     *  <ul>
+     *  <li> 连接的 ApiVersions 请求携带客户端软件信息时，添加客户端软件名称与版本
+     *  <li> 采样连接添加采样率，全量处理的连接不添加
+     *  <li> 跳过 record 反序列化时添加降级级别
+     *  <li> 请求或响应为溢出落盘后回放的数据包时添加延迟标记
+     *  </ul>
+     * @param parsedMessage 解析结果
+     * @return 返回扩展字段，无扩展字段时返回空集合
+     */
+    private Map<String, Object> extraValuesOf(KafkaProtocolParsedMessage parsedMessage) {
+        Map<String, Object> extraValues = new LinkedHashMap<>(8);
+        ProtocolMessage originData = parsedMessage.getOriginData();
+        TcpFlow flow = originData == null ? null : originData.getFlow();
+        ApiVersionsSession session = flow == null ? null : flow.getAttributeAs(ApiVersionsSession.FLOW_ATTRIBUTE_KEY, ApiVersionsSession.class);
+        if (session != null && session.getClientSoftwareName() != null) {
+            extraValues.put(ApiVersionsSession.CLIENT_SOFTWARE_NAME_KEY, session.getClientSoftwareName());
+            extraValues.put(ApiVersionsSession.CLIENT_SOFTWARE_VERSION_KEY, session.getClientSoftwareVersion());
+        }
+        if (flow != null && flow.getSamplingRate() < 1) {
+            extraValues.put(FlowSampler.SAMPLING_RATE_KEY, flow.getSamplingRate());
+        }
+        if (parsedMessage.isRecordValueSkipped()) {
+            extraValues.put(LoadSheddingController.SHEDDING_LEVEL_KEY, loadSheddingController.getLevel().name());
+        }
+        if (parsedMessage.isDelayed()) {
+            extraValues.put(DELAYED_KEY, Boolean.TRUE);
+        }
+        return extraValues;
+    }
+
+
+    @Override
+    public void addListenPort(int port) {
+        if (listenPorts.add(port)) {
+            log.info("自动识别出 kafka 端口：{}", port);
+        }
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>(4);
+        sizes.put("handler.frameCounters", (long) frameCounters.size());
+        sizes.put("handler.extractCounters", (long) extractCounters.size());
+        return sizes;
+    }
 }
@@ -5,6 +5,7 @@ import cn.rtm.protocol.parser.ProtocolMessage;
 import org.apache.kafka.common.message.ResponseHeaderData;
 import org.apache.kafka.common.protocol.ApiMessage;
 import org.apache.kafka.common.requests.RequestHeader;
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 /**
@@ -91,6 +92,31 @@ public class KafkaProtocolParsedMessage {
      */
     private LocalDateTime endTime;
 
+    /**
+     *  请求数据包完整时的抓包时间，与 {@link #startTime} 为同一时刻
+     */
+    private Instant requestCaptureTime;
+
+    /**
+     *  响应数据包首个分片的抓包时间，与 {@link #endTime} 为同一时刻
+     */
+    private Instant responseCaptureTime;
+
+    /**
+     *  标记负载降级时跳过了请求体与响应体解析，仅解析了请求头与响应头
+     */
+    private boolean bodySkipped;
+
+    /**
+     *  标记负载降级时跳过 record key 与 value 反序列化
+     */
+    private boolean recordValueSkipped;
+
+    /**
+     *  标记请求或响应数据包为溢出落盘后回放的数据包，解析时间晚于抓包时间
+     */
+    private boolean delayed;
+
 
     public int getMessageSize() {
         return messageSize;
@@ -235,6 +261,46 @@ public class KafkaProtocolParsedMessage {
         this.endTime = endTime;
     }
 
+    public Instant getRequestCaptureTime() {
+        return requestCaptureTime;
+    }
+
+    public void setRequestCaptureTime(Instant requestCaptureTime) {
+        this.requestCaptureTime = requestCaptureTime;
+    }
+
+    public Instant getResponseCaptureTime() {
+        return responseCaptureTime;
+    }
+
+    public void setResponseCaptureTime(Instant responseCaptureTime) {
+        this.responseCaptureTime = responseCaptureTime;
+    }
+
+    public boolean isBodySkipped() {
+        return bodySkipped;
+    }
+
+    public void setBodySkipped(boolean bodySkipped) {
+        this.bodySkipped = bodySkipped;
+    }
+
+    public boolean isRecordValueSkipped() {
+        return recordValueSkipped;
+    }
+
+    public void setRecordValueSkipped(boolean recordValueSkipped) {
+        this.recordValueSkipped = recordValueSkipped;
+    }
+
+    public boolean isDelayed() {
+        return delayed;
+    }
+
+    public void setDelayed(boolean delayed) {
+        this.delayed = delayed;
+    }
+
     @Override
     public String toString() {
         return "KafkaProtocolParsedMessage{" +
@@ -253,6 +319,9 @@ public class KafkaProtocolParsedMessage {
                 ", isRequestData=" + isRequestData +
                 ", startTime=" + startTime +
                 ", endTime=" + endTime +
+                ", bodySkipped=" + bodySkipped +
+                ", recordValueSkipped=" + recordValueSkipped +
+                ", delayed=" + delayed +
                 '}';
     }
 }
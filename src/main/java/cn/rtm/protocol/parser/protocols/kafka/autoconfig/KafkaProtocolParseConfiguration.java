@@ -1,18 +1,40 @@
 package cn.rtm.protocol.parser.protocols.kafka.autoconfig;
 
 import cn.rtm.protocol.parser.*;
-import cn.rtm.protocol.parser.protocols.kafka.consumer.KafkaDataParseExtractConsumer;
+import cn.rtm.protocol.parser.core.error.ParseErrorProperties;
+import cn.rtm.protocol.parser.core.error.ParseErrorTracker;
+import cn.rtm.protocol.parser.core.latency.LatencyProperties;
+import cn.rtm.protocol.parser.core.latency.RequestLatencyAnalyzer;
+import cn.rtm.protocol.parser.core.pcap.CaptureProperties;
 import cn.rtm.protocol.parser.protocols.kafka.factory.DataParseExtractSupplier;
 import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParseHandler;
 import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
+import cn.rtm.protocol.parser.protocols.kafka.filter.KafkaFilterProperties;
+import cn.rtm.protocol.parser.protocols.kafka.filter.KafkaFrameFilter;
 import cn.rtm.protocol.parser.core.context.ProtocolParseContext;
 import cn.rtm.protocol.parser.protocols.kafka.parser.request.KafkaRequestParser;
 import cn.rtm.protocol.parser.protocols.kafka.parser.response.KafkaResponseBodyParser;
+import cn.rtm.protocol.parser.protocols.kafka.hotspot.HeavyHitterAnalyzer;
+import cn.rtm.protocol.parser.protocols.kafka.hotspot.HeavyHitterProperties;
+import cn.rtm.protocol.parser.protocols.kafka.profile.ClientProfileAnalyzer;
+import cn.rtm.protocol.parser.protocols.kafka.profile.ClientProfileProperties;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSampler;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSamplingProperties;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowQuarantine;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowQuarantineProperties;
+import cn.rtm.protocol.parser.core.reassemble.tcp.LengthPrefixedFrameDecoder;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlowTable;
 import cn.rtm.protocol.parser.core.reassemble.tcp.TcpPacketReassemble;
+import cn.rtm.protocol.parser.core.shedding.LoadSheddingController;
+import cn.rtm.protocol.parser.core.shedding.LoadSheddingProperties;
+import cn.rtm.protocol.parser.core.sink.AbstractBatchDataParseExtractConsumer;
+import cn.rtm.protocol.parser.core.sink.CompositeDataParseExtractConsumer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -20,12 +42,30 @@ import java.util.List;
  *  则通过协议前缀 bean 进行区分不同解析器
  */
 @Configuration
+@EnableConfigurationProperties({LatencyProperties.class, KafkaFilterProperties.class, FlowSamplingProperties.class,
+        LoadSheddingProperties.class, CaptureProperties.class, ParseErrorProperties.class, FlowQuarantineProperties.class,
+        ClientProfileProperties.class, HeavyHitterProperties.class})
 public class KafkaProtocolParseConfiguration {
 
+    @Bean
+    @ConditionalOnMissingBean
+    public FlowSampler flowSampler(FlowSamplingProperties samplingProperties) {
+        return new FlowSampler(samplingProperties.getRate());
+    }
+
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TcpFlowTable tcpFlowTable(FlowSampler flowSampler) {
+        return new TcpFlowTable(flowSampler);
+    }
+
+
     @Bean
     @ConditionalOnMissingBean(TcpPacketReassemble.class)
-    public PacketReassemble<ProtocolMessage> tcpPacketCombiner() {
-        return new TcpPacketReassemble();
+    public PacketReassemble<ProtocolMessage> tcpPacketCombiner(TcpFlowTable tcpFlowTable, FlowQuarantineProperties quarantineProperties) {
+        return new TcpPacketReassemble(new LengthPrefixedFrameDecoder(), tcpFlowTable,
+                quarantineProperties.isEnabled() ? new FlowQuarantine(quarantineProperties) : null);
     }
 
 
@@ -38,8 +78,9 @@ public class KafkaProtocolParseConfiguration {
 
     @Bean
     @ConditionalOnMissingBean(KafkaRequestParser.class)
-    public ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> kafkaRequestParser(ProtocolContext protocolContext) {
-        return new KafkaRequestParser(protocolContext);
+    public ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> kafkaRequestParser(ProtocolContext protocolContext,
+                                                                                       ObjectProvider<LoadSheddingController> loadSheddingController) {
+        return new KafkaRequestParser(protocolContext, loadSheddingController.getIfAvailable());
     }
 
 
@@ -49,24 +90,73 @@ public class KafkaProtocolParseConfiguration {
           return new KafkaResponseBodyParser(protocolContext);
     }
 
+    @Bean
+    public ParseErrorTracker parseErrorTracker(ParseErrorProperties parseErrorProperties) {
+        return ParseErrorTracker.global().configure(parseErrorProperties);
+    }
+
     @Bean
     public DataParseExtractSupplier dataParseExtractSupplier() {
         return new DataParseExtractSupplier();
     }
 
     @Bean
-    @ConditionalOnMissingBean(KafkaDataParseExtractConsumer.class)
-    public DataParseExtractConsumer<List<ProtocolParseData>> kafkaDataParseExtractConsumer() {
-        return new KafkaDataParseExtractConsumer();
+    @ConditionalOnProperty(prefix = "protocol.latency", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public RequestLatencyAnalyzer requestLatencyAnalyzer(LatencyProperties latencyProperties) {
+        return new RequestLatencyAnalyzer(latencyProperties);
     }
 
     @Bean
-    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "protocol.client-profile", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ClientProfileAnalyzer clientProfileAnalyzer(ClientProfileProperties clientProfileProperties) {
+        return new ClientProfileAnalyzer(clientProfileProperties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "protocol.heavy-hitter", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public HeavyHitterAnalyzer heavyHitterAnalyzer(HeavyHitterProperties heavyHitterProperties) {
+        return new HeavyHitterAnalyzer(heavyHitterProperties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "protocol.filter", name = "expression")
+    public KafkaFrameFilter kafkaFrameFilter(KafkaFilterProperties filterProperties) {
+        return KafkaFrameFilter.compile(filterProperties.getExpression());
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "protocol.shedding", name = "enabled", havingValue = "true")
+    public LoadSheddingController loadSheddingController(LoadSheddingProperties sheddingProperties, FlowSampler flowSampler,
+                                                         List<DataParseExtractConsumer<List<ProtocolParseData>>> dataParseExtractConsumers) {
+        LoadSheddingController controller = new LoadSheddingController(sheddingProperties, flowSampler);
+        for (DataParseExtractConsumer<List<ProtocolParseData>> consumer : dataParseExtractConsumers) {
+            if (consumer instanceof AbstractBatchDataParseExtractConsumer) {
+                AbstractBatchDataParseExtractConsumer batchConsumer = (AbstractBatchDataParseExtractConsumer) consumer;
+                controller.registerQueue(batchConsumer.getClass().getSimpleName(), batchConsumer::getQueueDepth, batchConsumer.getQueueCapacity());
+            }
+        }
+        return controller;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(KafkaProtocolParseHandler.class)
     public ProtocolParseHandler kafkaProtocolHandler(PacketReassemble<ProtocolMessage> tcpPacketReassemble,
                                                      ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> kafkaRequestParser,
                                                      ProtocolParser<ProtocolMessage, KafkaProtocolParsedMessage> kafkaResponseParser,
-                                                     DataParseExtractConsumer<List<ProtocolParseData>> kafkaDataParseExtractConsumer) {
-            return new KafkaProtocolParseHandler(tcpPacketReassemble,kafkaRequestParser,
-                    kafkaResponseParser,kafkaDataParseExtractConsumer, Arrays.asList(9094));
+                                                     List<DataParseExtractConsumer<List<ProtocolParseData>>> dataParseExtractConsumers,
+                                                     ObjectProvider<RequestLatencyAnalyzer> requestLatencyAnalyzer,
+                                                     ObjectProvider<KafkaFrameFilter> kafkaFrameFilter,
+                                                     ObjectProvider<LoadSheddingController> loadSheddingController,
+                                                     ObjectProvider<ClientProfileAnalyzer> clientProfileAnalyzer,
+                                                     ObjectProvider<HeavyHitterAnalyzer> heavyHitterAnalyzer,
+                                                     CaptureProperties captureProperties) {
+            return new KafkaProtocolParseHandler.Builder(tcpPacketReassemble, kafkaRequestParser, kafkaResponseParser,
+                    CompositeDataParseExtractConsumer.of(dataParseExtractConsumers), captureProperties.listenPorts())
+                    .requestLatencyAnalyzer(requestLatencyAnalyzer.getIfAvailable())
+                    .frameFilter(kafkaFrameFilter.getIfAvailable())
+                    .loadSheddingController(loadSheddingController.getIfAvailable())
+                    .clientProfileAnalyzer(clientProfileAnalyzer.getIfAvailable())
+                    .heavyHitterAnalyzer(heavyHitterAnalyzer.getIfAvailable())
+                    .build();
     }
 }
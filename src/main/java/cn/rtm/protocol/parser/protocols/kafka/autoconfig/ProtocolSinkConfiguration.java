@@ -0,0 +1,53 @@
+package cn.rtm.protocol.parser.protocols.kafka.autoconfig;
+
+import cn.rtm.protocol.parser.DataParseExtractConsumer;
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.sink.jdbc.JdbcDataParseExtractConsumer;
+import cn.rtm.protocol.parser.core.sink.jdbc.JdbcSinkProperties;
+import cn.rtm.protocol.parser.core.sink.store.RecordStoreDataParseExtractConsumer;
+import cn.rtm.protocol.parser.core.sink.store.RecordStoreProperties;
+import cn.rtm.protocol.parser.core.sink.store.SegmentedRecordStore;
+import cn.rtm.protocol.parser.protocols.kafka.consumer.KafkaDataParseExtractConsumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *  该配置类主要职责是声明解析提取数据的写入组件，可同时启用多个写入组件，均未启用时使用默认的数据消费者
+ */
+@Configuration
+@EnableConfigurationProperties({JdbcSinkProperties.class, RecordStoreProperties.class})
+public class ProtocolSinkConfiguration {
+
+    @Bean
+    @ConditionalOnExpression("!${protocol.sink.jdbc.enabled:false} and !${protocol.sink.store.enabled:false}")
+    public DataParseExtractConsumer<List<ProtocolParseData>> kafkaDataParseExtractConsumer() {
+        return new KafkaDataParseExtractConsumer();
+    }
+
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "protocol.sink.jdbc", name = "enabled", havingValue = "true")
+    public DataParseExtractConsumer<List<ProtocolParseData>> jdbcDataParseExtractConsumer(JdbcSinkProperties jdbcSinkProperties) {
+        return new JdbcDataParseExtractConsumer(jdbcSinkProperties);
+    }
+
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "protocol.sink.store", name = "enabled", havingValue = "true")
+    public SegmentedRecordStore segmentedRecordStore(RecordStoreProperties recordStoreProperties) throws IOException {
+        return new SegmentedRecordStore(recordStoreProperties);
+    }
+
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "protocol.sink.store", name = "enabled", havingValue = "true")
+    public DataParseExtractConsumer<List<ProtocolParseData>> recordStoreDataParseExtractConsumer(RecordStoreProperties recordStoreProperties,
+                                                                                                SegmentedRecordStore segmentedRecordStore) {
+        return new RecordStoreDataParseExtractConsumer(recordStoreProperties, segmentedRecordStore);
+    }
+}
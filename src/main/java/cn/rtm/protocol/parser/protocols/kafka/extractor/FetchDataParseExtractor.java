@@ -3,7 +3,9 @@ package cn.rtm.protocol.parser.protocols.kafka.extractor;
 import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
 import cn.rtm.protocol.parser.ProtocolMessage;
 import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
 import cn.rtm.protocol.parser.protocols.kafka.AbstractDataParseExtractor;
+import cn.rtm.protocol.parser.protocols.kafka.session.FetchSession;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.kafka.common.message.FetchRequestData;
 import org.apache.kafka.common.message.FetchResponseData;
@@ -15,6 +17,10 @@ import java.util.stream.Collectors;
 /**
  *  负责提取 kafka-Fetch Api 请求解析内容 {@linkplain  org.apache.kafka.common.message.FetchRequestData }和
  *  响应解析内容 {@linkplain  org.apache.kafka.common.message.FetchResponseData}
+ *
+ *  <p>
+ *  增量 fetch 请求（KIP-227）仅携带变更的分区，请求涉及的完整 topic 通过连接级别的 {@link FetchSession} 获取
+ *  </p>
  */
 public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchRequestData,FetchResponseData,List<String>,Map<String,List<String>>> {
 
@@ -24,10 +30,19 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
 
     @Override
     protected List<String> extractRequest(FetchRequestData data) {
-        return Optional.ofNullable(data.topics())
+        FetchSession fetchSession = getFetchSession();
+        if (data != null && fetchSession != null) {
+            fetchSession.applyRequest(data);
+            return fetchSession.topics()
+                    .stream()
+                    .filter(this::isNotKafkaMetaDataTopic)
+                    .collect(Collectors.toList());
+        }
+        return Optional.ofNullable(data)
+                .map(FetchRequestData::topics)
                 .orElse(new ArrayList<>())
                 .stream()
-                .map(FetchRequestData.FetchTopic ::topic)
+                .map(topic -> FetchSession.topicKey(topic.topic(), topic.topicId()))
                 .filter(this::isNotKafkaMetaDataTopic)
                 .collect(Collectors.toList());
     }
@@ -35,6 +50,13 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
 
     @Override
     protected Map<String, List<String>> extractResponse(FetchResponseData fetchResponseData) {
+        if (fetchResponseData == null) {
+            return null;
+        }
+        FetchSession fetchSession = getFetchSession();
+        if (fetchSession != null) {
+            fetchSession.applyResponse(fetchResponseData);
+        }
         List<FetchResponseData.FetchableTopicResponse> responses = fetchResponseData.responses();
         if (CollectionUtils.isEmpty(responses)) {
             return null;
@@ -45,7 +67,7 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
 
         Map<String,List<String>> extractData = new HashMap<>(maxPollSize);
         for (FetchResponseData.FetchableTopicResponse response : fetchResponseData.responses()) {
-            String topic = response.topic();
+            String topic = getTopic(response);
             if (isKafkaMetaDataTopic(topic)) {
                 continue;
             }
@@ -56,7 +78,11 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
                     MemoryRecords memoryRecords = (MemoryRecords) records;
                     int pollSize = topicPollSize.get(topic);
                     List<String> recordValues = extractRecord(topic,memoryRecords, pollSize);
-                    extractData.put(topic, recordValues);
+                    List<String> topicValues = extractData.computeIfAbsent(topic, key -> new ArrayList<>());
+                    // 跳过 record 反序列化时每个 topic 仅保留一条数据
+                    if (!isRecordValueSkipped() || topicValues.isEmpty()) {
+                        topicValues.addAll(recordValues);
+                    }
                 }
             }
         }
@@ -66,14 +92,23 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
 
     @Override
     protected List<ProtocolParseData> composeData(KafkaProtocolParsedMessage kafkaProtocolParsedMessage, List<String> requestData, Map<String, List<String>> responseRecord) {
-        if (CollectionUtils.isEmpty(requestData)) {
+        FetchSession fetchSession = getFetchSession();
+        Map<String, Object> sessionValues = buildSessionValues(fetchSession);
+        if (fetchSession != null) {
+            fetchSession.completeExchange();
+        }
+        if (CollectionUtils.isEmpty(requestData) || responseRecord == null) {
             return Collections.emptyList();
         }
         List<ProtocolParseData> data = new ArrayList<>();
         for (String topicName : requestData) {
+            // 增量 fetch 响应仅包含有数据变更的分区
             List<String> topicValues = responseRecord.get(topicName);
+            if (topicValues == null) {
+                continue;
+            }
             for (String record : topicValues) {
-                ProtocolParseData protocolParseData = buildKafkaData(kafkaProtocolParsedMessage,topicName,record);
+                ProtocolParseData protocolParseData = buildKafkaData(kafkaProtocolParsedMessage,topicName,record, sessionValues);
                 data.add(protocolParseData);
             }
         }
@@ -86,9 +121,11 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
      * @param kafkaProtocolParsedMessage 解析的数据包内容
      * @param request 提取的请求数据
      * @param response 提取的响应数据
+     * @param extraValues fetch session 扩展信息
      * @return 返回组合后的完整数据内容
      */
-    private ProtocolParseData buildKafkaData(KafkaProtocolParsedMessage kafkaProtocolParsedMessage, String request, String response) {
+    private ProtocolParseData buildKafkaData(KafkaProtocolParsedMessage kafkaProtocolParsedMessage, String request, String response,
+                                             Map<String, Object> extraValues) {
         ProtocolMessage originData = getOriginData();
         return new ProtocolParseData.Builder()
                 .srcIp(originData.getSrcIp())
@@ -103,10 +140,48 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
                 .executeTime(System.currentTimeMillis())
                 .responseDataLength(kafkaProtocolParsedMessage.getResponseLength())
                 .responseData(response)
+                .extraValues(extraValues)
                 .build();
     }
 
 
+    /**
+     *  获取当前连接的 fetch session，不存在则创建
+     * @return 返回 fetch session，数据包未关联 tcp 连接时返回 null
+     */
+    private FetchSession getFetchSession() {
+        ProtocolMessage originData = getOriginData();
+        if (originData == null || originData.getFlow() == null) {
+            return null;
+        }
+        TcpFlow flow = originData.getFlow();
+        FetchSession fetchSession = flow.getAttributeAs(FetchSession.FLOW_ATTRIBUTE_KEY, FetchSession.class);
+        if (fetchSession == null) {
+            fetchSession = new FetchSession();
+            flow.setAttribute(FetchSession.FLOW_ATTRIBUTE_KEY, fetchSession);
+        }
+        return fetchSession;
+    }
+
+
+    /**
+     *  构建 fetch session 扩展信息，用于按分区统计
+     * @param fetchSession 当前连接的 fetch session
+     * @return 返回 session 扩展信息
+     */
+    private Map<String, Object> buildSessionValues(FetchSession fetchSession) {
+        if (fetchSession == null) {
+            return null;
+        }
+        Map<String, Object> sessionValues = new HashMap<>(8);
+        sessionValues.put("fetchSessionId", fetchSession.getSessionId());
+        sessionValues.put("fetchSessionEpoch", fetchSession.getEpoch());
+        sessionValues.put("fetchSessionPartitions", fetchSession.partitionCount());
+        sessionValues.put("fetchSessionComplete", fetchSession.isComplete());
+        return sessionValues;
+    }
+
+
     /**
      *  获取提取数据的 topic 名称
      * @param response 响应结果内容
@@ -116,7 +191,7 @@ public class FetchDataParseExtractor extends AbstractDataParseExtractor<FetchReq
         if (response == null) {
             return "";
         }
-        return response.topic();
+        return FetchSession.topicKey(response.topic(), response.topicId());
     }
 
 }
@@ -42,7 +42,6 @@ public class ProduceDataParseExtractor extends AbstractDataParseExtractor<Produc
                     MemoryRecords memoryRecords = (MemoryRecords) records;
                     int pollSize = topicPollSize.get(topicName);
                     List<String> recordValues = extractRecord(topicName, memoryRecords, pollSize);
-                    System.out.println(recordValues.size());
                     extractData.put(topicName, recordValues);
                 }
             }
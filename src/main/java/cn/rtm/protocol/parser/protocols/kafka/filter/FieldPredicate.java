@@ -0,0 +1,149 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ *  字段比较条件，数值字段（api、apiVersion）按整数比较，字符串字段（clientId、topic）按 UTF-8 字节与数据包原始字节比较；
+ *  topic 为多值字段，任一 topic 满足条件即成立，{@code !=} 为 {@code =} 的取反，即所有 topic 均不相等时成立
+ */
+final class FieldPredicate implements FilterNode {
+
+    enum Field {
+
+        API("api", true),
+
+        API_VERSION("apiVersion", true),
+
+        CLIENT_ID("clientId", false),
+
+        TOPIC("topic", false);
+
+        private final String text;
+
+        private final boolean numeric;
+
+        Field(String text, boolean numeric) {
+            this.text = text;
+            this.numeric = numeric;
+        }
+
+        String text() {
+            return text;
+        }
+
+        boolean isNumeric() {
+            return numeric;
+        }
+
+        static Field of(String text) {
+            for (Field field : values()) {
+                if (field.text.equalsIgnoreCase(text)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+
+    enum Operator {
+
+        EQ, IN, STARTS_WITH, ENDS_WITH, LT, LE, GT, GE
+    }
+
+    private final Field field;
+
+    private final Operator operator;
+
+    private final int[] numbers;
+
+    private final byte[][] strings;
+
+    private FieldPredicate(Field field, Operator operator, int[] numbers, byte[][] strings) {
+        this.field = field;
+        this.operator = operator;
+        this.numbers = numbers;
+        this.strings = strings;
+    }
+
+
+    static FieldPredicate numeric(Field field, Operator operator, int[] values) {
+        return new FieldPredicate(field, operator, values, null);
+    }
+
+
+    static FieldPredicate string(Field field, Operator operator, List<String> values) {
+        byte[][] strings = new byte[values.size()][];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return new FieldPredicate(field, operator, null, strings);
+    }
+
+
+    @Override
+    public Verdict evaluate(RequestFrameView frame) {
+        switch (field) {
+            case API:
+                return frame.isFlowScope() || frame.apiKey() < 0 ? Verdict.UNKNOWN : Verdict.of(matches(frame.apiKey()));
+            case API_VERSION:
+                return frame.isFlowScope() || frame.apiKey() < 0 ? Verdict.UNKNOWN : Verdict.of(matches(frame.apiVersion()));
+            case CLIENT_ID:
+                if (!frame.isClientIdKnown()) {
+                    return Verdict.UNKNOWN;
+                }
+                return Verdict.of(!frame.isClientIdNull() && matches(frame, frame.clientIdOffset(), frame.clientIdLength()));
+            case TOPIC:
+                if (frame.isFlowScope() || !frame.resolveTopics()) {
+                    return Verdict.UNKNOWN;
+                }
+                for (int i = 0; i < frame.topicCount(); i++) {
+                    if (matches(frame, frame.topicOffset(i), frame.topicLength(i))) {
+                        return Verdict.TRUE;
+                    }
+                }
+                return Verdict.FALSE;
+            default:
+                return Verdict.UNKNOWN;
+        }
+    }
+
+
+    private boolean matches(int value) {
+        switch (operator) {
+            case LT: return value < numbers[0];
+            case LE: return value <= numbers[0];
+            case GT: return value > numbers[0];
+            case GE: return value >= numbers[0];
+            default:
+                for (int number : numbers) {
+                    if (number == value) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+
+    private boolean matches(RequestFrameView frame, int offset, int length) {
+        for (byte[] value : strings) {
+            boolean matched;
+            switch (operator) {
+                case STARTS_WITH:
+                    matched = frame.regionStartsWith(offset, length, value);
+                    break;
+                case ENDS_WITH:
+                    matched = frame.regionEndsWith(offset, length, value);
+                    break;
+                default:
+                    matched = frame.regionEquals(offset, length, value);
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
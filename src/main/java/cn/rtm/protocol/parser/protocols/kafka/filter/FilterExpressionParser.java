@@ -0,0 +1,310 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import cn.rtm.protocol.parser.protocols.kafka.filter.FieldPredicate.Field;
+import cn.rtm.protocol.parser.protocols.kafka.filter.FieldPredicate.Operator;
+import org.apache.kafka.common.protocol.ApiKeys;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  过滤表达式解析器，将表达式编译为 {@link FilterNode}，关键字与字段名不区分大小写
+ *
+ * <pre>
+ * expression := or
+ * or         := and ( 'or' and )*
+ * and        := unary ( 'and' unary )*
+ * unary      := 'not' unary | '(' or ')' | predicate
+ * predicate  := field ( '=' | '!=' ) value
+ *             | field 'in' '(' value ( ',' value )* ')'
+ *             | field ( 'startsWith' | 'endsWith' ) value        （仅 clientId、topic）
+ *             | field ( '&lt;' | '&lt;=' | '&gt;' | '&gt;=' ) number  （仅 apiVersion）
+ * field      := 'api' | 'apiVersion' | 'clientId' | 'topic'
+ * value      := 单引号或双引号字符串 | 不含空白与运算符的单词
+ * </pre>
+ *
+ *  api 的取值为 {@link ApiKeys} 的协议名称（如 Produce、ApiVersions）、枚举名称（如 API_VERSIONS）或 api key 数值
+ */
+final class FilterExpressionParser {
+
+    private final String expression;
+
+    private final List<Token> tokens;
+
+    private int index;
+
+    private FilterExpressionParser(String expression) {
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+
+    /**
+     *  编译过滤表达式
+     * @param expression 过滤表达式
+     * @return 返回编译后的表达式节点
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    static FilterNode parse(String expression) {
+        FilterExpressionParser parser = new FilterExpressionParser(expression);
+        FilterNode node = parser.parseOr();
+        if (!parser.atEnd()) {
+            throw parser.error(parser.peek(), "存在多余的内容");
+        }
+        return node;
+    }
+
+
+    private FilterNode parseOr() {
+        FilterNode node = parseAnd();
+        while (acceptKeyword("or")) {
+            node = FilterNode.or(node, parseAnd());
+        }
+        return node;
+    }
+
+
+    private FilterNode parseAnd() {
+        FilterNode node = parseUnary();
+        while (acceptKeyword("and")) {
+            node = FilterNode.and(node, parseUnary());
+        }
+        return node;
+    }
+
+
+    private FilterNode parseUnary() {
+        if (acceptKeyword("not")) {
+            return FilterNode.not(parseUnary());
+        }
+        if (accept("(")) {
+            FilterNode node = parseOr();
+            expect(")");
+            return node;
+        }
+        return parsePredicate();
+    }
+
+
+    private FilterNode parsePredicate() {
+        Token fieldToken = next();
+        Field field = fieldToken.quoted ? null : Field.of(fieldToken.text);
+        if (field == null) {
+            throw error(fieldToken, "未知的字段，支持 api、apiVersion、clientId、topic");
+        }
+        Token operatorToken = next();
+        String operator = operatorToken.quoted ? "" : operatorToken.text.toLowerCase();
+        switch (operator) {
+            case "=":
+                return predicate(field, Operator.EQ, single(field));
+            case "!=":
+                return FilterNode.not(predicate(field, Operator.EQ, single(field)));
+            case "in":
+                return predicate(field, Operator.IN, list(field));
+            case "startswith":
+            case "endswith":
+                if (field.isNumeric()) {
+                    throw error(operatorToken, field.text() + " 不支持该运算符");
+                }
+                return predicate(field, "startswith".equals(operator) ? Operator.STARTS_WITH : Operator.ENDS_WITH, single(field));
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                if (field != Field.API_VERSION) {
+                    throw error(operatorToken, "仅 apiVersion 支持大小比较");
+                }
+                return predicate(field, compareOperator(operator), single(field));
+            default:
+                throw error(operatorToken, "未知的运算符");
+        }
+    }
+
+
+    private static Operator compareOperator(String operator) {
+        switch (operator) {
+            case "<": return Operator.LT;
+            case "<=": return Operator.LE;
+            case ">": return Operator.GT;
+            default: return Operator.GE;
+        }
+    }
+
+
+    private FieldPredicate predicate(Field field, Operator operator, List<Token> values) {
+        if (!field.isNumeric()) {
+            List<String> strings = new ArrayList<>(values.size());
+            values.forEach(value -> strings.add(value.text));
+            return FieldPredicate.string(field, operator, strings);
+        }
+        int[] numbers = new int[values.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = field == Field.API ? apiKeyOf(values.get(i)) : numberOf(values.get(i));
+        }
+        return FieldPredicate.numeric(field, operator, numbers);
+    }
+
+
+    private List<Token> single(Field field) {
+        List<Token> values = new ArrayList<>(1);
+        values.add(value(field));
+        return values;
+    }
+
+
+    private List<Token> list(Field field) {
+        expect("(");
+        List<Token> values = new ArrayList<>();
+        do {
+            values.add(value(field));
+        } while (accept(","));
+        expect(")");
+        return values;
+    }
+
+
+    private Token value(Field field) {
+        Token token = next();
+        if (!token.quoted && token.isSymbol()) {
+            throw error(token, field.text() + " 缺少比较值");
+        }
+        return token;
+    }
+
+
+    private int apiKeyOf(Token token) {
+        for (ApiKeys api : ApiKeys.values()) {
+            if (api.name.equalsIgnoreCase(token.text) || api.name().equalsIgnoreCase(token.text)
+                    || String.valueOf(api.id).equals(token.text)) {
+                return api.id;
+            }
+        }
+        throw error(token, "未知的 api");
+    }
+
+
+    private int numberOf(Token token) {
+        try {
+            return Integer.parseInt(token.text);
+        } catch (NumberFormatException e) {
+            throw error(token, "不是有效的数值");
+        }
+    }
+
+
+    private boolean acceptKeyword(String keyword) {
+        if (!atEnd() && !peek().quoted && peek().text.equalsIgnoreCase(keyword)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+
+    private boolean accept(String symbol) {
+        if (!atEnd() && !peek().quoted && peek().text.equals(symbol)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+
+    private void expect(String symbol) {
+        if (!accept(symbol)) {
+            throw error(atEnd() ? null : peek(), "缺少 " + symbol);
+        }
+    }
+
+
+    private boolean atEnd() {
+        return index >= tokens.size();
+    }
+
+
+    private Token peek() {
+        return tokens.get(index);
+    }
+
+
+    private Token next() {
+        if (atEnd()) {
+            throw error(null, "表达式不完整");
+        }
+        return tokens.get(index++);
+    }
+
+
+    private IllegalArgumentException error(Token token, String message) {
+        int position = token == null ? expression.length() : token.position;
+        return new IllegalArgumentException("过滤表达式错误，位置 " + position + "：" + message + "，表达式：" + expression);
+    }
+
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                StringBuilder text = new StringBuilder();
+                int start = i++;
+                while (i < expression.length() && expression.charAt(i) != c) {
+                    if (expression.charAt(i) == '\\' && i + 1 < expression.length()) {
+                        i++;
+                    }
+                    text.append(expression.charAt(i++));
+                }
+                if (i >= expression.length()) {
+                    throw new IllegalArgumentException("过滤表达式错误，位置 " + start + "：字符串未结束，表达式：" + expression);
+                }
+                i++;
+                tokens.add(new Token(text.toString(), start, true));
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(new Token(String.valueOf(c), i++, false));
+            } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                int start = i++;
+                if (i < expression.length() && expression.charAt(i) == '=') {
+                    i++;
+                }
+                String symbol = expression.substring(start, i);
+                if ("!".equals(symbol)) {
+                    throw new IllegalArgumentException("过滤表达式错误，位置 " + start + "：未知的运算符 !，表达式：" + expression);
+                }
+                tokens.add(new Token(symbol, start, false));
+            } else {
+                int start = i;
+                while (i < expression.length() && !Character.isWhitespace(expression.charAt(i))
+                        && "()=!<>,\"'".indexOf(expression.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(expression.substring(start, i), start, false));
+            }
+        }
+        return tokens;
+    }
+
+
+    private static final class Token {
+
+        private final String text;
+
+        private final int position;
+
+        /**
+         *  是否为引号字符串，引号字符串不作为关键字或运算符
+         */
+        private final boolean quoted;
+
+        private Token(String text, int position, boolean quoted) {
+            this.text = text;
+            this.position = position;
+            this.quoted = quoted;
+        }
+
+        private boolean isSymbol() {
+            return "()=!<>,".indexOf(text.charAt(0)) >= 0;
+        }
+    }
+}
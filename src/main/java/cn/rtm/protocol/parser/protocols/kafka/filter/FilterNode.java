@@ -0,0 +1,35 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+/**
+ *  编译后的过滤表达式节点，由 {@link FilterExpressionParser} 构建
+ */
+interface FilterNode {
+
+    /**
+     *  对请求数据包求值
+     * @param frame 请求数据包原始字节视图
+     * @return 返回求值结果，字段无法确定时返回 {@link Verdict#UNKNOWN}
+     */
+    Verdict evaluate(RequestFrameView frame);
+
+
+    static FilterNode and(FilterNode left, FilterNode right) {
+        return frame -> {
+            Verdict verdict = left.evaluate(frame);
+            return verdict == Verdict.FALSE ? verdict : verdict.and(right.evaluate(frame));
+        };
+    }
+
+
+    static FilterNode or(FilterNode left, FilterNode right) {
+        return frame -> {
+            Verdict verdict = left.evaluate(frame);
+            return verdict == Verdict.TRUE ? verdict : verdict.or(right.evaluate(frame));
+        };
+    }
+
+
+    static FilterNode not(FilterNode node) {
+        return frame -> node.evaluate(frame).not();
+    }
+}
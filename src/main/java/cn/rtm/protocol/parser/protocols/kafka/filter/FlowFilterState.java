@@ -0,0 +1,87 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ *  连接级别的过滤状态，每个 tcp 连接维护一个实例，保存在 {@code TcpFlow} 属性中，连接关闭后随之释放
+ *
+ * <ul>
+ * <li> 连接被整体丢弃后，后续请求与响应均不再解析
+ * <li> 被丢弃请求对应响应的 ack-id 暂存在 {@link #filteredRequests} 中，收到响应后移除，最多保留 {@link #MAX_FILTERED_REQUESTS} 个，
+ * 超过后丢弃最早的记录，避免响应未被抓到时持续增长
+ * </ul>
+ */
+public class FlowFilterState {
+
+    /**
+     *  过滤状态在连接属性中的存储标识
+     */
+    public static final String FLOW_ATTRIBUTE_KEY = FlowFilterState.class.getName();
+
+    /**
+     *  单个连接最多暂存的被丢弃请求数量
+     */
+    static final int MAX_FILTERED_REQUESTS = 1024;
+
+    /**
+     *  是否丢弃整个连接
+     */
+    private volatile boolean flowRejected;
+
+    /**
+     *  被丢弃请求对应响应的 ack-id
+     */
+    private final Set<Long> filteredRequests = new LinkedHashSet<>();
+
+    public boolean isFlowRejected() {
+        return flowRejected;
+    }
+
+
+    /**
+     *  丢弃整个连接
+     */
+    public void rejectFlow() {
+        this.flowRejected = true;
+        synchronized (filteredRequests) {
+            filteredRequests.clear();
+        }
+    }
+
+
+    /**
+     *  记录被丢弃的请求
+     * @param responseAckId 请求对应响应的 ack-id
+     */
+    public void addFilteredRequest(long responseAckId) {
+        synchronized (filteredRequests) {
+            if (filteredRequests.size() >= MAX_FILTERED_REQUESTS) {
+                Iterator<Long> iterator = filteredRequests.iterator();
+                iterator.next();
+                iterator.remove();
+            }
+            filteredRequests.add(responseAckId);
+        }
+    }
+
+
+    /**
+     *  判断响应对应的请求是否被丢弃，是则移除该记录
+     * @param acknowledgementNumber 响应数据包 ack-number
+     * @return 返回 true 则响应对应的请求已被丢弃
+     */
+    public boolean removeFilteredRequest(long acknowledgementNumber) {
+        synchronized (filteredRequests) {
+            return filteredRequests.remove(acknowledgementNumber);
+        }
+    }
+
+
+    public int filteredRequestCount() {
+        synchronized (filteredRequests) {
+            return filteredRequests.size();
+        }
+    }
+}
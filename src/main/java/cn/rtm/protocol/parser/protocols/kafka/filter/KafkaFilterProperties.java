@@ -0,0 +1,23 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  kafka 请求解析前过滤配置，前缀为 protocol.filter
+ */
+@ConfigurationProperties(prefix = "protocol.filter")
+public class KafkaFilterProperties {
+
+    /**
+     *  过滤表达式，为空则解析全部请求，语法见 {@link KafkaFrameFilter}
+     */
+    private String expression;
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public void setExpression(String expression) {
+        this.expression = expression;
+    }
+}
@@ -0,0 +1,86 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  kafka 请求解析前过滤器，过滤表达式编译后直接作用于请求数据包原始字节，不满足条件的请求无需解析请求头与请求体，
+ *  对应的响应同样跳过解析，表达式语法见 {@link FilterExpressionParser}，如：
+ *  {@code api in (Produce, Fetch) and clientId startsWith "billing-" and topic = "orders"}
+ *
+ * <ul>
+ * <li> 无法从原始字节确定的字段（如 fetch 增量请求的 topic）求值为未知，未知的请求不丢弃，交由完整解析流程处理
+ * <li> 仅根据 clientId 即可判定不满足的请求，整个 tcp 连接后续的请求与响应均直接丢弃，kafka 客户端在同一连接上使用固定的 clientId
+ * <li> 实例无状态，可被多个线程共享
+ * </ul>
+ */
+public final class KafkaFrameFilter {
+
+    /**
+     *  过滤结果
+     */
+    public enum Decision {
+
+        /**
+         *  满足条件或无法确定，继续解析
+         */
+        ACCEPT,
+
+        /**
+         *  当前请求不满足条件，丢弃该请求及其响应
+         */
+        REJECT_FRAME,
+
+        /**
+         *  连接内不变的字段已不满足条件，丢弃整个连接
+         */
+        REJECT_FLOW
+    }
+
+    private final String expression;
+
+    private final FilterNode node;
+
+    private KafkaFrameFilter(String expression, FilterNode node) {
+        this.expression = expression;
+        this.node = node;
+    }
+
+
+    /**
+     *  编译过滤表达式
+     * @param expression 过滤表达式
+     * @return 返回过滤器
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public static KafkaFrameFilter compile(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("过滤表达式不能为空");
+        }
+        return new KafkaFrameFilter(expression.trim(), FilterExpressionParser.parse(expression));
+    }
+
+
+    /**
+     *  判断请求数据包是否需要解析
+     * @param frame 不包含长度字段的请求数据包，读取不改变其位置
+     * @return 返回过滤结果
+     */
+    public Decision test(ByteBuffer frame) {
+        RequestFrameView view = new RequestFrameView(frame);
+        if (view.isHeaderReadable() && node.evaluate(view.flowScope(true)) == Verdict.FALSE) {
+            return Decision.REJECT_FLOW;
+        }
+        return node.evaluate(view.flowScope(false)) == Verdict.FALSE ? Decision.REJECT_FRAME : Decision.ACCEPT;
+    }
+
+
+    public String getExpression() {
+        return expression;
+    }
+
+
+    @Override
+    public String toString() {
+        return "KafkaFrameFilter{" + expression + '}';
+    }
+}
@@ -0,0 +1,393 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import org.apache.kafka.common.protocol.ApiKeys;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *  请求数据包原始字节视图，在不调用 {@code RequestHeader.parse}、{@code AbstractRequest.parseRequest} 的情况下按需读取过滤所需字段，
+ *  字符串字段仅记录在数据包中的偏移和长度，与过滤值按字节比较，不做解码
+ *
+ * <ul>
+ * <li> 请求头格式：api_key int16、api_version int16、correlation_id int32、client_id nullable string（header v1+，始终为非紧凑格式），
+ * header v2 之后为 tagged fields，header v2 即请求体为 flexible 版本；header v0 不携带 client_id，clientId 视为无法确定
+ * <li> topic 名称仅在首次访问时读取，支持 produce、fetch v0-12 全量请求、metadata，其余请求以及 fetch 增量请求（session epoch &gt; 0）、
+ * fetch v13+（仅携带 topicId）、请求全部 topic 的 metadata 视为无法确定
+ * <li> 数据包截断或格式错误时对应字段视为无法确定，由完整解析流程记录解析错误
+ * </ul>
+ */
+final class RequestFrameView {
+
+    private static final int CLIENT_ID_OFFSET = 8;
+
+    private final ByteBuffer frame;
+
+    private final int apiKey;
+
+    private final int apiVersion;
+
+    /**
+     *  请求头版本，无法确定时为 -1
+     */
+    private final int headerVersion;
+
+    /**
+     *  clientId 偏移与长度，长度为 -1 时 clientId 为 null；偏移为 -1 时无法确定
+     */
+    private int clientIdOffset = -1;
+
+    private int clientIdLength = -1;
+
+    /**
+     *  请求体偏移，无法确定时为 -1
+     */
+    private int bodyOffset = -1;
+
+    /**
+     *  是否仅允许访问连接内不变的字段，即 clientId，用于判断整个连接是否可丢弃
+     */
+    private boolean flowScope;
+
+    private boolean topicsResolved;
+
+    private boolean topicsKnown;
+
+    private int topicCount;
+
+    private int[] topicOffsets;
+
+    private int[] topicLengths;
+
+    /**
+     * @param frame 不包含长度字段的请求数据包
+     */
+    RequestFrameView(ByteBuffer frame) {
+        this.frame = frame.slice();
+        if (this.frame.remaining() < CLIENT_ID_OFFSET) {
+            this.apiKey = -1;
+            this.apiVersion = -1;
+            this.headerVersion = -1;
+            return;
+        }
+        this.apiKey = this.frame.getShort(0);
+        this.apiVersion = this.frame.getShort(2);
+        this.headerVersion = headerVersionOf(apiKey, apiVersion);
+        this.readHeader();
+    }
+
+
+    private static int headerVersionOf(int apiKey, int apiVersion) {
+        if (apiKey < 0 || !ApiKeys.hasId(apiKey)) {
+            return -1;
+        }
+        ApiKeys api = ApiKeys.forId(apiKey);
+        if (!api.isVersionSupported((short) apiVersion)) {
+            return -1;
+        }
+        return api.requestHeaderVersion((short) apiVersion);
+    }
+
+
+    private void readHeader() {
+        if (headerVersion < 0) {
+            return;
+        }
+        if (headerVersion == 0) {
+            // header v0 不携带 clientId，视为无法确定，不据此丢弃整个连接
+            this.bodyOffset = CLIENT_ID_OFFSET;
+            return;
+        }
+        if (frame.remaining() < CLIENT_ID_OFFSET + 2) {
+            return;
+        }
+        int length = frame.getShort(CLIENT_ID_OFFSET);
+        int offset = CLIENT_ID_OFFSET + 2;
+        if (length > frame.remaining() - offset) {
+            return;
+        }
+        this.clientIdOffset = offset;
+        this.clientIdLength = Math.max(length, -1);
+        ByteBuffer buffer = frame.duplicate();
+        buffer.position(offset + Math.max(length, 0));
+        if (headerVersion >= 2) {
+            try {
+                skipTaggedFields(buffer);
+            } catch (RuntimeException e) {
+                return;
+            }
+        }
+        this.bodyOffset = buffer.position();
+    }
+
+
+    /**
+     *  切换为连接级别视图，仅 clientId 可确定，用于判断过滤条件是否对整个连接均不成立
+     */
+    RequestFrameView flowScope(boolean flowScope) {
+        this.flowScope = flowScope;
+        return this;
+    }
+
+
+    boolean isFlowScope() {
+        return flowScope;
+    }
+
+
+    /**
+     *  请求头是否完整可读，即 api 有效且 clientId 可确定，不可读的数据包不允许丢弃整个连接
+     */
+    boolean isHeaderReadable() {
+        return clientIdOffset >= 0;
+    }
+
+
+    /**
+     * @return 返回 api key，数据包过短时返回 -1
+     */
+    int apiKey() {
+        return apiKey;
+    }
+
+
+    int apiVersion() {
+        return apiVersion;
+    }
+
+
+    boolean isClientIdKnown() {
+        return clientIdOffset >= 0;
+    }
+
+
+    boolean isClientIdNull() {
+        return clientIdLength < 0;
+    }
+
+
+    int clientIdOffset() {
+        return clientIdOffset;
+    }
+
+
+    int clientIdLength() {
+        return clientIdLength;
+    }
+
+
+    /**
+     *  读取请求携带的 topic 名称，结果缓存
+     * @return 返回 true 则 topic 可确定，通过 {@link #topicCount()}、{@link #topicOffset(int)}、{@link #topicLength(int)} 访问
+     */
+    boolean resolveTopics() {
+        if (topicsResolved) {
+            return topicsKnown;
+        }
+        topicsResolved = true;
+        if (bodyOffset < 0) {
+            return false;
+        }
+        ByteBuffer buffer = frame.duplicate();
+        buffer.position(bodyOffset);
+        boolean flexible = headerVersion >= 2;
+        try {
+            if (apiKey == ApiKeys.PRODUCE.id) {
+                topicsKnown = readProduceTopics(buffer, flexible);
+            } else if (apiKey == ApiKeys.FETCH.id) {
+                topicsKnown = readFetchTopics(buffer, flexible);
+            } else if (apiKey == ApiKeys.METADATA.id) {
+                topicsKnown = readMetadataTopics(buffer, flexible);
+            }
+        } catch (RuntimeException e) {
+            topicsKnown = false;
+        }
+        return topicsKnown;
+    }
+
+
+    int topicCount() {
+        return topicCount;
+    }
+
+
+    int topicOffset(int index) {
+        return topicOffsets[index];
+    }
+
+
+    int topicLength(int index) {
+        return topicLengths[index];
+    }
+
+
+    /**
+     *  produce：[v3+ transactional_id] acks timeout_ms topic_data[name partition_data[index records]]
+     */
+    private boolean readProduceTopics(ByteBuffer buffer, boolean flexible) {
+        if (apiVersion >= 3) {
+            skipString(buffer, flexible);
+        }
+        buffer.position(buffer.position() + 2 + 4);
+        int topics = readArrayLength(buffer, flexible);
+        for (int i = 0; i < topics; i++) {
+            addTopic(buffer, flexible);
+            int partitions = readArrayLength(buffer, flexible);
+            for (int j = 0; j < partitions; j++) {
+                buffer.getInt();
+                int records = flexible ? ByteUtils.readUnsignedVarInt(buffer) - 1 : buffer.getInt();
+                skip(buffer, Math.max(records, 0));
+                skipTaggedFields(buffer, flexible);
+            }
+            skipTaggedFields(buffer, flexible);
+        }
+        return true;
+    }
+
+
+    /**
+     *  fetch：replica_id max_wait_ms min_bytes [v3+ max_bytes] [v4+ isolation_level] [v7+ session_id session_epoch]
+     *  topics[topic partitions[partition [v9+ current_leader_epoch] fetch_offset [v12+ last_fetched_epoch] [v5+ log_start_offset] partition_max_bytes]]，
+     *  增量请求仅携带变更的分区，响应可能包含 session 内的其他 topic，因此视为无法确定
+     */
+    private boolean readFetchTopics(ByteBuffer buffer, boolean flexible) {
+        if (apiVersion >= 13) {
+            return false;
+        }
+        buffer.position(buffer.position() + 4 + 4 + 4 + (apiVersion >= 3 ? 4 : 0) + (apiVersion >= 4 ? 1 : 0));
+        if (apiVersion >= 7) {
+            buffer.getInt();
+            if (buffer.getInt() > 0) {
+                return false;
+            }
+        }
+        int partitionSize = 4 + (apiVersion >= 9 ? 4 : 0) + 8 + (apiVersion >= 12 ? 4 : 0) + (apiVersion >= 5 ? 8 : 0) + 4;
+        int topics = readArrayLength(buffer, flexible);
+        for (int i = 0; i < topics; i++) {
+            addTopic(buffer, flexible);
+            int partitions = readArrayLength(buffer, flexible);
+            for (int j = 0; j < partitions; j++) {
+                skip(buffer, partitionSize);
+                skipTaggedFields(buffer, flexible);
+            }
+            skipTaggedFields(buffer, flexible);
+        }
+        return true;
+    }
+
+
+    /**
+     *  metadata：topics[[v10+ topic_id] name]，v0 空数组、v1+ null 表示请求全部 topic，视为无法确定
+     */
+    private boolean readMetadataTopics(ByteBuffer buffer, boolean flexible) {
+        int topics = readArrayLength(buffer, flexible);
+        if (topics < 0 || (topics == 0 && apiVersion == 0)) {
+            return false;
+        }
+        for (int i = 0; i < topics; i++) {
+            if (apiVersion >= 10) {
+                skip(buffer, 16);
+            }
+            if (!addTopic(buffer, flexible)) {
+                return false;
+            }
+            skipTaggedFields(buffer, flexible);
+        }
+        return true;
+    }
+
+
+    /**
+     *  读取一个 topic 名称并记录其偏移与长度
+     * @return 返回 false 则名称为 null
+     */
+    private boolean addTopic(ByteBuffer buffer, boolean flexible) {
+        int length = flexible ? ByteUtils.readUnsignedVarInt(buffer) - 1 : buffer.getShort();
+        if (length < 0) {
+            return false;
+        }
+        int offset = buffer.position();
+        skip(buffer, length);
+        if (topicOffsets == null) {
+            topicOffsets = new int[4];
+            topicLengths = new int[4];
+        } else if (topicCount == topicOffsets.length) {
+            topicOffsets = Arrays.copyOf(topicOffsets, topicCount * 2);
+            topicLengths = Arrays.copyOf(topicLengths, topicCount * 2);
+        }
+        topicOffsets[topicCount] = offset;
+        topicLengths[topicCount] = length;
+        topicCount++;
+        return true;
+    }
+
+
+    /**
+     *  读取数组长度，null 数组返回 -1
+     */
+    private static int readArrayLength(ByteBuffer buffer, boolean flexible) {
+        int length = flexible ? ByteUtils.readUnsignedVarInt(buffer) - 1 : buffer.getInt();
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("数组长度超出数据包剩余字节：" + length);
+        }
+        return length;
+    }
+
+
+    private static void skipString(ByteBuffer buffer, boolean flexible) {
+        int length = flexible ? ByteUtils.readUnsignedVarInt(buffer) - 1 : buffer.getShort();
+        skip(buffer, Math.max(length, 0));
+    }
+
+
+    private static void skipTaggedFields(ByteBuffer buffer, boolean flexible) {
+        if (flexible) {
+            skipTaggedFields(buffer);
+        }
+    }
+
+
+    private static void skipTaggedFields(ByteBuffer buffer) {
+        int fields = ByteUtils.readUnsignedVarInt(buffer);
+        for (int i = 0; i < fields; i++) {
+            ByteUtils.readUnsignedVarInt(buffer);
+            skip(buffer, ByteUtils.readUnsignedVarInt(buffer));
+        }
+    }
+
+
+    private static void skip(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("跳过的字节数超出数据包剩余字节：" + length);
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+
+    /**
+     *  比较数据包指定区域与给定字节
+     */
+    boolean regionEquals(int offset, int length, byte[] value) {
+        return length == value.length && regionMatches(offset, value);
+    }
+
+
+    boolean regionStartsWith(int offset, int length, byte[] value) {
+        return length >= value.length && regionMatches(offset, value);
+    }
+
+
+    boolean regionEndsWith(int offset, int length, byte[] value) {
+        return length >= value.length && regionMatches(offset + length - value.length, value);
+    }
+
+
+    private boolean regionMatches(int offset, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            if (frame.get(offset + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
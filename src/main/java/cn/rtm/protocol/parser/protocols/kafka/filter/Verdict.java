@@ -0,0 +1,40 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+/**
+ *  过滤条件的三值求值结果，原始字节中无法确定的字段（如 fetch v13+ 仅携带 topicId）求值为 {@link #UNKNOWN}，
+ *  逻辑运算遵循 Kleene 三值逻辑，仅 {@link #FALSE} 会导致数据包被丢弃
+ */
+enum Verdict {
+
+    TRUE,
+
+    FALSE,
+
+    UNKNOWN;
+
+
+    static Verdict of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+
+    Verdict and(Verdict other) {
+        if (this == FALSE || other == FALSE) {
+            return FALSE;
+        }
+        return this == TRUE && other == TRUE ? TRUE : UNKNOWN;
+    }
+
+
+    Verdict or(Verdict other) {
+        if (this == TRUE || other == TRUE) {
+            return TRUE;
+        }
+        return this == FALSE && other == FALSE ? FALSE : UNKNOWN;
+    }
+
+
+    Verdict not() {
+        return this == UNKNOWN ? UNKNOWN : of(this == FALSE);
+    }
+}
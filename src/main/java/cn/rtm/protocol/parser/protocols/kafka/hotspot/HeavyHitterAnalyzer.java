@@ -0,0 +1,403 @@
+package cn.rtm.protocol.parser.protocols.kafka.hotspot;
+
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import cn.rtm.protocol.parser.core.topk.HeavyHitter;
+import cn.rtm.protocol.parser.core.topk.WindowedTopK;
+import cn.rtm.protocol.parser.protocols.kafka.session.FetchSession;
+import org.apache.kafka.common.Uuid;
+import org.apache.kafka.common.message.CreateTopicsResponseData;
+import org.apache.kafka.common.message.FetchResponseData;
+import org.apache.kafka.common.message.MetadataResponseData;
+import org.apache.kafka.common.message.ProduceRequestData;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.record.BaseRecords;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.requests.RequestHeader;
+import org.apache.kafka.common.utils.BufferSupplier;
+import org.apache.kafka.common.utils.CloseableIterator;
+import org.apache.kafka.common.utils.Utils;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  热点 topic 分区、客户端与 record key 统计，用于定位分区倾斜、异常客户端与热点 key
+ *
+ * <ul>
+ * <li> 每个维度使用固定容量的 Space-Saving 统计，内存占用与 topic 分区、clientId、record key 的数量无关，
+ * 结果中的 key 计数存在 error 以内的高估
+ * <li> topic 分区的字节数与 record 数量仅读取 record batch 头，不反序列化 record
+ * <li> record key 仅统计 produce 请求，每个请求最多读取 {@link HeavyHitterProperties#getKeysPerRequest()} 个 key 并在分区间均分，
+ * 结果为采样计数；每个 topic 单独统计，仅统计上一个完整窗口内 produce 字节数最高的
+ * {@link HeavyHitterProperties#getKeyTopics()} 个 topic，首个窗口完成前按出现顺序统计
+ * <li> 统计按 {@link HeavyHitterProperties#getWindowSeconds()} 滚动，窗口按请求、响应的抓包时间切换，查询时截至最近一次抓包时间，
+ * 可查询当前窗口与上一个完整窗口
+ * <li> fetch v13 及以上版本的响应仅携带 topicId，按 metadata、create topics 响应中记录的 topicId 与名称对应关系转换为 topic 名称，
+ * 与 produce 统计的 topic 分区一致，尚未获取对应关系时使用 topicId
+ * </ul>
+ */
+public class HeavyHitterAnalyzer implements StateSizeProvider {
+
+    /**
+     *  record key 最多保留的字节数，超过部分截断
+     */
+    static final int MAX_KEY_BYTES = 128;
+
+    /**
+     *  最多保留的 topicId 与名称对应关系数量，超过后不再记录新的 topic
+     */
+    static final int MAX_TOPIC_NAMES = 65536;
+
+    private final int capacity;
+
+    private final int keyCapacity;
+
+    private final int keyTopics;
+
+    private final long windowMillis;
+
+    private final int keysPerRequest;
+
+    private volatile Sketches sketches;
+
+    /**
+     *  topicId 与 topic 名称的对应关系，清空统计时保留
+     */
+    private final Map<Uuid, String> topicNames = new ConcurrentHashMap<>();
+
+    /**
+     *  已记录的最近一次抓包时间，查询时作为当前时间
+     */
+    private volatile long latestCaptureMillis;
+
+    public HeavyHitterAnalyzer(HeavyHitterProperties properties) {
+        this.capacity = Math.max(1, properties.getCapacity());
+        this.keyCapacity = Math.max(1, properties.getKeyCapacity());
+        this.keyTopics = Math.max(0, properties.getKeyTopics());
+        this.windowMillis = Math.max(1, properties.getWindowSeconds()) * 1000L;
+        this.keysPerRequest = Math.max(0, properties.getKeysPerRequest());
+        this.sketches = new Sketches();
+    }
+
+
+    /**
+     *  记录一次请求，produce 请求同时统计 topic 分区写入量与 record key
+     * @param header 请求头
+     * @param request 请求体，负载降级跳过时为 null
+     * @param keysSkipped 是否跳过 record key 统计，负载降级跳过 record 反序列化时为 true
+     * @param captureTime 请求的抓包时间，为 null 时使用最近一次抓包时间
+     */
+    public void recordRequest(RequestHeader header, ApiMessage request, boolean keysSkipped, Instant captureTime) {
+        long now = advance(captureTime);
+        Sketches current = sketches;
+        current.dimensions.get(HeavyHitterDimension.CLIENT_REQUESTS).add(String.valueOf(header.clientId()), 1, now);
+        if (!(request instanceof ProduceRequestData)) {
+            return;
+        }
+        ProduceRequestData produce = (ProduceRequestData) request;
+        int keyBudget = keysSkipped || keyTopics == 0 ? 0 : keysPerRequest;
+        int partitionKeys = keyBudget == 0 ? 0 : Math.max(1, keyBudget / Math.max(1, partitionCount(produce)));
+        for (ProduceRequestData.TopicProduceData topic : produce.topicData()) {
+            WindowedTopK<String> keySketch = keyBudget > 0 ? keySketchOf(current, topic.name(), now) : null;
+            long topicBytes = 0;
+            for (ProduceRequestData.PartitionProduceData partition : topic.partitionData()) {
+                if (!(partition.records() instanceof MemoryRecords)) {
+                    continue;
+                }
+                MemoryRecords records = (MemoryRecords) partition.records();
+                String topicPartition = topic.name() + "-" + partition.index();
+                long recordCount = 0;
+                for (RecordBatch batch : records.batches()) {
+                    Integer count = batch.countOrNull();
+                    recordCount += count == null ? 0 : count;
+                }
+                topicBytes += records.sizeInBytes();
+                current.dimensions.get(HeavyHitterDimension.PRODUCE_BYTES).add(topicPartition, records.sizeInBytes(), now);
+                current.dimensions.get(HeavyHitterDimension.PRODUCE_RECORDS).add(topicPartition, recordCount, now);
+                if (keySketch != null && keyBudget > 0) {
+                    keyBudget -= recordKeys(keySketch, records, Math.min(keyBudget, partitionKeys), now);
+                }
+            }
+            current.topicBytes.add(topic.name(), topicBytes, now);
+        }
+    }
+
+
+    /**
+     *  记录一次响应，统计 fetch 响应的 topic 分区读取量，metadata、create topics 响应仅记录 topicId 与名称的对应关系
+     * @param response 响应体，负载降级跳过时为 null
+     * @param captureTime 响应的抓包时间，为 null 时使用最近一次抓包时间
+     */
+    public void recordResponse(ApiMessage response, Instant captureTime) {
+        if (response instanceof MetadataResponseData) {
+            for (MetadataResponseData.MetadataResponseTopic topic : ((MetadataResponseData) response).topics()) {
+                recordTopicName(topic.topicId(), topic.name());
+            }
+            return;
+        }
+        if (response instanceof CreateTopicsResponseData) {
+            for (CreateTopicsResponseData.CreatableTopicResult topic : ((CreateTopicsResponseData) response).topics()) {
+                recordTopicName(topic.topicId(), topic.name());
+            }
+            return;
+        }
+        if (!(response instanceof FetchResponseData)) {
+            return;
+        }
+        long now = advance(captureTime);
+        Map<HeavyHitterDimension, WindowedTopK<Object>> current = sketches.dimensions;
+        for (FetchResponseData.FetchableTopicResponse topic : ((FetchResponseData) response).responses()) {
+            String topicKey = FetchSession.topicKey(topic.topic(), topic.topicId());
+            if (topicKey != null && !topicKey.equals(topic.topic())) {
+                topicKey = topicNames.getOrDefault(topic.topicId(), topicKey);
+            }
+            for (FetchResponseData.PartitionData partition : topic.partitions()) {
+                BaseRecords records = partition.records();
+                if (records == null || records.sizeInBytes() == 0) {
+                    continue;
+                }
+                String topicPartition = topicKey + "-" + partition.partitionIndex();
+                current.get(HeavyHitterDimension.FETCH_BYTES).add(topicPartition, records.sizeInBytes(), now);
+                if (records instanceof MemoryRecords) {
+                    long recordCount = 0;
+                    for (RecordBatch batch : ((MemoryRecords) records).batches()) {
+                        Integer count = batch.countOrNull();
+                        recordCount += count == null ? 0 : count;
+                    }
+                    current.get(HeavyHitterDimension.FETCH_RECORDS).add(topicPartition, recordCount, now);
+                }
+            }
+        }
+    }
+
+
+    private void recordTopicName(Uuid topicId, String name) {
+        if (topicId == null || Uuid.ZERO_UUID.equals(topicId) || name == null || name.isEmpty()) {
+            return;
+        }
+        if (topicNames.size() < MAX_TOPIC_NAMES || topicNames.containsKey(topicId)) {
+            topicNames.put(topicId, name);
+        }
+    }
+
+
+    /**
+     *  更新最近一次抓包时间
+     * @param captureTime 抓包时间，可为 null
+     * @return 返回抓包时间的毫秒数，为 null 时返回最近一次抓包时间
+     */
+    private long advance(Instant captureTime) {
+        if (captureTime == null) {
+            return latestCaptureMillis;
+        }
+        long millis = captureTime.toEpochMilli();
+        if (millis > latestCaptureMillis) {
+            latestCaptureMillis = millis;
+        }
+        return millis;
+    }
+
+
+    /**
+     *  获取 topic 的 record key 统计，上一个完整窗口切换后按其 produce 字节数重新确定统计的 topic
+     * @param current 当前统计
+     * @param topic topic 名称
+     * @param now 抓包时间
+     * @return 返回 record key 统计，topic 不在统计范围内时返回 null
+     */
+    private WindowedTopK<String> keySketchOf(Sketches current, String topic, long now) {
+        WindowedTopK.Window<String> ranked = current.topicBytes.previous(now);
+        if (ranked != null && ranked != current.rankedWindow) {
+            Set<String> hotTopics = new HashSet<>();
+            for (HeavyHitter<String> hitter : ranked.top(keyTopics)) {
+                hotTopics.add(hitter.getKey());
+            }
+            current.recordKeys.keySet().retainAll(hotTopics);
+            current.hotTopics = hotTopics;
+            current.rankedWindow = ranked;
+        }
+        WindowedTopK<String> sketch = current.recordKeys.get(topic);
+        Set<String> hotTopics = current.hotTopics;
+        if (sketch == null && current.recordKeys.size() < keyTopics && (hotTopics == null || hotTopics.contains(topic))) {
+            sketch = current.recordKeys.computeIfAbsent(topic, key -> new WindowedTopK<>(keyCapacity, windowMillis));
+        }
+        return sketch;
+    }
+
+
+    /**
+     *  读取分区内 record key 并计入统计，压缩批次仅解压至读取上限
+     * @param sketch topic 的 record key 统计
+     * @param records 分区 record
+     * @param limit 最多读取的 key 数量
+     * @param now 抓包时间
+     * @return 返回实际读取的 record 数量
+     */
+    private int recordKeys(WindowedTopK<String> sketch, MemoryRecords records, int limit, long now) {
+        int read = 0;
+        for (RecordBatch batch : records.batches()) {
+            try (CloseableIterator<Record> iterator = batch.streamingIterator(BufferSupplier.NO_CACHING)) {
+                while (read < limit && iterator.hasNext()) {
+                    Record record = iterator.next();
+                    read++;
+                    if (record.hasKey()) {
+                        sketch.add(keyOf(record.key()), 1, now);
+                    }
+                }
+            }
+            if (read >= limit) {
+                break;
+            }
+        }
+        return read;
+    }
+
+
+    private static String keyOf(ByteBuffer key) {
+        return Utils.utf8(key, Math.min(key.remaining(), MAX_KEY_BYTES));
+    }
+
+
+    private static int partitionCount(ProduceRequestData request) {
+        int partitions = 0;
+        for (ProduceRequestData.TopicProduceData topic : request.topicData()) {
+            partitions += topic.partitionData().size();
+        }
+        return partitions;
+    }
+
+
+    /**
+     *  查询热点 key
+     * @param dimension 统计维度
+     * @param limit 返回数量
+     * @param previous 为 true 则查询上一个完整窗口，否则查询截至最近一次抓包时间的当前窗口
+     * @param topic 仅 {@link HeavyHitterDimension#RECORD_KEYS} 维度有效，不为空则只返回该 topic 的 key，否则合并全部统计的 topic
+     * @return 返回按计数降序排列的热点，尚未记录数据、上一个窗口尚未完成或 topic 不在统计范围内时返回 null
+     */
+    public HeavyHitterReport top(HeavyHitterDimension dimension, int limit, boolean previous, String topic) {
+        long now = latestCaptureMillis;
+        Sketches current = sketches;
+        if (dimension == HeavyHitterDimension.RECORD_KEYS) {
+            return topKeys(current, limit, previous, topic, now);
+        }
+        WindowedTopK<Object> sketch = current.dimensions.get(dimension);
+        WindowedTopK.Window<Object> window = previous ? sketch.previous(now) : sketch.current(now);
+        if (window == null) {
+            return null;
+        }
+        double seconds = window.getDurationMillis() / 1000.0;
+        List<HeavyHitterReport.Item> items = new ArrayList<>(Math.min(limit, 64));
+        for (HeavyHitter<Object> hitter : window.top(limit)) {
+            items.add(new HeavyHitterReport.Item(hitter.getKey().toString(), hitter.getCount(), hitter.getError(), hitter.getCount() / seconds));
+        }
+        return new HeavyHitterReport(dimension.getName(), window.getStart(), seconds, window.getTotal(), items);
+    }
+
+
+    /**
+     *  查询热点 record key，未指定 topic 时合并各 topic 的结果，key 格式为 topic/key
+     */
+    private HeavyHitterReport topKeys(Sketches current, int limit, boolean previous, String topic, long now) {
+        boolean filtered = topic != null && !topic.isEmpty();
+        Map<String, WindowedTopK<String>> keySketches = filtered ? Collections.singletonMap(topic, current.recordKeys.get(topic)) : current.recordKeys;
+        List<HeavyHitterReport.Item> items = new ArrayList<>(Math.min(limit, 64));
+        long windowStart = -1;
+        double seconds = 0;
+        long total = 0;
+        for (Map.Entry<String, WindowedTopK<String>> entry : keySketches.entrySet()) {
+            WindowedTopK.Window<String> window = entry.getValue() == null ? null
+                    : previous ? entry.getValue().previous(now) : entry.getValue().current(now);
+            if (window == null) {
+                continue;
+            }
+            if (window.getStart() > windowStart) {
+                windowStart = window.getStart();
+                seconds = window.getDurationMillis() / 1000.0;
+            }
+            total += window.getTotal();
+            double windowSeconds = window.getDurationMillis() / 1000.0;
+            for (HeavyHitter<String> hitter : window.top(limit)) {
+                String key = filtered ? hitter.getKey() : entry.getKey() + "/" + hitter.getKey();
+                items.add(new HeavyHitterReport.Item(key, hitter.getCount(), hitter.getError(), hitter.getCount() / windowSeconds));
+            }
+        }
+        if (windowStart < 0) {
+            return null;
+        }
+        items.sort(Comparator.comparingLong(HeavyHitterReport.Item::getCount).reversed());
+        return new HeavyHitterReport(HeavyHitterDimension.RECORD_KEYS.getName(), windowStart, seconds, total,
+                items.size() > limit ? new ArrayList<>(items.subList(0, Math.max(0, limit))) : items);
+    }
+
+
+    /**
+     *  清空统计数据，重新开始统计
+     */
+    public void reset() {
+        this.sketches = new Sketches();
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>(2);
+        long now = latestCaptureMillis;
+        Sketches current = sketches;
+        long tracked = 0;
+        for (WindowedTopK<Object> sketch : current.dimensions.values()) {
+            WindowedTopK.Window<Object> window = sketch.current(now);
+            tracked += window == null ? 0 : window.size();
+        }
+        for (WindowedTopK<String> sketch : current.recordKeys.values()) {
+            WindowedTopK.Window<String> window = sketch.current(now);
+            tracked += window == null ? 0 : window.size();
+        }
+        sizes.put("heavyHitter.trackedKeys", tracked);
+        sizes.put("heavyHitter.keyTopics", (long) current.recordKeys.size());
+        return sizes;
+    }
+
+
+    /**
+     *  一组统计，清空时整体替换
+     */
+    private final class Sketches {
+
+        /**
+         *  topic 分区与客户端维度的统计，不包含 {@link HeavyHitterDimension#RECORD_KEYS}
+         */
+        private final Map<HeavyHitterDimension, WindowedTopK<Object>> dimensions = new EnumMap<>(HeavyHitterDimension.class);
+
+        /**
+         *  按 topic 统计的 produce 字节数，用于确定统计 record key 的 topic
+         */
+        private final WindowedTopK<String> topicBytes = new WindowedTopK<>(capacity, windowMillis);
+
+        /**
+         *  按 topic 索引的 record key 统计，数量不超过 {@link #keyTopics}
+         */
+        private final Map<String, WindowedTopK<String>> recordKeys = new ConcurrentHashMap<>();
+
+        /**
+         *  上一个完整窗口内 produce 字节数最高的 topic，首个窗口完成前为 null
+         */
+        private volatile Set<String> hotTopics;
+
+        /**
+         *  确定 {@link #hotTopics} 时使用的窗口
+         */
+        private volatile WindowedTopK.Window<String> rankedWindow;
+
+        private Sketches() {
+            for (HeavyHitterDimension dimension : HeavyHitterDimension.values()) {
+                if (dimension != HeavyHitterDimension.RECORD_KEYS) {
+                    dimensions.put(dimension, new WindowedTopK<>(capacity, windowMillis));
+                }
+            }
+        }
+    }
+}
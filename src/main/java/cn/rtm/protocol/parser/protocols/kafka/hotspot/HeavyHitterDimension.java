@@ -0,0 +1,63 @@
+package cn.rtm.protocol.parser.protocols.kafka.hotspot;
+
+/**
+ *  热点统计维度
+ */
+public enum HeavyHitterDimension {
+
+    /**
+     *  topic 分区 produce 写入的 record batch 字节数
+     */
+    PRODUCE_BYTES("produce-bytes"),
+
+    /**
+     *  topic 分区 produce 写入的 record 数量
+     */
+    PRODUCE_RECORDS("produce-records"),
+
+    /**
+     *  topic 分区 fetch 响应返回的 record 字节数
+     */
+    FETCH_BYTES("fetch-bytes"),
+
+    /**
+     *  topic 分区 fetch 响应返回的 record 数量
+     */
+    FETCH_RECORDS("fetch-records"),
+
+    /**
+     *  clientId 的请求数
+     */
+    CLIENT_REQUESTS("client-requests"),
+
+    /**
+     *  topic 内 produce 写入的 record key 出现次数，按读取上限采样，仅统计 produce 字节数最高的若干 topic
+     */
+    RECORD_KEYS("record-keys");
+
+    private final String name;
+
+    HeavyHitterDimension(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     *  按名称查找统计维度
+     * @param name 维度名称，如 produce-bytes
+     * @return 返回统计维度
+     * @throws IllegalArgumentException 名称不存在时抛出
+     */
+    public static HeavyHitterDimension of(String name) {
+        for (HeavyHitterDimension dimension : values()) {
+            if (dimension.name.equalsIgnoreCase(name)) {
+                return dimension;
+            }
+        }
+        throw new IllegalArgumentException("不支持的统计维度：" + name);
+    }
+}
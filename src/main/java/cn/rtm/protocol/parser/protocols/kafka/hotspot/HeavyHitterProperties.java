@@ -0,0 +1,88 @@
+package cn.rtm.protocol.parser.protocols.kafka.hotspot;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  热点 topic 分区、客户端与 record key 统计配置，前缀为 protocol.heavy-hitter
+ */
+@ConfigurationProperties(prefix = "protocol.heavy-hitter")
+public class HeavyHitterProperties {
+
+    /**
+     *  是否启用热点统计
+     */
+    private boolean enabled = true;
+
+    /**
+     *  topic 分区与客户端维度每个窗口最多跟踪的 key 数量
+     */
+    private int capacity = 1024;
+
+    /**
+     *  record key 维度每个 topic 每个窗口最多跟踪的 key 数量
+     */
+    private int keyCapacity = 512;
+
+    /**
+     *  统计 record key 的 topic 数量，取上一个完整窗口内 produce 字节数最高的 topic，为 0 则不统计 record key
+     */
+    private int keyTopics = 16;
+
+    /**
+     *  统计窗口时长，单位秒
+     */
+    private int windowSeconds = 60;
+
+    /**
+     *  每个 produce 请求最多读取的 record key 数量，为 0 则不统计 record key
+     */
+    private int keysPerRequest = 64;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getKeyCapacity() {
+        return keyCapacity;
+    }
+
+    public void setKeyCapacity(int keyCapacity) {
+        this.keyCapacity = keyCapacity;
+    }
+
+    public int getKeyTopics() {
+        return keyTopics;
+    }
+
+    public void setKeyTopics(int keyTopics) {
+        this.keyTopics = keyTopics;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public void setWindowSeconds(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public int getKeysPerRequest() {
+        return keysPerRequest;
+    }
+
+    public void setKeysPerRequest(int keysPerRequest) {
+        this.keysPerRequest = keysPerRequest;
+    }
+}
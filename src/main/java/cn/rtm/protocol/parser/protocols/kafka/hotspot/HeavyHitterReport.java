@@ -0,0 +1,91 @@
+package cn.rtm.protocol.parser.protocols.kafka.hotspot;
+
+import java.util.List;
+
+/**
+ *  一个统计窗口内某个维度的热点查询结果
+ */
+public class HeavyHitterReport {
+
+    private final String dimension;
+
+    private final long windowStart;
+
+    private final double windowSeconds;
+
+    /**
+     *  窗口内该维度的累计值，包含未进入结果的 key
+     */
+    private final long total;
+
+    private final List<Item> hitters;
+
+    public HeavyHitterReport(String dimension, long windowStart, double windowSeconds, long total, List<Item> hitters) {
+        this.dimension = dimension;
+        this.windowStart = windowStart;
+        this.windowSeconds = windowSeconds;
+        this.total = total;
+        this.hitters = hitters;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public double getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Item> getHitters() {
+        return hitters;
+    }
+
+
+    /**
+     *  单个热点 key，真实值介于 count - error 与 count 之间
+     */
+    public static class Item {
+
+        private final String key;
+
+        private final long count;
+
+        private final long error;
+
+        private final double rate;
+
+        public Item(String key, long count, long error, double rate) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.rate = rate;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        /**
+         *  每秒速率，按窗口统计时长计算
+         */
+        public double getRate() {
+            return rate;
+        }
+    }
+}
@@ -3,7 +3,14 @@ package cn.rtm.protocol.parser.protocols.kafka.parser.request;
 import cn.rtm.protocol.parser.AbstractProtocolParser;
 import cn.rtm.protocol.parser.ProtocolContext;
 import cn.rtm.protocol.parser.core.enums.ProtocolType;
+import cn.rtm.protocol.parser.core.error.ParseErrorTracker;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
+import cn.rtm.protocol.parser.core.shedding.LoadSheddingController;
 import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
+import cn.rtm.protocol.parser.protocols.kafka.session.ApiVersionsSession;
+import cn.rtm.protocol.parser.protocols.kafka.session.KafkaApiRoutine;
+import io.micrometer.core.instrument.Counter;
+import org.apache.kafka.common.message.ApiVersionsRequestData;
 import org.apache.kafka.common.protocol.ApiKeys;
 import org.apache.kafka.common.protocol.ApiMessage;
 import org.apache.kafka.common.requests.AbstractRequest;
@@ -22,13 +29,40 @@ import static org.apache.kafka.common.protocol.ApiKeys.API_VERSIONS;
  *  <li> 方法 {@linkplain #parseBody(RequestHeader, ByteBuffer)} 实现 RequestPayload 解析，具体实现
  *  委托 Kafka-client 源码 {@linkplain AbstractRequest#parseRequest(ApiKeys, short, ByteBuffer)} 执行真正的解析
  *  <li> 方法 {@linkplain #buildParsedMessage(RequestHeader, ApiMessage)} 实现请求数据包解析结果的组装
+ *  <li> 配置 {@link #loadSheddingController} 时，降级期间低优先级 api 仅解析请求头，跳过请求体解析，对应响应同样跳过响应体解析
+ *  <li> 请求头按其中 api key、版本对应的 {@link KafkaApiRoutine} 解析，本地 kafka-clients 不支持的 api 版本
+ *  在请求头解析前即丢弃，ApiVersions 请求记录客户端软件名称与版本
+ *  <li> 解析失败交由 {@link ParseErrorTracker} 分类计数、限流输出日志并保留原始数据包
  *  </ul>
  */
 public class KafkaRequestParser extends AbstractProtocolParser<RequestHeader, ApiMessage, KafkaProtocolParsedMessage> {
 
 
+    /**
+     *  负载降级控制器，为 null 则始终解析请求体
+     */
+    private final LoadSheddingController loadSheddingController;
+
+    private final Counter skippedBodies = ProtocolMetrics.counter(ProtocolMetrics.SHEDDING_SKIPPED, "action", "body");
+
+    /**
+     *  当前请求是否因负载降级跳过了请求体解析，按线程保存
+     */
+    private final ThreadLocal<Boolean> bodySkipped = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
     public KafkaRequestParser(ProtocolContext protocolContext) {
+        this(protocolContext, null);
+    }
+
+    public KafkaRequestParser(ProtocolContext protocolContext, LoadSheddingController loadSheddingController) {
         super(protocolContext);
+        this.loadSheddingController = loadSheddingController;
+    }
+
+
+    @Override
+    protected void beforeParse() {
+        this.bodySkipped.set(Boolean.FALSE);
     }
 
     @Override
@@ -36,11 +70,24 @@ public class KafkaRequestParser extends AbstractProtocolParser<RequestHeader, Ap
         if (!isRequestPacket()) {
             return null;
         }
+        KafkaApiRoutine routine = null;
+        if (buffer.remaining() >= 4) {
+            short apiKey = buffer.getShort(buffer.position());
+            short apiVersion = buffer.getShort(buffer.position() + 2);
+            routine = KafkaApiRoutine.of(apiKey, apiVersion);
+            // 本地 kafka-clients 无法解析的版本在请求头解析前丢弃，不支持的 ApiVersions 请求仍解析请求头，用于匹配 broker 的 v0 响应
+            if (routine == null && apiKey != API_VERSIONS.id) {
+                ParseErrorTracker.global().record(ParseErrorTracker.STAGE_REQUEST_HEADER, ApiKeys.hasId(apiKey) ? "UnsupportedVersion" : "UnknownApiKey",
+                        "本地 kafka-clients 不支持 api " + apiKey + " v" + apiVersion, apiKey, apiVersion, getCommonData());
+                return null;
+            }
+        }
         RequestHeader header = null;
         try {
-            header = RequestHeader.parse(buffer);
+            header = routine == null ? RequestHeader.parse(buffer) : routine.parseRequestHeader(buffer);
         } catch (Exception e) {
-            log.error("解析:{} 请求头出错！",getCommonData().requestDesc(),e);
+            ParseErrorTracker.global().record(ParseErrorTracker.STAGE_REQUEST_HEADER, e,
+                    ParseErrorTracker.peekApiKey(getCommonData()), ParseErrorTracker.peekApiVersion(getCommonData()), getCommonData());
         }
         return header;
     }
@@ -52,20 +99,37 @@ public class KafkaRequestParser extends AbstractProtocolParser<RequestHeader, Ap
             return null;
         }
         ApiKeys apiKey = parsedHeader.apiKey();
+        if (loadSheddingController != null && loadSheddingController.isBodySkipped(apiKey)) {
+            skippedBodies.increment();
+            this.bodySkipped.set(Boolean.TRUE);
+            return null;
+        }
         short apiVersion = parsedHeader.apiVersion();
         ApiMessage apiMessage = null;
         try {
             apiMessage = AbstractRequest.parseRequest(apiKey, apiVersion, buffer).request.data();
+            if (apiKey == API_VERSIONS) {
+                this.applyApiVersionsRequest((ApiVersionsRequestData) apiMessage);
+            }
         } catch (Exception e) {
-            log.error("Error getting request for apiKey: " + apiKey +
-                    ", apiVersion: " + parsedHeader.apiVersion() +
-                    ", connectionId: " + parsedHeader.clientId() +
-                    ", listenerName: " + parsedHeader.apiKey(), e);
+            ParseErrorTracker.global().record(ParseErrorTracker.STAGE_REQUEST_BODY, e, apiKey.id, apiVersion, getCommonData());
         }
         return apiMessage;
     }
 
 
+    /**
+     *  记录连接的 ApiVersions 请求，即客户端软件名称与版本
+     * @param request ApiVersions 请求
+     */
+    private void applyApiVersionsRequest(ApiVersionsRequestData request) {
+        ApiVersionsSession session = ApiVersionsSession.of(getCommonData().getFlow());
+        if (session != null) {
+            session.applyRequest(request);
+        }
+    }
+
+
     /**
      *  判断是否为不支持的 API 版本请求
      * @param header 请求头信息
@@ -84,12 +148,14 @@ public class KafkaRequestParser extends AbstractProtocolParser<RequestHeader, Ap
         KafkaProtocolParsedMessage kafkaProtocolParsedMessage = new KafkaProtocolParsedMessage();
         kafkaProtocolParsedMessage.setRequestHeader(header);
         kafkaProtocolParsedMessage.setRequestMessage(body);
+        kafkaProtocolParsedMessage.setBodySkipped(bodySkipped.get());
         kafkaProtocolParsedMessage.setRequestLength(getCommonData().getLength());
         kafkaProtocolParsedMessage.setOriginData(getCommonData());
         kafkaProtocolParsedMessage.setRequestApi(buildRequestApi(header));
         kafkaProtocolParsedMessage.setRequestData(Boolean.TRUE);
         kafkaProtocolParsedMessage.setParsedRequest(Boolean.TRUE);
-        kafkaProtocolParsedMessage.setStartTime(this.startParseTime);
+        kafkaProtocolParsedMessage.setStartTime(this.captureTime.get());
+        kafkaProtocolParsedMessage.setRequestCaptureTime(this.captureInstant.get());
         protocolContext.addParam(getCommonData().getResponseAckId(), kafkaProtocolParsedMessage);
         return kafkaProtocolParsedMessage;
     }
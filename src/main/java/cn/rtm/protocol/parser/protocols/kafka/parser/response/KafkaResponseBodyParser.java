@@ -2,8 +2,13 @@ package cn.rtm.protocol.parser.protocols.kafka.parser.response;
 
 import cn.rtm.protocol.parser.AbstractProtocolParser;
 import cn.rtm.protocol.parser.ProtocolContext;
+import cn.rtm.protocol.parser.ProtocolMessage;
 import cn.rtm.protocol.parser.ProtocolParseException;
+import cn.rtm.protocol.parser.core.error.ParseErrorTracker;
+import cn.rtm.protocol.parser.core.metrics.ProtocolMetrics;
 import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
+import cn.rtm.protocol.parser.protocols.kafka.session.KafkaApiRoutine;
+import io.micrometer.core.instrument.Counter;
 import org.apache.kafka.common.message.ResponseHeaderData;
 import org.apache.kafka.common.protocol.ApiKeys;
 import org.apache.kafka.common.protocol.ApiMessage;
@@ -11,6 +16,7 @@ import org.apache.kafka.common.protocol.Readable;
 import org.apache.kafka.common.requests.AbstractResponse;
 import org.apache.kafka.common.requests.RequestHeader;
 import java.nio.ByteBuffer;
+import java.time.Instant;
 
 
 /**
@@ -31,10 +37,21 @@ import java.nio.ByteBuffer;
  *  委托 Kafka-client 源码 {@linkplain AbstractResponse#parseResponse(ApiKeys, ByteBuffer, short)}  执行真正的解析
  *
  *  <li> 方法 {@linkplain #buildParsedMessage(ResponseHeaderData, ApiMessage)} 实现响应数据包解析结果的组装
+ *
+ *  <li> 响应头版本取自对应请求 api key、版本的 {@link KafkaApiRoutine}
+ *
+ *  <li> 请求因负载降级跳过请求体解析时，响应仅解析响应头，用于请求-响应匹配与耗时统计
+ *
+ *  <li> 响应头、响应体解析失败及 correlationId 不匹配交由 {@link ParseErrorTracker} 分类计数、限流输出日志并保留原始数据包
  *  </ul>
  */
 public class KafkaResponseBodyParser extends AbstractProtocolParser<ResponseHeaderData, ApiMessage, KafkaProtocolParsedMessage> {
 
+    private final Counter matchedResponses = ProtocolMetrics.counter(ProtocolMetrics.CORRELATION_MATCHED);
+
+    private final Counter requestNotFound = ProtocolMetrics.counter(ProtocolMetrics.CORRELATION_ORPHANED, "reason", "request_not_found");
+
+    private final Counter correlationIdMismatch = ProtocolMetrics.counter(ProtocolMetrics.CORRELATION_ORPHANED, "reason", "correlation_id_mismatch");
 
     public KafkaResponseBodyParser(ProtocolContext protocolContext) {
         super(protocolContext);
@@ -48,27 +65,51 @@ public class KafkaResponseBodyParser extends AbstractProtocolParser<ResponseHead
         }
         RequestHeader requestHeader = this.getRequestHeaderByResponseAckId();
         if (buffer == null || requestHeader == null) {
+            requestNotFound.increment();
             return null;
         }
 
         ResponseHeaderData responseHeader = null;
         try {
-            responseHeader = new KafkaResponseHeaderParser()
-                    .parsePacket(buffer, requestHeader.apiKey()
-                    .responseHeaderVersion(requestHeader.apiVersion()));
+            responseHeader = new KafkaResponseHeaderParser().parsePacket(buffer, this.responseHeaderVersion(requestHeader));
         } catch (ProtocolParseException e) {
-            log.error("解析响应数据包请求头出错：{} ", getCommonData().requestDesc());
+            ParseErrorTracker.global().record(ParseErrorTracker.STAGE_RESPONSE_HEADER, e,
+                    requestHeader.apiKey().id, requestHeader.apiVersion(), getCommonData());
         }
 
         if (responseHeader != null && requestHeader.correlationId() != responseHeader.correlationId()) {
-            log.error("解析的请求 correlationId:{} 和响应 correlationId: {} 内容不匹配！",
-                    requestHeader.correlationId(), responseHeader.correlationId());
+            ParseErrorTracker.global().record(ParseErrorTracker.STAGE_RESPONSE_HEADER, "CorrelationIdMismatch",
+                    "请求 correlationId：" + requestHeader.correlationId() + "，响应 correlationId：" + responseHeader.correlationId(),
+                    requestHeader.apiKey().id, requestHeader.apiVersion(), getCommonData());
+            correlationIdMismatch.increment();
             return null;
         }
         return responseHeader;
     }
 
 
+    /**
+     *  响应耗时以响应首个分片的抓包时间为结束时间，即 broker 开始返回响应的时间，不包含大响应的传输耗时
+     * @param packet 待解析的数据包
+     * @return 返回响应首个分片的抓包时间
+     */
+    @Override
+    protected Instant captureTimeOf(ProtocolMessage packet) {
+        return packet.getFirstCaptureTime();
+    }
+
+
+    /**
+     *  获取响应头版本，优先使用预先确定的解析参数
+     * @param requestHeader 对应的请求头
+     * @return 返回响应头版本
+     */
+    private short responseHeaderVersion(RequestHeader requestHeader) {
+        KafkaApiRoutine routine = KafkaApiRoutine.of(requestHeader.apiKey().id, requestHeader.apiVersion());
+        return routine == null ? requestHeader.apiKey().responseHeaderVersion(requestHeader.apiVersion()) : routine.getResponseHeaderVersion();
+    }
+
+
     /**
      *  根据响应数据包 ack-id 查找对应的请求数据包请求头信息
      * @return 返回请求数据包请求头信息
@@ -102,6 +143,10 @@ public class KafkaResponseBodyParser extends AbstractProtocolParser<ResponseHead
         if (requestHeader == null) {
             return null;
         }
+        // 请求因负载降级跳过了请求体解析，响应体同样跳过
+        if (getParsedRequestMessage().isBodySkipped()) {
+            return null;
+        }
         ApiMessage responseMessage = null;
         try {
             AbstractResponse response = AbstractResponse.parseResponse(requestHeader.apiKey(), buffer, requestHeader.apiVersion());
@@ -110,7 +155,8 @@ public class KafkaResponseBodyParser extends AbstractProtocolParser<ResponseHead
             }
             responseMessage = response.data();
         } catch (Exception e) {
-            log.error("解析响应数据包 payload 出错:{} ", getCommonData().requestDesc(), e);
+            ParseErrorTracker.global().record(ParseErrorTracker.STAGE_RESPONSE_BODY, e,
+                    requestHeader.apiKey().id, requestHeader.apiVersion(), getCommonData());
         }
         return responseMessage;
     }
@@ -128,7 +174,13 @@ public class KafkaResponseBodyParser extends AbstractProtocolParser<ResponseHead
         kafkaProtocolParsedMessage.setParsedResponse(Boolean.TRUE);
         kafkaProtocolParsedMessage.setParseComplete(Boolean.TRUE);
         kafkaProtocolParsedMessage.setRequestData(Boolean.FALSE);
-        kafkaProtocolParsedMessage.setEndTime(this.startParseTime);
+        kafkaProtocolParsedMessage.setEndTime(this.captureTime.get());
+        kafkaProtocolParsedMessage.setResponseCaptureTime(this.captureInstant.get());
+        // 请求-响应已匹配，移除等待响应的请求，避免上下文持续增长
+        protocolContext.removeParam(getCommonData().getAcknowledgementNumber());
+        if (header != null) {
+            matchedResponses.increment();
+        }
         return kafkaProtocolParsedMessage;
     }
 }
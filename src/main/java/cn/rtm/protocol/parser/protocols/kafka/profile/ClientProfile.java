@@ -0,0 +1,188 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+import java.util.Arrays;
+
+/**
+ *  单个客户端画像的滚动窗口统计，窗口由 {@code slots} 个时长为 {@code slotMillis} 的分片组成，记录时按抓包时间定位分片，
+ *  分片过期后复用并清零，早于分片当前时间段的迟到数据不再计入，查询时合并窗口内的全部分片，
+ *  晚于查询时间的分片（乱序抓包时间）不计入
+ */
+public class ClientProfile {
+
+    static final int REQUESTS = 0;
+
+    static final int PRODUCE_REQUESTS = 1;
+
+    static final int PRODUCE_BATCHES = 2;
+
+    static final int PRODUCE_RECORDS = 3;
+
+    static final int PRODUCE_BYTES = 4;
+
+    static final int COMPRESSED_BATCHES = 5;
+
+    static final int FETCH_RESPONSES = 6;
+
+    static final int FETCH_BYTES = 7;
+
+    static final int FIELDS = 8;
+
+    private final ClientProfileKey key;
+
+    private final long slotMillis;
+
+    /**
+     *  各分片的统计值，下标为 分片 * {@link #FIELDS} + 统计项
+     */
+    private final long[] values;
+
+    /**
+     *  未使用的分片的时间序号
+     */
+    private static final long UNUSED_EPOCH = Long.MIN_VALUE;
+
+    /**
+     *  各分片对应的时间序号，即 时间 / slotMillis，未使用时为 {@link #UNUSED_EPOCH}
+     */
+    private final long[] slotEpochs;
+
+    /**
+     *  最近一次被查找时的画像集合版本
+     */
+    private volatile int generation;
+
+    ClientProfile(ClientProfileKey key, long slotMillis, int slots) {
+        this.key = key;
+        this.slotMillis = slotMillis;
+        this.values = new long[slots * FIELDS];
+        this.slotEpochs = new long[slots];
+        Arrays.fill(this.slotEpochs, UNUSED_EPOCH);
+    }
+
+    public ClientProfileKey getKey() {
+        return key;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    void setGeneration(int generation) {
+        this.generation = generation;
+    }
+
+
+    /**
+     *  记录一次请求
+     * @param now 抓包时间
+     */
+    synchronized void recordRequest(long now) {
+        int slot = slotOf(now);
+        if (slot >= 0) {
+            values[slot + REQUESTS]++;
+        }
+    }
+
+
+    /**
+     *  记录一次 produce 请求
+     * @param now 抓包时间
+     * @param batches record batch 数量
+     * @param records record 数量
+     * @param bytes record batch 字节数
+     * @param compressedBatches 压缩的 record batch 数量
+     */
+    synchronized void recordProduce(long now, long batches, long records, long bytes, long compressedBatches) {
+        int slot = slotOf(now);
+        if (slot < 0) {
+            return;
+        }
+        values[slot + PRODUCE_REQUESTS]++;
+        values[slot + PRODUCE_BATCHES] += batches;
+        values[slot + PRODUCE_RECORDS] += records;
+        values[slot + PRODUCE_BYTES] += bytes;
+        values[slot + COMPRESSED_BATCHES] += compressedBatches;
+    }
+
+
+    /**
+     *  记录一次 fetch 响应
+     * @param now 抓包时间
+     * @param bytes 响应中的 record 字节数
+     */
+    synchronized void recordFetch(long now, long bytes) {
+        int slot = slotOf(now);
+        if (slot < 0) {
+            return;
+        }
+        values[slot + FETCH_RESPONSES]++;
+        values[slot + FETCH_BYTES] += bytes;
+    }
+
+
+    /**
+     *  合并窗口内全部分片的统计值
+     * @param now 当前时间
+     * @return 返回各统计项的合计，下标为统计项
+     */
+    synchronized long[] sum(long now) {
+        long epoch = now / slotMillis;
+        long[] total = new long[FIELDS];
+        for (int i = 0; i < slotEpochs.length; i++) {
+            if (!inWindow(slotEpochs[i], epoch)) {
+                continue;
+            }
+            for (int field = 0; field < FIELDS; field++) {
+                total[field] += values[i * FIELDS + field];
+            }
+        }
+        return total;
+    }
+
+
+    /**
+     *  判断窗口内是否没有任何统计值，用于清理不再活跃的画像
+     * @param now 当前时间
+     */
+    synchronized boolean isIdle(long now) {
+        long epoch = now / slotMillis;
+        for (long slotEpoch : slotEpochs) {
+            if (inWindow(slotEpoch, epoch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     *  判断分片是否在截至指定时间序号的窗口内
+     * @param slotEpoch 分片的时间序号
+     * @param epoch 查询时间的时间序号
+     */
+    private boolean inWindow(long slotEpoch, long epoch) {
+        return slotEpoch != UNUSED_EPOCH && slotEpoch <= epoch && epoch - slotEpoch < slotEpochs.length;
+    }
+
+
+    /**
+     *  定位抓包时间所在的分片，分片已过期则清零后复用
+     * @param now 抓包时间
+     * @return 返回分片在 {@link #values} 中的起始下标，分片已被更新的时间段复用时返回 -1
+     */
+    private int slotOf(long now) {
+        long epoch = now / slotMillis;
+        int index = (int) (epoch % slotEpochs.length);
+        int offset = index * FIELDS;
+        if (slotEpochs[index] > epoch) {
+            return -1;
+        }
+        if (slotEpochs[index] != epoch) {
+            slotEpochs[index] = epoch;
+            for (int field = 0; field < FIELDS; field++) {
+                values[offset + field] = 0;
+            }
+        }
+        return offset;
+    }
+}
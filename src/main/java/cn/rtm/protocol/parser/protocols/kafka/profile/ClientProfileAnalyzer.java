@@ -0,0 +1,273 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
+import cn.rtm.protocol.parser.protocols.kafka.session.ApiVersionsSession;
+import org.apache.kafka.common.message.FetchResponseData;
+import org.apache.kafka.common.message.ProduceRequestData;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.record.BaseRecords;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.requests.RequestHeader;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  按客户端软件名称、版本与 clientId 统计的客户端流量画像，用于定位产生异常负载的客户端，如大量小批次写入的某个客户端版本
+ *
+ * <ul>
+ * <li> 客户端软件名称与版本取自连接的 {@link ApiVersionsSession}，clientId 取自请求头，连接对应的画像缓存在连接属性中，
+ * 软件信息或 clientId 变化、画像被清理时重新查找
+ * <li> 统计请求数、produce 的 record batch 数量、字节数、record 数量与压缩批次数，以及 fetch 响应的 record 字节数，
+ * batch 信息仅读取 record batch 头，不反序列化 record
+ * <li> 统计值按 {@link ClientProfileProperties#getSlots()} 个分片滚动，分片按请求、响应的抓包时间定位，不使用解析时的系统时间，
+ * 数据包延迟处理或离线回放时仍计入其实际发生的分片；查询结果为截至最近一次抓包时间的一个窗口内的合计与速率
+ * <li> 画像数量超过 {@link ClientProfileProperties#getMaxProfiles()} 时先清理窗口内无流量的画像，仍超过则新客户端归入
+ * {@link ClientProfileKey#OTHER}
+ * </ul>
+ */
+public class ClientProfileAnalyzer implements StateSizeProvider {
+
+    public static final String SORT_REQUESTS = "requests";
+
+    public static final String SORT_PRODUCE_BYTES = "produceBytes";
+
+    public static final String SORT_FETCH_BYTES = "fetchBytes";
+
+    public static final String SORT_BYTES = "bytes";
+
+    public static final String SORT_BATCHES = "batches";
+
+    /**
+     *  连接对应的画像在连接属性中的存储标识
+     */
+    static final String FLOW_ATTRIBUTE_KEY = ClientProfile.class.getName();
+
+    private final long slotMillis;
+
+    private final int slots;
+
+    private final int maxProfiles;
+
+    private final Map<ClientProfileKey, ClientProfile> profiles = new ConcurrentHashMap<>(256);
+
+    /**
+     *  画像集合版本，清理或清空画像后递增，连接属性中缓存的旧版本画像失效
+     */
+    private volatile int generation;
+
+    /**
+     *  已记录的最近一次抓包时间，查询与清理画像时作为当前时间
+     */
+    private volatile long latestCaptureMillis;
+
+    public ClientProfileAnalyzer(ClientProfileProperties properties) {
+        this.slotMillis = Math.max(1, properties.getSlotSeconds()) * 1000L;
+        this.slots = Math.max(1, properties.getSlots());
+        this.maxProfiles = Math.max(1, properties.getMaxProfiles());
+    }
+
+
+    /**
+     *  记录一次请求，produce 请求同时统计 record batch
+     * @param flow 请求所属连接，可为 null
+     * @param header 请求头
+     * @param request 请求体，负载降级跳过时为 null
+     * @param captureTime 请求的抓包时间，为 null 时使用最近一次抓包时间
+     */
+    public void recordRequest(TcpFlow flow, RequestHeader header, ApiMessage request, Instant captureTime) {
+        long now = advance(captureTime);
+        ClientProfile profile = profileOf(flow, header.clientId());
+        profile.recordRequest(now);
+        if (request instanceof ProduceRequestData) {
+            recordProduce(profile, (ProduceRequestData) request, now);
+        }
+    }
+
+
+    /**
+     *  记录一次响应，仅统计 fetch 响应的 record 字节数
+     * @param flow 响应所属连接，可为 null
+     * @param header 对应的请求头
+     * @param response 响应体，负载降级跳过时为 null
+     * @param captureTime 响应的抓包时间，为 null 时使用最近一次抓包时间
+     */
+    public void recordResponse(TcpFlow flow, RequestHeader header, ApiMessage response, Instant captureTime) {
+        if (!(response instanceof FetchResponseData)) {
+            return;
+        }
+        long bytes = 0;
+        for (FetchResponseData.FetchableTopicResponse topic : ((FetchResponseData) response).responses()) {
+            for (FetchResponseData.PartitionData partition : topic.partitions()) {
+                BaseRecords records = partition.records();
+                bytes += records == null ? 0 : records.sizeInBytes();
+            }
+        }
+        profileOf(flow, header.clientId()).recordFetch(advance(captureTime), bytes);
+    }
+
+
+    /**
+     *  更新最近一次抓包时间
+     * @param captureTime 抓包时间，可为 null
+     * @return 返回抓包时间的毫秒数，为 null 时返回最近一次抓包时间
+     */
+    private long advance(Instant captureTime) {
+        if (captureTime == null) {
+            return latestCaptureMillis;
+        }
+        long millis = captureTime.toEpochMilli();
+        if (millis > latestCaptureMillis) {
+            latestCaptureMillis = millis;
+        }
+        return millis;
+    }
+
+
+    private void recordProduce(ClientProfile profile, ProduceRequestData request, long now) {
+        long batches = 0;
+        long records = 0;
+        long bytes = 0;
+        long compressed = 0;
+        for (ProduceRequestData.TopicProduceData topic : request.topicData()) {
+            for (ProduceRequestData.PartitionProduceData partition : topic.partitionData()) {
+                if (!(partition.records() instanceof MemoryRecords)) {
+                    continue;
+                }
+                for (RecordBatch batch : ((MemoryRecords) partition.records()).batches()) {
+                    batches++;
+                    bytes += batch.sizeInBytes();
+                    Integer count = batch.countOrNull();
+                    records += count == null ? 0 : count;
+                    if (batch.compressionType() != CompressionType.NONE) {
+                        compressed++;
+                    }
+                }
+            }
+        }
+        profile.recordProduce(now, batches, records, bytes, compressed);
+    }
+
+
+    /**
+     *  获取连接对应的画像，优先使用连接属性中缓存的画像
+     * @param flow 连接，可为 null
+     * @param clientId 请求头中的 clientId
+     * @return 返回客户端画像
+     */
+    private ClientProfile profileOf(TcpFlow flow, String clientId) {
+        ApiVersionsSession session = flow == null ? null : flow.getAttributeAs(ApiVersionsSession.FLOW_ATTRIBUTE_KEY, ApiVersionsSession.class);
+        String softwareName = session == null ? null : session.getClientSoftwareName();
+        String softwareVersion = session == null ? null : session.getClientSoftwareVersion();
+        ClientProfile cached = flow == null ? null : flow.getAttributeAs(FLOW_ATTRIBUTE_KEY, ClientProfile.class);
+        if (cached != null && cached.getGeneration() == generation && cached.getKey().matches(softwareName, softwareVersion, clientId)) {
+            return cached;
+        }
+        ClientProfile profile = lookup(new ClientProfileKey(softwareName, softwareVersion, clientId));
+        if (flow != null) {
+            flow.setAttribute(FLOW_ATTRIBUTE_KEY, profile);
+        }
+        return profile;
+    }
+
+
+    /**
+     *  查找或创建画像，并标记为当前画像集合版本
+     * @param key 画像标识
+     * @return 返回客户端画像
+     */
+    private ClientProfile lookup(ClientProfileKey key) {
+        ClientProfile profile = profiles.get(key);
+        if (profile == null) {
+            if (profiles.size() >= maxProfiles) {
+                evictIdle(latestCaptureMillis);
+            }
+            ClientProfileKey target = profiles.size() < maxProfiles ? key : ClientProfileKey.OTHER;
+            profile = profiles.computeIfAbsent(target, k -> new ClientProfile(k, slotMillis, slots));
+        }
+        profile.setGeneration(generation);
+        return profile;
+    }
+
+
+    /**
+     *  清理窗口内无流量的画像
+     * @param now 最近一次抓包时间
+     */
+    private void evictIdle(long now) {
+        if (profiles.values().removeIf(profile -> profile.isIdle(now))) {
+            generation++;
+        }
+    }
+
+
+    /**
+     *  查询负载最高的客户端画像
+     * @param limit 返回数量
+     * @param sortBy 排序字段，取值为 {@link #SORT_REQUESTS}、{@link #SORT_PRODUCE_BYTES}、{@link #SORT_FETCH_BYTES}、
+     *               {@link #SORT_BYTES}、{@link #SORT_BATCHES}
+     * @return 返回按排序字段降序排列的画像统计，窗口截至最近一次抓包时间
+     */
+    public List<ClientProfileSummary> top(int limit, String sortBy) {
+        long now = latestCaptureMillis;
+        double windowSeconds = slotMillis * slots / 1000.0;
+        Comparator<ClientProfileSummary> comparator = comparatorOf(sortBy);
+        List<ClientProfileSummary> summaries = new ArrayList<>(profiles.size());
+        for (ClientProfile profile : profiles.values()) {
+            if (!profile.isIdle(now)) {
+                summaries.add(new ClientProfileSummary(profile.getKey(), profile.sum(now), windowSeconds));
+            }
+        }
+        summaries.sort(comparator.reversed());
+        return summaries.size() > limit ? new ArrayList<>(summaries.subList(0, Math.max(0, limit))) : summaries;
+    }
+
+
+    private static Comparator<ClientProfileSummary> comparatorOf(String sortBy) {
+        if (sortBy == null) {
+            return Comparator.comparingLong(ClientProfileSummary::getRequests);
+        }
+        switch (sortBy) {
+            case SORT_PRODUCE_BYTES:
+                return Comparator.comparingDouble(ClientProfileSummary::getProduceByteRate);
+            case SORT_FETCH_BYTES:
+                return Comparator.comparingDouble(ClientProfileSummary::getFetchByteRate);
+            case SORT_BYTES:
+                return Comparator.comparingDouble(summary -> summary.getProduceByteRate() + summary.getFetchByteRate());
+            case SORT_BATCHES:
+                return Comparator.comparingLong(ClientProfileSummary::getProduceBatches);
+            case SORT_REQUESTS:
+                return Comparator.comparingLong(ClientProfileSummary::getRequests);
+            default:
+                throw new IllegalArgumentException("不支持的排序字段：" + sortBy);
+        }
+    }
+
+
+    /**
+     *  清空统计数据，重新开始统计
+     */
+    public void reset() {
+        profiles.clear();
+        generation++;
+    }
+
+
+    /**
+     *  获取统计窗口时长，单位秒
+     */
+    public long getWindowSeconds() {
+        return slotMillis * slots / 1000;
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>(2);
+        sizes.put("clientProfile.profiles", (long) profiles.size());
+        return sizes;
+    }
+}
@@ -0,0 +1,75 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+import java.util.Objects;
+
+/**
+ *  客户端画像标识，由客户端软件名称、版本与 clientId 组成，未收到 ApiVersions v3+ 请求的连接软件名称与版本为 {@link #UNKNOWN}
+ */
+public final class ClientProfileKey {
+
+    /**
+     *  未知的客户端软件名称或版本
+     */
+    public static final String UNKNOWN = "unknown";
+
+    /**
+     *  画像数量超过上限后折叠的标识
+     */
+    public static final ClientProfileKey OTHER = new ClientProfileKey("other", "other", "other");
+
+    private final String softwareName;
+
+    private final String softwareVersion;
+
+    private final String clientId;
+
+    public ClientProfileKey(String softwareName, String softwareVersion, String clientId) {
+        this.softwareName = softwareName == null ? UNKNOWN : softwareName;
+        this.softwareVersion = softwareVersion == null ? UNKNOWN : softwareVersion;
+        this.clientId = clientId == null ? "" : clientId;
+    }
+
+    public String getSoftwareName() {
+        return softwareName;
+    }
+
+    public String getSoftwareVersion() {
+        return softwareVersion;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+
+    /**
+     *  判断是否与指定的软件名称、版本与 clientId 一致
+     */
+    boolean matches(String softwareName, String softwareVersion, String clientId) {
+        return this.softwareName.equals(softwareName == null ? UNKNOWN : softwareName)
+                && this.softwareVersion.equals(softwareVersion == null ? UNKNOWN : softwareVersion)
+                && this.clientId.equals(clientId == null ? "" : clientId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientProfileKey)) {
+            return false;
+        }
+        ClientProfileKey that = (ClientProfileKey) o;
+        return softwareName.equals(that.softwareName) && softwareVersion.equals(that.softwareVersion) && clientId.equals(that.clientId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(softwareName, softwareVersion, clientId);
+    }
+
+    @Override
+    public String toString() {
+        return softwareName + "/" + softwareVersion + "/" + clientId;
+    }
+}
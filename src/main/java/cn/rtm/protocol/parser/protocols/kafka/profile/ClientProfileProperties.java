@@ -0,0 +1,62 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *  客户端流量画像配置，前缀为 protocol.client-profile
+ */
+@ConfigurationProperties(prefix = "protocol.client-profile")
+public class ClientProfileProperties {
+
+    /**
+     *  是否启用客户端流量画像
+     */
+    private boolean enabled = true;
+
+    /**
+     *  滚动窗口分片时长，单位秒
+     */
+    private int slotSeconds = 10;
+
+    /**
+     *  滚动窗口分片数量，窗口时长为 slotSeconds * slots
+     */
+    private int slots = 6;
+
+    /**
+     *  最多统计的客户端画像数量，超过后新的客户端归入 {@link ClientProfileKey#OTHER}
+     */
+    private int maxProfiles = 2000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getSlotSeconds() {
+        return slotSeconds;
+    }
+
+    public void setSlotSeconds(int slotSeconds) {
+        this.slotSeconds = slotSeconds;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public void setSlots(int slots) {
+        this.slots = slots;
+    }
+
+    public int getMaxProfiles() {
+        return maxProfiles;
+    }
+
+    public void setMaxProfiles(int maxProfiles) {
+        this.maxProfiles = maxProfiles;
+    }
+}
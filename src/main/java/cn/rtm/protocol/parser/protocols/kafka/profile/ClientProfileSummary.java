@@ -0,0 +1,114 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+/**
+ *  客户端画像在滚动窗口内的统计结果，速率单位为每秒
+ */
+public class ClientProfileSummary {
+
+    private final String softwareName;
+
+    private final String softwareVersion;
+
+    private final String clientId;
+
+    private final long requests;
+
+    private final double requestRate;
+
+    private final long produceRequests;
+
+    private final long produceBatches;
+
+    /**
+     *  平均每个 record batch 的字节数
+     */
+    private final double avgBatchBytes;
+
+    /**
+     *  平均每个 record batch 的 record 数量
+     */
+    private final double avgBatchRecords;
+
+    /**
+     *  压缩的 record batch 占比
+     */
+    private final double compressedBatchRatio;
+
+    private final double produceByteRate;
+
+    private final long fetchResponses;
+
+    private final double fetchByteRate;
+
+    ClientProfileSummary(ClientProfileKey key, long[] total, double windowSeconds) {
+        this.softwareName = key.getSoftwareName();
+        this.softwareVersion = key.getSoftwareVersion();
+        this.clientId = key.getClientId();
+        this.requests = total[ClientProfile.REQUESTS];
+        this.requestRate = total[ClientProfile.REQUESTS] / windowSeconds;
+        this.produceRequests = total[ClientProfile.PRODUCE_REQUESTS];
+        this.produceBatches = total[ClientProfile.PRODUCE_BATCHES];
+        this.avgBatchBytes = ratio(total[ClientProfile.PRODUCE_BYTES], produceBatches);
+        this.avgBatchRecords = ratio(total[ClientProfile.PRODUCE_RECORDS], produceBatches);
+        this.compressedBatchRatio = ratio(total[ClientProfile.COMPRESSED_BATCHES], produceBatches);
+        this.produceByteRate = total[ClientProfile.PRODUCE_BYTES] / windowSeconds;
+        this.fetchResponses = total[ClientProfile.FETCH_RESPONSES];
+        this.fetchByteRate = total[ClientProfile.FETCH_BYTES] / windowSeconds;
+    }
+
+    private static double ratio(long value, long count) {
+        return count == 0 ? 0 : (double) value / count;
+    }
+
+    public String getSoftwareName() {
+        return softwareName;
+    }
+
+    public String getSoftwareVersion() {
+        return softwareVersion;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public double getRequestRate() {
+        return requestRate;
+    }
+
+    public long getProduceRequests() {
+        return produceRequests;
+    }
+
+    public long getProduceBatches() {
+        return produceBatches;
+    }
+
+    public double getAvgBatchBytes() {
+        return avgBatchBytes;
+    }
+
+    public double getAvgBatchRecords() {
+        return avgBatchRecords;
+    }
+
+    public double getCompressedBatchRatio() {
+        return compressedBatchRatio;
+    }
+
+    public double getProduceByteRate() {
+        return produceByteRate;
+    }
+
+    public long getFetchResponses() {
+        return fetchResponses;
+    }
+
+    public double getFetchByteRate() {
+        return fetchByteRate;
+    }
+}
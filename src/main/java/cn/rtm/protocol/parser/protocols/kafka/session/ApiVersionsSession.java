@@ -0,0 +1,76 @@
+package cn.rtm.protocol.parser.protocols.kafka.session;
+
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpFlow;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.common.message.ApiVersionsRequestData;
+
+/**
+ *  kafka 连接的 ApiVersions 状态，每个 tcp 连接维护一个实例，保存在 {@code TcpFlow} 属性中，连接关闭后随之释放
+ *
+ * <ul>
+ * <li> ApiVersions v3+ 请求携带客户端软件名称与版本，通过 {@link #applyRequest(ApiVersionsRequestData)} 记录，
+ * 该连接提取的数据在扩展字段 {@link #CLIENT_SOFTWARE_NAME_KEY}、{@link #CLIENT_SOFTWARE_VERSION_KEY} 中携带
+ * <li> 客户端在每个请求头中自行选择 api 版本，ApiVersions 响应返回的 broker 版本范围不代表实际使用的版本，因此不按响应缓存解析参数，
+ * 解析参数按请求头中的 api key、版本从 {@link KafkaApiRoutine} 直接查找
+ * </ul>
+ */
+public class ApiVersionsSession {
+
+    /**
+     *  ApiVersions 状态在连接属性中的存储标识
+     */
+    public static final String FLOW_ATTRIBUTE_KEY = ApiVersionsSession.class.getName();
+
+    /**
+     *  提取的数据在扩展字段中记录客户端软件名称的 key
+     */
+    public static final String CLIENT_SOFTWARE_NAME_KEY = "clientSoftwareName";
+
+    /**
+     *  提取的数据在扩展字段中记录客户端软件版本的 key
+     */
+    public static final String CLIENT_SOFTWARE_VERSION_KEY = "clientSoftwareVersion";
+
+    private volatile String clientSoftwareName;
+
+    private volatile String clientSoftwareVersion;
+
+
+    /**
+     *  获取连接的 ApiVersions 状态，不存在则创建
+     * @param flow tcp 连接，可为 null
+     * @return 返回 ApiVersions 状态，连接为 null 时返回 null
+     */
+    public static ApiVersionsSession of(TcpFlow flow) {
+        if (flow == null) {
+            return null;
+        }
+        ApiVersionsSession session = flow.getAttributeAs(FLOW_ATTRIBUTE_KEY, ApiVersionsSession.class);
+        if (session == null) {
+            session = new ApiVersionsSession();
+            flow.setAttribute(FLOW_ATTRIBUTE_KEY, session);
+        }
+        return session;
+    }
+
+
+    /**
+     *  记录 ApiVersions 请求携带的客户端软件信息，v3 以下版本不携带
+     * @param request ApiVersions 请求
+     */
+    public void applyRequest(ApiVersionsRequestData request) {
+        if (StringUtils.isNotEmpty(request.clientSoftwareName())) {
+            this.clientSoftwareName = request.clientSoftwareName();
+            this.clientSoftwareVersion = request.clientSoftwareVersion();
+        }
+    }
+
+
+    public String getClientSoftwareName() {
+        return clientSoftwareName;
+    }
+
+    public String getClientSoftwareVersion() {
+        return clientSoftwareVersion;
+    }
+}
@@ -0,0 +1,280 @@
+package cn.rtm.protocol.parser.protocols.kafka.session;
+
+import org.apache.kafka.common.Uuid;
+import org.apache.kafka.common.message.FetchRequestData;
+import org.apache.kafka.common.message.FetchResponseData;
+import org.apache.kafka.common.protocol.Errors;
+import org.apache.kafka.common.requests.FetchMetadata;
+import org.apache.commons.lang3.StringUtils;
+import java.util.*;
+
+/**
+ *  kafka 增量 fetch session（KIP-227）状态，每个 tcp 连接维护一个实例，保存在 {@code TcpFlow} 属性中，连接关闭后随之释放
+ *
+ * <ul>
+ * <li> sessionEpoch = {@link FetchMetadata#INITIAL_EPOCH}：全量 fetch 请求并创建新 session，sessionId 由对应响应分配
+ * <li> sessionEpoch = {@link FetchMetadata#FINAL_EPOCH}：全量 fetch 请求且不使用或关闭 session，响应后清空状态
+ * <li> sessionEpoch &gt; 0：增量 fetch 请求，仅携带变更的分区，通过 {@link #applyRequest(FetchRequestData)} 合并到已有分区集合，
+ * 并移除 forgottenTopicsData 中的分区
+ * <li> sessionId 或 epoch 与已有状态不连续（如抓包开始前已建立 session、或丢失请求），标记为不完整，直到下一次全量请求
+ * <li> 响应返回 FETCH_SESSION_ID_NOT_FOUND / INVALID_FETCH_SESSION_EPOCH 时，客户端会重建 session，此处同样清空状态
+ * </ul>
+ */
+public class FetchSession {
+
+    /**
+     *  fetch session 在连接属性中的存储标识
+     */
+    public static final String FLOW_ATTRIBUTE_KEY = FetchSession.class.getName();
+
+    /**
+     *  默认单个 session 最多跟踪的分区数量
+     */
+    public static final int DEFAULT_MAX_PARTITIONS = 10000;
+
+    /**
+     *  单个 session 最多跟踪的分区数量，超过后不再新增分区，避免单个连接占用过多内存
+     */
+    private final int maxPartitions;
+
+    /**
+     *  broker 分配的 session 标识
+     */
+    private int sessionId = FetchMetadata.INVALID_SESSION_ID;
+
+    /**
+     *  最近一次请求的 session epoch
+     */
+    private int epoch = FetchMetadata.FINAL_EPOCH;
+
+    /**
+     *  分区集合是否完整，即从全量请求开始连续跟踪
+     */
+    private boolean complete;
+
+    /**
+     *  是否因超过最大分区数量而丢弃了部分分区
+     */
+    private boolean truncated;
+
+    /**
+     *  session 当前包含的分区，key: topic 标识 + 分区号，value: 分区 fetch 状态
+     */
+    private final Map<SessionPartition, PartitionState> partitions = new LinkedHashMap<>();
+
+    public FetchSession() {
+        this(DEFAULT_MAX_PARTITIONS);
+    }
+
+    public FetchSession(int maxPartitions) {
+        this.maxPartitions = maxPartitions;
+    }
+
+
+    /**
+     *  将 fetch 请求应用到当前 session，全量请求重置分区集合，增量请求在已有分区集合上合并
+     * @param request 解析后的 fetch 请求
+     */
+    public void applyRequest(FetchRequestData request) {
+        int requestEpoch = request.sessionEpoch();
+        if (requestEpoch == FetchMetadata.INITIAL_EPOCH || requestEpoch == FetchMetadata.FINAL_EPOCH) {
+            this.reset();
+            this.sessionId = requestEpoch == FetchMetadata.INITIAL_EPOCH ? FetchMetadata.INVALID_SESSION_ID : request.sessionId();
+            this.complete = true;
+        } else if (request.sessionId() != this.sessionId || requestEpoch != FetchMetadata.nextEpoch(this.epoch)) {
+            // 未观察到该 session 的全量请求，或中间请求丢失，已有分区集合不可信
+            this.reset();
+            this.sessionId = request.sessionId();
+        }
+        this.epoch = requestEpoch;
+
+        for (FetchRequestData.FetchTopic topic : request.topics()) {
+            String topicKey = topicKey(topic.topic(), topic.topicId());
+            for (FetchRequestData.FetchPartition partition : topic.partitions()) {
+                this.putPartition(new SessionPartition(topicKey, partition.partition()),
+                        new PartitionState(partition.fetchOffset(), partition.partitionMaxBytes()));
+            }
+        }
+        for (FetchRequestData.ForgottenTopic forgottenTopic : request.forgottenTopicsData()) {
+            String topicKey = topicKey(forgottenTopic.topic(), forgottenTopic.topicId());
+            for (Integer partition : forgottenTopic.partitions()) {
+                partitions.remove(new SessionPartition(topicKey, partition));
+            }
+        }
+    }
+
+
+    /**
+     *  将 fetch 响应应用到当前 session，记录 broker 分配的 sessionId，或在 session 失效时清空状态
+     * @param response 解析后的 fetch 响应
+     */
+    public void applyResponse(FetchResponseData response) {
+        Errors error = Errors.forCode(response.errorCode());
+        if (error == Errors.FETCH_SESSION_ID_NOT_FOUND || error == Errors.INVALID_FETCH_SESSION_EPOCH) {
+            this.reset();
+            return;
+        }
+        if (this.epoch == FetchMetadata.INITIAL_EPOCH && this.sessionId == FetchMetadata.INVALID_SESSION_ID) {
+            this.sessionId = response.sessionId();
+        }
+    }
+
+
+    /**
+     *  请求-响应处理完成后调用，sessionless 或关闭 session 的请求不保留分区状态
+     */
+    public void completeExchange() {
+        if (this.epoch == FetchMetadata.FINAL_EPOCH
+                || (this.epoch == FetchMetadata.INITIAL_EPOCH && this.sessionId == FetchMetadata.INVALID_SESSION_ID)) {
+            this.reset();
+        }
+    }
+
+
+    /**
+     *  添加或更新分区状态，超过最大分区数量时丢弃新增分区
+     * @param sessionPartition 分区标识
+     * @param state 分区 fetch 状态
+     */
+    private void putPartition(SessionPartition sessionPartition, PartitionState state) {
+        if (partitions.size() >= maxPartitions && !partitions.containsKey(sessionPartition)) {
+            this.truncated = true;
+            this.complete = false;
+            return;
+        }
+        partitions.put(sessionPartition, state);
+    }
+
+
+    /**
+     *  清空 session 状态
+     */
+    private void reset() {
+        this.sessionId = FetchMetadata.INVALID_SESSION_ID;
+        this.epoch = FetchMetadata.FINAL_EPOCH;
+        this.complete = false;
+        this.truncated = false;
+        this.partitions.clear();
+    }
+
+
+    /**
+     *  获取 topic 标识，fetch v13 及以上版本仅携带 topicId，此时使用 topicId 作为标识
+     * @param topic topic 名称
+     * @param topicId topic 唯一标识
+     * @return 返回 topic 标识
+     */
+    public static String topicKey(String topic, Uuid topicId) {
+        if (StringUtils.isNotEmpty(topic) || topicId == null || Uuid.ZERO_UUID.equals(topicId)) {
+            return topic;
+        }
+        return topicId.toString();
+    }
+
+
+    /**
+     *  获取 session 当前包含的 topic 标识
+     * @return 返回 topic 标识集合，按首次加入顺序排列
+     */
+    public Set<String> topics() {
+        Set<String> topics = new LinkedHashSet<>();
+        for (SessionPartition partition : partitions.keySet()) {
+            topics.add(partition.getTopic());
+        }
+        return topics;
+    }
+
+    public Map<SessionPartition, PartitionState> getPartitions() {
+        return Collections.unmodifiableMap(partitions);
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+
+    /**
+     *  session 分区标识
+     */
+    public static final class SessionPartition {
+
+        private final String topic;
+
+        private final int partition;
+
+        public SessionPartition(String topic, int partition) {
+            this.topic = topic;
+            this.partition = partition;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SessionPartition)) {
+                return false;
+            }
+            SessionPartition that = (SessionPartition) o;
+            return partition == that.partition && Objects.equals(topic, that.topic);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(topic) + partition;
+        }
+
+        @Override
+        public String toString() {
+            return topic + "-" + partition;
+        }
+    }
+
+
+    /**
+     *  session 分区 fetch 状态
+     */
+    public static final class PartitionState {
+
+        private final long fetchOffset;
+
+        private final int partitionMaxBytes;
+
+        public PartitionState(long fetchOffset, int partitionMaxBytes) {
+            this.fetchOffset = fetchOffset;
+            this.partitionMaxBytes = partitionMaxBytes;
+        }
+
+        public long getFetchOffset() {
+            return fetchOffset;
+        }
+
+        public int getPartitionMaxBytes() {
+            return partitionMaxBytes;
+        }
+    }
+}
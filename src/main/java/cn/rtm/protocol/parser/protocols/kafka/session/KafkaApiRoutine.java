@@ -0,0 +1,96 @@
+package cn.rtm.protocol.parser.protocols.kafka.session;
+
+import org.apache.kafka.common.message.RequestHeaderData;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.protocol.ByteBufferAccessor;
+import org.apache.kafka.common.requests.RequestHeader;
+import java.nio.ByteBuffer;
+
+/**
+ *  预先确定的 api 版本解析参数，包含请求头与响应头版本，按 api key、版本在类加载时为本地 kafka-clients 支持的全部版本创建，
+ *  解析时通过 {@link #of(short, short)} 直接按下标查找，无需每个数据包重新计算头版本
+ *
+ * <ul>
+ * <li> 本地 kafka-clients 不支持的 api key 或版本返回 null，此类数据包无法解析请求体，在请求头解析前即可丢弃
+ * <li> 请求头按预先确定的头版本直接解析，不再经过 {@link RequestHeader#parse(ByteBuffer)} 的版本查找与长度计算
+ * </ul>
+ */
+public final class KafkaApiRoutine {
+
+    /**
+     *  按 api key、版本索引的解析参数，不支持的组合为 null
+     */
+    private static final KafkaApiRoutine[][] ROUTINES;
+
+    static {
+        int maxId = 0;
+        for (ApiKeys apiKey : ApiKeys.values()) {
+            maxId = Math.max(maxId, apiKey.id);
+        }
+        ROUTINES = new KafkaApiRoutine[maxId + 1][];
+        for (ApiKeys apiKey : ApiKeys.values()) {
+            KafkaApiRoutine[] versions = new KafkaApiRoutine[apiKey.latestVersion() + 1];
+            for (short version = apiKey.oldestVersion(); version <= apiKey.latestVersion(); version++) {
+                versions[version] = new KafkaApiRoutine(apiKey, version);
+            }
+            ROUTINES[apiKey.id] = versions;
+        }
+    }
+
+    private final ApiKeys apiKey;
+
+    private final short version;
+
+    private final short requestHeaderVersion;
+
+    private final short responseHeaderVersion;
+
+    private KafkaApiRoutine(ApiKeys apiKey, short version) {
+        this.apiKey = apiKey;
+        this.version = version;
+        this.requestHeaderVersion = apiKey.requestHeaderVersion(version);
+        this.responseHeaderVersion = apiKey.responseHeaderVersion(version);
+    }
+
+
+    /**
+     *  查找 api 版本的解析参数
+     * @param apiKey api key
+     * @param version api 版本
+     * @return 返回解析参数，本地 kafka-clients 不支持时返回 null
+     */
+    public static KafkaApiRoutine of(short apiKey, short version) {
+        if (apiKey < 0 || apiKey >= ROUTINES.length || version < 0) {
+            return null;
+        }
+        KafkaApiRoutine[] versions = ROUTINES[apiKey];
+        return versions == null || version >= versions.length ? null : versions[version];
+    }
+
+
+    /**
+     *  按预先确定的头版本解析请求头，解析完成后 buffer 位于请求体起始位置
+     * @param buffer 不包含长度前缀的请求数据包
+     * @return 返回请求头
+     */
+    public RequestHeader parseRequestHeader(ByteBuffer buffer) {
+        RequestHeaderData headerData = new RequestHeaderData(new ByteBufferAccessor(buffer), requestHeaderVersion);
+        return new RequestHeader(headerData, requestHeaderVersion);
+    }
+
+    public ApiKeys getApiKey() {
+        return apiKey;
+    }
+
+    public short getVersion() {
+        return version;
+    }
+
+    public short getRequestHeaderVersion() {
+        return requestHeaderVersion;
+    }
+
+    public short getResponseHeaderVersion() {
+        return responseHeaderVersion;
+    }
+}
@@ -4,12 +4,12 @@ import cn.rtm.protocol.parser.PacketReassemble;
 import cn.rtm.protocol.parser.ProtocolMessage;
 import cn.rtm.protocol.parser.ProtocolParseHandler;
 import cn.rtm.protocol.parser.ProtocolParser;
+import cn.rtm.protocol.parser.core.util.PortSet;
 import org.apache.commons.collections4.CollectionUtils;
 import org.pcap4j.packet.Packet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
 import java.util.List;
 
 public class RedisProtocolParseHandler implements ProtocolParseHandler<Packet,RedisParsedMessage> {
@@ -31,9 +31,9 @@ public class RedisProtocolParseHandler implements ProtocolParseHandler<Packet,Re
     private final ProtocolParser<ProtocolMessage, RedisParseData> responseParser;
 
     /**
-     *  需要解析协议的监听端口
+     *  需要解析协议的监听端口，自动识别出的端口在运行期间追加
      */
-    private List<Integer> listenPorts;
+    private final PortSet listenPorts;
 
     public RedisProtocolParseHandler(PacketReassemble<ProtocolMessage> packetReassemble,
              ProtocolParser<ProtocolMessage, RedisParseData> requestParser,
@@ -42,7 +42,7 @@ public class RedisProtocolParseHandler implements ProtocolParseHandler<Packet,Re
         this.packetReassemble = packetReassemble;
         this.requestParser = requestParser;
         this.responseParser = responseParser;
-        this.listenPorts = listenPorts;
+        this.listenPorts = CollectionUtils.isEmpty(listenPorts) ? PortSet.of(DEFAULT_LISTEN_PORT) : new PortSet(listenPorts);
     }
 
     @Override
@@ -52,7 +52,7 @@ public class RedisProtocolParseHandler implements ProtocolParseHandler<Packet,Re
             return null;
         }
 
-        this.initializeListenPort(combinePacket);
+        combinePacket.resolveDirection(listenPorts);
 
         if (!combinePacket.isTargetPacket() || !combinePacket.isCompletePacket()) {
             return null;
@@ -71,10 +71,8 @@ public class RedisProtocolParseHandler implements ProtocolParseHandler<Packet,Re
         return null;
     }
 
-    private void initializeListenPort(ProtocolMessage combinePacket) {
-        if (CollectionUtils.isEmpty(listenPorts)) {
-            listenPorts = Arrays.asList(DEFAULT_LISTEN_PORT);
-        }
-        combinePacket.setListenPorts(listenPorts);
+    @Override
+    public void addListenPort(int port) {
+        listenPorts.add(port);
     }
 }
@@ -0,0 +1,198 @@
+package cn.rtm.protocol.parser.protocols.redis;
+
+import cn.rtm.protocol.parser.core.reassemble.tcp.FrameDecoder;
+import cn.rtm.protocol.parser.core.reassemble.tcp.FrameState;
+import java.nio.ByteBuffer;
+
+/**
+ *  redis RESP 协议帧切分策略，RESP 不携带长度前缀，按类型前缀逐个跳过完整的值判断帧边界
+ *
+ * <ul>
+ * <li> 支持 RESP2 与 RESP3 的全部定长类型，聚合类型（数组、集合、映射、属性、推送）按元素数量累加待读取的值，不做递归
+ * <li> 流水线请求在同一数据包中携带多个命令，缓存数据恰好在值的边界结束时为完整帧，在值的中间结束时继续等待后续分片
+ * <li> 首字节不是类型前缀时按内联命令处理，以 CRLF 结束
+ * <li> 长度超过 {@link #MAX_BULK_BYTES} 或元素数量超过 {@link #MAX_AGGREGATE_LENGTH}、长度不是合法整数时视为非 RESP 数据，
+ * RESP3 流式字符串（$?）不支持，同样视为非 RESP 数据
+ * </ul>
+ */
+public class RespFrameDecoder implements FrameDecoder {
+
+    /**
+     *  批量字符串长度上限，与 redis proto-max-bulk-len 默认值一致
+     */
+    static final int MAX_BULK_BYTES = 512 * 1024 * 1024;
+
+    /**
+     *  聚合类型元素数量上限，与 redis 单个请求参数数量上限一致
+     */
+    static final int MAX_AGGREGATE_LENGTH = 1024 * 1024;
+
+    /**
+     *  值未读取完整
+     */
+    private static final int INCOMPLETE = -1;
+
+    /**
+     *  值不符合 RESP 格式
+     */
+    private static final int INVALID = -2;
+
+    @Override
+    public FrameState decode(ByteBuffer buffer) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        if (position == limit) {
+            return FrameState.INCOMPLETE;
+        }
+        while (position < limit) {
+            position = skipValue(buffer, position, limit);
+            if (position == INCOMPLETE) {
+                return FrameState.INCOMPLETE;
+            }
+            if (position == INVALID) {
+                return FrameState.INVALID;
+            }
+        }
+        return FrameState.COMPLETE;
+    }
+
+
+    @Override
+    public int headerLength() {
+        return 0;
+    }
+
+
+    /**
+     *  跳过从指定位置开始的一个完整的值，聚合类型包含其全部元素
+     * @param buffer 缓存数据
+     * @param position 值的起始位置
+     * @param limit 缓存数据结束位置
+     * @return 返回值之后的位置，不完整返回 {@link #INCOMPLETE}，格式错误返回 {@link #INVALID}
+     */
+    private static int skipValue(ByteBuffer buffer, int position, int limit) {
+        if (!isType(buffer.get(position))) {
+            // 内联命令仅出现在最外层，以 CRLF 结束
+            int lineEnd = lineEnd(buffer, position, limit);
+            return lineEnd == INCOMPLETE ? INCOMPLETE : lineEnd + 2;
+        }
+        long pending = 1;
+        while (pending > 0) {
+            if (position >= limit) {
+                return INCOMPLETE;
+            }
+            byte type = buffer.get(position);
+            int lineEnd = lineEnd(buffer, position + 1, limit);
+            if (lineEnd == INCOMPLETE) {
+                return INCOMPLETE;
+            }
+            int next = lineEnd + 2;
+            pending--;
+            switch (type) {
+                case '+':
+                case '-':
+                case ':':
+                case '_':
+                case ',':
+                case '#':
+                case '(':
+                    break;
+                case '$':
+                case '!':
+                case '=': {
+                    long length = parseLength(buffer, position + 1, lineEnd, MAX_BULK_BYTES);
+                    if (length == INVALID) {
+                        return INVALID;
+                    }
+                    if (length >= 0) {
+                        if ((long) limit - next < length + 2) {
+                            return INCOMPLETE;
+                        }
+                        next += (int) length;
+                        if (buffer.get(next) != '\r' || buffer.get(next + 1) != '\n') {
+                            return INVALID;
+                        }
+                        next += 2;
+                    }
+                    break;
+                }
+                case '*':
+                case '~':
+                case '>':
+                case '%':
+                case '|': {
+                    long length = parseLength(buffer, position + 1, lineEnd, MAX_AGGREGATE_LENGTH);
+                    if (length == INVALID) {
+                        return INVALID;
+                    }
+                    if (length > 0) {
+                        pending += type == '%' || type == '|' ? length * 2 : length;
+                    }
+                    // 属性附加在其后的值上，本身不计为一个值
+                    if (type == '|') {
+                        pending++;
+                    }
+                    break;
+                }
+                default:
+                    return INVALID;
+            }
+            position = next;
+        }
+        return position;
+    }
+
+
+    /**
+     *  判断是否为 RESP2 或 RESP3 的类型前缀
+     */
+    private static boolean isType(byte b) {
+        switch (b) {
+            case '+': case '-': case ':': case '$': case '*':
+            case '_': case ',': case '#': case '(': case '!': case '=': case '~': case '>': case '%': case '|':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     *  查找从指定位置开始的第一个 CRLF
+     * @return 返回 CR 的位置，未找到返回 {@link #INCOMPLETE}
+     */
+    private static int lineEnd(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit - 1; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return INCOMPLETE;
+    }
+
+
+    /**
+     *  解析长度字段，-1 表示空值
+     * @return 返回长度，不是合法整数或超过上限返回 {@link #INVALID}
+     */
+    private static long parseLength(ByteBuffer buffer, int from, int to, int max) {
+        if (from >= to) {
+            return INVALID;
+        }
+        if (to - from == 2 && buffer.get(from) == '-' && buffer.get(from + 1) == '1') {
+            return -1;
+        }
+        long length = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return INVALID;
+            }
+            length = length * 10 + (b - '0');
+            if (length > max) {
+                return INVALID;
+            }
+        }
+        return length;
+    }
+}
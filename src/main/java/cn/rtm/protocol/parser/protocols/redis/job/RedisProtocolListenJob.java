@@ -1,12 +0,0 @@
-package cn.rtm.protocol.parser.protocols.redis.job;
-
-import org.springframework.boot.ApplicationArguments;
-import org.springframework.boot.ApplicationRunner;
-
-public class RedisProtocolListenJob implements ApplicationRunner {
-
-    @Override
-    public void run(ApplicationArguments args) throws Exception {
-
-    }
-}
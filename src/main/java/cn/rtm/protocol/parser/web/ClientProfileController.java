@@ -0,0 +1,66 @@
+package cn.rtm.protocol.parser.web;
+
+import cn.rtm.protocol.parser.protocols.kafka.profile.ClientProfileAnalyzer;
+import cn.rtm.protocol.parser.protocols.kafka.profile.ClientProfileSummary;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  客户端流量画像查询接口，速率单位为每秒，未启用 protocol.client-profile 时返回 404
+ */
+@RestController
+@RequestMapping("/client-profiles")
+public class ClientProfileController {
+
+    private final ObjectProvider<ClientProfileAnalyzer> clientProfileAnalyzer;
+
+    public ClientProfileController(ObjectProvider<ClientProfileAnalyzer> clientProfileAnalyzer) {
+        this.clientProfileAnalyzer = clientProfileAnalyzer;
+    }
+
+
+    /**
+     *  查询最近一个窗口内负载最高的客户端
+     * @param top 返回数量
+     * @param sortBy 排序字段，可选 requests、produceBytes、fetchBytes、bytes、batches，默认按请求数排序
+     * @return 返回窗口时长与按排序字段降序排列的客户端画像
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> profiles(
+            @RequestParam(defaultValue = "10") int top,
+            @RequestParam(defaultValue = ClientProfileAnalyzer.SORT_REQUESTS) String sortBy) {
+        ClientProfileAnalyzer analyzer = clientProfileAnalyzer.getIfAvailable();
+        if (analyzer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<ClientProfileSummary> profiles;
+        try {
+            profiles = analyzer.top(top, sortBy);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Map<String, Object> result = new HashMap<>(4);
+        result.put("windowSeconds", analyzer.getWindowSeconds());
+        result.put("profiles", profiles);
+        return ResponseEntity.ok(result);
+    }
+
+
+    /**
+     *  清空统计数据
+     * @return 成功返回 204
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        ClientProfileAnalyzer analyzer = clientProfileAnalyzer.getIfAvailable();
+        if (analyzer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        analyzer.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
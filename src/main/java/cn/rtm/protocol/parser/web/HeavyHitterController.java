@@ -0,0 +1,68 @@
+package cn.rtm.protocol.parser.web;
+
+import cn.rtm.protocol.parser.protocols.kafka.hotspot.HeavyHitterAnalyzer;
+import cn.rtm.protocol.parser.protocols.kafka.hotspot.HeavyHitterDimension;
+import cn.rtm.protocol.parser.protocols.kafka.hotspot.HeavyHitterReport;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ *  热点 topic 分区、客户端与 record key 查询接口，速率单位为每秒，未启用 protocol.heavy-hitter 时返回 404
+ */
+@RestController
+@RequestMapping("/heavy-hitters")
+public class HeavyHitterController {
+
+    private final ObjectProvider<HeavyHitterAnalyzer> heavyHitterAnalyzer;
+
+    public HeavyHitterController(ObjectProvider<HeavyHitterAnalyzer> heavyHitterAnalyzer) {
+        this.heavyHitterAnalyzer = heavyHitterAnalyzer;
+    }
+
+
+    /**
+     *  查询热点 key
+     * @param dimension 统计维度，可选 produce-bytes、produce-records、fetch-bytes、fetch-records、client-requests、record-keys
+     * @param top 返回数量
+     * @param window 统计窗口，current 为当前窗口，previous 为上一个完整窗口
+     * @param topic record-keys 维度按 topic 过滤，可为空
+     * @return 返回窗口信息与按计数降序排列的热点，尚未记录数据、上一个窗口尚未完成或 topic 不在 record key 统计范围内时返回 404
+     */
+    @GetMapping
+    public ResponseEntity<HeavyHitterReport> heavyHitters(
+            @RequestParam(defaultValue = "produce-bytes") String dimension,
+            @RequestParam(defaultValue = "10") int top,
+            @RequestParam(defaultValue = "current") String window,
+            @RequestParam(required = false) String topic) {
+        HeavyHitterAnalyzer analyzer = heavyHitterAnalyzer.getIfAvailable();
+        if (analyzer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!"current".equals(window) && !"previous".equals(window)) {
+            return ResponseEntity.badRequest().build();
+        }
+        HeavyHitterReport report;
+        try {
+            report = analyzer.top(HeavyHitterDimension.of(dimension), top, "previous".equals(window), topic);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return report == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(report);
+    }
+
+
+    /**
+     *  清空统计数据
+     * @return 成功返回 204
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        HeavyHitterAnalyzer analyzer = heavyHitterAnalyzer.getIfAvailable();
+        if (analyzer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        analyzer.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,44 @@
+package cn.rtm.protocol.parser.web;
+
+import cn.rtm.protocol.parser.core.error.ParseErrorClass;
+import cn.rtm.protocol.parser.core.error.ParseErrorTracker;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ *  解析错误查询接口，返回按阶段、错误类型、api、版本分类的失败数量与保留的原始数据包（base64 编码）
+ */
+@RestController
+@RequestMapping("/parse-errors")
+public class ParseErrorController {
+
+    private final ParseErrorTracker parseErrorTracker;
+
+    public ParseErrorController(ParseErrorTracker parseErrorTracker) {
+        this.parseErrorTracker = parseErrorTracker;
+    }
+
+
+    /**
+     *  查询错误分类，按失败数量降序排列
+     * @param stage 解析阶段，如 request_header、response_body
+     * @param api 请求 api，如 FETCH、PRODUCE
+     * @return 返回错误分类
+     */
+    @GetMapping
+    public ResponseEntity<List<ParseErrorClass>> errors(@RequestParam(required = false) String stage,
+                                                        @RequestParam(required = false) String api) {
+        List<ParseErrorClass> classes = parseErrorTracker.classes().stream()
+                .filter(errorClass -> stage == null || stage.equals(errorClass.getStage()))
+                .filter(errorClass -> api == null || api.equalsIgnoreCase(errorClass.getApi()))
+                .sorted(Comparator.comparingLong(ParseErrorClass::getCount).reversed())
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(classes);
+    }
+}
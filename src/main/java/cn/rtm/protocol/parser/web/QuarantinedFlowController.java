@@ -0,0 +1,38 @@
+package cn.rtm.protocol.parser.web;
+
+import cn.rtm.protocol.parser.core.reassemble.tcp.QuarantinedFlow;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpPacketReassemble;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import java.util.List;
+
+/**
+ *  被隔离连接查询接口，未使用 {@link TcpPacketReassemble} 重组时返回 404
+ */
+@RestController
+@RequestMapping("/quarantined-flows")
+public class QuarantinedFlowController {
+
+    private final ObjectProvider<TcpPacketReassemble> tcpPacketReassemble;
+
+    public QuarantinedFlowController(ObjectProvider<TcpPacketReassemble> tcpPacketReassemble) {
+        this.tcpPacketReassemble = tcpPacketReassemble;
+    }
+
+
+    /**
+     *  查询处于隔离期的连接
+     * @return 返回被隔离连接的失败计分与隔离结束时间
+     */
+    @GetMapping
+    public ResponseEntity<List<QuarantinedFlow>> flows() {
+        TcpPacketReassemble reassemble = tcpPacketReassemble.getIfAvailable();
+        if (reassemble == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(reassemble.quarantinedFlows());
+    }
+}
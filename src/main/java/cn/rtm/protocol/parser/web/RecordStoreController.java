@@ -0,0 +1,65 @@
+package cn.rtm.protocol.parser.web;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.sink.store.SegmentedRecordStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ *  本地分段存储查询接口，未启用 protocol.sink.store 时返回 404
+ */
+@RestController
+@RequestMapping("/store")
+public class RecordStoreController {
+
+    /**
+     *  单次查询最大返回数量
+     */
+    private static final int MAX_LIMIT = 10000;
+
+    private final ObjectProvider<SegmentedRecordStore> recordStore;
+
+    public RecordStoreController(ObjectProvider<SegmentedRecordStore> recordStore) {
+        this.recordStore = recordStore;
+    }
+
+
+    /**
+     *  按时间范围查询记录，可选按 topic、clientId 过滤
+     * @param from 开始时间，格式 yyyy-MM-dd'T'HH:mm:ss
+     * @param to 结束时间，为空则为当前时间
+     * @param topic topic 名称
+     * @param clientId 客户端标识
+     * @param limit 最大返回数量
+     * @return 返回匹配的记录
+     */
+    @GetMapping("/records")
+    public ResponseEntity<List<ProtocolParseData>> records(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String topic,
+            @RequestParam(required = false) String clientId,
+            @RequestParam(defaultValue = "1000") int limit) {
+        SegmentedRecordStore store = recordStore.getIfAvailable();
+        if (store == null) {
+            return ResponseEntity.notFound().build();
+        }
+        LocalDateTime end = to == null ? LocalDateTime.now() : to;
+        List<ProtocolParseData> records = store.query(toEpochMillis(from), toEpochMillis(end), topic, clientId,
+                Math.max(1, Math.min(limit, MAX_LIMIT)));
+        return ResponseEntity.ok(records);
+    }
+
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,71 @@
+package cn.rtm.protocol.parser.web;
+
+import cn.rtm.protocol.parser.core.latency.LatencySummary;
+import cn.rtm.protocol.parser.core.latency.RequestLatencyAnalyzer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *  请求耗时统计查询接口，耗时单位为毫秒，未启用 protocol.latency 时返回 404
+ */
+@RestController
+@RequestMapping("/latency")
+public class RequestLatencyController {
+
+    private final ObjectProvider<RequestLatencyAnalyzer> requestLatencyAnalyzer;
+
+    public RequestLatencyController(ObjectProvider<RequestLatencyAnalyzer> requestLatencyAnalyzer) {
+        this.requestLatencyAnalyzer = requestLatencyAnalyzer;
+    }
+
+
+    /**
+     *  按条件查询请求耗时分布
+     * @param api 请求 api，如 FETCH、PRODUCE
+     * @param broker broker 地址，格式为 ip:port
+     * @param clientId 客户端标识
+     * @param topic topic 名称
+     * @param groupBy 分组维度，可选 api、broker、clientId、topic，默认按 api、broker 分组
+     * @return 返回统计开始时间与各分组的耗时分布
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> latency(
+            @RequestParam(required = false) String api,
+            @RequestParam(required = false) String broker,
+            @RequestParam(required = false) String clientId,
+            @RequestParam(required = false) String topic,
+            @RequestParam(defaultValue = RequestLatencyAnalyzer.GROUP_API + "," + RequestLatencyAnalyzer.GROUP_BROKER) List<String> groupBy) {
+        RequestLatencyAnalyzer analyzer = requestLatencyAnalyzer.getIfAvailable();
+        if (analyzer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Set<String> groups = new LinkedHashSet<>(groupBy);
+        List<LatencySummary> summaries = analyzer.query(api, broker, clientId, topic, groups);
+        Map<String, Object> result = new HashMap<>(4);
+        result.put("since", analyzer.getSince().toString());
+        result.put("series", analyzer.seriesCount());
+        result.put("latencies", summaries);
+        return ResponseEntity.ok(result);
+    }
+
+
+    /**
+     *  清空统计数据
+     * @return 成功返回 204
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        RequestLatencyAnalyzer analyzer = requestLatencyAnalyzer.getIfAvailable();
+        if (analyzer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        analyzer.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
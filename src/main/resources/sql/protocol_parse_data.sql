@@ -0,0 +1,21 @@
+-- 协议解析提取数据表，供 JdbcDataParseExtractConsumer 批量写入
+CREATE TABLE IF NOT EXISTS protocol_parse_data (
+    id                   BIGINT       NOT NULL AUTO_INCREMENT,
+    src_ip               VARCHAR(64),
+    src_port             INT,
+    dest_ip              VARCHAR(64),
+    dest_port            INT,
+    client_id            VARCHAR(255),
+    request_api          VARCHAR(512),
+    protocol_type        VARCHAR(32),
+    request_data         TEXT,
+    response_data        MEDIUMTEXT,
+    response_data_length INT,
+    start_time           DATETIME(6),
+    end_time             DATETIME(6),
+    execute_time         BIGINT,
+    extra_values         TEXT,
+    PRIMARY KEY (id),
+    KEY idx_start_time (start_time),
+    KEY idx_client_id (client_id)
+);
@@ -0,0 +1,17 @@
+package cn.rtm.protocol.parser.core.capture;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureWorkerTest {
+
+    @Test
+    void errorBackoffDoublesUpToMaximum() {
+        assertEquals(CaptureWorker.MIN_ERROR_BACKOFF_MILLIS, CaptureWorker.errorBackoffMillis(1));
+        assertEquals(CaptureWorker.MIN_ERROR_BACKOFF_MILLIS * 2, CaptureWorker.errorBackoffMillis(2));
+        assertEquals(CaptureWorker.MIN_ERROR_BACKOFF_MILLIS * 8, CaptureWorker.errorBackoffMillis(4));
+        assertEquals(CaptureWorker.MAX_ERROR_BACKOFF_MILLIS, CaptureWorker.errorBackoffMillis(20));
+        assertEquals(CaptureWorker.MAX_ERROR_BACKOFF_MILLIS, CaptureWorker.errorBackoffMillis(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,152 @@
+package cn.rtm.protocol.parser.core.capture;
+
+import cn.rtm.protocol.parser.ProtocolParseHandler;
+import cn.rtm.protocol.parser.core.pcap.CaptureSpillProperties;
+import cn.rtm.protocol.parser.core.pcap.PcapSpillRing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pcap4j.packet.EthernetPacket;
+import org.pcap4j.packet.Packet;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PacketDispatcherTest {
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    @TempDir
+    Path spillDirectory;
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private final List<Integer> handled = new CopyOnWriteArrayList<>();
+
+    private final List<Boolean> delayed = new CopyOnWriteArrayList<>();
+
+    private volatile boolean producing = true;
+
+
+    @Test
+    void spillsReplaysInOrderAndReturnsToLiveUnderContinuousInput() throws Exception {
+        CaptureSpillProperties properties = new CaptureSpillProperties();
+        properties.setDirectory(spillDirectory.toString());
+        PcapSpillRing spillRing = new PcapSpillRing(properties);
+        PacketDispatcher dispatcher = new PacketDispatcher(handler(), QUEUE_CAPACITY, spillRing, 0.5, 0.25);
+        dispatcher.start();
+
+        List<Integer> accepted = new ArrayList<>();
+        Thread producer = new Thread(() -> {
+            for (int seq = 0; producing; seq++) {
+                if (dispatcher.dispatch(packet(seq), Instant.ofEpochSecond(1_700_000_000L, seq * 1000L))) {
+                    accepted.add(seq);
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+            }
+        });
+        producer.start();
+        try {
+            // 解析线程阻塞，队列达到高水位后落盘
+            awaitTrue(() -> spillRing.getSpilledPackets() >= 2000);
+            released.countDown();
+            // 解析恢复后，落盘的数据包回放完成，持续抓包下重新直接入队
+            awaitTrue(() -> spillRing.pendingPackets() == 0 && lastHandledIsLive());
+            long spilledAfterDrain = spillRing.getSpilledPackets();
+            int handledAfterDrain = handled.size();
+            awaitTrue(() -> handled.size() >= handledAfterDrain + 200);
+            assertEquals(spilledAfterDrain, spillRing.getSpilledPackets(), "恢复后不应继续落盘");
+        } finally {
+            released.countDown();
+            producing = false;
+            producer.join();
+        }
+        awaitTrue(() -> handled.size() == accepted.size());
+        dispatcher.close();
+
+        assertEquals(accepted, handled);
+        assertTrue(delayed.contains(true));
+        assertEquals(0, spillRing.pendingPackets());
+        assertEquals(spillRing.getSpilledPackets(), spillRing.getReplayedPackets());
+        assertEquals(0, spillRing.getDroppedPackets());
+    }
+
+
+    @Test
+    void dispatchesDirectlyWhenQueueBelowHighWatermark() throws Exception {
+        CaptureSpillProperties properties = new CaptureSpillProperties();
+        properties.setDirectory(spillDirectory.toString());
+        PcapSpillRing spillRing = new PcapSpillRing(properties);
+        PacketDispatcher dispatcher = new PacketDispatcher(handler(), QUEUE_CAPACITY, spillRing, 0.5, 0.25);
+        released.countDown();
+        dispatcher.start();
+        try {
+            for (int seq = 0; seq < 4; seq++) {
+                assertTrue(dispatcher.dispatch(packet(seq), Instant.ofEpochSecond(seq)));
+            }
+            awaitTrue(() -> handled.size() == 4);
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(0, spillRing.getSpilledPackets());
+        assertFalse(delayed.contains(true));
+    }
+
+
+    private ProtocolParseHandler<Packet, Object> handler() {
+        return new ProtocolParseHandler<Packet, Object>() {
+            @Override
+            public Object handle(Packet packet) {
+                return handle(packet, null, false);
+            }
+
+            @Override
+            public Object handle(Packet packet, Instant captureTime, boolean isDelayed) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.add(ByteBuffer.wrap(packet.getRawData(), 14, 4).getInt());
+                delayed.add(isDelayed);
+                return null;
+            }
+        };
+    }
+
+
+    private boolean lastHandledIsLive() {
+        return !delayed.isEmpty() && !delayed.get(delayed.size() - 1);
+    }
+
+
+    private static Packet packet(int seq) {
+        ByteBuffer frame = ByteBuffer.allocate(18);
+        frame.put(new byte[]{0, 1, 2, 3, 4, 5});
+        frame.put(new byte[]{0, 1, 2, 3, 4, 6});
+        frame.putShort((short) 0x88B5);
+        frame.putInt(seq);
+        try {
+            return EthernetPacket.newPacket(frame.array(), 0, frame.capacity());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+}
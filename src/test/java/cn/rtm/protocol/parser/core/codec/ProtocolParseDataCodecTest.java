@@ -0,0 +1,179 @@
+package cn.rtm.protocol.parser.core.codec;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtocolParseDataCodecTest {
+
+    @Test
+    void extraValuesKeepTheirTypes() throws IOException {
+        Map<String, Object> extraValues = new LinkedHashMap<>();
+        extraValues.put("long", 1L << 40);
+        extraValues.put("int", -7);
+        extraValues.put("short", (short) 300);
+        extraValues.put("byte", (byte) -2);
+        extraValues.put("double", 0.25d);
+        extraValues.put("float", 1.5f);
+        extraValues.put("bool", true);
+        extraValues.put("string", "topic-a");
+        extraValues.put("null", null);
+        ProtocolParseData record = new ProtocolParseData.Builder()
+                .srcIp("10.0.0.1")
+                .srcPort(50001)
+                .clientId("client-1")
+                .startTime(LocalDateTime.of(2024, 1, 1, 0, 0, 1, 123_456_789))
+                .executeTime(12)
+                .extraValues(extraValues)
+                .build();
+
+        byte[] encoded = ProtocolParseDataCodec.encodeBatch(Collections.singletonList(record));
+        List<ProtocolParseData> decoded = ProtocolParseDataCodec.decodeBatch(encoded, 0, encoded.length);
+
+        assertEquals(1, decoded.size());
+        assertEquals(extraValues, decoded.get(0).getExtraValues());
+        assertEquals(record.getStartTime(), decoded.get(0).getStartTime());
+        assertEquals("client-1", decoded.get(0).getClientId());
+    }
+
+
+    @Test
+    void repeatedStringsAreDefinedOnceAndReferenced() throws IOException {
+        List<ProtocolParseData> records = records(20);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ProtocolParseDataEncoder encoder = new ProtocolParseDataEncoder(bytes)) {
+            for (ProtocolParseData record : records) {
+                encoder.write(record);
+            }
+            // srcIp、destIp、3 个 clientId、2 个 requestApi、protocolType、2 个 topic、扩展字段名与值
+            assertEquals(12, encoder.getDictionarySize());
+        }
+        byte[] encoded = bytes.toByteArray();
+
+        assertEquals(1, occurrences(encoded, "consumer-group-client-1"));
+        assertEquals(1, occurrences(encoded, "PRODUCE"));
+        assertEquals(1, occurrences(encoded, "topic-orders"));
+        assertRoundTrip(records, ProtocolParseDataCodec.decodeBatch(encoded, 0, encoded.length));
+    }
+
+
+    @Test
+    void stringsBeyondDictionaryLimitAreWrittenLiterally() throws IOException {
+        List<ProtocolParseData> records = records(20);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ProtocolParseDataEncoder encoder = new ProtocolParseDataEncoder(bytes, 2)) {
+            for (ProtocolParseData record : records) {
+                encoder.write(record);
+            }
+            assertEquals(2, encoder.getDictionarySize());
+        }
+        byte[] encoded = bytes.toByteArray();
+
+        assertEquals(records.size(), occurrences(encoded, "PRODUCE") + occurrences(encoded, "FETCH"));
+        assertRoundTrip(records, ProtocolParseDataCodec.decodeBatch(encoded, 0, encoded.length));
+    }
+
+
+    @Test
+    void decodesVersionOneStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ProtocolParseDataCodec.MAGIC_0);
+        out.writeByte(ProtocolParseDataCodec.MAGIC_1);
+        out.writeByte(1);
+        out.writeByte(ProtocolParseDataCodec.FLAG_EXTRA_VALUES);
+        // id、srcIp、srcPort、destIp、destPort、clientId、requestApi、protocolType、requestData、responseData、responseDataLength、executeTime
+        out.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        out.writeByte(1);
+        out.writeByte(ProtocolParseDataCodec.STRING_DEFINE);
+        out.writeByte(1);
+        out.writeByte('n');
+        out.writeByte(ProtocolParseDataCodec.VALUE_LONG);
+        out.writeByte(84);
+
+        List<ProtocolParseData> decoded = ProtocolParseDataCodec.decodeBatch(bytes.toByteArray(), 0, bytes.size());
+
+        assertEquals(Collections.singletonMap("n", 42L), decoded.get(0).getExtraValues());
+    }
+
+
+    /**
+     *  生成 clientId、requestApi、topic 重复出现的记录，启停时间与耗时不单调
+     */
+    private static List<ProtocolParseData> records(int count) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<ProtocolParseData> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime startTime = base.plusNanos((i % 4 == 3 ? -1 : 1) * i * 1_000_123L);
+            records.add(new ProtocolParseData.Builder()
+                    .id(i)
+                    .srcIp("10.0.0.1")
+                    .srcPort(50000 + i)
+                    .destIp("10.0.0.2")
+                    .destPort(9092)
+                    .clientId("consumer-group-client-" + i % 3)
+                    .requestApi(i % 2 == 0 ? "PRODUCE" : "FETCH")
+                    .protocolType("kafka")
+                    .requestData(i % 5 == 0 ? "topic-payments" : "topic-orders")
+                    .responseData("offset=" + i)
+                    .responseDataLength(i * 7)
+                    .startTime(startTime)
+                    .endTime(i % 3 == 0 ? null : startTime.plusNanos(i * 31_000L))
+                    .executeTime(i % 2 == 0 ? i * 3L : i)
+                    .extraValues(Collections.singletonMap("delayed", i % 4 == 0 ? "true" : null))
+                    .build());
+        }
+        return records;
+    }
+
+
+    private static void assertRoundTrip(List<ProtocolParseData> expected, List<ProtocolParseData> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ProtocolParseData e = expected.get(i);
+            ProtocolParseData a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getSrcIp(), a.getSrcIp());
+            assertEquals(e.getSrcPort(), a.getSrcPort());
+            assertEquals(e.getDestIp(), a.getDestIp());
+            assertEquals(e.getDestPort(), a.getDestPort());
+            assertEquals(e.getClientId(), a.getClientId(), "clientId of " + i);
+            assertEquals(e.getRequestApi(), a.getRequestApi(), "requestApi of " + i);
+            assertEquals(e.getProtocolType(), a.getProtocolType());
+            assertEquals(e.getRequestData(), a.getRequestData());
+            assertEquals(e.getResponseData(), a.getResponseData());
+            assertEquals(e.getResponseDataLength(), a.getResponseDataLength());
+            assertEquals(e.getStartTime(), a.getStartTime());
+            assertEquals(e.getEndTime(), a.getEndTime());
+            assertEquals(e.getExecuteTime(), a.getExecuteTime());
+            assertEquals(e.getExtraValues(), a.getExtraValues());
+        }
+    }
+
+
+    private static int occurrences(byte[] data, String value) {
+        byte[] target = value.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int i = 0; i + target.length <= data.length; i++) {
+            int j = 0;
+            while (j < target.length && data[i + j] == target[j]) {
+                j++;
+            }
+            if (j == target.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
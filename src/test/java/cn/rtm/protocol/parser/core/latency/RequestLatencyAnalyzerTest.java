@@ -0,0 +1,42 @@
+package cn.rtm.protocol.parser.core.latency;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLatencyAnalyzerTest {
+
+    @Test
+    void multiTopicRequestCountsOncePerRequest() {
+        RequestLatencyAnalyzer analyzer = new RequestLatencyAnalyzer(new LatencyProperties());
+        analyzer.record("FETCH", "10.0.0.1:9092", "client-1", Arrays.asList("a", "b", "c"), 5_000_000);
+        analyzer.record("FETCH", "10.0.0.1:9092", "client-1", Collections.singletonList("a"), 1_000_000);
+
+        List<LatencySummary> byApi = analyzer.query(null, null, null, null,
+                new HashSet<>(Arrays.asList(RequestLatencyAnalyzer.GROUP_API, RequestLatencyAnalyzer.GROUP_CLIENT_ID)));
+        assertEquals(1, byApi.size());
+        assertEquals(2, byApi.get(0).getCount());
+
+        List<LatencySummary> byTopic = analyzer.query(null, null, null, null, Collections.singleton(RequestLatencyAnalyzer.GROUP_TOPIC));
+        assertEquals(3, byTopic.size());
+        assertEquals(2, byTopic.get(0).getCount());
+        assertEquals("a", byTopic.get(0).getTopic());
+
+        List<LatencySummary> topicB = analyzer.query(null, null, null, "b", Collections.emptySet());
+        assertEquals(1, topicB.get(0).getCount());
+    }
+
+
+    @Test
+    void requestWithoutTopicIsQueryableByNoneTopic() {
+        RequestLatencyAnalyzer analyzer = new RequestLatencyAnalyzer(new LatencyProperties());
+        analyzer.record("METADATA", "10.0.0.1:9092", "client-1", Collections.emptyList(), 2_000_000);
+
+        assertEquals(1, analyzer.query("METADATA", null, null, null, Collections.emptySet()).get(0).getCount());
+        assertEquals(1, analyzer.query(null, null, null, RequestLatencyKey.NONE, Collections.emptySet()).get(0).getCount());
+    }
+}
@@ -0,0 +1,68 @@
+package cn.rtm.protocol.parser.core.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtocolMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+
+
+    @Test
+    void gaugesOfSeveralInstancesAreSummed() {
+        AtomicLong first = new AtomicLong(3);
+        AtomicLong second = new AtomicLong(4);
+
+        ProtocolMetrics.gauge("test.gauge.sum", first, AtomicLong::get, "sink", "a");
+        ProtocolMetrics.gauge("test.gauge.sum", second, AtomicLong::get, "sink", "a");
+        ProtocolMetrics.gauge("test.gauge.sum", new AtomicLong(100), AtomicLong::get, "sink", "b");
+
+        Gauge gauge = registry.get("test.gauge.sum").tag("sink", "a").gauge();
+        assertEquals(7, gauge.value());
+        second.set(10);
+        assertEquals(13, gauge.value());
+    }
+
+
+    @Test
+    void sameSourceIsCountedOnce() {
+        AtomicLong shared = new AtomicLong(5);
+
+        ProtocolMetrics.gauge("test.gauge.shared", shared, AtomicLong::get);
+        ProtocolMetrics.gauge("test.gauge.shared", shared, AtomicLong::get);
+
+        assertEquals(5, registry.get("test.gauge.shared").gauge().value());
+    }
+
+
+    @Test
+    void functionCountersOfSeveralInstancesAreSummed() {
+        AtomicLong first = new AtomicLong(2);
+        AtomicLong second = new AtomicLong(5);
+
+        ProtocolMetrics.functionCounter("test.counter.sum", first, AtomicLong::get, "action", "spilled");
+        ProtocolMetrics.functionCounter("test.counter.sum", second, AtomicLong::get, "action", "spilled");
+
+        FunctionCounter counter = registry.get("test.counter.sum").tag("action", "spilled").functionCounter();
+        assertEquals(7, counter.count());
+    }
+}
@@ -0,0 +1,51 @@
+package cn.rtm.protocol.parser.core.pcap;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapturePropertiesTest {
+
+    @Test
+    void rejectsDuplicateSourceNames() {
+        CaptureProperties properties = new CaptureProperties();
+
+        assertThrows(IllegalArgumentException.class, () -> properties.setSources(Arrays.asList(source("eth0", null), source("eth0", null))));
+        assertThrows(IllegalArgumentException.class, () -> properties.setSources(Arrays.asList(source("eth0", "a"), source("eth1", "a"))));
+        assertTrue(properties.getSources().isEmpty());
+
+        properties.setSources(Arrays.asList(source("eth0", "a"), source("eth0", "b")));
+        assertEquals(2, properties.getSources().size());
+    }
+
+
+    @Test
+    void bindingFailsOnDuplicateSourceNames() {
+        Map<String, String> values = new HashMap<>();
+        values.put("protocol.capture.sources[0].interface-name", "eth0");
+        values.put("protocol.capture.sources[0].ports[0]", "9092");
+        values.put("protocol.capture.sources[1].interface-name", "eth0");
+        values.put("protocol.capture.sources[1].ports[0]", "9093");
+        Binder binder = new Binder(new MapConfigurationPropertySource(values));
+
+        assertThrows(BindException.class, () -> binder.bind("protocol.capture", CaptureProperties.class));
+
+        values.put("protocol.capture.sources[1].name", "eth0-9093");
+        CaptureProperties properties = new Binder(new MapConfigurationPropertySource(values)).bind("protocol.capture", CaptureProperties.class).get();
+        assertEquals(2, properties.getSources().size());
+    }
+
+
+    private static CaptureSourceProperties source(String interfaceName, String name) {
+        CaptureSourceProperties source = new CaptureSourceProperties();
+        source.setInterfaceName(interfaceName);
+        source.setName(name);
+        return source;
+    }
+}
@@ -0,0 +1,124 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.core.util.IpAddresses;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowQuarantineTest {
+
+    private static final int THRESHOLD = 3;
+
+    private static final long BACKOFF = 1000L;
+
+    private static final long MAX_BACKOFF = 3000L;
+
+
+    @Test
+    void quarantinesAfterConsecutiveFailuresReachThreshold() {
+        FlowQuarantine quarantine = quarantine(THRESHOLD, 60_000L, 60_000L);
+        TcpFlow flow = flow();
+
+        quarantine.recordFailure(flow);
+        quarantine.recordFailure(flow);
+        assertFalse(quarantine.isBypassed(flow));
+        assertEquals(0, flow.getQuarantineCount());
+
+        quarantine.recordFailure(flow);
+        assertTrue(quarantine.isBypassed(flow));
+        assertEquals(1, flow.getQuarantineCount());
+    }
+
+
+    @Test
+    void successBeforeThresholdResetsFailures() {
+        FlowQuarantine quarantine = quarantine(THRESHOLD, 60_000L, 60_000L);
+        TcpFlow flow = flow();
+
+        quarantine.recordFailure(flow);
+        quarantine.recordFailure(flow);
+        quarantine.recordSuccess(flow);
+        quarantine.recordFailure(flow);
+        quarantine.recordFailure(flow);
+
+        assertFalse(quarantine.isBypassed(flow));
+        assertEquals(2, flow.getConsecutiveFailures());
+    }
+
+
+    @Test
+    void backoffDoublesUpToMaximumAfterExpiry() {
+        TcpFlow flow = flow();
+        long now = 10_000L;
+        for (int i = 0; i < THRESHOLD - 1; i++) {
+            assertEquals(0, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+        }
+        assertEquals(now + BACKOFF, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+
+        // 隔离期间的失败不延长隔离
+        assertEquals(0, flow.recordParseFailure(now + 500, THRESHOLD, BACKOFF, MAX_BACKOFF));
+
+        // 到期后一次失败即重新隔离，时长翻倍
+        now += BACKOFF;
+        assertEquals(now + 2 * BACKOFF, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+        now += 2 * BACKOFF;
+        assertEquals(now + MAX_BACKOFF, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+        now += MAX_BACKOFF;
+        assertEquals(now + MAX_BACKOFF, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+        assertEquals(4, flow.getQuarantineCount());
+    }
+
+
+    @Test
+    void successResetsBackoff() {
+        TcpFlow flow = flow();
+        long now = 10_000L;
+        for (int i = 0; i < THRESHOLD; i++) {
+            flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF);
+        }
+        now += BACKOFF;
+        assertEquals(now + 2 * BACKOFF, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+
+        flow.recordParseSuccess();
+        assertEquals(0, flow.getConsecutiveFailures());
+        assertEquals(0, flow.getQuarantineCount());
+
+        // 成功后重新按阈值计分，隔离时长从首次时长开始
+        now += 2 * BACKOFF;
+        for (int i = 0; i < THRESHOLD - 1; i++) {
+            assertEquals(0, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+        }
+        assertEquals(now + BACKOFF, flow.recordParseFailure(now, THRESHOLD, BACKOFF, MAX_BACKOFF));
+    }
+
+
+    @Test
+    void quarantineExpiresAfterBackoff() throws InterruptedException {
+        FlowQuarantine quarantine = quarantine(1, 20L, 20L);
+        TcpFlow flow = flow();
+
+        quarantine.recordFailure(flow);
+        assertTrue(quarantine.isBypassed(flow));
+
+        Thread.sleep(50);
+        assertFalse(quarantine.isBypassed(flow));
+        assertEquals(0, flow.getQuarantinedUntil());
+    }
+
+
+    private static FlowQuarantine quarantine(int threshold, long backoffMillis, long maxBackoffMillis) {
+        FlowQuarantineProperties properties = new FlowQuarantineProperties();
+        properties.setFailureThreshold(threshold);
+        properties.setBackoffMillis(backoffMillis);
+        properties.setMaxBackoffMillis(maxBackoffMillis);
+        return new FlowQuarantine(properties);
+    }
+
+
+    private static TcpFlow flow() {
+        byte[] client = {10, 0, 0, 1};
+        byte[] broker = {10, 0, 0, 2};
+        return new TcpFlow(FlowKey.of(IpAddresses.high(client), IpAddresses.low(client), 50000,
+                IpAddresses.high(broker), IpAddresses.low(broker), 9092));
+    }
+}
@@ -0,0 +1,78 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.core.util.IpAddresses;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowSamplerTest {
+
+    @Test
+    void bucketDoesNotDependOnDirection() {
+        assertEquals(FlowSampler.bucketOf(0x0a000001, 50000, 0x0a000002, 9092), FlowSampler.bucketOf(0x0a000002, 9092, 0x0a000001, 50000));
+        assertEquals(flowKey(1, 50000).samplingBucket(), FlowSampler.bucketOf(0x0a000001, 50000, 0x0a000002, 9092));
+    }
+
+
+    @Test
+    void sampledFractionFollowsRate() {
+        FlowSampler sampler = new FlowSampler(0.25);
+        int sampled = 0;
+        for (int port = 1; port <= 40000; port++) {
+            if (sampler.isSampled(0x0a000001, port, 0x0a000002, 9092)) {
+                sampled++;
+            }
+        }
+        assertEquals(0.25, sampled / 40000.0, 0.02);
+        assertEquals(0.25, sampler.getRate(), 1e-9);
+        assertTrue(sampler.isSampled(0));
+        assertFalse(sampler.isSampled(FlowSampler.BUCKETS / 4));
+        assertNotNull(sampler.bpfFilter());
+    }
+
+
+    @Test
+    void rejectsRateOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new FlowSampler(0));
+        assertThrows(IllegalArgumentException.class, () -> new FlowSampler(1.5));
+        assertNull(new FlowSampler(1).bpfFilter());
+    }
+
+
+    @Test
+    void rateChangeOnlyAffectsNewFlows() {
+        FlowSampler sampler = new FlowSampler(1.0);
+        TcpFlowTable flowTable = new TcpFlowTable(sampler);
+        TcpFlow existing = flowTable.getOrCreate(flowKey(1, 40000));
+        int skippedPort = unsampledPort(0.25);
+
+        sampler.setRate(0.25);
+        assertTrue(flowTable.getOrCreate(flowKey(1, 40000)).isSampled());
+        assertEquals(1.0, existing.getSamplingRate(), 1e-9);
+        TcpFlow skipped = flowTable.getOrCreate(flowKey(1, skippedPort));
+        assertFalse(skipped.isSampled());
+        assertEquals(0.25, skipped.getSamplingRate(), 1e-9);
+
+        sampler.setRate(1.0);
+        assertFalse(flowTable.getOrCreate(flowKey(1, skippedPort)).isSampled());
+        assertTrue(flowTable.getOrCreate(flowKey(2, skippedPort)).isSampled());
+    }
+
+
+    private static int unsampledPort(double rate) {
+        FlowSampler sampler = new FlowSampler(rate);
+        for (int port = 40001; ; port++) {
+            if (!sampler.isSampled(flowKey(1, port).samplingBucket())) {
+                return port;
+            }
+        }
+    }
+
+
+    private static FlowKey flowKey(int host, int clientPort) {
+        byte[] client = {10, 0, 0, (byte) host};
+        byte[] broker = {10, 0, 0, (byte) (host + 1)};
+        return FlowKey.of(IpAddresses.high(client), IpAddresses.low(client), clientPort,
+                IpAddresses.high(broker), IpAddresses.low(broker), 9092);
+    }
+}
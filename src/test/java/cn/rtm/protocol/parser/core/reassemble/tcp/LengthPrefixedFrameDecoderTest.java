@@ -0,0 +1,42 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LengthPrefixedFrameDecoderTest {
+
+    private final LengthPrefixedFrameDecoder decoder = new LengthPrefixedFrameDecoder(1024);
+
+    @Test
+    void frameIsCompleteWhenPrefixMatchesRemainingBytes() {
+        assertEquals(FrameState.INCOMPLETE, decoder.decode(ByteBuffer.wrap(new byte[]{0, 0})));
+        assertEquals(FrameState.INCOMPLETE, decoder.decode(frame(8, 4)));
+        assertEquals(FrameState.COMPLETE, decoder.decode(frame(8, 8)));
+    }
+
+
+    @Test
+    void outOfRangePrefixIsInvalid() {
+        assertEquals(FrameState.INVALID, decoder.decode(frame(-1, 0)));
+        assertEquals(FrameState.INVALID, decoder.decode(frame(1025, 0)));
+    }
+
+
+    @Test
+    void decodingDoesNotMoveBufferPosition() {
+        ByteBuffer buffer = frame(8, 8);
+        buffer.position(0);
+        decoder.decode(buffer);
+        assertEquals(0, buffer.position());
+    }
+
+
+    private static ByteBuffer frame(int prefix, int bodyBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bodyBytes);
+        buffer.putInt(prefix);
+        buffer.position(0);
+        return buffer;
+    }
+}
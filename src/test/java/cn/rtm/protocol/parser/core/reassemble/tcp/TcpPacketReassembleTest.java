@@ -0,0 +1,91 @@
+package cn.rtm.protocol.parser.core.reassemble.tcp;
+
+import cn.rtm.protocol.parser.ProtocolMessage;
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.*;
+import org.pcap4j.packet.namednumber.*;
+import org.pcap4j.util.MacAddress;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpPacketReassembleTest {
+
+    @Test
+    void reassemblesIpv6SegmentsIntoOneFrame() throws Exception {
+        TcpPacketReassemble reassemble = new TcpPacketReassemble();
+        InetAddress client = InetAddress.getByName("2001:db8::1");
+        InetAddress broker = InetAddress.getByName("2001:db8::2");
+        byte[] frame = frame(12);
+
+        assertNull(reassemble.reassemble(packet(client, 50000, broker, 9092, 1000, 7, Arrays.copyOfRange(frame, 0, 10), false)));
+        ProtocolMessage message = reassemble.reassemble(packet(client, 50000, broker, 9092, 1010, 7, Arrays.copyOfRange(frame, 10, frame.length), false));
+
+        assertNotNull(message);
+        assertArrayEquals(frame, message.getRawData());
+        assertEquals(1000, message.getSequenceNumber());
+        assertFalse(message.isIpv4());
+        assertEquals("2001:db8:0:0:0:0:0:2", message.getDestIp());
+        assertEquals(1, reassemble.getFlowCount());
+    }
+
+
+    @Test
+    void bothDirectionsShareFlowUntilBothSidesFinish() throws Exception {
+        TcpPacketReassemble reassemble = new TcpPacketReassemble();
+        InetAddress client = InetAddress.getByName("10.0.0.1");
+        InetAddress broker = InetAddress.getByName("10.0.0.2");
+
+        ProtocolMessage request = reassemble.reassemble(packet(client, 50000, broker, 9092, 1000, 1, frame(8), false));
+        ProtocolMessage response = reassemble.reassemble(packet(broker, 9092, client, 50000, 1, 1012, frame(8), false));
+        assertSame(request.getFlow(), response.getFlow());
+        assertEquals("10.0.0.1:50000-10.0.0.2:9092", request.getFlow().getFlowKey().toString());
+
+        reassemble.reassemble(packet(client, 50000, broker, 9092, 1012, 13, null, true));
+        assertEquals(1, reassemble.getFlowCount());
+        reassemble.reassemble(packet(broker, 9092, client, 50000, 13, 1013, null, true));
+        assertEquals(0, reassemble.getFlowCount());
+    }
+
+
+    private static byte[] frame(int bodyBytes) {
+        return ByteBuffer.allocate(4 + bodyBytes).putInt(bodyBytes).array();
+    }
+
+
+    private static Packet packet(InetAddress src, int srcPort, InetAddress dst, int dstPort, long seq, long ack, byte[] payload, boolean fin) {
+        TcpPacket.Builder tcp = new TcpPacket.Builder()
+                .srcAddr(src).dstAddr(dst)
+                .srcPort(TcpPort.getInstance((short) srcPort)).dstPort(TcpPort.getInstance((short) dstPort))
+                .sequenceNumber((int) seq).acknowledgmentNumber((int) ack)
+                .ack(true).fin(fin).window((short) 1024)
+                .correctChecksumAtBuild(true).correctLengthAtBuild(true);
+        if (payload != null) {
+            tcp.payloadBuilder(new UnknownPacket.Builder().rawData(payload));
+        }
+        Packet.Builder ip;
+        EtherType etherType;
+        if (src instanceof Inet6Address) {
+            ip = new IpV6Packet.Builder()
+                    .version(IpVersion.IPV6).trafficClass(IpV6SimpleTrafficClass.newInstance((byte) 0))
+                    .flowLabel(IpV6SimpleFlowLabel.newInstance(0)).nextHeader(IpNumber.TCP).hopLimit((byte) 64)
+                    .srcAddr((Inet6Address) src).dstAddr((Inet6Address) dst)
+                    .payloadBuilder(tcp).correctLengthAtBuild(true);
+            etherType = EtherType.IPV6;
+        } else {
+            ip = new IpV4Packet.Builder()
+                    .version(IpVersion.IPV4).tos(IpV4Rfc791Tos.newInstance((byte) 0)).ttl((byte) 64).protocol(IpNumber.TCP)
+                    .srcAddr((Inet4Address) src).dstAddr((Inet4Address) dst)
+                    .payloadBuilder(tcp).correctChecksumAtBuild(true).correctLengthAtBuild(true);
+            etherType = EtherType.IPV4;
+        }
+        return new EthernetPacket.Builder()
+                .srcAddr(MacAddress.getByName("00:00:00:00:00:01"))
+                .dstAddr(MacAddress.getByName("00:00:00:00:00:02"))
+                .type(etherType).payloadBuilder(ip).paddingAtBuild(true).build();
+    }
+}
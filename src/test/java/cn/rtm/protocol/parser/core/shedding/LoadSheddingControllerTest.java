@@ -0,0 +1,97 @@
+package cn.rtm.protocol.parser.core.shedding;
+
+import cn.rtm.protocol.parser.core.reassemble.tcp.FlowSampler;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadSheddingControllerTest {
+
+    private static final int QUEUE_CAPACITY = 100;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    @Test
+    void escalatesOneLevelAfterConsecutiveOverloads() {
+        LoadSheddingController controller = controller(null);
+        queueDepth.set(QUEUE_CAPACITY);
+
+        assertEquals(SheddingLevel.NONE, controller.evaluate());
+        assertEquals(SheddingLevel.SKIP_RECORD_VALUES, controller.evaluate());
+        assertTrue(controller.isRecordValueSkipped());
+        assertFalse(controller.isBodySkipped(ApiKeys.METADATA));
+
+        controller.evaluate();
+        assertEquals(SheddingLevel.SKIP_LOW_PRIORITY_BODIES, controller.evaluate());
+        assertTrue(controller.isBodySkipped(ApiKeys.METADATA));
+        assertFalse(controller.isBodySkipped(ApiKeys.PRODUCE));
+    }
+
+
+    @Test
+    void restoresAfterConsecutiveIdleEvaluations() {
+        LoadSheddingController controller = controller(null);
+        controller.setLevel(SheddingLevel.SKIP_LOW_PRIORITY_BODIES);
+
+        assertEquals(SheddingLevel.SKIP_LOW_PRIORITY_BODIES, controller.evaluate());
+        // 压力介于低水位与过载之间时重新计数
+        queueDepth.set(QUEUE_CAPACITY / 2);
+        controller.evaluate();
+        queueDepth.set(0);
+        assertEquals(SheddingLevel.SKIP_LOW_PRIORITY_BODIES, controller.evaluate());
+        assertEquals(SheddingLevel.SKIP_RECORD_VALUES, controller.evaluate());
+        controller.evaluate();
+        assertEquals(SheddingLevel.NONE, controller.evaluate());
+        assertFalse(controller.isRecordValueSkipped());
+    }
+
+
+    @Test
+    void sampleFlowsLowersSamplingRateAndRestoresIt() {
+        FlowSampler sampler = new FlowSampler(0.5);
+        LoadSheddingController controller = controller(sampler);
+
+        controller.setLevel(SheddingLevel.SAMPLE_FLOWS);
+        assertEquals(0.25, sampler.getRate(), 1e-4);
+
+        controller.setLevel(SheddingLevel.SKIP_LOW_PRIORITY_BODIES);
+        assertEquals(0.5, sampler.getRate(), 1e-4);
+    }
+
+
+    @Test
+    void doesNotEscalateBeyondMaxLevel() {
+        LoadSheddingProperties properties = properties();
+        properties.setMaxLevel(SheddingLevel.SKIP_RECORD_VALUES);
+        LoadSheddingController controller = new LoadSheddingController(properties);
+        controller.registerQueue("test", queueDepth::get, QUEUE_CAPACITY);
+        queueDepth.set(QUEUE_CAPACITY);
+
+        for (int i = 0; i < 10; i++) {
+            controller.evaluate();
+        }
+        assertEquals(SheddingLevel.SKIP_RECORD_VALUES, controller.getLevel());
+    }
+
+
+    private LoadSheddingController controller(FlowSampler sampler) {
+        LoadSheddingController controller = new LoadSheddingController(properties(), sampler);
+        controller.registerQueue("test", queueDepth::get, QUEUE_CAPACITY);
+        return controller;
+    }
+
+
+    /**
+     *  仅按写入队列使用率评估负载，避免测试进程的 cpu 使用率影响结果
+     */
+    private static LoadSheddingProperties properties() {
+        LoadSheddingProperties properties = new LoadSheddingProperties();
+        properties.setCpuHigh(0);
+        properties.setUtilizationHigh(Double.MAX_VALUE);
+        properties.setEscalateAfter(2);
+        properties.setRestoreAfter(2);
+        return properties;
+    }
+}
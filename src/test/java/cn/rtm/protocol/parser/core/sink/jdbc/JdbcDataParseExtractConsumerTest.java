@@ -0,0 +1,277 @@
+package cn.rtm.protocol.parser.core.sink.jdbc;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.sink.OverflowPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *  使用内嵌 h2 数据库验证 jdbc 批量写入，数据表通过 classpath:sql/protocol_parse_data.sql 创建
+ */
+class JdbcDataParseExtractConsumerTest {
+
+    private static final AtomicInteger DATABASE_SEQUENCE = new AtomicInteger();
+
+    private String url;
+
+    /**
+     *  保持内存数据库存活，同时用于查询写入结果
+     */
+    private Connection connection;
+
+    private JdbcDataParseExtractConsumer consumer;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:h2:mem:sink" + DATABASE_SEQUENCE.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        connection = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM 'classpath:sql/protocol_parse_data.sql'");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (consumer != null) {
+            consumer.close();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        connection.close();
+    }
+
+
+    @Test
+    void flushesWhenBatchSizeReached() throws Exception {
+        JdbcSinkProperties properties = properties();
+        properties.setBatchSize(5);
+        properties.setLingerMillis(2_000);
+        consumer = start(properties);
+
+        long startNanos = System.nanoTime();
+        consumer.accept(records(1, 5));
+
+        awaitTrue(() -> rowCount("protocol_parse_data") == 5, 5_000);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 1_000, "批次已满时应立即写入");
+        assertEquals(Arrays.asList("c1", "c2", "c3", "c4", "c5"), clientIds("protocol_parse_data"));
+        // 写入计数在事务提交后更新
+        awaitTrue(() -> consumer.getWrittenRecords() == 5, 5_000);
+    }
+
+
+    @Test
+    void flushesPartialBatchAfterLinger() throws Exception {
+        JdbcSinkProperties properties = properties();
+        properties.setBatchSize(100);
+        properties.setLingerMillis(200);
+        consumer = start(properties);
+
+        long startNanos = System.nanoTime();
+        consumer.accept(records(1, 3));
+
+        awaitTrue(() -> rowCount("protocol_parse_data") == 3, 5_000);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 150, "批次未满时应等待 linger 后写入");
+        assertEquals(Arrays.asList("c1", "c2", "c3"), clientIds("protocol_parse_data"));
+        assertRowContent();
+    }
+
+
+    @Test
+    void retriesFailedBatch() throws Exception {
+        JdbcSinkProperties properties = properties();
+        properties.setTable("protocol_parse_data_retry");
+        properties.setBatchSize(3);
+        // 重试次数足够覆盖建表耗时，避免批次在建表前被丢弃
+        properties.setMaxRetries(200);
+        properties.setRetryBackoffMillis(50);
+        AtomicInteger failures = new AtomicInteger();
+        consumer = new JdbcDataParseExtractConsumer(properties) {
+            @Override
+            protected void writeBatch(List<ProtocolParseData> batch) throws SQLException {
+                try {
+                    super.writeBatch(batch);
+                } catch (SQLException e) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+            }
+        };
+        consumer.start();
+
+        consumer.accept(records(1, 3));
+        awaitTrue(() -> failures.get() >= 1, 5_000);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE protocol_parse_data_retry AS SELECT * FROM protocol_parse_data WHERE 1 = 0");
+        }
+
+        awaitTrue(() -> rowCount("protocol_parse_data_retry") == 3, 5_000);
+        assertEquals(Arrays.asList("c1", "c2", "c3"), clientIds("protocol_parse_data_retry"));
+        assertEquals(0, consumer.getFailedBatches());
+        assertEquals(0, consumer.getDroppedRecords());
+    }
+
+
+    @Test
+    void dropNewestKeepsQueuedRecords() throws Exception {
+        consumer = new JdbcDataParseExtractConsumer(overflowProperties(OverflowPolicy.DROP_NEWEST));
+
+        consumer.accept(records(1, 5));
+
+        assertEquals(2, consumer.getDroppedRecords());
+        assertEquals(Arrays.asList("c1", "c2", "c3"), drain());
+    }
+
+
+    @Test
+    void dropOldestKeepsLatestRecords() throws Exception {
+        consumer = new JdbcDataParseExtractConsumer(overflowProperties(OverflowPolicy.DROP_OLDEST));
+
+        consumer.accept(records(1, 5));
+
+        assertEquals(2, consumer.getDroppedRecords());
+        assertEquals(Arrays.asList("c3", "c4", "c5"), drain());
+    }
+
+
+    @Test
+    void blockWaitsAtMostOfferTimeoutPerCall() throws Exception {
+        JdbcSinkProperties properties = overflowProperties(OverflowPolicy.BLOCK);
+        properties.setOfferTimeoutMillis(200);
+        consumer = new JdbcDataParseExtractConsumer(properties);
+
+        long startNanos = System.nanoTime();
+        consumer.accept(records(1, 6));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertTrue(elapsedMillis >= 150, "队列已满时应阻塞等待");
+        assertTrue(elapsedMillis < 400, "单次调用累计等待不应超过 offerTimeoutMillis：" + elapsedMillis);
+        assertEquals(3, consumer.getDroppedRecords());
+        assertEquals(Arrays.asList("c1", "c2", "c3"), drain());
+    }
+
+
+    /**
+     *  队列容量为 3 且未启动写入线程，放入的数据全部留在队列中
+     */
+    private JdbcSinkProperties overflowProperties(OverflowPolicy policy) {
+        JdbcSinkProperties properties = properties();
+        properties.setQueueCapacity(3);
+        properties.setOverflowPolicy(policy);
+        return properties;
+    }
+
+
+    /**
+     *  启动写入线程并等待队列中的数据写入
+     * @return 返回写入的 clientId
+     */
+    private List<String> drain() throws Exception {
+        consumer.start();
+        awaitTrue(() -> consumer.getQueueDepth() == 0 && consumer.getWrittenRecords() == 3, 5_000);
+        return clientIds("protocol_parse_data");
+    }
+
+
+    private void assertRowContent() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT src_ip, src_port, dest_port, request_api, protocol_type,"
+                     + " response_data_length, start_time, execute_time, extra_values FROM protocol_parse_data WHERE client_id = 'c2'")) {
+            assertTrue(resultSet.next());
+            assertEquals("10.0.0.2", resultSet.getString(1));
+            assertEquals(50002, resultSet.getInt(2));
+            assertEquals(9092, resultSet.getInt(3));
+            assertEquals("PRODUCE", resultSet.getString(4));
+            assertEquals("KAFKA", resultSet.getString(5));
+            assertEquals(2, resultSet.getInt(6));
+            assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0, 2), resultSet.getTimestamp(7).toLocalDateTime());
+            assertEquals(20, resultSet.getLong(8));
+            assertEquals("{\"seq\":2}", resultSet.getString(9));
+        }
+    }
+
+
+    private JdbcSinkProperties properties() {
+        JdbcSinkProperties properties = new JdbcSinkProperties();
+        properties.setUrl(url);
+        properties.setUsername("sa");
+        properties.setPassword("");
+        properties.setWriterThreads(1);
+        properties.setLingerMillis(20);
+        return properties;
+    }
+
+
+    private JdbcDataParseExtractConsumer start(JdbcSinkProperties properties) {
+        JdbcDataParseExtractConsumer jdbcConsumer = new JdbcDataParseExtractConsumer(properties);
+        jdbcConsumer.start();
+        return jdbcConsumer;
+    }
+
+
+    private static List<ProtocolParseData> records(int from, int to) {
+        List<ProtocolParseData> records = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            records.add(new ProtocolParseData.Builder()
+                    .srcIp("10.0.0." + i)
+                    .srcPort(50000 + i)
+                    .destIp("10.0.1.1")
+                    .destPort(9092)
+                    .clientId("c" + i)
+                    .requestApi("PRODUCE")
+                    .protocolType("KAFKA")
+                    .requestData("request-" + i)
+                    .responseData("response-" + i)
+                    .responseDataLength(i)
+                    .startTime(LocalDateTime.of(2024, 1, 1, 0, 0, i))
+                    .endTime(LocalDateTime.of(2024, 1, 1, 0, 0, i).plusNanos(20_000_000))
+                    .executeTime(20)
+                    .extraValues(Collections.singletonMap("seq", i))
+                    .build());
+        }
+        return records;
+    }
+
+
+    private long rowCount(String table) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+
+    private List<String> clientIds(String table) throws SQLException {
+        List<String> clientIds = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT client_id FROM " + table + " ORDER BY client_id")) {
+            while (resultSet.next()) {
+                clientIds.add(resultSet.getString(1));
+            }
+        }
+        return clientIds;
+    }
+
+
+    private static void awaitTrue(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待超时：" + timeoutMillis + "ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package cn.rtm.protocol.parser.core.sink.store;
+
+import cn.rtm.protocol.parser.ProtocolParseData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedRecordStoreTest {
+
+    private static final int BATCH_SIZE = 10;
+
+    /**
+     *  记录时间取当前时间，避免写入时按保留时间清理
+     */
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    void queriesByTimeRangeTopicAndClientId() throws IOException {
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties(1024 * 1024))) {
+            store.append(batch(0));
+            store.append(batch(1));
+
+            assertEquals(2 * BATCH_SIZE, store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 1000).size());
+            assertEquals(sequences(0, 5), sequencesOf(store.query(millisOf(0), millisOf(4), null, null, 1000)));
+            assertEquals(sequences(10, 20), sequencesOf(store.query(millisOf(10), Long.MAX_VALUE, null, null, 1000)));
+
+            List<ProtocolParseData> topicA = store.query(Long.MIN_VALUE, Long.MAX_VALUE, "topic-a", null, 1000);
+            assertEquals(BATCH_SIZE, topicA.size());
+            assertTrue(topicA.stream().allMatch(record -> "topic-a".equals(record.getRequestData())));
+
+            List<ProtocolParseData> topicAClient1 = store.query(Long.MIN_VALUE, Long.MAX_VALUE, "topic-a", "client-1", 1000);
+            assertFalse(topicAClient1.isEmpty());
+            assertTrue(topicAClient1.stream().allMatch(record -> "client-1".equals(record.getClientId())));
+
+            assertTrue(store.query(Long.MIN_VALUE, Long.MAX_VALUE, "missing", null, 1000).isEmpty());
+            assertEquals(sequences(0, 3), sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 3)));
+        }
+    }
+
+
+    @Test
+    void rollsSegmentWhenActiveSegmentIsFull() throws IOException {
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties(4096))) {
+            for (int i = 0; i < 40; i++) {
+                store.append(batch(i));
+            }
+
+            assertTrue(store.segmentCount() > 1);
+            assertEquals(sequences(0, 40 * BATCH_SIZE), sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 10_000)));
+        }
+    }
+
+
+    @Test
+    void retentionBytesDeletesOldestSegments() throws IOException {
+        RecordStoreProperties properties = properties(4096);
+        properties.setRetentionBytes(3 * 4096L);
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties)) {
+            for (int i = 0; i < 40; i++) {
+                store.append(batch(i));
+            }
+
+            assertTrue(store.sizeInBytes() <= properties.getRetentionBytes());
+            List<Integer> remaining = sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 10_000));
+            assertFalse(remaining.contains(0));
+            assertEquals(40 * BATCH_SIZE - 1, remaining.get(remaining.size() - 1).intValue());
+            assertEquals(storedSegmentFiles(), store.segmentCount());
+        }
+    }
+
+
+    @Test
+    void retentionHoursDeletesExpiredSegmentsButKeepsActiveSegment() throws IOException {
+        RecordStoreProperties properties = properties(4096);
+        properties.setRetentionHours(1);
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties)) {
+            for (int i = 0; i < 40; i++) {
+                store.append(batch(i));
+            }
+            int segments = store.segmentCount();
+            assertTrue(segments > 1);
+
+            store.enforceRetention(millisOf(40 * BATCH_SIZE) + TimeUnit.MINUTES.toMillis(30));
+            assertEquals(segments, store.segmentCount());
+
+            store.enforceRetention(millisOf(40 * BATCH_SIZE) + TimeUnit.HOURS.toMillis(2));
+            assertEquals(1, store.segmentCount());
+            assertEquals(1, storedSegmentFiles());
+        }
+    }
+
+
+    @Test
+    void reopenedStoreLoadsIndexesAndWritesNewSegment() throws IOException {
+        RecordStoreProperties properties = properties(4096);
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties)) {
+            for (int i = 0; i < 20; i++) {
+                store.append(batch(i));
+            }
+        }
+
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties)) {
+            int segments = store.segmentCount();
+            assertEquals(sequences(0, 20 * BATCH_SIZE), sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 10_000)));
+            assertEquals(sequences(30, 40), sequencesOf(store.query(millisOf(30), millisOf(39), null, null, 10_000)));
+
+            store.append(batch(20));
+            assertEquals(segments + 1, store.segmentCount());
+            assertEquals(sequences(0, 21 * BATCH_SIZE), sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 10_000)));
+        }
+    }
+
+
+    @Test
+    void rebuildsMissingIndexesFromDataFiles() throws IOException {
+        RecordStoreProperties properties = properties(4096);
+        List<ProtocolParseData> expected;
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties)) {
+            for (int i = 0; i < 20; i++) {
+                store.append(batch(i));
+            }
+            expected = store.query(Long.MIN_VALUE, Long.MAX_VALUE, "topic-b", "client-2", 10_000);
+        }
+        File[] indexFiles = directory.toFile().listFiles((dir, name) -> name.endsWith(".timeindex") || name.endsWith(".keyindex"));
+        assertNotNull(indexFiles);
+        for (File indexFile : indexFiles) {
+            assertTrue(indexFile.delete());
+        }
+
+        try (SegmentedRecordStore store = new SegmentedRecordStore(properties)) {
+            assertEquals(sequences(0, 20 * BATCH_SIZE), sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, null, null, 10_000)));
+            assertEquals(sequencesOf(expected), sequencesOf(store.query(Long.MIN_VALUE, Long.MAX_VALUE, "topic-b", "client-2", 10_000)));
+            assertEquals(sequences(50, 60), sequencesOf(store.query(millisOf(50), millisOf(59), null, null, 10_000)));
+        }
+    }
+
+
+    @Test
+    void rejectsSegmentBytesBeyondMappableSize() {
+        RecordStoreProperties properties = new RecordStoreProperties();
+        properties.setSegmentBytes(Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> properties.setSegmentBytes(Integer.MAX_VALUE + 1L));
+        assertThrows(IllegalArgumentException.class, () -> properties.setSegmentBytes(0));
+        assertEquals(Integer.MAX_VALUE, properties.getSegmentBytes());
+    }
+
+
+    private RecordStoreProperties properties(long segmentBytes) {
+        RecordStoreProperties properties = new RecordStoreProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentBytes(segmentBytes);
+        return properties;
+    }
+
+
+    /**
+     *  生成一批记录，记录序号保存在 executeTime 中，记录时间按序号每条递增 1 秒
+     */
+    private List<ProtocolParseData> batch(int batchIndex) {
+        List<ProtocolParseData> records = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int sequence = batchIndex * BATCH_SIZE + i;
+            records.add(new ProtocolParseData.Builder()
+                    .srcIp("10.0.0.1")
+                    .srcPort(50000 + sequence % 3)
+                    .clientId("client-" + sequence % 3)
+                    .requestData("topic-" + (char) ('a' + batchIndex % 4))
+                    .startTime(base.plusSeconds(sequence))
+                    .executeTime(sequence)
+                    .build());
+        }
+        return records;
+    }
+
+
+    private long millisOf(int sequence) {
+        return base.plusSeconds(sequence).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+
+    private int storedSegmentFiles() {
+        File[] dataFiles = directory.toFile().listFiles((dir, name) -> name.endsWith(".log"));
+        return dataFiles == null ? 0 : dataFiles.length;
+    }
+
+
+    private static List<Integer> sequences(int from, int to) {
+        List<Integer> sequences = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            sequences.add(i);
+        }
+        return sequences;
+    }
+
+
+    private static List<Integer> sequencesOf(List<ProtocolParseData> records) {
+        return records.stream().map(record -> (int) record.getExecuteTime()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,116 @@
+package cn.rtm.protocol.parser.core.topk;
+
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    void tracksExactCountsBelowCapacity() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(4);
+        sketch.add("a", 3);
+        sketch.add("b", 5);
+        sketch.add("a", 4);
+        sketch.add("c", 0);
+
+        List<HeavyHitter<String>> top = sketch.top(10);
+        assertEquals(2, top.size());
+        assertEquals("a", top.get(0).getKey());
+        assertEquals(7, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("b", top.get(1).getKey());
+        assertEquals(12, sketch.getTotal());
+    }
+
+
+    @Test
+    void evictsMinimumAndRecordsItsCountAsError() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(3);
+        sketch.add("a", 10);
+        sketch.add("b", 2);
+        sketch.add("c", 6);
+
+        sketch.add("d", 1);
+
+        Map<String, HeavyHitter<String>> tracked = index(sketch.top(10));
+        assertEquals(3, sketch.size());
+        assertFalse(tracked.containsKey("b"));
+        assertEquals(3, tracked.get("d").getCount());
+        assertEquals(2, tracked.get("d").getError());
+
+        // 堆顶变为 d，再次替换时淘汰 d 而非 c
+        sketch.add("e", 1);
+        tracked = index(sketch.top(10));
+        assertFalse(tracked.containsKey("d"));
+        assertEquals(4, tracked.get("e").getCount());
+        assertEquals(3, tracked.get("e").getError());
+        assertEquals(6, tracked.get("c").getCount());
+        assertEquals(20, sketch.getTotal());
+    }
+
+
+    @Test
+    void countsStayWithinErrorBoundsOnSkewedStream() {
+        int capacity = 32;
+        SpaceSavingSketch<Integer> sketch = new SpaceSavingSketch<>(capacity);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // 少量热点 key 占大部分权重，其余为长尾
+            int key = random.nextInt(10) < 6 ? random.nextInt(5) : 5 + random.nextInt(5000);
+            long weight = 1 + random.nextInt(3);
+            sketch.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+            total += weight;
+        }
+
+        assertEquals(total, sketch.getTotal());
+        Map<Integer, HeavyHitter<Integer>> tracked = index(sketch.top(capacity));
+        for (HeavyHitter<Integer> hitter : tracked.values()) {
+            long actual = exact.getOrDefault(hitter.getKey(), 0L);
+            assertTrue(hitter.getCount() >= actual, "count of " + hitter.getKey());
+            assertTrue(hitter.getCount() - hitter.getError() <= actual, "error of " + hitter.getKey());
+            assertTrue(hitter.getError() <= total / capacity);
+        }
+        for (Map.Entry<Integer, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > total / capacity) {
+                assertTrue(tracked.containsKey(entry.getKey()), "heavy key " + entry.getKey());
+            }
+        }
+        List<HeavyHitter<Integer>> top = sketch.top(5);
+        for (HeavyHitter<Integer> hitter : top) {
+            assertTrue(hitter.getKey() < 5, "top key " + hitter.getKey());
+        }
+    }
+
+
+    @Test
+    void topIsSortedAndLimited() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(8);
+        for (int i = 1; i <= 6; i++) {
+            sketch.add("k" + i, i);
+        }
+
+        List<HeavyHitter<String>> top = sketch.top(3);
+        assertEquals(3, top.size());
+        assertEquals("k6", top.get(0).getKey());
+        assertEquals("k5", top.get(1).getKey());
+        assertEquals("k4", top.get(2).getKey());
+        assertTrue(sketch.top(0).isEmpty());
+    }
+
+
+    private static <K> Map<K, HeavyHitter<K>> index(List<HeavyHitter<K>> hitters) {
+        Map<K, HeavyHitter<K>> index = new HashMap<>();
+        for (HeavyHitter<K> hitter : hitters) {
+            index.put(hitter.getKey(), hitter);
+        }
+        return index;
+    }
+}
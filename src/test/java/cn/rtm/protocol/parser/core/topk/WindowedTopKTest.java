@@ -0,0 +1,87 @@
+package cn.rtm.protocol.parser.core.topk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowedTopKTest {
+
+    private static final long WINDOW = 1000;
+
+    @Test
+    void windowsAreAlignedAndRollOnCaptureTime() {
+        WindowedTopK<String> topK = new WindowedTopK<>(8, WINDOW);
+        assertNull(topK.current(5_000));
+
+        assertTrue(topK.add("a", 2, 5_300));
+        assertTrue(topK.add("a", 3, 5_999));
+        assertEquals(5_000, topK.current(5_999).getStart());
+        assertNull(topK.previous(5_999));
+
+        assertTrue(topK.add("b", 1, 6_100));
+        WindowedTopK.Window<String> previous = topK.previous(6_100);
+        assertEquals(5_000, previous.getStart());
+        assertEquals(WINDOW, previous.getDurationMillis());
+        assertEquals(5, previous.getTotal());
+        assertEquals("a", previous.top(1).get(0).getKey());
+
+        WindowedTopK.Window<String> current = topK.current(6_400);
+        assertEquals(6_000, current.getStart());
+        assertEquals(400, current.getDurationMillis());
+        assertEquals(1, current.getTotal());
+    }
+
+
+    @Test
+    void queryRollsWindowWithoutWrites() {
+        WindowedTopK<String> topK = new WindowedTopK<>(8, WINDOW);
+        topK.add("a", 1, 1_500);
+
+        WindowedTopK.Window<String> previous = topK.previous(2_200);
+        assertEquals(1_000, previous.getStart());
+        assertEquals(1, previous.getTotal());
+        assertEquals(0, topK.current(2_200).getTotal());
+    }
+
+
+    @Test
+    void gapLongerThanWindowLeavesEmptyPreviousWindow() {
+        WindowedTopK<String> topK = new WindowedTopK<>(8, WINDOW);
+        topK.add("a", 1, 1_500);
+
+        topK.add("b", 1, 4_200);
+
+        WindowedTopK.Window<String> previous = topK.previous(4_200);
+        assertEquals(3_000, previous.getStart());
+        assertEquals(0, previous.getTotal());
+        assertEquals(4_000, topK.current(4_200).getStart());
+    }
+
+
+    @Test
+    void lateDataCountsInPreviousWindowOrIsDropped() {
+        WindowedTopK<String> topK = new WindowedTopK<>(8, WINDOW);
+        topK.add("a", 1, 1_500);
+        topK.add("b", 1, 2_100);
+
+        assertTrue(topK.add("late", 4, 1_900));
+        assertFalse(topK.add("too-late", 8, 900));
+
+        WindowedTopK.Window<String> previous = topK.previous(2_100);
+        assertEquals(5, previous.getTotal());
+        assertEquals("late", previous.top(1).get(0).getKey());
+        WindowedTopK.Window<String> current = topK.current(2_100);
+        assertEquals(1, current.getTotal());
+        assertEquals("b", current.top(1).get(0).getKey());
+    }
+
+
+    @Test
+    void lateDataBeforeFirstRollIsDropped() {
+        WindowedTopK<String> topK = new WindowedTopK<>(8, WINDOW);
+        topK.add("a", 1, 1_500);
+
+        assertFalse(topK.add("late", 1, 900));
+        assertEquals(1, topK.current(1_500).getTotal());
+    }
+}
@@ -0,0 +1,299 @@
+package cn.rtm.protocol.parser.kafka;
+
+import org.apache.kafka.common.Uuid;
+import org.apache.kafka.common.message.*;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.protocol.ByteBufferAccessor;
+import org.apache.kafka.common.protocol.ObjectSerializationCache;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.SimpleRecord;
+import org.pcap4j.packet.*;
+import org.pcap4j.packet.namednumber.EtherType;
+import org.pcap4j.packet.namednumber.IpNumber;
+import org.pcap4j.packet.namednumber.IpVersion;
+import org.pcap4j.packet.namednumber.TcpPort;
+import org.pcap4j.util.MacAddress;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *  通过 kafka-clients 序列化能力构造 kafka 协议数据包，以及承载数据包的以太网/IPv4/TCP 分片，
+ *  用于无网卡环境下的基准测试与数据包生成
+ *
+ * <ul>
+ * <li> 方法 {@link #requestFrame(ApiMessage, short, int, String)}、{@link #responseFrame(ApiKeys, ApiMessage, short, int)}
+ * 构造带 4 字节长度前缀的完整 kafka 数据包
+ * <li> 方法 {@link #produceRequest(String, MemoryRecords)} 等构造常用 api 的请求与响应内容
+ * <li> 方法 {@link #tcpSegments(String, int, String, int, long, long, byte[], int)} 将数据包切分为多个 tcp 分片
+ * </ul>
+ */
+public final class KafkaFrames {
+
+    private static final MacAddress SRC_MAC = MacAddress.getByName("02:00:00:00:00:01");
+
+    private static final MacAddress DEST_MAC = MacAddress.getByName("02:00:00:00:00:02");
+
+    public static final Uuid TOPIC_ID = Uuid.fromString("b6bbXoNoTw-LLoj1W4uN9w");
+
+    private KafkaFrames() {
+    }
+
+
+    /**
+     *  构造请求数据包
+     * @param body 请求内容
+     * @param version 请求版本
+     * @param correlationId 请求关联标识
+     * @param clientId 客户端标识
+     * @return 返回包含长度前缀的请求数据包
+     */
+    public static byte[] requestFrame(ApiMessage body, short version, int correlationId, String clientId) {
+        ApiKeys apiKey = ApiKeys.forId(body.apiKey());
+        RequestHeaderData header = new RequestHeaderData()
+                .setRequestApiKey(apiKey.id)
+                .setRequestApiVersion(version)
+                .setCorrelationId(correlationId)
+                .setClientId(clientId);
+        return frame(header, apiKey.requestHeaderVersion(version), body, version);
+    }
+
+
+    /**
+     *  构造响应数据包
+     * @param apiKey 对应请求的 api
+     * @param body 响应内容
+     * @param version 对应请求的版本
+     * @param correlationId 对应请求的关联标识
+     * @return 返回包含长度前缀的响应数据包
+     */
+    public static byte[] responseFrame(ApiKeys apiKey, ApiMessage body, short version, int correlationId) {
+        ResponseHeaderData header = new ResponseHeaderData().setCorrelationId(correlationId);
+        return frame(header, apiKey.responseHeaderVersion(version), body, version);
+    }
+
+
+    private static byte[] frame(ApiMessage header, short headerVersion, ApiMessage body, short version) {
+        ObjectSerializationCache cache = new ObjectSerializationCache();
+        int size = header.size(cache, headerVersion) + body.size(cache, version);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + size);
+        buffer.putInt(size);
+        ByteBufferAccessor accessor = new ByteBufferAccessor(buffer);
+        header.write(accessor, cache, headerVersion);
+        body.write(accessor, cache, version);
+        return buffer.array();
+    }
+
+
+    /**
+     *  构造 record 批次
+     * @param compressionType 压缩方式
+     * @param count record 数量
+     * @param valueSize 每条 record value 大小
+     * @return 返回 record 批次
+     */
+    public static MemoryRecords records(CompressionType compressionType, int count, int valueSize) {
+        return records(compressionType, count, valueSize, System.currentTimeMillis());
+    }
+
+
+    /**
+     *  构造指定时间戳的 record 批次，相同参数构造的批次内容一致，用于生成可复现的数据
+     * @param compressionType 压缩方式
+     * @param count record 数量
+     * @param valueSize 每条 record value 大小
+     * @param timestamp record 时间戳（毫秒）
+     * @return 返回 record 批次
+     */
+    public static MemoryRecords records(CompressionType compressionType, int count, int valueSize, long timestamp) {
+        SimpleRecord[] records = new SimpleRecord[count];
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[valueSize];
+            byte[] text = ("{\"id\":" + i + ",\"payload\":\"").getBytes(StandardCharsets.UTF_8);
+            for (int j = 0; j < valueSize; j++) {
+                value[j] = j < text.length ? text[j] : (byte) ('a' + (i + j) % 26);
+            }
+            records[i] = new SimpleRecord(timestamp, ("key-" + i).getBytes(StandardCharsets.UTF_8), value);
+        }
+        return MemoryRecords.withRecords(compressionType, records);
+    }
+
+
+    public static ProduceRequestData produceRequest(String topic, MemoryRecords records) {
+        ProduceRequestData.TopicProduceDataCollection topics = new ProduceRequestData.TopicProduceDataCollection();
+        topics.add(new ProduceRequestData.TopicProduceData()
+                .setName(topic)
+                .setPartitionData(Collections.singletonList(new ProduceRequestData.PartitionProduceData()
+                        .setIndex(0)
+                        .setRecords(records))));
+        return new ProduceRequestData().setAcks((short) 1).setTimeoutMs(30000).setTopicData(topics);
+    }
+
+
+    public static ProduceResponseData produceResponse(String topic, long baseOffset) {
+        ProduceResponseData.TopicProduceResponseCollection responses = new ProduceResponseData.TopicProduceResponseCollection();
+        responses.add(new ProduceResponseData.TopicProduceResponse()
+                .setName(topic)
+                .setPartitionResponses(Collections.singletonList(new ProduceResponseData.PartitionProduceResponse()
+                        .setIndex(0)
+                        .setBaseOffset(baseOffset))));
+        return new ProduceResponseData().setResponses(responses);
+    }
+
+
+    /**
+     *  构造 fetch 请求，版本 13 及以上使用 topicId 标识 topic
+     */
+    public static FetchRequestData fetchRequest(String topic, short version, long fetchOffset) {
+        FetchRequestData.FetchTopic fetchTopic = new FetchRequestData.FetchTopic()
+                .setPartitions(Collections.singletonList(new FetchRequestData.FetchPartition()
+                        .setPartition(0)
+                        .setFetchOffset(fetchOffset)
+                        .setPartitionMaxBytes(1024 * 1024)));
+        if (version >= 13) {
+            fetchTopic.setTopicId(TOPIC_ID);
+        } else {
+            fetchTopic.setTopic(topic);
+        }
+        return new FetchRequestData()
+                .setReplicaId(-1)
+                .setMaxWaitMs(500)
+                .setMinBytes(1)
+                .setMaxBytes(50 * 1024 * 1024)
+                .setTopics(new ArrayList<>(Collections.singletonList(fetchTopic)));
+    }
+
+
+    /**
+     *  构造 fetch 响应，版本 13 及以上使用 topicId 标识 topic
+     */
+    public static FetchResponseData fetchResponse(String topic, short version, MemoryRecords records) {
+        FetchResponseData.FetchableTopicResponse topicResponse = new FetchResponseData.FetchableTopicResponse()
+                .setPartitions(Collections.singletonList(new FetchResponseData.PartitionData()
+                        .setPartitionIndex(0)
+                        .setHighWatermark(records.sizeInBytes())
+                        .setRecords(records)));
+        if (version >= 13) {
+            topicResponse.setTopicId(TOPIC_ID);
+        } else {
+            topicResponse.setTopic(topic);
+        }
+        return new FetchResponseData().setResponses(new ArrayList<>(Collections.singletonList(topicResponse)));
+    }
+
+
+    public static MetadataRequestData metadataRequest(String topic) {
+        return new MetadataRequestData()
+                .setTopics(Collections.singletonList(new MetadataRequestData.MetadataRequestTopic().setName(topic)));
+    }
+
+
+    public static MetadataResponseData metadataResponse(String topic, int partitions) {
+        MetadataResponseData.MetadataResponseBrokerCollection brokers = new MetadataResponseData.MetadataResponseBrokerCollection();
+        brokers.add(new MetadataResponseData.MetadataResponseBroker().setNodeId(1).setHost("broker-1").setPort(9094));
+        List<MetadataResponseData.MetadataResponsePartition> partitionList = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            partitionList.add(new MetadataResponseData.MetadataResponsePartition()
+                    .setPartitionIndex(i)
+                    .setLeaderId(1)
+                    .setReplicaNodes(Collections.singletonList(1))
+                    .setIsrNodes(Collections.singletonList(1)));
+        }
+        MetadataResponseData.MetadataResponseTopicCollection topics = new MetadataResponseData.MetadataResponseTopicCollection();
+        topics.add(new MetadataResponseData.MetadataResponseTopic().setName(topic).setTopicId(TOPIC_ID).setPartitions(partitionList));
+        return new MetadataResponseData().setBrokers(brokers).setTopics(topics);
+    }
+
+
+    /**
+     *  将数据包切分为指定数量的 tcp 分片，同一数据包的分片 ack 相同、seq 递增
+     * @param srcIp 发送端 ip
+     * @param srcPort 发送端端口
+     * @param destIp 接收端 ip
+     * @param destPort 接收端端口
+     * @param sequenceNumber 首个分片的 seq
+     * @param acknowledgmentNumber 分片的 ack
+     * @param frame 待切分的数据包
+     * @param segments 分片数量
+     * @return 返回以太网数据包
+     */
+    public static List<Packet> tcpSegments(String srcIp, int srcPort, String destIp, int destPort,
+                                           long sequenceNumber, long acknowledgmentNumber, byte[] frame, int segments) {
+        int count = Math.max(1, Math.min(segments, frame.length));
+        int segmentSize = (frame.length + count - 1) / count;
+        List<Packet> packets = new ArrayList<>(count);
+        long seq = sequenceNumber;
+        for (int offset = 0; offset < frame.length; offset += segmentSize) {
+            int length = Math.min(segmentSize, frame.length - offset);
+            byte[] payload = new byte[length];
+            System.arraycopy(frame, offset, payload, 0, length);
+            packets.add(tcpPacket(srcIp, srcPort, destIp, destPort, seq, acknowledgmentNumber, payload, false));
+            seq += length;
+        }
+        return packets;
+    }
+
+
+    /**
+     *  构造单个以太网/IPv4/TCP 数据包
+     * @param payload tcp 负载，为空则构造不携带数据的通信包
+     * @param fin 是否设置 FIN 标志
+     * @return 返回以太网数据包
+     */
+    public static Packet tcpPacket(String srcIp, int srcPort, String destIp, int destPort,
+                                   long sequenceNumber, long acknowledgmentNumber, byte[] payload, boolean fin) {
+        Inet4Address srcAddr = address(srcIp);
+        Inet4Address destAddr = address(destIp);
+        TcpPacket.Builder tcp = new TcpPacket.Builder()
+                .srcPort(TcpPort.getInstance((short) srcPort))
+                .dstPort(TcpPort.getInstance((short) destPort))
+                .sequenceNumber((int) sequenceNumber)
+                .acknowledgmentNumber((int) acknowledgmentNumber)
+                .dataOffset((byte) 5)
+                .ack(true)
+                .psh(payload != null && payload.length > 0)
+                .fin(fin)
+                .window((short) 65535)
+                .srcAddr(srcAddr)
+                .dstAddr(destAddr)
+                .correctChecksumAtBuild(true)
+                .correctLengthAtBuild(true);
+        if (payload != null && payload.length > 0) {
+            tcp.payloadBuilder(new UnknownPacket.Builder().rawData(payload));
+        }
+        IpV4Packet.Builder ip = new IpV4Packet.Builder()
+                .version(IpVersion.IPV4)
+                .tos(IpV4Rfc791Tos.newInstance((byte) 0))
+                .ttl((byte) 64)
+                .protocol(IpNumber.TCP)
+                .srcAddr(srcAddr)
+                .dstAddr(destAddr)
+                .dontFragmentFlag(true)
+                .correctChecksumAtBuild(true)
+                .correctLengthAtBuild(true)
+                .payloadBuilder(tcp);
+        return new EthernetPacket.Builder()
+                .srcAddr(SRC_MAC)
+                .dstAddr(DEST_MAC)
+                .type(EtherType.IPV4)
+                .paddingAtBuild(true)
+                .payloadBuilder(ip)
+                .build();
+    }
+
+
+    private static Inet4Address address(String ip) {
+        try {
+            return (Inet4Address) InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("无效的 ip 地址：" + ip, e);
+        }
+    }
+}
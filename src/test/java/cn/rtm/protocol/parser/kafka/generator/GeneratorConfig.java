@@ -0,0 +1,356 @@
+package cn.rtm.protocol.parser.kafka.generator;
+
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.record.CompressionType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  kafka 流量生成配置，通过 --key=value 形式的启动参数覆盖默认值，key 与字段名一致，如 --requests=100000 --pipelining=4
+ *
+ * <ul>
+ * <li> 生成规模：{@link #requests} 与 {@link #targetBytes} 任一达到即停止发起新请求，等待已发出的请求响应并关闭连接后结束
+ * <li> 请求内容：{@link #apiMix} 指定各 api 的权重，record 批次按 {@link #recordsPerBatch}、{@link #recordSize}、{@link #compression} 预先构造
+ * <li> 连接模型：{@link #clients} 个客户端并发访问 {@link #brokers} 个 broker，每个连接发送 {@link #requestsPerConnection} 个请求后关闭并使用新的端口重连
+ * <li> 网络损伤：{@link #reorderRate}、{@link #retransmitRate}、{@link #lossRate} 分别为单个分片乱序、重传、抓包丢失的概率
+ * </ul>
+ */
+public class GeneratorConfig {
+
+    /**
+     *  输出 pcap 文件路径
+     */
+    private String output = "target/kafka-traffic.pcap";
+
+    /**
+     *  请求总数，0 表示不限制
+     */
+    private long requests = 10000;
+
+    /**
+     *  输出文件大小上限（字节），0 表示不限制
+     */
+    private long targetBytes = 0;
+
+    /**
+     *  随机数种子，相同配置与种子生成的文件内容一致
+     */
+    private long seed = 1;
+
+    /**
+     *  api 权重，格式为 API:权重，多个以逗号分隔，支持 PRODUCE、FETCH、METADATA
+     */
+    private String apiMix = "PRODUCE:6,FETCH:3,METADATA:1";
+
+    private short produceVersion = 9;
+
+    private short fetchVersion = 12;
+
+    private short metadataVersion = 12;
+
+    /**
+     *  每个 record 批次包含的 record 数量
+     */
+    private int recordsPerBatch = 10;
+
+    /**
+     *  每条 record value 大小（字节）
+     */
+    private int recordSize = 256;
+
+    /**
+     *  record 批次压缩方式，取值为 none、gzip、snappy、lz4、zstd
+     */
+    private String compression = "none";
+
+    /**
+     *  预先构造的不同 record 批次数量，请求循环使用，避免生成过程中重复压缩
+     */
+    private int batchPool = 16;
+
+    private int clients = 8;
+
+    private int brokers = 3;
+
+    private int brokerPort = 9092;
+
+    private int topics = 10;
+
+    /**
+     *  单个连接发送的请求数，达到后关闭连接
+     */
+    private int requestsPerConnection = 1000;
+
+    /**
+     *  单个连接最多同时等待响应的请求数，大于 1 时同一连接上的请求流水线发送
+     */
+    private int pipelining = 1;
+
+    /**
+     *  tcp 最大分段大小，超过的数据包被切分为多个分片
+     */
+    private int mss = 1460;
+
+    private double reorderRate = 0;
+
+    private double retransmitRate = 0;
+
+    private double lossRate = 0;
+
+    /**
+     *  broker 平均处理耗时（微秒），实际耗时服从指数分布
+     */
+    private long latencyMicros = 2000;
+
+    /**
+     *  客户端两次请求之间的平均间隔（微秒），实际间隔服从指数分布
+     */
+    private long thinkMicros = 500;
+
+    /**
+     *  重传分片相对原分片的延迟（微秒）
+     */
+    private long retransmitDelayMicros = 20000;
+
+    /**
+     *  首个数据包的抓包时间（毫秒）
+     */
+    private long startEpochMillis = 1700000000000L;
+
+
+    /**
+     *  解析启动参数，未识别的参数抛出异常
+     * @param args 启动参数，格式为 --key=value
+     * @return 返回生成配置
+     */
+    public static GeneratorConfig fromArgs(String[] args) {
+        GeneratorConfig config = new GeneratorConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value：" + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            config.set(key, value);
+        }
+        config.validate();
+        return config;
+    }
+
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "output": output = value; break;
+            case "requests": requests = Long.parseLong(value); break;
+            case "targetBytes": targetBytes = parseSize(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "apiMix": apiMix = value; break;
+            case "produceVersion": produceVersion = Short.parseShort(value); break;
+            case "fetchVersion": fetchVersion = Short.parseShort(value); break;
+            case "metadataVersion": metadataVersion = Short.parseShort(value); break;
+            case "recordsPerBatch": recordsPerBatch = Integer.parseInt(value); break;
+            case "recordSize": recordSize = Integer.parseInt(value); break;
+            case "compression": compression = value; break;
+            case "batchPool": batchPool = Integer.parseInt(value); break;
+            case "clients": clients = Integer.parseInt(value); break;
+            case "brokers": brokers = Integer.parseInt(value); break;
+            case "brokerPort": brokerPort = Integer.parseInt(value); break;
+            case "topics": topics = Integer.parseInt(value); break;
+            case "requestsPerConnection": requestsPerConnection = Integer.parseInt(value); break;
+            case "pipelining": pipelining = Integer.parseInt(value); break;
+            case "mss": mss = Integer.parseInt(value); break;
+            case "reorderRate": reorderRate = Double.parseDouble(value); break;
+            case "retransmitRate": retransmitRate = Double.parseDouble(value); break;
+            case "lossRate": lossRate = Double.parseDouble(value); break;
+            case "latencyMicros": latencyMicros = Long.parseLong(value); break;
+            case "thinkMicros": thinkMicros = Long.parseLong(value); break;
+            case "retransmitDelayMicros": retransmitDelayMicros = Long.parseLong(value); break;
+            case "startEpochMillis": startEpochMillis = Long.parseLong(value); break;
+            default: throw new IllegalArgumentException("未知参数：" + key);
+        }
+    }
+
+
+    private void validate() {
+        if (requests <= 0 && targetBytes <= 0) {
+            throw new IllegalArgumentException("requests 与 targetBytes 至少指定一个");
+        }
+        if (clients <= 0 || brokers <= 0 || topics <= 0 || requestsPerConnection <= 0 || pipelining <= 0 || batchPool <= 0) {
+            throw new IllegalArgumentException("clients、brokers、topics、requestsPerConnection、pipelining、batchPool 必须大于 0");
+        }
+        if (mss < 64 || mss > 65495) {
+            throw new IllegalArgumentException("mss 取值范围为 64-65495：" + mss);
+        }
+        apiWeights();
+        compressionType();
+    }
+
+
+    /**
+     *  解析 api 权重
+     * @return 返回 api 与权重，按配置顺序排列
+     */
+    public Map<ApiKeys, Integer> apiWeights() {
+        Map<ApiKeys, Integer> weights = new LinkedHashMap<>();
+        for (String item : apiMix.split(",")) {
+            String[] pair = item.trim().split(":");
+            ApiKeys apiKey = ApiKeys.valueOf(pair[0].trim().toUpperCase());
+            if (apiKey != ApiKeys.PRODUCE && apiKey != ApiKeys.FETCH && apiKey != ApiKeys.METADATA) {
+                throw new IllegalArgumentException("不支持生成的 api：" + apiKey);
+            }
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight > 0) {
+                weights.put(apiKey, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("apiMix 未包含有效的 api：" + apiMix);
+        }
+        return weights;
+    }
+
+
+    public CompressionType compressionType() {
+        return CompressionType.forName(compression.toLowerCase());
+    }
+
+
+    /**
+     *  解析大小，支持 k、m、g 后缀
+     */
+    private static long parseSize(String value) {
+        String text = value.trim().toLowerCase();
+        long unit = 1;
+        char suffix = text.charAt(text.length() - 1);
+        if (suffix == 'k' || suffix == 'm' || suffix == 'g') {
+            unit = suffix == 'k' ? 1L << 10 : suffix == 'm' ? 1L << 20 : 1L << 30;
+            text = text.substring(0, text.length() - 1);
+        }
+        return (long) (Double.parseDouble(text) * unit);
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getApiMix() {
+        return apiMix;
+    }
+
+    public short getProduceVersion() {
+        return produceVersion;
+    }
+
+    public short getFetchVersion() {
+        return fetchVersion;
+    }
+
+    public short getMetadataVersion() {
+        return metadataVersion;
+    }
+
+    public int getRecordsPerBatch() {
+        return recordsPerBatch;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public int getBatchPool() {
+        return batchPool;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getBrokers() {
+        return brokers;
+    }
+
+    public int getBrokerPort() {
+        return brokerPort;
+    }
+
+    public int getTopics() {
+        return topics;
+    }
+
+    public int getRequestsPerConnection() {
+        return requestsPerConnection;
+    }
+
+    public int getPipelining() {
+        return pipelining;
+    }
+
+    public int getMss() {
+        return mss;
+    }
+
+    public double getReorderRate() {
+        return reorderRate;
+    }
+
+    public double getRetransmitRate() {
+        return retransmitRate;
+    }
+
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public long getThinkMicros() {
+        return thinkMicros;
+    }
+
+    public long getRetransmitDelayMicros() {
+        return retransmitDelayMicros;
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratorConfig{" +
+                "output='" + output + '\'' +
+                ", requests=" + requests +
+                ", targetBytes=" + targetBytes +
+                ", seed=" + seed +
+                ", apiMix='" + apiMix + '\'' +
+                ", recordsPerBatch=" + recordsPerBatch +
+                ", recordSize=" + recordSize +
+                ", compression='" + compression + '\'' +
+                ", clients=" + clients +
+                ", brokers=" + brokers +
+                ", pipelining=" + pipelining +
+                ", mss=" + mss +
+                ", reorderRate=" + reorderRate +
+                ", retransmitRate=" + retransmitRate +
+                ", lossRate=" + lossRate +
+                '}';
+    }
+}
@@ -0,0 +1,527 @@
+package cn.rtm.protocol.parser.kafka.generator;
+
+import cn.rtm.protocol.parser.core.pcap.PcapFileWriter;
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.record.MemoryRecords;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ *  kafka 流量生成工具，通过 kafka-clients 构造请求与响应，按 tcp 连接模型封装为以太网/IPv4/TCP 数据包并写入 pcap 文件，
+ *  用于无集群环境下的吞吐、内存与长时间运行测试，相同配置与种子生成的文件内容一致
+ *
+ * <ul>
+ * <li> 每个连接依次经过三次握手、请求/响应交互、四次挥手，连接关闭后客户端使用新的端口重新建立连接
+ * <li> 时间为虚拟时钟，broker 处理耗时与客户端请求间隔服从指数分布，多个连接的数据包按时间交错写入
+ * <li> 数据包超过 mss 时切分为多个分片，分片按 10Gbps 线速排列；请求发出后 broker 回复纯 ACK，响应发出后客户端回复纯 ACK
+ * <li> 同一连接的响应按请求顺序返回，响应的 ack 为 broker 当时已收到的客户端字节，流水线发送时与生产环境一致，后发请求会改变先发请求响应的 ack
+ * <li> 乱序为相邻分片交换顺序，重传为分片延迟后重复出现，丢失为分片未被抓到，均仅作用于携带数据的分片
+ * </ul>
+ *
+ *  运行示例：mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *  -Dexec.mainClass=cn.rtm.protocol.parser.kafka.generator.KafkaTrafficGenerator -Dexec.args="--requests=0 --targetBytes=2g --clients=64"
+ */
+public class KafkaTrafficGenerator {
+
+    private static final int OPEN = 0;
+
+    private static final int SEND = 1;
+
+    private static final int RESPONSE = 2;
+
+    private static final int CLOSE = 3;
+
+    /**
+     *  客户端与 broker 之间的往返时间（纳秒）
+     */
+    private static final long RTT_NANOS = 100_000;
+
+    private static final int BROKER_IP_BASE = (10 << 24) | 1;
+
+    private static final int CLIENT_IP_BASE = (10 << 24) | (1 << 16);
+
+    private final GeneratorConfig config;
+
+    private final SplittableRandom random;
+
+    private final TcpSegmentEncoder encoder = new TcpSegmentEncoder();
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    /**
+     *  已生成、等待按时间顺序写入的数据包
+     */
+    private final PriorityQueue<Segment> pending = new PriorityQueue<>();
+
+    private final ApiKeys[] apiTable;
+
+    private final MemoryRecords[] batches;
+
+    /**
+     *  各 topic 的 offset，用于构造 produce 响应与 fetch 请求
+     */
+    private final long[] topicOffsets;
+
+    private final Map<ApiKeys, Long> apiCounts = new EnumMap<>(ApiKeys.class);
+
+    private PcapFileWriter writer;
+
+    private long order;
+
+    private int portCounter;
+
+    private boolean stopping;
+
+    private long requests;
+
+    private long connections;
+
+    private long emittedBytes;
+
+    private long lostSegments;
+
+    private long retransmittedSegments;
+
+    private long reorderedSegments;
+
+    public KafkaTrafficGenerator(GeneratorConfig config) {
+        this.config = config;
+        this.random = new SplittableRandom(config.getSeed());
+        List<ApiKeys> table = new ArrayList<>();
+        config.apiWeights().forEach((apiKey, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                table.add(apiKey);
+            }
+        });
+        this.apiTable = table.toArray(new ApiKeys[0]);
+        this.batches = new MemoryRecords[config.getBatchPool()];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = KafkaFrames.records(config.compressionType(), config.getRecordsPerBatch(),
+                    config.getRecordSize() + i, config.getStartEpochMillis() + i);
+        }
+        this.topicOffsets = new long[config.getTopics()];
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        GeneratorConfig config = GeneratorConfig.fromArgs(args);
+        System.out.println("生成配置：" + config);
+        long start = System.nanoTime();
+        KafkaTrafficGenerator generator = new KafkaTrafficGenerator(config);
+        generator.generate(new File(config.getOutput()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(generator.summary() + "，耗时 " + elapsedMillis + "ms");
+    }
+
+
+    /**
+     *  生成流量并写入 pcap 文件
+     * @param output 输出文件
+     */
+    public void generate(File output) throws IOException {
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录：" + parent);
+        }
+        try (PcapFileWriter pcapWriter = new PcapFileWriter(output)) {
+            this.writer = pcapWriter;
+            for (int client = 0; client < config.getClients(); client++) {
+                schedule(exponential(config.getThinkMicros() * 1000), OPEN, new Connection(client, config.getBrokerPort()), null);
+            }
+            Event event;
+            while ((event = events.poll()) != null) {
+                flush(event.time);
+                handle(event);
+            }
+            flush(Long.MAX_VALUE);
+        }
+    }
+
+
+    private void handle(Event event) throws IOException {
+        Connection conn = event.connection;
+        switch (event.type) {
+            case OPEN:
+                open(conn, event.time);
+                break;
+            case SEND:
+                send(conn, event.time);
+                break;
+            case RESPONSE:
+                respond(conn, event.request, event.time);
+                break;
+            case CLOSE:
+                close(conn, event.time);
+                break;
+            default:
+                throw new IllegalStateException("未知事件类型：" + event.type);
+        }
+    }
+
+
+    /**
+     *  建立连接，完成三次握手
+     */
+    private void open(Connection conn, long time) {
+        connections++;
+        conn.clientPort = 32768 + (portCounter++ % 28000);
+        conn.brokerIp = BROKER_IP_BASE + (int) ((conn.client + conn.generation) % config.getBrokers());
+        conn.clientSeq = random.nextInt() & 0xffffffffL;
+        conn.brokerSeq = random.nextInt() & 0xffffffffL;
+        conn.sent = 0;
+        conn.inflight = 0;
+        conn.lastResponseTime = 0;
+        conn.waiting = false;
+        emitControl(conn, true, time, TcpSegmentEncoder.SYN, conn.clientSeq, 0);
+        emitControl(conn, false, time + RTT_NANOS / 2, TcpSegmentEncoder.SYN | TcpSegmentEncoder.ACK, conn.brokerSeq, conn.clientSeq + 1);
+        conn.clientSeq++;
+        conn.brokerSeq++;
+        emitControl(conn, true, time + RTT_NANOS, TcpSegmentEncoder.ACK, conn.clientSeq, conn.brokerSeq);
+        schedule(time + RTT_NANOS + 1000, SEND, conn, null);
+    }
+
+
+    /**
+     *  客户端发送请求，连接请求数达到上限或生成结束时关闭连接，等待响应的请求数达到流水线深度时暂停发送
+     */
+    private void send(Connection conn, long time) {
+        if (stopping || conn.sent >= config.getRequestsPerConnection()) {
+            conn.closing = true;
+            if (conn.inflight == 0) {
+                schedule(time, CLOSE, conn, null);
+            }
+            return;
+        }
+        if (conn.inflight >= config.getPipelining()) {
+            conn.waiting = true;
+            return;
+        }
+        Request request = newRequest(conn);
+        byte[] frame = KafkaFrames.requestFrame(request.body, request.version, request.correlationId, conn.clientId);
+        long end = emitData(conn, true, time, frame);
+        emitControl(conn, false, end + RTT_NANOS / 2, TcpSegmentEncoder.ACK, conn.brokerSeq, conn.clientSeq);
+        conn.sent++;
+        conn.inflight++;
+        requests++;
+        apiCounts.merge(request.apiKey, 1L, Long::sum);
+        if ((config.getRequests() > 0 && requests >= config.getRequests())
+                || (config.getTargetBytes() > 0 && emittedBytes >= config.getTargetBytes())) {
+            stopping = true;
+        }
+
+        long responseTime = Math.max(conn.lastResponseTime + 1000, end + RTT_NANOS / 2 + exponential(config.getLatencyMicros() * 1000));
+        conn.lastResponseTime = responseTime;
+        schedule(responseTime, RESPONSE, conn, request);
+        if (conn.inflight < config.getPipelining()) {
+            schedule(end + exponential(config.getThinkMicros() * 1000), SEND, conn, null);
+        } else {
+            conn.waiting = true;
+        }
+    }
+
+
+    /**
+     *  broker 返回响应
+     */
+    private void respond(Connection conn, Request request, long time) {
+        ApiMessage body;
+        switch (request.apiKey) {
+            case PRODUCE:
+                body = KafkaFrames.produceResponse(request.topic, request.offset);
+                break;
+            case FETCH:
+                body = KafkaFrames.fetchResponse(request.topic, request.version, request.records);
+                break;
+            default:
+                body = KafkaFrames.metadataResponse(request.topic, config.getBrokers() * 2);
+        }
+        byte[] frame = KafkaFrames.responseFrame(request.apiKey, body, request.version, request.correlationId);
+        long end = emitData(conn, false, time, frame);
+        emitControl(conn, true, end + RTT_NANOS / 2, TcpSegmentEncoder.ACK, conn.clientSeq, conn.brokerSeq);
+        conn.inflight--;
+        if (conn.closing) {
+            if (conn.inflight == 0) {
+                schedule(end + RTT_NANOS, CLOSE, conn, null);
+            }
+        } else if (conn.waiting) {
+            conn.waiting = false;
+            schedule(end + exponential(config.getThinkMicros() * 1000), SEND, conn, null);
+        }
+    }
+
+
+    /**
+     *  客户端关闭连接，完成四次挥手，生成未结束时使用新的端口重新建立连接
+     */
+    private void close(Connection conn, long time) {
+        emitControl(conn, true, time, TcpSegmentEncoder.FIN | TcpSegmentEncoder.ACK, conn.clientSeq, conn.brokerSeq);
+        emitControl(conn, false, time + RTT_NANOS / 2, TcpSegmentEncoder.FIN | TcpSegmentEncoder.ACK, conn.brokerSeq, conn.clientSeq + 1);
+        emitControl(conn, true, time + RTT_NANOS, TcpSegmentEncoder.ACK, conn.clientSeq + 1, conn.brokerSeq + 1);
+        conn.closing = false;
+        if (!stopping) {
+            conn.generation++;
+            schedule(time + RTT_NANOS + exponential(config.getThinkMicros() * 1000), OPEN, conn, null);
+        }
+    }
+
+
+    private Request newRequest(Connection conn) {
+        Request request = new Request();
+        request.apiKey = apiTable[random.nextInt(apiTable.length)];
+        request.correlationId = conn.correlationId++;
+        int topic = random.nextInt(topicOffsets.length);
+        request.topic = "topic-" + topic;
+        request.records = batches[random.nextInt(batches.length)];
+        switch (request.apiKey) {
+            case PRODUCE:
+                request.version = config.getProduceVersion();
+                request.body = KafkaFrames.produceRequest(request.topic, request.records);
+                request.offset = topicOffsets[topic];
+                topicOffsets[topic] += config.getRecordsPerBatch();
+                break;
+            case FETCH:
+                request.version = config.getFetchVersion();
+                request.offset = topicOffsets[topic];
+                request.body = KafkaFrames.fetchRequest(request.topic, request.version, request.offset);
+                break;
+            default:
+                request.version = config.getMetadataVersion();
+                request.body = KafkaFrames.metadataRequest(request.topic);
+        }
+        return request;
+    }
+
+
+    /**
+     *  按 mss 切分数据包并生成分片，同时施加乱序、重传与丢失
+     * @return 返回最后一个分片的时间
+     */
+    private long emitData(Connection conn, boolean fromClient, long time, byte[] frame) {
+        int count = (frame.length + config.getMss() - 1) / config.getMss();
+        long[] times = new long[count];
+        long current = time;
+        for (int i = 0; i < count; i++) {
+            times[i] = current;
+            current += wireNanos(Math.min(config.getMss(), frame.length - i * config.getMss()));
+        }
+        for (int i = 0; i + 1 < count; i++) {
+            if (chance(config.getReorderRate())) {
+                long swap = times[i];
+                times[i] = times[i + 1];
+                times[i + 1] = swap;
+                reorderedSegments++;
+            }
+        }
+        long seq = fromClient ? conn.clientSeq : conn.brokerSeq;
+        long ack = fromClient ? conn.brokerSeq : conn.clientSeq;
+        for (int i = 0; i < count; i++) {
+            int offset = i * config.getMss();
+            int length = Math.min(config.getMss(), frame.length - offset);
+            long segmentSeq = (seq + offset) & 0xffffffffL;
+            byte[] packet = conn.encode(encoder, fromClient, segmentSeq, ack, TcpSegmentEncoder.ACK | TcpSegmentEncoder.PSH, frame, offset, length);
+            if (chance(config.getLossRate())) {
+                lostSegments++;
+            } else {
+                enqueue(times[i], packet);
+            }
+            if (chance(config.getRetransmitRate())) {
+                retransmittedSegments++;
+                enqueue(times[i] + config.getRetransmitDelayMicros() * 1000, packet);
+            }
+        }
+        if (fromClient) {
+            conn.clientSeq = (seq + frame.length) & 0xffffffffL;
+        } else {
+            conn.brokerSeq = (seq + frame.length) & 0xffffffffL;
+        }
+        return current;
+    }
+
+
+    private void emitControl(Connection conn, boolean fromClient, long time, int flags, long seq, long ack) {
+        enqueue(time, conn.encode(encoder, fromClient, seq & 0xffffffffL, ack & 0xffffffffL, flags, null, 0, 0));
+    }
+
+
+    private void enqueue(long time, byte[] packet) {
+        pending.add(new Segment(time, order++, packet));
+        emittedBytes += PcapFileWriter.RECORD_HEADER_SIZE + packet.length;
+    }
+
+
+    /**
+     *  写入时间不晚于 time 的数据包，后续事件生成的数据包时间均不早于当前事件时间
+     */
+    private void flush(long time) throws IOException {
+        long base = config.getStartEpochMillis() * 1_000_000L;
+        while (!pending.isEmpty() && pending.peek().time <= time) {
+            Segment segment = pending.poll();
+            long timestamp = base + segment.time;
+            writer.write(timestamp / 1_000_000_000L, (int) (timestamp % 1_000_000_000L), segment.packet, 0, segment.packet.length);
+        }
+    }
+
+
+    private void schedule(long time, int type, Connection conn, Request request) {
+        events.add(new Event(time, order++, type, conn, request));
+    }
+
+
+    private long exponential(long meanNanos) {
+        if (meanNanos <= 0) {
+            return 0;
+        }
+        return (long) (-meanNanos * Math.log(1 - random.nextDouble()));
+    }
+
+
+    private boolean chance(double rate) {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+
+    /**
+     *  计算分片按 10Gbps 线速发送所需的时间
+     */
+    private static long wireNanos(int payloadLength) {
+        return (payloadLength + TcpSegmentEncoder.HEADER_SIZE) * 8L / 10 + 1;
+    }
+
+
+    public String summary() {
+        return "请求数 " + requests + " " + apiCounts + "，连接数 " + connections
+                + "，数据包数 " + writer.getWrittenPackets() + "，文件大小 " + writer.getWrittenBytes()
+                + "，乱序分片 " + reorderedSegments + "，重传分片 " + retransmittedSegments + "，丢失分片 " + lostSegments;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getWrittenPackets() {
+        return writer.getWrittenPackets();
+    }
+
+    public long getWrittenBytes() {
+        return writer.getWrittenBytes();
+    }
+
+
+    private static final class Connection {
+
+        private final int client;
+
+        private final int clientIp;
+
+        private final String clientId;
+
+        private final int brokerPort;
+
+        private int generation;
+
+        private int clientPort;
+
+        private int brokerIp;
+
+        private long clientSeq;
+
+        private long brokerSeq;
+
+        private int correlationId;
+
+        private int sent;
+
+        private int inflight;
+
+        private long lastResponseTime;
+
+        private boolean waiting;
+
+        private boolean closing;
+
+        private Connection(int client, int brokerPort) {
+            this.client = client;
+            this.brokerPort = brokerPort;
+            this.clientIp = CLIENT_IP_BASE + ((client / 250) << 8) + client % 250 + 1;
+            this.clientId = "client-" + client;
+        }
+
+        private byte[] encode(TcpSegmentEncoder encoder, boolean fromClient, long seq, long ack, int flags,
+                              byte[] payload, int offset, int length) {
+            return fromClient
+                    ? encoder.encode(clientIp, clientPort, brokerIp, brokerPort, seq, ack, flags, payload, offset, length, true)
+                    : encoder.encode(brokerIp, brokerPort, clientIp, clientPort, seq, ack, flags, payload, offset, length, false);
+        }
+    }
+
+
+    private static final class Request {
+
+        private ApiKeys apiKey;
+
+        private short version;
+
+        private int correlationId;
+
+        private String topic;
+
+        private long offset;
+
+        private MemoryRecords records;
+
+        private ApiMessage body;
+    }
+
+
+    private static final class Event implements Comparable<Event> {
+
+        private final long time;
+
+        private final long order;
+
+        private final int type;
+
+        private final Connection connection;
+
+        private final Request request;
+
+        private Event(long time, long order, int type, Connection connection, Request request) {
+            this.time = time;
+            this.order = order;
+            this.type = type;
+            this.connection = connection;
+            this.request = request;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+
+
+    private static final class Segment implements Comparable<Segment> {
+
+        private final long time;
+
+        private final long order;
+
+        private final byte[] packet;
+
+        private Segment(long time, long order, byte[] packet) {
+            this.time = time;
+            this.order = order;
+            this.packet = packet;
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cn.rtm.protocol.parser.kafka.generator;
+
+/**
+ *  以太网/IPv4/TCP 数据包编码，直接按字节写入首部并计算校验和，避免通过 pcap4j builder 构造数据包的开销，
+ *  tcp 首部不携带选项，以太网帧不填充
+ */
+class TcpSegmentEncoder {
+
+    static final int FIN = 0x01;
+
+    static final int SYN = 0x02;
+
+    static final int RST = 0x04;
+
+    static final int PSH = 0x08;
+
+    static final int ACK = 0x10;
+
+    static final int HEADER_SIZE = 14 + 20 + 20;
+
+    private static final byte[] CLIENT_MAC = {0x02, 0, 0, 0, 0, 0x01};
+
+    private static final byte[] BROKER_MAC = {0x02, 0, 0, 0, 0, 0x02};
+
+    private int ipId;
+
+
+    /**
+     *  编码数据包
+     * @param srcIp 发送端 ip
+     * @param srcPort 发送端端口
+     * @param destIp 接收端 ip
+     * @param destPort 接收端端口
+     * @param seq tcp seq
+     * @param ack tcp ack，flags 不含 {@link #ACK} 时写入 0
+     * @param flags tcp 标志位
+     * @param payload tcp 负载来源
+     * @param offset 负载起始位置
+     * @param length 负载长度
+     * @param fromClient 是否由客户端发出，决定源/目的 mac 地址
+     * @return 返回以太网数据包
+     */
+    byte[] encode(int srcIp, int srcPort, int destIp, int destPort, long seq, long ack, int flags,
+                  byte[] payload, int offset, int length, boolean fromClient) {
+        byte[] packet = new byte[HEADER_SIZE + length];
+        System.arraycopy(fromClient ? BROKER_MAC : CLIENT_MAC, 0, packet, 0, 6);
+        System.arraycopy(fromClient ? CLIENT_MAC : BROKER_MAC, 0, packet, 6, 6);
+        packet[12] = 0x08;
+        packet[13] = 0x00;
+
+        int ip = 14;
+        int totalLength = 20 + 20 + length;
+        packet[ip] = 0x45;
+        writeShort(packet, ip + 2, totalLength);
+        writeShort(packet, ip + 4, ipId++ & 0xffff);
+        // don't fragment
+        packet[ip + 6] = 0x40;
+        packet[ip + 8] = 64;
+        packet[ip + 9] = 6;
+        writeInt(packet, ip + 12, srcIp);
+        writeInt(packet, ip + 16, destIp);
+        writeShort(packet, ip + 10, ~sum(packet, ip, 20, 0) & 0xffff);
+
+        int tcp = ip + 20;
+        writeShort(packet, tcp, srcPort);
+        writeShort(packet, tcp + 2, destPort);
+        writeInt(packet, tcp + 4, (int) seq);
+        writeInt(packet, tcp + 8, (flags & ACK) != 0 ? (int) ack : 0);
+        packet[tcp + 12] = 0x50;
+        packet[tcp + 13] = (byte) flags;
+        writeShort(packet, tcp + 14, 65535);
+        if (length > 0) {
+            System.arraycopy(payload, offset, packet, tcp + 20, length);
+        }
+        long pseudo = (srcIp >>> 16) + (srcIp & 0xffff) + (destIp >>> 16) + (destIp & 0xffff) + 6 + 20 + length;
+        writeShort(packet, tcp + 16, ~sum(packet, tcp, 20 + length, pseudo) & 0xffff);
+        return packet;
+    }
+
+
+    /**
+     *  计算反码求和，结果折叠为 16 位
+     */
+    private static int sum(byte[] data, int offset, int length, long initial) {
+        long sum = initial;
+        int end = offset + length - 1;
+        for (int i = offset; i < end; i += 2) {
+            sum += ((data[i] & 0xff) << 8) | (data[i + 1] & 0xff);
+        }
+        if ((length & 1) != 0) {
+            sum += (data[offset + length - 1] & 0xff) << 8;
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xffff) + (sum >>> 16);
+        }
+        return (int) sum;
+    }
+
+    private static void writeShort(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,116 @@
+package cn.rtm.protocol.parser.kafka.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.*;
+
+/**
+ *  将回放结果与基线结果对比，指标变化超过容忍比例判定为性能回退
+ *
+ * <ul>
+ * <li> 吞吐类指标（packetsPerSecond、framesPerSecond、recordsPerSecond）越高越好，低于基线 (1 - 容忍比例) 倍判定为回退
+ * <li> 资源类指标（heapPeakBytes、allocatedBytesPerFrame、gcMillis）越低越好，高于基线 (1 + 容忍比例) 倍判定为回退
+ * <li> gcMillis 数值较小时波动较大，变化量不超过 {@value #GC_MILLIS_SLACK} 毫秒时不判定为回退或提升
+ * <li> 容忍比例优先取启动参数 --tolerance.指标名，其次取基线文件 tolerances 节点，最后按指标类型取默认值
+ * </ul>
+ */
+public class BaselineComparator {
+
+    public static final String OK = "OK";
+
+    public static final String IMPROVED = "IMPROVED";
+
+    public static final String REGRESSION = "REGRESSION";
+
+    public static final String MISSING = "MISSING";
+
+    static final long GC_MILLIS_SLACK = 50;
+
+    static final List<String> HIGHER_IS_BETTER = Arrays.asList("packetsPerSecond", "framesPerSecond", "recordsPerSecond");
+
+    static final List<String> LOWER_IS_BETTER = Arrays.asList("heapPeakBytes", "allocatedBytesPerFrame", "gcMillis");
+
+    private final double throughputTolerance;
+
+    private final double memoryTolerance;
+
+    private final Map<String, Double> overrides;
+
+    public BaselineComparator(double throughputTolerance, double memoryTolerance, Map<String, Double> overrides) {
+        this.throughputTolerance = throughputTolerance;
+        this.memoryTolerance = memoryTolerance;
+        this.overrides = overrides;
+    }
+
+
+    /**
+     *  对比回放结果与基线结果
+     * @param baseline 基线结果
+     * @param metrics 本次回放指标
+     * @return 返回各指标对比结果，key: 指标名称
+     */
+    public Map<String, Map<String, Object>> compare(JsonNode baseline, Map<String, Double> metrics) {
+        JsonNode baselineMetrics = baseline.path("metrics");
+        JsonNode baselineTolerances = baseline.path("tolerances");
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>(HIGHER_IS_BETTER);
+        names.addAll(LOWER_IS_BETTER);
+        for (String name : names) {
+            Double current = metrics.get(name);
+            JsonNode expected = baselineMetrics.get(name);
+            Map<String, Object> row = new LinkedHashMap<>();
+            if (current == null || expected == null || !expected.isNumber()) {
+                row.put("status", MISSING);
+                result.put(name, row);
+                continue;
+            }
+            double base = expected.asDouble();
+            double tolerance = toleranceOf(name, baselineTolerances);
+            boolean higherIsBetter = HIGHER_IS_BETTER.contains(name);
+            double change = base == 0 ? 0 : (current - base) / base;
+            boolean withinSlack = "gcMillis".equals(name) && Math.abs(current - base) <= GC_MILLIS_SLACK;
+            String status = OK;
+            if (withinSlack) {
+                row.put("slack", GC_MILLIS_SLACK);
+            } else if (higherIsBetter ? current < base * (1 - tolerance) : current > base * (1 + tolerance)) {
+                status = REGRESSION;
+            } else if (higherIsBetter ? current > base * (1 + tolerance) : current < base * (1 - tolerance)) {
+                status = IMPROVED;
+            }
+            row.put("baseline", base);
+            row.put("current", current);
+            row.put("change", Math.round(change * 10000) / 10000.0);
+            row.put("tolerance", tolerance);
+            row.put("status", status);
+            result.put(name, row);
+        }
+        return result;
+    }
+
+
+    private double toleranceOf(String name, JsonNode baselineTolerances) {
+        Double override = overrides.get(name);
+        if (override != null) {
+            return override;
+        }
+        JsonNode tolerance = baselineTolerances.get(name);
+        if (tolerance != null && tolerance.isNumber()) {
+            return tolerance.asDouble();
+        }
+        return HIGHER_IS_BETTER.contains(name) ? throughputTolerance : memoryTolerance;
+    }
+
+
+    /**
+     *  判断对比结果中是否存在性能回退
+     * @param comparison 对比结果
+     * @return 返回 true 则存在回退，反之 false
+     */
+    public static boolean hasRegression(Map<String, Map<String, Object>> comparison) {
+        for (Map<String, Object> row : comparison.values()) {
+            if (REGRESSION.equals(row.get("status"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,285 @@
+package cn.rtm.protocol.parser.kafka.harness;
+
+import ch.qos.logback.classic.Level;
+import cn.rtm.protocol.parser.core.context.ProtocolParseContext;
+import cn.rtm.protocol.parser.kafka.generator.GeneratorConfig;
+import cn.rtm.protocol.parser.kafka.generator.KafkaTrafficGenerator;
+import cn.rtm.protocol.parser.protocols.kafka.filter.KafkaFrameFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.LoggerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.*;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ *  端到端吞吐与内存回归测试工具，将 pcap 文件回放至完整的 {@code KafkaProtocolParseHandler} 解析链路，提取数据直接丢弃，
+ *  统计吞吐、堆内存峰值、单帧内存分配量与 GC 耗时，结果以 json 格式输出，并可与基线结果对比，存在回退时以状态码 1 退出
+ *
+ * <ul>
+ * <li> --input：回放的 pcap 文件，未指定则通过 {@link KafkaTrafficGenerator} 生成，生成参数以 --gen. 为前缀，如 --gen.requests=50000
+ * <li> --warmup、--iterations：预热与计量的回放次数，每次回放使用新的解析链路，指标取计量回放的中位数，堆内存峰值取最大值
+ * <li> --output：结果文件，默认 target/harness/result.json
+ * <li> --baseline：基线结果文件，通常为之前某次运行的结果文件，可在其中增加 tolerances 节点指定各指标的容忍比例
+ * <li> --tolerance、--memoryTolerance：吞吐类与资源类指标的默认容忍比例，--tolerance.指标名 单独指定某个指标
+ * <li> --updateBaseline=true：将本次结果写入基线文件
+ * <li> --listenPorts：broker 端口，默认 9092,9094；--logLevel：日志级别，默认 WARN，避免日志输出影响计量
+ * <li> --filter：解析前过滤表达式，用于对比过滤前后的吞吐
+ * </ul>
+ *
+ *  运行示例：mvn test-compile exec:java -Dexec.classpathScope=test
+ *  -Dexec.mainClass=cn.rtm.protocol.parser.kafka.harness.ReplayHarness -Dexec.args="--baseline=perf/baseline.json"
+ */
+public class ReplayHarness {
+
+    private static final String DEFAULT_INPUT = "target/harness/kafka-traffic.pcap";
+
+    private static final String DEFAULT_OUTPUT = "target/harness/result.json";
+
+    static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws IOException {
+        List<String> generatorArgs = new ArrayList<>();
+        Map<String, String> options = parseOptions(args, generatorArgs);
+        File input = inputOf(options, generatorArgs);
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+        int iterations = Math.max(1, Integer.parseInt(options.getOrDefault("iterations", "3")));
+        List<Integer> listenPorts = listenPortsOf(options);
+        KafkaFrameFilter frameFilter = frameFilterOf(options);
+
+        for (int i = 0; i < warmup; i++) {
+            Map<String, Object> run = measure(input, listenPorts, frameFilter);
+            System.out.println("预热 " + (i + 1) + "：" + run);
+        }
+        List<Map<String, Object>> runs = new ArrayList<>(iterations);
+        for (int i = 0; i < iterations; i++) {
+            Map<String, Object> run = measure(input, listenPorts, frameFilter);
+            System.out.println("计量 " + (i + 1) + "：" + run);
+            runs.add(run);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("label", options.getOrDefault("label", input.getName()));
+        result.put("timestamp", Instant.now().toString());
+        result.put("input", input.getPath());
+        result.put("filter", frameFilter == null ? null : frameFilter.getExpression());
+        result.put("inputBytes", input.length());
+        result.put("java", System.getProperty("java.version"));
+        result.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        result.put("warmup", warmup);
+        result.put("iterations", iterations);
+        Map<String, Double> metrics = aggregate(runs);
+        result.put("metrics", metrics);
+        result.put("runs", runs);
+
+        boolean regression = false;
+        String baselinePath = options.get("baseline");
+        File baselineFile = baselinePath == null ? null : new File(baselinePath);
+        if (baselineFile != null && baselineFile.exists()) {
+            JsonNode baseline = MAPPER.readTree(baselineFile);
+            Map<String, Double> overrides = new HashMap<>();
+            options.forEach((key, value) -> {
+                if (key.startsWith("tolerance.")) {
+                    overrides.put(key.substring("tolerance.".length()), Double.parseDouble(value));
+                }
+            });
+            BaselineComparator comparator = new BaselineComparator(
+                    Double.parseDouble(options.getOrDefault("tolerance", "0.10")),
+                    Double.parseDouble(options.getOrDefault("memoryTolerance", "0.25")), overrides);
+            Map<String, Map<String, Object>> comparison = comparator.compare(baseline, metrics);
+            result.put("baseline", baselineFile.getPath());
+            result.put("comparison", comparison);
+            regression = BaselineComparator.hasRegression(comparison);
+            comparison.forEach((name, row) -> System.out.println(name + "：" + row));
+            Object baselineFrames = baseline.path("runs").path(0).path("frames").numberValue();
+            if (baselineFrames != null && !baselineFrames.toString().equals(String.valueOf(runs.get(0).get("frames")))) {
+                System.out.println("警告：解析帧数与基线不一致，基线 " + baselineFrames + "，本次 " + runs.get(0).get("frames") + "，输入或解析逻辑可能已变化");
+            }
+        } else if (baselineFile != null) {
+            System.out.println("基线文件不存在：" + baselineFile + "，跳过对比");
+        }
+
+        File output = new File(options.getOrDefault("output", DEFAULT_OUTPUT));
+        mkdirs(output);
+        MAPPER.writeValue(output, result);
+        System.out.println("结果已写入：" + output.getAbsolutePath());
+        if (baselineFile != null && Boolean.parseBoolean(options.getOrDefault("updateBaseline", "false"))) {
+            mkdirs(baselineFile);
+            result.remove("comparison");
+            result.remove("baseline");
+            MAPPER.writeValue(baselineFile, result);
+            System.out.println("基线已更新：" + baselineFile.getAbsolutePath());
+            regression = false;
+        }
+        if (regression) {
+            System.out.println("存在性能回退");
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     *  解析 --key=value 形式的启动参数并设置日志级别
+     * @param args 启动参数
+     * @param generatorArgs 存储以 --gen. 为前缀的流量生成参数，已去除前缀
+     * @return 返回其余参数，key: 参数名
+     */
+    static Map<String, String> parseOptions(String[] args, List<String> generatorArgs) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value：" + arg);
+            }
+            if (arg.startsWith("--gen.")) {
+                generatorArgs.add("--" + arg.substring("--gen.".length()));
+            } else {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.toLevel(options.getOrDefault("logLevel", "WARN")));
+        return options;
+    }
+
+
+    static List<Integer> listenPortsOf(Map<String, String> options) {
+        List<Integer> listenPorts = new ArrayList<>();
+        for (String port : options.getOrDefault("listenPorts", "9092,9094").split(",")) {
+            listenPorts.add(Integer.parseInt(port.trim()));
+        }
+        return listenPorts;
+    }
+
+
+    /**
+     *  获取解析前过滤器，未指定 --filter 则返回 null
+     */
+    static KafkaFrameFilter frameFilterOf(Map<String, String> options) {
+        String expression = options.get("filter");
+        return expression == null ? null : KafkaFrameFilter.compile(expression);
+    }
+
+
+    /**
+     *  获取回放文件，未指定 --input 则按 --gen. 参数生成
+     */
+    static File inputOf(Map<String, String> options, List<String> generatorArgs) throws IOException {
+        String path = options.get("input");
+        if (path != null) {
+            File input = new File(path);
+            if (!input.isFile()) {
+                throw new IOException("回放文件不存在：" + input.getAbsolutePath());
+            }
+            return input;
+        }
+        if (generatorArgs.stream().noneMatch(arg -> arg.startsWith("--output="))) {
+            generatorArgs.add("--output=" + DEFAULT_INPUT);
+        }
+        if (generatorArgs.stream().noneMatch(arg -> arg.startsWith("--requests=") || arg.startsWith("--targetBytes="))) {
+            generatorArgs.add("--requests=50000");
+        }
+        GeneratorConfig config = GeneratorConfig.fromArgs(generatorArgs.toArray(new String[0]));
+        KafkaTrafficGenerator generator = new KafkaTrafficGenerator(config);
+        File input = new File(config.getOutput());
+        generator.generate(input);
+        System.out.println("已生成回放文件：" + generator.summary());
+        return input;
+    }
+
+
+    /**
+     *  执行一次回放并计量，回放前执行 GC 并重置内存池峰值，内存分配量取当前线程的分配字节数
+     */
+    private static Map<String, Object> measure(File input, List<Integer> listenPorts, KafkaFrameFilter frameFilter) throws IOException {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long gcMillisBefore = gcMillis();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        ReplayPipeline pipeline = new ReplayPipeline(listenPorts, ProtocolParseContext.DEFAULT_ENTRY_TIMEOUT_MILLIS, frameFilter);
+        pipeline.replay(input);
+
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long gcMillis = gcMillis() - gcMillisBefore;
+        long heapPeak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            heapPeak += pool.getPeakUsage().getUsed();
+        }
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("elapsedMillis", elapsedNanos / 1_000_000);
+        run.put("packets", pipeline.getPackets());
+        run.put("frames", pipeline.getFrames());
+        run.put("records", pipeline.getRecords());
+        run.put("packetsPerSecond", round(pipeline.getPackets() / seconds));
+        run.put("framesPerSecond", round(pipeline.getFrames() / seconds));
+        run.put("recordsPerSecond", round(pipeline.getRecords() / seconds));
+        run.put("megabytesPerSecond", round(pipeline.getBytes() / seconds / (1 << 20)));
+        run.put("heapPeakBytes", heapPeak);
+        run.put("allocatedBytesPerFrame", allocated < 0 || pipeline.getFrames() == 0 ? 0 : allocated / pipeline.getFrames());
+        run.put("gcMillis", gcMillis);
+        return run;
+    }
+
+
+    /**
+     *  汇总计量回放的指标，堆内存峰值取最大值，其余取中位数
+     */
+    private static Map<String, Double> aggregate(List<Map<String, Object>> runs) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>(BaselineComparator.HIGHER_IS_BETTER);
+        names.add("megabytesPerSecond");
+        names.addAll(BaselineComparator.LOWER_IS_BETTER);
+        for (String name : names) {
+            double[] values = new double[runs.size()];
+            for (int i = 0; i < runs.size(); i++) {
+                values[i] = ((Number) runs.get(i).get(name)).doubleValue();
+            }
+            Arrays.sort(values);
+            metrics.put(name, "heapPeakBytes".equals(name) ? values[values.length - 1] : values[values.length / 2]);
+        }
+        return metrics;
+    }
+
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+
+    static void mkdirs(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录：" + parent);
+        }
+    }
+}
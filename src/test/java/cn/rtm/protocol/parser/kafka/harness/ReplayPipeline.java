@@ -0,0 +1,188 @@
+package cn.rtm.protocol.parser.kafka.harness;
+
+import cn.rtm.protocol.parser.DataParseExtractConsumer;
+import cn.rtm.protocol.parser.ProtocolParseData;
+import cn.rtm.protocol.parser.core.context.ProtocolParseContext;
+import cn.rtm.protocol.parser.core.metrics.StateSizeProvider;
+import cn.rtm.protocol.parser.core.pcap.PcapFileReader;
+import cn.rtm.protocol.parser.core.pcap.PcapFileWriter;
+import cn.rtm.protocol.parser.core.pcap.PcapRecord;
+import cn.rtm.protocol.parser.core.reassemble.tcp.TcpPacketReassemble;
+import cn.rtm.protocol.parser.core.util.ByteUtils;
+import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParseHandler;
+import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
+import cn.rtm.protocol.parser.protocols.kafka.filter.KafkaFrameFilter;
+import cn.rtm.protocol.parser.protocols.kafka.parser.request.KafkaRequestParser;
+import cn.rtm.protocol.parser.protocols.kafka.parser.response.KafkaResponseBodyParser;
+import org.pcap4j.packet.EthernetPacket;
+import org.pcap4j.packet.IllegalRawDataException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  离线回放的解析链路，与 {@code KafkaProtocolParseConfiguration} 装配的组件一致，提取的数据仅计数后丢弃，
+ *  排除写入端对解析吞吐的影响
+ */
+public class ReplayPipeline implements StateSizeProvider {
+
+    private final TcpPacketReassemble packetReassemble = new TcpPacketReassemble();
+
+    private final ProtocolParseContext protocolContext;
+
+    private final KafkaProtocolParseHandler handler;
+
+    private volatile long packets;
+
+    private volatile long bytes;
+
+    private volatile long frames;
+
+    private volatile long records;
+
+    /**
+     *  最近一次回放的首个与最后一个数据包的抓包时间，不含时间偏移
+     */
+    private Instant firstTimestamp;
+
+    private Instant lastTimestamp;
+
+    public ReplayPipeline(List<Integer> listenPorts) {
+        this(listenPorts, ProtocolParseContext.DEFAULT_ENTRY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param listenPorts broker 端口
+     * @param contextTimeoutMillis 未收到响应的请求在上下文中的保留时间
+     */
+    public ReplayPipeline(List<Integer> listenPorts, long contextTimeoutMillis) {
+        this(listenPorts, contextTimeoutMillis, null);
+    }
+
+    /**
+     * @param listenPorts broker 端口
+     * @param contextTimeoutMillis 未收到响应的请求在上下文中的保留时间
+     * @param frameFilter 解析前过滤器，为 null 则解析全部请求
+     */
+    public ReplayPipeline(List<Integer> listenPorts, long contextTimeoutMillis, KafkaFrameFilter frameFilter) {
+        this.protocolContext = new ProtocolParseContext(contextTimeoutMillis);
+        DataParseExtractConsumer<List<ProtocolParseData>> nullSink = extractData -> records += extractData.size();
+        this.handler = new KafkaProtocolParseHandler.Builder(packetReassemble, new KafkaRequestParser(protocolContext),
+                new KafkaResponseBodyParser(protocolContext), nullSink, listenPorts)
+                .frameFilter(frameFilter)
+                .build();
+    }
+
+
+    /**
+     *  回放 pcap 文件中的全部数据包
+     * @param input pcap 文件，链路类型须为以太网
+     */
+    public void replay(File input) throws IOException {
+        replay(input, Duration.ZERO, 0);
+    }
+
+
+    /**
+     *  回放 pcap 文件中的全部数据包，抓包时间与 tcp seq/ack 加上指定偏移，用于重复回放同一文件时保持抓包时间递增，
+     *  并避免分片缓存、请求上下文等以 seq/ack 为 key 的状态在多次回放之间复用而掩盖泄漏
+     * @param input pcap 文件，链路类型须为以太网
+     * @param shift 抓包时间偏移
+     * @param sequenceOffset tcp seq/ack 偏移，为 0 则不修改数据包
+     */
+    public void replay(File input, Duration shift, int sequenceOffset) throws IOException {
+        firstTimestamp = null;
+        try (PcapFileReader reader = new PcapFileReader(input)) {
+            if (reader.getLinkType() != PcapFileWriter.LINK_TYPE_ETHERNET) {
+                throw new IOException("仅支持以太网链路类型的 pcap 文件，当前链路类型：" + reader.getLinkType());
+            }
+            PcapRecord record;
+            while ((record = reader.read()) != null) {
+                byte[] data = record.getData();
+                if (firstTimestamp == null) {
+                    firstTimestamp = record.getTimestamp();
+                }
+                lastTimestamp = record.getTimestamp();
+                packets++;
+                bytes += data.length;
+                if (sequenceOffset != 0) {
+                    shiftSequence(data, sequenceOffset);
+                }
+                KafkaProtocolParsedMessage message;
+                try {
+                    message = handler.handle(EthernetPacket.newPacket(data, 0, data.length), lastTimestamp.plus(shift));
+                } catch (IllegalRawDataException e) {
+                    continue;
+                }
+                if (message != null) {
+                    frames++;
+                }
+            }
+        }
+    }
+
+    /**
+     *  对以太网/IPv4/TCP 数据包的 seq 与 ack 增加偏移，双向数据包偏移一致，请求与响应的对应关系不变，tcp 校验和不做修正
+     */
+    private static void shiftSequence(byte[] data, int offset) {
+        if (data.length < 14 + 20 || data[12] != 0x08 || data[13] != 0x00 || data[14 + 9] != 6) {
+            return;
+        }
+        int tcp = 14 + (data[14] & 0x0f) * 4;
+        if (data.length < tcp + 20) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        ByteUtils.writeUnsignedInt(buffer, tcp + 4, ByteUtils.readUnsignedInt(buffer, tcp + 4) + offset);
+        if ((data[tcp + 13] & 0x10) != 0) {
+            ByteUtils.writeUnsignedInt(buffer, tcp + 8, ByteUtils.readUnsignedInt(buffer, tcp + 8) + offset);
+        }
+    }
+
+
+    /**
+     *  获取最近一次回放的抓包时间跨度
+     * @return 返回首个与最后一个数据包的抓包时间差
+     */
+    public Duration lastReplaySpan() {
+        return firstTimestamp == null ? Duration.ZERO : Duration.between(firstTimestamp, lastTimestamp);
+    }
+
+
+    @Override
+    public Map<String, Long> stateSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>(packetReassemble.stateSizes());
+        sizes.putAll(protocolContext.stateSizes());
+        sizes.putAll(handler.stateSizes());
+        return sizes;
+    }
+
+    public TcpPacketReassemble getPacketReassemble() {
+        return packetReassemble;
+    }
+
+    public ProtocolParseContext getProtocolContext() {
+        return protocolContext;
+    }
+
+    public long getPackets() {
+        return packets;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+}
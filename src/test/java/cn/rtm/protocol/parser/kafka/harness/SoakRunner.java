@@ -0,0 +1,233 @@
+package cn.rtm.protocol.parser.kafka.harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  长时间运行测试工具，使用同一条解析链路循环回放 pcap 文件，定期采样各组件 {@code StateSizeProvider#stateSizes()} 返回的内部结构规模，
+ *  预热期结束后仍持续增长的结构判定为泄漏，结果以 json 格式输出，存在泄漏时以状态码 1 退出
+ *
+ * <ul>
+ * <li> --input、--gen.*：回放文件，与 {@link ReplayHarness} 一致
+ * <li> --duration：运行时长，默认 1h；--warmup：预热时长，默认为运行时长的 20%；--sampleInterval：采样间隔，默认 10s，时长支持 s、m、h 后缀或 ISO-8601 格式
+ * <li> --contextTimeout：未收到响应的请求在上下文中的保留时间，默认 60s，预热时长应大于该值
+ * <li> --maxGrowth、--slack：预热后最后三分之一采样的最大值超过前三分之一采样最大值的 (1 + maxGrowth) 倍加 slack 判定为泄漏，默认 0.2、64
+ * <li> --output：结果文件，默认 target/harness/soak.json
+ * </ul>
+ *
+ *  每次循环回放的抓包时间在上一次的基础上递增，保证基于抓包时间的超时清理正常工作；tcp seq/ack 按循环次数整体偏移，
+ *  使分片缓存、请求上下文的 key 在循环之间不重复，未清理的状态会随循环次数累积而暴露；堆内存使用量仅作参考，不参与泄漏判定
+ */
+public class SoakRunner {
+
+    private static final String DEFAULT_OUTPUT = "target/harness/soak.json";
+
+    private static final String HEAP_USED = "jvm.heapUsedBytes";
+
+    static final String OK = "OK";
+
+    static final String LEAK = "LEAK";
+
+    static final String INSUFFICIENT = "INSUFFICIENT_SAMPLES";
+
+    /**
+     *  判定泄漏所需的预热后最少采样数
+     */
+    private static final int MIN_SAMPLES = 6;
+
+    /**
+     *  每次循环回放的 tcp seq/ack 偏移增量，取奇数使多次循环的 key 互不重复
+     */
+    private static final int SEQUENCE_STRIDE = 0x01000193;
+
+    public static void main(String[] args) throws Exception {
+        List<String> generatorArgs = new ArrayList<>();
+        Map<String, String> options = ReplayHarness.parseOptions(args, generatorArgs);
+        File input = ReplayHarness.inputOf(options, generatorArgs);
+        Duration duration = parseDuration(options.getOrDefault("duration", "1h"));
+        Duration warmup = options.containsKey("warmup") ? parseDuration(options.get("warmup")) : duration.dividedBy(5);
+        Duration sampleInterval = parseDuration(options.getOrDefault("sampleInterval", "10s"));
+        Duration contextTimeout = parseDuration(options.getOrDefault("contextTimeout", "60s"));
+        double maxGrowth = Double.parseDouble(options.getOrDefault("maxGrowth", "0.2"));
+        long slack = Long.parseLong(options.getOrDefault("slack", "64"));
+        if (warmup.compareTo(contextTimeout) <= 0) {
+            System.out.println("警告：预热时长 " + warmup + " 不大于上下文超时时间 " + contextTimeout + "，上下文可能被误判为泄漏");
+        }
+
+        ReplayPipeline pipeline = new ReplayPipeline(ReplayHarness.listenPortsOf(options), contextTimeout.toMillis());
+        List<Map<String, Object>> samples = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soak-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> samples.add(sample(pipeline, start)), 0, sampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        long loops = 0;
+        Duration shift = Duration.ZERO;
+        long deadline = start + duration.toNanos();
+        while (System.nanoTime() < deadline) {
+            pipeline.replay(input, shift, (int) (loops * SEQUENCE_STRIDE));
+            loops++;
+            shift = shift.plus(pipeline.lastReplaySpan()).plusSeconds(1);
+            if (loops % 10 == 0) {
+                System.out.println("已循环回放 " + loops + " 次，" + sample(pipeline, start));
+            }
+        }
+        sampler.shutdown();
+        sampler.awaitTermination(sampleInterval.toMillis() * 2, TimeUnit.MILLISECONDS);
+        samples.add(sample(pipeline, start));
+
+        List<Map<String, Object>> snapshot;
+        synchronized (samples) {
+            snapshot = new ArrayList<>(samples);
+        }
+        Map<String, Map<String, Object>> structures = analyze(snapshot, warmup.toMillis(), maxGrowth, slack);
+        boolean leak = false;
+        for (Map.Entry<String, Map<String, Object>> entry : structures.entrySet()) {
+            System.out.println(entry.getKey() + "：" + entry.getValue());
+            leak |= LEAK.equals(entry.getValue().get("status"));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", Instant.now().toString());
+        result.put("input", input.getPath());
+        result.put("duration", duration.toString());
+        result.put("warmup", warmup.toString());
+        result.put("sampleInterval", sampleInterval.toString());
+        result.put("contextTimeout", contextTimeout.toString());
+        result.put("maxGrowth", maxGrowth);
+        result.put("slack", slack);
+        result.put("loops", loops);
+        result.put("packets", pipeline.getPackets());
+        result.put("frames", pipeline.getFrames());
+        result.put("records", pipeline.getRecords());
+        result.put("leak", leak);
+        result.put("structures", structures);
+        result.put("samples", snapshot);
+        File output = new File(options.getOrDefault("output", DEFAULT_OUTPUT));
+        ReplayHarness.mkdirs(output);
+        ReplayHarness.MAPPER.writeValue(output, result);
+        System.out.println("结果已写入：" + output.getAbsolutePath());
+        if (leak) {
+            System.out.println("存在持续增长的内部结构");
+            System.exit(1);
+        }
+    }
+
+
+    private static Map<String, Object> sample(ReplayPipeline pipeline, long start) {
+        Map<String, Object> sample = new LinkedHashMap<>();
+        sample.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        sample.put("packets", pipeline.getPackets());
+        sample.putAll(pipeline.stateSizes());
+        sample.put(HEAP_USED, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        return sample;
+    }
+
+
+    /**
+     *  分析各结构在预热期后的增长情况
+     * @param samples 采样数据
+     * @param warmupMillis 预热时长
+     * @param maxGrowth 允许的相对增长比例
+     * @param slack 允许的绝对增长量
+     * @return 返回各结构的增长情况，key: 结构名称
+     */
+    static Map<String, Map<String, Object>> analyze(List<Map<String, Object>> samples, long warmupMillis, double maxGrowth, long slack) {
+        List<Map<String, Object>> measured = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (Map<String, Object> sample : samples) {
+            sample.keySet().stream().filter(name -> !"elapsedMillis".equals(name) && !"packets".equals(name)).forEach(names::add);
+            if (((Number) sample.get("elapsedMillis")).longValue() >= warmupMillis) {
+                measured.add(sample);
+            }
+        }
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (String name : names) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            long warmupMax = 0;
+            for (Map<String, Object> sample : samples) {
+                if (((Number) sample.get("elapsedMillis")).longValue() < warmupMillis) {
+                    warmupMax = Math.max(warmupMax, valueOf(sample, name));
+                }
+            }
+            row.put("warmupMax", warmupMax);
+            if (measured.size() < MIN_SAMPLES) {
+                row.put("status", INSUFFICIENT);
+                result.put(name, row);
+                continue;
+            }
+            int third = measured.size() / 3;
+            long earlyMax = 0;
+            long lateMax = 0;
+            for (int i = 0; i < measured.size(); i++) {
+                long value = valueOf(measured.get(i), name);
+                if (i < third) {
+                    earlyMax = Math.max(earlyMax, value);
+                } else if (i >= measured.size() - third) {
+                    lateMax = Math.max(lateMax, value);
+                }
+            }
+            row.put("earlyMax", earlyMax);
+            row.put("lateMax", lateMax);
+            row.put("last", valueOf(measured.get(measured.size() - 1), name));
+            row.put("slopePerHour", Math.round(slopePerHour(measured, name)));
+            boolean growing = lateMax > earlyMax * (1 + maxGrowth) + slack;
+            row.put("status", HEAP_USED.equals(name) ? (growing ? "GROWING" : OK) : (growing ? LEAK : OK));
+            result.put(name, row);
+        }
+        return result;
+    }
+
+
+    /**
+     *  最小二乘法计算每小时增长量
+     */
+    private static double slopePerHour(List<Map<String, Object>> samples, String name) {
+        int n = samples.size();
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for (Map<String, Object> sample : samples) {
+            double x = ((Number) sample.get("elapsedMillis")).doubleValue() / 3_600_000d;
+            double y = valueOf(sample, name);
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+    }
+
+
+    private static long valueOf(Map<String, Object> sample, String name) {
+        Object value = sample.get(name);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+
+    /**
+     *  解析时长，支持 s、m、h 后缀以及 ISO-8601 格式
+     */
+    static Duration parseDuration(String value) {
+        String text = value.trim().toLowerCase();
+        if (text.startsWith("p")) {
+            return Duration.parse(text.toUpperCase());
+        }
+        long amount = Long.parseLong(text.substring(0, text.length() - 1));
+        switch (text.charAt(text.length() - 1)) {
+            case 's': return Duration.ofSeconds(amount);
+            case 'm': return Duration.ofMinutes(amount);
+            case 'h': return Duration.ofHours(amount);
+            default: throw new IllegalArgumentException("无法解析时长：" + value);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.record.CompressionType;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterExpressionParserTest {
+
+    private static final ByteBuffer PRODUCE = frame(KafkaFrames.produceRequest("orders",
+            KafkaFrames.records(CompressionType.NONE, 1, 16, 0L)), (short) 8, "billing-1");
+
+    private static final ByteBuffer FETCH = frame(KafkaFrames.fetchRequest("orders", (short) 11, 0L), (short) 11, "audit-1");
+
+
+    @Test
+    void andBindsTighterThanOr() {
+        String expression = "api = Produce or api = Fetch and clientId = \"billing-1\"";
+        assertEquals(Verdict.TRUE, evaluate(expression, PRODUCE));
+        assertEquals(Verdict.FALSE, evaluate(expression, FETCH));
+
+        String grouped = "(api = Produce or api = Fetch) and clientId = \"billing-1\"";
+        assertEquals(Verdict.TRUE, evaluate(grouped, PRODUCE));
+        assertEquals(Verdict.FALSE, evaluate(grouped, FETCH));
+    }
+
+
+    @Test
+    void notAppliesToNearestOperand() {
+        assertEquals(Verdict.FALSE, evaluate("not api = Produce and clientId = \"billing-1\"", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("not (api = Fetch and clientId = \"billing-1\")", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("not not api = Produce", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("api != Fetch", PRODUCE));
+    }
+
+
+    @Test
+    void keywordsAndFieldsAreCaseInsensitive() {
+        assertEquals(Verdict.TRUE, evaluate("API = produce AND CLIENTID STARTSWITH 'billing-'", PRODUCE));
+    }
+
+
+    @Test
+    void apiAcceptsProtocolNameEnumNameAndKey() {
+        assertEquals(Verdict.TRUE, evaluate("api in (Produce, API_VERSIONS)", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("api in (1, 0)", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("api in (1, 0)", FETCH));
+        assertEquals(Verdict.FALSE, evaluate("api in (Metadata, ApiVersions)", FETCH));
+    }
+
+
+    @Test
+    void stringOperatorsCompareRawBytes() {
+        assertEquals(Verdict.TRUE, evaluate("clientId startsWith \"billing-\"", PRODUCE));
+        assertEquals(Verdict.FALSE, evaluate("clientId startsWith \"billing-\"", FETCH));
+        assertEquals(Verdict.TRUE, evaluate("clientId endsWith '-1'", FETCH));
+        assertEquals(Verdict.TRUE, evaluate("clientId in (\"x\", \"audit-1\")", FETCH));
+        assertEquals(Verdict.FALSE, evaluate("clientId = \"audit\"", FETCH));
+        assertEquals(Verdict.TRUE, evaluate("topic startsWith ord", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("topic in (payments, orders)", FETCH));
+        assertEquals(Verdict.FALSE, evaluate("topic endsWith \"-dlq\"", FETCH));
+    }
+
+
+    @Test
+    void apiVersionSupportsComparisons() {
+        assertEquals(Verdict.TRUE, evaluate("apiVersion >= 8", PRODUCE));
+        assertEquals(Verdict.FALSE, evaluate("apiVersion > 8", PRODUCE));
+        assertEquals(Verdict.TRUE, evaluate("apiVersion <= 11", FETCH));
+        assertEquals(Verdict.FALSE, evaluate("apiVersion < 11", FETCH));
+        assertEquals(Verdict.TRUE, evaluate("apiVersion in (8, 11)", FETCH));
+    }
+
+
+    @Test
+    void unknownOperandsFollowThreeValuedLogic() {
+        ByteBuffer fetchById = frame(KafkaFrames.fetchRequest("orders", (short) 13, 0L), (short) 13, "audit-1");
+        assertEquals(Verdict.UNKNOWN, evaluate("topic = orders", fetchById));
+        assertEquals(Verdict.UNKNOWN, evaluate("not topic = orders", fetchById));
+        assertEquals(Verdict.FALSE, evaluate("topic = orders and api = Produce", fetchById));
+        assertEquals(Verdict.TRUE, evaluate("topic = orders or api = Fetch", fetchById));
+        assertEquals(Verdict.UNKNOWN, evaluate("topic = orders and api = Fetch", fetchById));
+    }
+
+
+    @Test
+    void rejectsSyntaxErrors() {
+        assertSyntaxError("owner = x");
+        assertSyntaxError("\"api\" = Produce");
+        assertSyntaxError("api ~ Produce");
+        assertSyntaxError("api = Produce and");
+        assertSyntaxError("(api = Produce");
+        assertSyntaxError("api = Produce)");
+        assertSyntaxError("api = Produce clientId = x");
+        assertSyntaxError("api in Produce");
+        assertSyntaxError("api in (Produce,)");
+        assertSyntaxError("api = NoSuchApi");
+        assertSyntaxError("api startsWith Pro");
+        assertSyntaxError("clientId > 3");
+        assertSyntaxError("apiVersion >= three");
+        assertSyntaxError("clientId = \"billing");
+        assertSyntaxError("clientId ! billing");
+        assertSyntaxError("clientId =");
+        assertThrows(IllegalArgumentException.class, () -> KafkaFrameFilter.compile(" "));
+    }
+
+
+    @Test
+    void errorReportsPosition() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> FilterExpressionParser.parse("api = Produce and owner = x"));
+        assertTrue(e.getMessage().contains("位置 18"), e.getMessage());
+    }
+
+
+    private static void assertSyntaxError(String expression) {
+        assertThrows(IllegalArgumentException.class, () -> FilterExpressionParser.parse(expression), expression);
+    }
+
+
+    private static Verdict evaluate(String expression, ByteBuffer frame) {
+        return FilterExpressionParser.parse(expression).evaluate(new RequestFrameView(frame));
+    }
+
+
+    private static ByteBuffer frame(ApiMessage body, short version, String clientId) {
+        byte[] frame = KafkaFrames.requestFrame(body, version, 1, clientId);
+        return ByteBuffer.wrap(frame, 4, frame.length - 4);
+    }
+}
@@ -0,0 +1,99 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import cn.rtm.protocol.parser.protocols.kafka.filter.KafkaFrameFilter.Decision;
+import org.apache.kafka.common.message.FetchRequestData;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.record.CompressionType;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaFrameFilterTest {
+
+    @Test
+    void clientIdMismatchRejectsWholeFlow() {
+        KafkaFrameFilter filter = KafkaFrameFilter.compile("clientId startsWith \"billing-\" and topic = orders");
+
+        assertEquals(Decision.REJECT_FLOW, filter.test(produce("audit-1", "orders")));
+        assertEquals(Decision.REJECT_FLOW, filter.test(fetch("audit-1", "orders", (short) 13)));
+    }
+
+
+    @Test
+    void perRequestMismatchRejectsOnlyFrame() {
+        assertEquals(Decision.REJECT_FRAME, KafkaFrameFilter.compile("clientId startsWith \"billing-\" and topic = orders")
+                .test(produce("billing-1", "payments")));
+        assertEquals(Decision.REJECT_FRAME, KafkaFrameFilter.compile("api = Produce").test(fetch("billing-1", "orders", (short) 11)));
+        // clientId 不满足但 api 可能满足，不能丢弃整个连接
+        assertEquals(Decision.REJECT_FRAME, KafkaFrameFilter.compile("clientId = \"billing-1\" or api = Produce")
+                .test(fetch("audit-1", "orders", (short) 11)));
+        assertEquals(Decision.REJECT_FRAME, KafkaFrameFilter.compile("not topic = orders").test(produce("billing-1", "orders")));
+    }
+
+
+    @Test
+    void matchingRequestIsAccepted() {
+        KafkaFrameFilter filter = KafkaFrameFilter.compile("api in (Produce, Fetch) and clientId startsWith \"billing-\" and topic = orders");
+
+        assertEquals(Decision.ACCEPT, filter.test(produce("billing-1", "orders")));
+        assertEquals(Decision.ACCEPT, filter.test(fetch("billing-1", "orders", (short) 12)));
+    }
+
+
+    @Test
+    void unknownFieldsAreAccepted() {
+        KafkaFrameFilter filter = KafkaFrameFilter.compile("topic = orders");
+
+        // fetch v13+ 仅携带 topicId
+        assertEquals(Decision.ACCEPT, filter.test(fetch("billing-1", "payments", (short) 13)));
+        // fetch 增量请求
+        FetchRequestData incremental = KafkaFrames.fetchRequest("payments", (short) 11, 0L).setSessionId(7).setSessionEpoch(3);
+        assertEquals(Decision.ACCEPT, filter.test(frame(incremental, (short) 11, "billing-1")));
+        // 不携带 topic 的请求
+        assertEquals(Decision.ACCEPT, filter.test(frame(KafkaFrames.metadataRequest("payments").setTopics(null), (short) 9, "billing-1")));
+        assertEquals(Decision.ACCEPT, KafkaFrameFilter.compile("not topic = orders").test(fetch("billing-1", "orders", (short) 13)));
+    }
+
+
+    @Test
+    void unreadableFrameIsAccepted() {
+        KafkaFrameFilter filter = KafkaFrameFilter.compile("clientId = \"billing-1\" and api = Fetch");
+        ByteBuffer produce = produce("audit-1", "orders");
+
+        assertEquals(Decision.ACCEPT, filter.test(ByteBuffer.wrap(new byte[]{0, 0, 0})));
+        // 截断在 clientId 中间，clientId 无法确定，仅按 api 丢弃当前请求
+        ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOfRange(produce.array(), produce.position(), produce.position() + 12));
+        assertEquals(Decision.REJECT_FRAME, filter.test(truncated));
+        assertEquals(Decision.ACCEPT, KafkaFrameFilter.compile("clientId = \"billing-1\"").test(truncated));
+    }
+
+
+    @Test
+    void testDoesNotMovePosition() {
+        ByteBuffer frame = produce("billing-1", "orders");
+        int position = frame.position();
+
+        KafkaFrameFilter.compile("topic = orders").test(frame);
+
+        assertEquals(position, frame.position());
+    }
+
+
+    private static ByteBuffer produce(String clientId, String topic) {
+        return frame(KafkaFrames.produceRequest(topic, KafkaFrames.records(CompressionType.NONE, 1, 16, 0L)), (short) 9, clientId);
+    }
+
+
+    private static ByteBuffer fetch(String clientId, String topic, short version) {
+        return frame(KafkaFrames.fetchRequest(topic, version, 0L), version, clientId);
+    }
+
+
+    private static ByteBuffer frame(ApiMessage body, short version, String clientId) {
+        byte[] frame = KafkaFrames.requestFrame(body, version, 1, clientId);
+        return ByteBuffer.wrap(frame, 4, frame.length - 4);
+    }
+}
@@ -0,0 +1,183 @@
+package cn.rtm.protocol.parser.protocols.kafka.filter;
+
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import org.apache.kafka.common.message.ControlledShutdownRequestData;
+import org.apache.kafka.common.message.ProduceRequestData;
+import org.apache.kafka.common.message.RequestHeaderData;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.protocol.ApiMessage;
+import org.apache.kafka.common.protocol.ByteBufferAccessor;
+import org.apache.kafka.common.protocol.ObjectSerializationCache;
+import org.apache.kafka.common.protocol.types.RawTaggedField;
+import org.apache.kafka.common.record.CompressionType;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestFrameViewTest {
+
+    @Test
+    void readsNonFlexibleProduceHeaderAndTopics() {
+        RequestFrameView view = view(produce("orders", "payments"), (short) 8, "billing-1");
+
+        assertEquals(ApiKeys.PRODUCE.id, view.apiKey());
+        assertEquals(8, view.apiVersion());
+        assertClientId("billing-1", view);
+        assertTrue(view.resolveTopics());
+        assertTopics(view, "orders", "payments");
+    }
+
+
+    @Test
+    void readsFlexibleProduceHeaderAndCompactTopics() {
+        RequestFrameView view = view(produce("orders", "payments").setTransactionalId("tx-1"), (short) 9, "billing-1");
+
+        assertEquals(9, view.apiVersion());
+        assertClientId("billing-1", view);
+        assertTrue(view.resolveTopics());
+        assertTopics(view, "orders", "payments");
+    }
+
+
+    @Test
+    void skipsHeaderTaggedFieldsOfFlexibleRequests() {
+        RequestHeaderData header = header(ApiKeys.PRODUCE, (short) 9, "billing-1");
+        header.unknownTaggedFields().add(new RawTaggedField(7, new byte[]{1, 2, 3, 4, 5}));
+        RequestFrameView view = new RequestFrameView(serialize(header, (short) 2, produce("orders"), (short) 9));
+
+        assertClientId("billing-1", view);
+        assertTrue(view.resolveTopics());
+        assertTopics(view, "orders");
+    }
+
+
+    @Test
+    void readsFetchTopicsOfBothEncodings() {
+        for (short version : new short[]{4, 11, 12}) {
+            RequestFrameView view = view(KafkaFrames.fetchRequest("orders", version, 42L), version, "consumer-1");
+            assertTrue(view.resolveTopics(), "fetch v" + version);
+            assertTopics(view, "orders");
+            assertClientId("consumer-1", view);
+        }
+        assertFalse(view(KafkaFrames.fetchRequest("orders", (short) 13, 42L), (short) 13, "consumer-1").resolveTopics());
+    }
+
+
+    @Test
+    void readsMetadataTopicsOfBothEncodings() {
+        for (short version : new short[]{1, 8, 9, 10, 12}) {
+            RequestFrameView view = view(KafkaFrames.metadataRequest("orders"), version, "admin-1");
+            assertTrue(view.resolveTopics(), "metadata v" + version);
+            assertTopics(view, "orders");
+        }
+        assertFalse(view(KafkaFrames.metadataRequest("orders").setTopics(null), (short) 9, "admin-1").resolveTopics());
+        assertFalse(view(KafkaFrames.metadataRequest("orders").setTopics(new ArrayList<>()), (short) 0, "admin-1").resolveTopics());
+    }
+
+
+    @Test
+    void nullClientIdIsKnown() {
+        RequestFrameView view = view(produce("orders"), (short) 8, null);
+
+        assertTrue(view.isHeaderReadable());
+        assertTrue(view.isClientIdKnown());
+        assertTrue(view.isClientIdNull());
+        assertTrue(view.resolveTopics());
+    }
+
+
+    @Test
+    void headerVersionZeroHasUnknownClientId() {
+        RequestHeaderData header = header(ApiKeys.CONTROLLED_SHUTDOWN, (short) 0, null);
+        RequestFrameView view = new RequestFrameView(serialize(header, (short) 0,
+                new ControlledShutdownRequestData().setBrokerId(1), (short) 0));
+
+        assertEquals(ApiKeys.CONTROLLED_SHUTDOWN.id, view.apiKey());
+        assertFalse(view.isClientIdKnown());
+        assertFalse(view.isHeaderReadable());
+    }
+
+
+    @Test
+    void truncatedOrUnsupportedFramesAreUnknown() {
+        ByteBuffer frame = frame(produce("orders"), (short) 9, "billing-1");
+        RequestFrameView truncatedHeader = new RequestFrameView(slice(frame, 11));
+        assertEquals(ApiKeys.PRODUCE.id, truncatedHeader.apiKey());
+        assertFalse(truncatedHeader.isHeaderReadable());
+        assertFalse(truncatedHeader.resolveTopics());
+
+        RequestFrameView truncatedBody = new RequestFrameView(slice(frame, frame.remaining() - 8));
+        assertClientId("billing-1", truncatedBody);
+        assertFalse(truncatedBody.resolveTopics());
+
+        RequestFrameView tooShort = new RequestFrameView(ByteBuffer.wrap(new byte[]{0, 0, 0, 9}));
+        assertEquals(-1, tooShort.apiKey());
+        assertFalse(tooShort.isHeaderReadable());
+
+        ByteBuffer unsupported = ByteBuffer.allocate(16).putShort(ApiKeys.PRODUCE.id).putShort((short) 99).putInt(1).putShort((short) 0);
+        unsupported.flip();
+        assertFalse(new RequestFrameView(unsupported).isHeaderReadable());
+    }
+
+
+    private static ProduceRequestData produce(String... topics) {
+        ProduceRequestData request = KafkaFrames.produceRequest(topics[0], KafkaFrames.records(CompressionType.NONE, 2, 16, 0L));
+        for (int i = 1; i < topics.length; i++) {
+            ProduceRequestData other = KafkaFrames.produceRequest(topics[i], KafkaFrames.records(CompressionType.NONE, 1, 8, 0L));
+            request.topicData().add(other.topicData().iterator().next().duplicate());
+        }
+        return request;
+    }
+
+
+    private static RequestFrameView view(ApiMessage body, short version, String clientId) {
+        return new RequestFrameView(frame(body, version, clientId));
+    }
+
+
+    private static ByteBuffer frame(ApiMessage body, short version, String clientId) {
+        byte[] frame = KafkaFrames.requestFrame(body, version, 1, clientId);
+        return ByteBuffer.wrap(frame, 4, frame.length - 4);
+    }
+
+
+    private static RequestHeaderData header(ApiKeys api, short version, String clientId) {
+        return new RequestHeaderData().setRequestApiKey(api.id).setRequestApiVersion(version).setCorrelationId(1).setClientId(clientId);
+    }
+
+
+    private static ByteBuffer serialize(ApiMessage header, short headerVersion, ApiMessage body, short version) {
+        ObjectSerializationCache cache = new ObjectSerializationCache();
+        ByteBuffer buffer = ByteBuffer.allocate(header.size(cache, headerVersion) + body.size(cache, version));
+        ByteBufferAccessor accessor = new ByteBufferAccessor(buffer);
+        header.write(accessor, cache, headerVersion);
+        body.write(accessor, cache, version);
+        buffer.flip();
+        return buffer;
+    }
+
+
+    private static ByteBuffer slice(ByteBuffer frame, int length) {
+        ByteBuffer slice = frame.duplicate();
+        slice.limit(slice.position() + length);
+        return slice;
+    }
+
+
+    private static void assertClientId(String expected, RequestFrameView view) {
+        assertTrue(view.isClientIdKnown());
+        assertFalse(view.isClientIdNull());
+        assertTrue(view.regionEquals(view.clientIdOffset(), view.clientIdLength(), expected.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    private static void assertTopics(RequestFrameView view, String... expected) {
+        assertEquals(expected.length, view.topicCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(view.regionEquals(view.topicOffset(i), view.topicLength(i), expected[i].getBytes(StandardCharsets.UTF_8)), expected[i]);
+        }
+    }
+}
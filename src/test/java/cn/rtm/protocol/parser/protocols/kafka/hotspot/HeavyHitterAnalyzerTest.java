@@ -0,0 +1,40 @@
+package cn.rtm.protocol.parser.protocols.kafka.hotspot;
+
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHitterAnalyzerTest {
+
+    private static final Instant NOW = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @Test
+    void fetchByTopicIdUsesNameFromMetadata() {
+        HeavyHitterAnalyzer analyzer = new HeavyHitterAnalyzer(new HeavyHitterProperties());
+        MemoryRecords records = KafkaFrames.records(CompressionType.NONE, 3, 16, 0L);
+
+        analyzer.recordResponse(KafkaFrames.fetchResponse("orders", (short) 13, records), NOW);
+        assertEquals(KafkaFrames.TOPIC_ID + "-0", topFetchKey(analyzer));
+
+        analyzer.reset();
+        analyzer.recordResponse(KafkaFrames.metadataResponse("orders", 1), NOW);
+        analyzer.recordResponse(KafkaFrames.fetchResponse("orders", (short) 13, records), NOW);
+        assertEquals("orders-0", topFetchKey(analyzer));
+
+        analyzer.recordResponse(KafkaFrames.fetchResponse("orders", (short) 12, records), NOW);
+        HeavyHitterReport report = analyzer.top(HeavyHitterDimension.FETCH_RECORDS, 10, false, null);
+        assertEquals(1, report.getHitters().size());
+        assertEquals(6, report.getHitters().get(0).getCount());
+    }
+
+
+    private static String topFetchKey(HeavyHitterAnalyzer analyzer) {
+        HeavyHitterReport report = analyzer.top(HeavyHitterDimension.FETCH_BYTES, 10, false, null);
+        assertEquals(1, report.getHitters().size());
+        return report.getHitters().get(0).getKey();
+    }
+}
@@ -0,0 +1,64 @@
+package cn.rtm.protocol.parser.protocols.kafka.parser.request;
+
+import cn.rtm.protocol.parser.ProtocolMessage;
+import cn.rtm.protocol.parser.core.context.ProtocolParseContext;
+import cn.rtm.protocol.parser.core.util.PortSet;
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import cn.rtm.protocol.parser.protocols.kafka.KafkaProtocolParsedMessage;
+import org.apache.kafka.common.record.CompressionType;
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaRequestParserTest {
+
+    private static final int THREADS = 4;
+
+    private static final int PARSES = 5000;
+
+    @Test
+    void concurrentParsesKeepTheirOwnCaptureTime() throws Exception {
+        KafkaRequestParser parser = new KafkaRequestParser(new ProtocolParseContext());
+        byte[] frame = KafkaFrames.requestFrame(KafkaFrames.produceRequest("orders",
+                KafkaFrames.records(CompressionType.NONE, 1, 16, 0L)), (short) 9, 1, "client-1");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < PARSES; i++) {
+                        Instant captureTime = Instant.ofEpochMilli(1_700_000_000_000L + thread * 1_000_000L + i);
+                        KafkaProtocolParsedMessage parsed = parser.parse(message(frame, thread, i, captureTime));
+                        assertNotNull(parsed);
+                        assertEquals(captureTime, parsed.getRequestCaptureTime());
+                        assertEquals(LocalDateTime.ofInstant(captureTime, ZoneId.systemDefault()), parsed.getStartTime());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private static ProtocolMessage message(byte[] frame, int thread, int sequence, Instant captureTime) {
+        ProtocolMessage message = new ProtocolMessage("10.0.0." + (thread + 1), 50000 + sequence % 1000, "10.0.0.100", 9092,
+                sequence * 1000L, 1, frame);
+        message.resolveDirection(PortSet.of(9092));
+        message.setCaptureTime(captureTime);
+        return message;
+    }
+}
@@ -0,0 +1,108 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+import cn.rtm.protocol.parser.kafka.KafkaFrames;
+import org.apache.kafka.common.protocol.ApiKeys;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.requests.RequestHeader;
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientProfileAnalyzerTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Test
+    void outOfOrderCaptureTimesCountInTheirSlots() {
+        ClientProfileAnalyzer analyzer = analyzer(4);
+
+        analyzer.recordRequest(null, header("client-1"), null, at(3_500));
+        analyzer.recordRequest(null, header("client-1"), null, at(1_200));
+        analyzer.recordRequest(null, header("client-1"), KafkaFrames.produceRequest("orders",
+                KafkaFrames.records(CompressionType.GZIP, 5, 16, 0L)), at(2_400));
+        analyzer.recordResponse(null, header("client-1"),
+                KafkaFrames.fetchResponse("orders", (short) 12, KafkaFrames.records(CompressionType.NONE, 2, 32, 0L)), at(800));
+
+        ClientProfileSummary summary = analyzer.top(10, ClientProfileAnalyzer.SORT_REQUESTS).get(0);
+        assertEquals(3, summary.getRequests());
+        assertEquals(1, summary.getProduceBatches());
+        assertEquals(5, summary.getAvgBatchRecords());
+        assertEquals(1.0, summary.getCompressedBatchRatio());
+        assertEquals(1, summary.getFetchResponses());
+    }
+
+
+    @Test
+    void dataOlderThanWindowIsNotCounted() {
+        ClientProfileAnalyzer analyzer = analyzer(4);
+
+        analyzer.recordRequest(null, header("client-1"), null, at(9_500));
+        analyzer.recordRequest(null, header("client-1"), null, at(1_500));
+        analyzer.recordRequest(null, header("client-1"), null, at(5_500));
+
+        assertEquals(1, analyzer.top(10, null).get(0).getRequests());
+    }
+
+
+    @Test
+    void newClientsBeyondMaxProfilesAreMergedIntoOther() {
+        ClientProfileAnalyzer analyzer = analyzer(2);
+
+        analyzer.recordRequest(null, header("client-1"), null, at(1_000));
+        analyzer.recordRequest(null, header("client-2"), null, at(1_100));
+        analyzer.recordRequest(null, header("client-3"), null, at(1_200));
+        analyzer.recordRequest(null, header("client-4"), null, at(1_300));
+
+        Map<String, ClientProfileSummary> summaries = byClientId(analyzer.top(10, null));
+        assertEquals(3, summaries.size());
+        assertEquals(1, summaries.get("client-1").getRequests());
+        assertEquals(2, summaries.get(ClientProfileKey.OTHER.getClientId()).getRequests());
+        assertEquals(3L, analyzer.stateSizes().get("clientProfile.profiles"));
+    }
+
+
+    @Test
+    void idleProfilesAreEvictedAtMaxProfiles() {
+        ClientProfileAnalyzer analyzer = analyzer(2);
+
+        analyzer.recordRequest(null, header("client-1"), null, at(1_000));
+        analyzer.recordRequest(null, header("client-2"), null, at(1_100));
+        analyzer.recordRequest(null, header("client-2"), null, at(8_000));
+        analyzer.recordRequest(null, header("client-3"), null, at(8_100));
+
+        Map<String, ClientProfileSummary> summaries = byClientId(analyzer.top(10, null));
+        assertEquals(2, summaries.size());
+        assertTrue(summaries.containsKey("client-2"));
+        assertTrue(summaries.containsKey("client-3"));
+        assertEquals(2L, analyzer.stateSizes().get("clientProfile.profiles"));
+    }
+
+
+    private static ClientProfileAnalyzer analyzer(int maxProfiles) {
+        ClientProfileProperties properties = new ClientProfileProperties();
+        properties.setSlotSeconds(1);
+        properties.setSlots(4);
+        properties.setMaxProfiles(maxProfiles);
+        return new ClientProfileAnalyzer(properties);
+    }
+
+
+    private static RequestHeader header(String clientId) {
+        return new RequestHeader(ApiKeys.PRODUCE, (short) 9, clientId, 1);
+    }
+
+
+    private static Instant at(long offsetMillis) {
+        return Instant.ofEpochMilli(BASE + offsetMillis);
+    }
+
+
+    private static Map<String, ClientProfileSummary> byClientId(List<ClientProfileSummary> summaries) {
+        return summaries.stream().collect(Collectors.toMap(ClientProfileSummary::getClientId, Function.identity()));
+    }
+}
@@ -0,0 +1,86 @@
+package cn.rtm.protocol.parser.protocols.kafka.profile;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientProfileTest {
+
+    private static final long SLOT = 1000;
+
+    private static final int SLOTS = 4;
+
+    private final ClientProfile profile = new ClientProfile(new ClientProfileKey("java", "3.4.1", "client-1"), SLOT, SLOTS);
+
+
+    @Test
+    void sumsSlotsWithinWindow() {
+        profile.recordRequest(10_100);
+        profile.recordRequest(11_200);
+        profile.recordProduce(12_300, 2, 20, 400, 1);
+        profile.recordFetch(13_999, 512);
+
+        long[] total = profile.sum(13_999);
+        assertEquals(2, total[ClientProfile.REQUESTS]);
+        assertEquals(1, total[ClientProfile.PRODUCE_REQUESTS]);
+        assertEquals(2, total[ClientProfile.PRODUCE_BATCHES]);
+        assertEquals(20, total[ClientProfile.PRODUCE_RECORDS]);
+        assertEquals(400, total[ClientProfile.PRODUCE_BYTES]);
+        assertEquals(1, total[ClientProfile.COMPRESSED_BATCHES]);
+        assertEquals(1, total[ClientProfile.FETCH_RESPONSES]);
+        assertEquals(512, total[ClientProfile.FETCH_BYTES]);
+
+        // 窗口为 11_000 至 14_999，10_100 所在分片已移出窗口
+        assertEquals(1, profile.sum(14_000)[ClientProfile.REQUESTS]);
+        assertEquals(0, profile.sum(15_000)[ClientProfile.REQUESTS]);
+    }
+
+
+    @Test
+    void expiredSlotIsClearedOnReuse() {
+        profile.recordRequest(10_100);
+        profile.recordRequest(10_900);
+
+        profile.recordRequest(14_500);
+
+        assertEquals(1, profile.sum(14_500)[ClientProfile.REQUESTS]);
+        assertEquals(1, profile.sum(17_999)[ClientProfile.REQUESTS]);
+    }
+
+
+    @Test
+    void lateDataOfReusedSlotIsDropped() {
+        profile.recordRequest(14_500);
+
+        profile.recordRequest(10_500);
+        profile.recordRequest(13_500);
+
+        assertEquals(2, profile.sum(14_500)[ClientProfile.REQUESTS]);
+        assertEquals(1, profile.sum(17_999)[ClientProfile.REQUESTS]);
+    }
+
+
+    @Test
+    void slotsAfterQueryTimeAreNotCounted() {
+        profile.recordRequest(11_500);
+        profile.recordRequest(13_500);
+        profile.recordRequest(13_600);
+
+        assertEquals(1, profile.sum(12_000)[ClientProfile.REQUESTS]);
+        assertEquals(3, profile.sum(13_600)[ClientProfile.REQUESTS]);
+        assertTrue(profile.isIdle(10_999));
+        assertFalse(profile.isIdle(11_000));
+    }
+
+
+    @Test
+    void unusedProfileIsIdle() {
+        assertTrue(profile.isIdle(0));
+        assertTrue(profile.isIdle(SLOT));
+        assertEquals(0, profile.sum(0)[ClientProfile.REQUESTS]);
+
+        profile.recordRequest(500);
+        assertFalse(profile.isIdle(500));
+        assertTrue(profile.isIdle(SLOT * SLOTS));
+    }
+}
@@ -0,0 +1,55 @@
+package cn.rtm.protocol.parser.protocols.redis;
+
+import cn.rtm.protocol.parser.core.reassemble.tcp.FrameState;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RespFrameDecoderTest {
+
+    private final RespFrameDecoder decoder = new RespFrameDecoder();
+
+    @Test
+    void completeCommandsAndReplies() {
+        assertEquals(FrameState.COMPLETE, decode("*2\r\n$3\r\nGET\r\n$3\r\nkey\r\n"));
+        assertEquals(FrameState.COMPLETE, decode("+OK\r\n"));
+        assertEquals(FrameState.COMPLETE, decode("$-1\r\n"));
+        assertEquals(FrameState.COMPLETE, decode("*-1\r\n"));
+        assertEquals(FrameState.COMPLETE, decode("%1\r\n+a\r\n:1\r\n"));
+        assertEquals(FrameState.COMPLETE, decode("|1\r\n+ttl\r\n:3\r\n+value\r\n"));
+        assertEquals(FrameState.COMPLETE, decode("PING\r\n"));
+    }
+
+
+    @Test
+    void pipelinedCommandsAreCompleteOnlyAtValueBoundary() {
+        String get = "*2\r\n$3\r\nGET\r\n$3\r\nkey\r\n";
+        assertEquals(FrameState.COMPLETE, decode(get + get));
+        assertEquals(FrameState.INCOMPLETE, decode(get + "*2\r\n$3\r\nGET\r\n"));
+    }
+
+
+    @Test
+    void partialValuesAreIncomplete() {
+        assertEquals(FrameState.INCOMPLETE, decode(""));
+        assertEquals(FrameState.INCOMPLETE, decode("*2\r\n$3\r\nGET\r\n$3\r\nke"));
+        assertEquals(FrameState.INCOMPLETE, decode("$5\r\nhello"));
+        assertEquals(FrameState.INCOMPLETE, decode("+OK\r"));
+    }
+
+
+    @Test
+    void malformedValuesAreInvalid() {
+        assertEquals(FrameState.INVALID, decode("$abc\r\n"));
+        assertEquals(FrameState.INVALID, decode("$3\r\nhello\r\n"));
+        assertEquals(FrameState.INVALID, decode("$" + (RespFrameDecoder.MAX_BULK_BYTES + 1L) + "\r\n"));
+        assertEquals(FrameState.INVALID, decode("*1\r\n\u0000\u0000\r\n"));
+    }
+
+
+    private FrameState decode(String frame) {
+        return decoder.decode(ByteBuffer.wrap(frame.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+}
@@ -6,6 +6,7 @@ import cn.rtm.protocol.parser.core.reassemble.tcp.TcpPacketReassemble;
 import cn.rtm.protocol.parser.protocols.redis.RedisParseData;
 import cn.rtm.protocol.parser.protocols.redis.RedisParsedMessage;
 import cn.rtm.protocol.parser.protocols.redis.RedisProtocolParseHandler;
+import cn.rtm.protocol.parser.protocols.redis.RespFrameDecoder;
 import cn.rtm.protocol.parser.protocols.redis.parser.request.RedisRequestParser;
 import cn.rtm.protocol.parser.protocols.redis.parser.response.RedisResponseParser;
 import org.pcap4j.core.*;
@@ -64,7 +65,7 @@ public class RedisProtocolParseTest {
     }
 
     private ProtocolParseHandler getProtocolParseCoordinator() {
-        PacketReassemble<ProtocolMessage> packetReassemble = new TcpPacketReassemble();
+        PacketReassemble<ProtocolMessage> packetReassemble = new TcpPacketReassemble(new RespFrameDecoder());
         ProtocolContext protocolContext = new ProtocolParseContext();
         ProtocolParser<ProtocolMessage, RedisParseData> requestParser = new RedisRequestParser(protocolContext);
         ProtocolParser<ProtocolMessage, RedisParseData> responseParser = new RedisResponseParser(protocolContext);